@@ -0,0 +1,64 @@
+/* BenchData.java - Loads synthetic experiments for the benchmarks
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.io.*;
+import java.util.*;
+
+/* Runs a Choreography through the same steps doEverything does, up to the
+ * point where a benchmark wants to take over, so the setup matches what a
+ * production run would have in hand.  Everything is quiet and uncached.
+ */
+class BenchData
+{
+  // Small enough to set up in a second or two, large enough that per-object work dominates
+  static final int FRAMES = 3000;
+  static final int OBJECTS = 12;
+  static final long SEED = 20150101L;
+
+  static String[] arguments(SyntheticExperiment se, String... extra)
+  {
+    ArrayList<String> args = new ArrayList<String>();
+    args.add("-q");
+    args.add("--no-cache");
+    args.addAll(Arrays.asList(extra));
+    args.add(se.dir.getPath());
+    return args.toArray(new String[args.size()]);
+  }
+
+  // Parses arguments, finds files, and loads every object
+  static Choreography load(SyntheticExperiment se, String... extra) throws Exception
+  {
+    Choreography chore = new Choreography();
+    chore.parseInput(arguments(se, extra));
+    chore.findFiles();
+    chore.loadData( (chore.output_names!=null && chore.output_names.length==1) ? chore.output_names[0] : "" );
+    return chore;
+  }
+
+  // As load, and then computes the population statistics the output is built from
+  static Choreography analyze(SyntheticExperiment se, String... extra) throws Exception
+  {
+    Choreography chore = load(se, extra);
+    chore.recomputeOnlineStatistics();
+    return chore;
+  }
+
+  // The longest-lived object, so single-object benchmarks aren't measuring a stub
+  static Dance longest(Choreography chore)
+  {
+    Dance best = null;
+    for (Dance d : chore.dances) if (d!=null && (best==null || d.area.length > best.area.length)) best = d;
+    return best;
+  }
+
+  static void close(Choreography chore)
+  {
+    if (chore!=null && chore.stats_pool!=null) chore.stats_pool.shutdown();
+  }
+}
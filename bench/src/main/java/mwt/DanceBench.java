@@ -0,0 +1,79 @@
+/* DanceBench.java - Benchmarks per-object parsing and analysis
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/* Each benchmark works on the longest object of a synthetic experiment,
+ * which spans most of its 3000 frames.  Parsing reads that object's .blob
+ * file from memory, so disk speed doesn't enter into it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DanceBench
+{
+  SyntheticExperiment se;
+  Choreography chore;
+  Dance dance;
+  byte[] blob;
+
+  @Setup
+  public void setup() throws Exception
+  {
+    se = SyntheticExperiment.create(BenchData.FRAMES, BenchData.OBJECTS, false, BenchData.SEED);
+    chore = BenchData.load(se);
+    dance = BenchData.longest(chore);
+    blob = Files.readAllBytes(se.objectFile(dance.ID).toPath());
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    BenchData.close(chore);
+    se.delete();
+  }
+
+  @Benchmark
+  public Dance readInputStream() throws Exception
+  {
+    Dance d = new Dance(dance.ID, chore, chore.attend, chore.shun);
+    d.readInputStream(new LineScanner(new ByteArrayInputStream(blob)), chore.valid);
+    return d;
+  }
+
+  // Speed windows from a few frames to a few seconds; the others don't depend on it
+  @State(Scope.Benchmark)
+  public static class Window
+  {
+    @Param({"0.25", "0.5", "1", "2", "5"})
+    public float seconds;
+  }
+
+  @Benchmark
+  public float[] findAbstractSpeed(Window w)
+  {
+    dance.findAbstractSpeed(w.seconds, chore.times, dance.cx, dance.cy, Dance.Metric.DIST, 1.0f/w.seconds);
+    return dance.quantity;
+  }
+
+  @Benchmark
+  public void findSegmentation(Blackhole bh)
+  {
+    dance.findSegmentation();
+    bh.consume(dance.segmentation);
+  }
+}
@@ -0,0 +1,91 @@
+/* DataMapperBench.java - Benchmarks rendering of the data map
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import mwt.numerics.*;
+
+/* Draws 512x512 views of a synthetic experiment the way the --map window
+ * asks for them, with the time range opened up to the whole recording so
+ * every object's track is drawn.  DataMapper keeps recent views and hands
+ * them back when asked again, so the cache is emptied before each call;
+ * otherwise all we'd time is the lookup.  With more than one thread the
+ * view is drawn in horizontal bands at once.  Runs headless: the Swing parts
+ * DataMapper builds are never shown.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DataMapperBench
+{
+  static final int SIDE = 512;
+
+  @Param({"1", "4"})
+  public int threads;
+
+  SyntheticExperiment se;
+  Choreography chore;
+  DataMapper dm;
+  Vec2I dimensions = new Vec2I(SIDE, SIDE);
+  Vec2D whole_at, zoom_at;
+  double whole_size, zoom_size;
+  BufferedImage buffer;
+
+  @Setup
+  public void setup() throws Exception
+  {
+    se = SyntheticExperiment.create(BenchData.FRAMES, BenchData.OBJECTS, false, BenchData.SEED);
+    chore = BenchData.analyze(se, "--threads", Integer.toString(threads), "-o", "tsm");
+    Choreography.DataPrinter[] dps = chore.writeStatistics(chore.output_requests[0], chore.output_names[0], null);
+    Choreography.DataSpecifier[] dss = chore.filterNopData(chore.output_requests[0]);
+    for (Dance d : chore.dances) if (d!=null) d.readyMultiscale(chore.mm_per_pixel);
+    dm = new DataMapper(chore, dps, dss);
+
+    LinearSelectorBar.RangeSpinner spin = dm.lsb.getTriSpinner();
+    spin.setRight(chore.times[chore.times.length-1]);
+    spin.setCenter(chore.times[chore.times.length/2]);
+
+    // One view of the whole arena, and one a tenth the size centered on the data
+    Rectangle2D.Double b = dm.getBounds();
+    whole_size = Math.max(b.getWidth(), b.getHeight())/SIDE;
+    whole_at = new Vec2D(b.getX(), b.getY());
+    zoom_size = whole_size/10;
+    zoom_at = new Vec2D(b.getCenterX() - 0.5*SIDE*zoom_size, b.getCenterY() - 0.5*SIDE*zoom_size);
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    BenchData.close(chore);
+    se.delete();
+  }
+
+  @Benchmark
+  public BufferedImage getViewWhole()
+  {
+    dm.vr_list.clear();
+    buffer = dm.getView(whole_at, dimensions, whole_size, buffer);
+    return buffer;
+  }
+
+  @Benchmark
+  public BufferedImage getViewZoomed()
+  {
+    dm.vr_list.clear();
+    buffer = dm.getView(zoom_at, dimensions, zoom_size, buffer);
+    return buffer;
+  }
+}
@@ -0,0 +1,65 @@
+/* EigenspineBench.java - Benchmarks principal components of spine shape
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import mwt.plugins.Eigenspine;
+
+/* Rows are the 10 bend angles of an 11-point spine, made from three smooth
+ * bending modes plus noise, and already normalized the way Eigenspine does
+ * before it calls doNIPALS.  doNIPALS subtracts each component from the
+ * data as it goes, so the data are copied back before every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EigenspineBench
+{
+  static final int BENDS = 10;
+  static final int COMPONENTS = 3;
+
+  @Param({"10000", "100000"})
+  public int rows;
+
+  float[] original;
+  float[] work;
+  float[] explained;
+
+  @Setup
+  public void setup()
+  {
+    Random r = new Random(BenchData.SEED);
+    original = new float[rows*BENDS];
+    for (int i = 0 ; i < rows ; i++)
+    {
+      double a = r.nextGaussian(), b = 0.6*r.nextGaussian(), c = 0.3*r.nextGaussian();
+      for (int j = 0 ; j < BENDS ; j++)
+      {
+        double s = (j + 0.5)/BENDS;
+        original[i*BENDS + j] = (float)(a*Math.sin(Math.PI*s) + b*Math.sin(2*Math.PI*s) + c*Math.sin(3*Math.PI*s) + 0.1*r.nextGaussian());
+      }
+    }
+    work = new float[original.length];
+    explained = new float[BENDS];
+  }
+
+  @Benchmark
+  public ArrayList<float[]> doNIPALS()
+  {
+    System.arraycopy(original, 0, work, 0, original.length);
+    return Eigenspine.doNIPALS(work, BENDS, COMPONENTS, false, explained);
+  }
+}
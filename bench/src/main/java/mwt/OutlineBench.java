@@ -0,0 +1,90 @@
+/* OutlineBench.java - Benchmarks unpacking of stored outlines
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import mwt.numerics.*;
+
+/* Unpacks every outline of the longest object in a synthetic experiment,
+ * as Reoutline, Respine, and the outline outputs do.  Each way of getting at
+ * the pixels is measured: into reused Vec2S or Vec2F arrays, into a short[]
+ * via unpackInto, and walking a Cursor without unpacking at all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutlineBench
+{
+  SyntheticExperiment se;
+  Choreography chore;
+  Dance.RawOutline[] outlines;
+  Vec2S[] vs = new Vec2S[0];
+  Vec2F[] vf = new Vec2F[0];
+  short[] xy = new short[0];
+
+  @Setup
+  public void setup() throws Exception
+  {
+    se = SyntheticExperiment.create(BenchData.FRAMES, BenchData.OBJECTS, false, BenchData.SEED);
+    chore = BenchData.load(se);
+    Dance d = BenchData.longest(chore);
+    int n = 0;
+    for (Outline o : d.outline) if (o instanceof Dance.RawOutline) n++;
+    outlines = new Dance.RawOutline[n];
+    n = 0;
+    for (Outline o : d.outline) if (o instanceof Dance.RawOutline) outlines[n++] = (Dance.RawOutline)o;
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    BenchData.close(chore);
+    se.delete();
+  }
+
+  @Benchmark
+  public void unpackVec2S(Blackhole bh)
+  {
+    for (Dance.RawOutline o : outlines) { vs = o.unpack(vs); bh.consume(vs); }
+  }
+
+  @Benchmark
+  public void unpackVec2F(Blackhole bh)
+  {
+    for (Dance.RawOutline o : outlines) { vf = o.unpack(vf); bh.consume(vf); }
+  }
+
+  @Benchmark
+  public void unpackInto(Blackhole bh)
+  {
+    for (Dance.RawOutline o : outlines)
+    {
+      if (xy.length < 2*o.size()) xy = new short[4*o.size()];
+      bh.consume(o.unpackInto(xy));
+    }
+  }
+
+  @Benchmark
+  public int cursor()
+  {
+    int sum = 0;
+    for (Dance.RawOutline o : outlines)
+    {
+      Dance.RawOutline.Cursor c = o.cursor();
+      while (c.next()) sum += c.x + c.y;
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,65 @@
+/* PipelineBench.java - Benchmarks a whole Choreography run
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/* doEverything from arguments to written .dat file, as a production run
+ * would do it: find files, load and check every object, compute the
+ * population statistics (with path segmentation), and write the output.
+ * The experiment is stored either as one .blob file per object or as a
+ * single .blobs file.  Nothing is cached between runs.
+ *
+ * doEverything prints how long loading took no matter what, so standard
+ * output is thrown away while this runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PipelineBench
+{
+  @Param({"blob", "blobs"})
+  public String layout;
+
+  @Param({"1", "4"})
+  public int threads;
+
+  SyntheticExperiment se;
+  String[] args;
+  PrintStream stdout;
+
+  @Setup
+  public void setup() throws IOException
+  {
+    se = SyntheticExperiment.create(BenchData.FRAMES, BenchData.OBJECTS, layout.equals("blobs"), BenchData.SEED);
+    args = BenchData.arguments(se, "--threads", Integer.toString(threads), "-S", "-o", "ftnNpsSmMlLwWaAkbcdxyuv1234");
+    stdout = System.out;
+    System.setOut(new PrintStream(new OutputStream() { public void write(int b) {} public void write(byte[] b, int off, int len) {} }));
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    System.setOut(stdout);
+    se.delete();
+  }
+
+  @Benchmark
+  public Choreography doEverything()
+  {
+    Choreography chore = Choreography.doEverything(args, null, true);
+    BenchData.close(chore);
+    return chore;
+  }
+}
@@ -0,0 +1,85 @@
+/* PluginBench.java - Benchmarks the outline-rebuilding plugins
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/* Runs Respine or Reoutline over every object of a synthetic experiment, as
+ * checkPluginCriteria does while loading, and counts the frames done; the
+ * "frames" figure in the results is frames per second.  Reoutline replaces
+ * outlines with smoothed ones, so each pass starts again from the outlines
+ * as loaded.  With more than one thread the frames of each object are
+ * handed out in blocks over the pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PluginBench
+{
+  @Param({"Respine", "Reoutline"})
+  public String plugin;
+
+  @Param({"1", "4"})
+  public int threads;
+
+  SyntheticExperiment se;
+  Choreography chore;
+  Dance[] dancers;
+  Outline[][] outlines;
+  long frames;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Done
+  {
+    public long frames;
+    @Setup(Level.Iteration)
+    public void clear() { frames = 0; }
+  }
+
+  @Setup
+  public void setup() throws Exception
+  {
+    se = SyntheticExperiment.create(BenchData.FRAMES, BenchData.OBJECTS, false, BenchData.SEED);
+    chore = BenchData.load(se, "--threads", Integer.toString(threads), "--plugin", "mwt.plugins." + plugin);
+    int n = 0;
+    for (Dance d : chore.dances) if (d!=null && d.outline!=null) n++;
+    dancers = new Dance[n];
+    outlines = new Outline[n][];
+    n = 0;
+    for (Dance d : chore.dances)
+    {
+      if (d==null || d.outline==null) continue;
+      dancers[n] = d;
+      outlines[n] = d.outline.clone();
+      frames += d.outline.length;
+      n++;
+    }
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    BenchData.close(chore);
+    se.delete();
+  }
+
+  @Benchmark
+  public boolean[] validate(Done done)
+  {
+    for (int i=0 ; i<dancers.length ; i++) dancers[i].outline = outlines[i].clone();
+    boolean[] keep = chore.checkPluginCriteria(dancers);
+    done.frames += frames;
+    return keep;
+  }
+}
@@ -0,0 +1,69 @@
+/* StatisticBench.java - Benchmarks summary statistics
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import mwt.numerics.Statistic;
+
+/* Statistic sorts the numbers it's given, so every call first copies the
+ * original (unsorted) values back in; the copy is a small part of the cost
+ * next to the sort.  A few percent of the values are wild outliers and a
+ * few are NaN, as real per-frame data has, so robustCompute has something
+ * to reject.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatisticBench
+{
+  @Param({"100", "10000", "1000000"})
+  public int size;
+
+  float[] original;
+  float[] work;
+  Statistic stat;
+
+  @Setup
+  public void setup()
+  {
+    Random r = new Random(BenchData.SEED);
+    original = new float[size];
+    for (int i = 0 ; i < size ; i++)
+    {
+      double u = r.nextDouble();
+      if (u < 0.01) original[i] = Float.NaN;
+      else if (u < 0.04) original[i] = (float)(50*r.nextGaussian());
+      else original[i] = (float)(0.2 + 0.05*r.nextGaussian());
+    }
+    work = new float[size];
+    stat = new Statistic();
+  }
+
+  @Benchmark
+  public Statistic compute()
+  {
+    System.arraycopy(original, 0, work, 0, size);
+    stat.compute(work);
+    return stat;
+  }
+
+  @Benchmark
+  public Statistic robustCompute()
+  {
+    System.arraycopy(original, 0, work, 0, size);
+    stat.robustCompute(work, 3.0f);
+    return stat;
+  }
+}
@@ -0,0 +1,147 @@
+/* SyntheticExperiment.java - Writes made-up MWT data for the benchmarks
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.io.*;
+import java.util.*;
+
+/* A recording of worms that never existed: a .summary file and either one
+ * .blob file per object or a single .blobs file holding all of them.  The
+ * same seed always gives byte-for-byte the same files, so timings taken on
+ * different builds are of the same work.
+ *
+ * Objects wander with a slowly drifting heading and back up for 30 frames
+ * out of every 150, so that speed, reversals, and path segmentation all
+ * have something to find.  Each has an 11-point spine and a packed
+ * rectangular outline a little over 40 pixels around.
+ */
+public class SyntheticExperiment
+{
+  public static final String PREFIX = "20150101_120000";
+  public static final float FRAME_TIME = 0.04f;
+
+  public final File dir;
+  public final int frames;
+  public final int objects;
+  public final boolean blobs;
+  final Random rng;
+
+  public SyntheticExperiment(File dir, int frames, int objects, boolean blobs, long seed)
+  {
+    this.dir = dir;
+    this.frames = frames;
+    this.objects = objects;
+    this.blobs = blobs;
+    this.rng = new Random(seed);
+  }
+
+  // Makes a fresh experiment directory under the system temporary directory and fills it
+  public static SyntheticExperiment create(int frames, int objects, boolean blobs, long seed) throws IOException
+  {
+    File parent = File.createTempFile("chorebench", "");
+    if (!parent.delete() || !parent.mkdir()) throw new IOException("Could not make directory " + parent.getPath());
+    SyntheticExperiment se = new SyntheticExperiment(new File(parent, PREFIX), frames, objects, blobs, seed);
+    se.write();
+    return se;
+  }
+
+  public File summaryFile() { return new File(dir, PREFIX + ".summary"); }
+  public File objectFile(int id) { return new File(dir, String.format("%s_%05d.blob", PREFIX, id)); }
+  public File blobsFile() { return new File(dir, PREFIX + "_00000k.blobs"); }
+
+  public void write() throws IOException
+  {
+    if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not make directory " + dir.getPath());
+    PrintWriter pw = open(summaryFile());
+    try
+    {
+      for (int i = 1 ; i <= frames ; i++) pw.printf(Locale.ROOT, "%d %.3f 5 5 0.1 0.2 0.3 0.4 0.5 0.6 0.7 0.8 0.9 1.0 1.1\n", i, i*FRAME_TIME);
+    }
+    finally { pw.close(); }
+
+    PrintWriter all = blobs ? open(blobsFile()) : null;
+    try
+    {
+      for (int id = 1 ; id <= objects ; id++)
+      {
+        PrintWriter one = blobs ? all : open(objectFile(id));
+        try
+        {
+          if (blobs) one.printf("%% %d\n", id);
+          writeObject(one, id);
+        }
+        finally { if (!blobs) one.close(); }
+      }
+    }
+    finally { if (all!=null) all.close(); }
+  }
+
+  static PrintWriter open(File f) throws IOException
+  {
+    return new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), "US-ASCII"), 1 << 16));
+  }
+
+  void writeObject(PrintWriter pw, int id)
+  {
+    // Objects turn up early and last at least half the recording
+    int first = 1 + rng.nextInt(Math.max(1, frames/20));
+    int last = Math.min(frames, first + frames/2 + rng.nextInt(Math.max(1, frames/2)));
+    double x = 500 + 50*id;
+    double y = 400;
+    double theta = 6*rng.nextDouble();
+    StringBuilder sb = new StringBuilder(256);
+    for (int i = first ; i <= last ; i++)
+    {
+      theta += 0.05*rng.nextGaussian();
+      double sign = ((i % 150) < 30) ? -1 : 1;
+      x += sign*0.8*Math.cos(theta) + 0.2*rng.nextGaussian();
+      y += sign*0.8*Math.sin(theta) + 0.2*rng.nextGaussian();
+
+      sb.setLength(0);
+      sb.append(i).append(' ').append(String.format(Locale.ROOT, "%.3f %.3f %.3f", i*FRAME_TIME, x, y));
+      sb.append(' ').append(80 + rng.nextInt(41));
+      sb.append(String.format(Locale.ROOT, " %.3f %.3f 1.0 %.3f %.3f", Math.cos(theta), Math.sin(theta), 20+rng.nextDouble(), 4+rng.nextDouble()));
+      sb.append(" %");
+      for (int k = -5 ; k <= 5 ; k++) sb.append(' ').append((int)(x + k*Math.cos(theta))).append(' ').append((int)(y + k*Math.sin(theta)));
+
+      // Outline is a w by h rectangle walked right, down, left, up; three 2-bit steps per character
+      int w = 14 + rng.nextInt(4);
+      int h = 4 + rng.nextInt(3);
+      int[] steps = new int[2*(w+h)];
+      int n = 0;
+      for (int k = 0 ; k < w ; k++) steps[n++] = 1;
+      for (int k = 0 ; k < h ; k++) steps[n++] = 3;
+      for (int k = 0 ; k < w ; k++) steps[n++] = 0;
+      for (int k = 0 ; k < h ; k++) steps[n++] = 2;
+      sb.append(" %% ").append((int)(x - w/2)).append(' ').append((int)(y - h/2)).append(' ').append(steps.length).append(' ');
+      for (int k = 0 ; k < steps.length ; k += 3)
+      {
+        int b = steps[k] << 4;
+        if (k+1 < steps.length) b |= steps[k+1] << 2;
+        if (k+2 < steps.length) b |= steps[k+2];
+        sb.append((char)('0' + b));
+      }
+      pw.print(sb.append('\n'));
+    }
+  }
+
+  // Removes the experiment and the temporary directory it was made in
+  public void delete()
+  {
+    File parent = dir.getParentFile();
+    deleteTree(dir);
+    if (parent!=null && parent.getName().startsWith("chorebench")) parent.delete();
+  }
+
+  static void deleteTree(File f)
+  {
+    File[] fs = f.listFiles();
+    if (fs!=null) for (File g : fs) deleteTree(g);
+    f.delete();
+  }
+}
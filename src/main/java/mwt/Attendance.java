@@ -0,0 +1,112 @@
+/* Attendance.java - Finds which dancers are present at any frame without a list per frame
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.util.*;
+
+/* Frames are grouped into blocks of BLOCK frames, and each block keeps the
+ * indices (into dances) of every dancer whose span touches it, packed into one
+ * int[] with an offset table.  A dancer costs one int per block it spans rather
+ * than one list node per frame.  To find who is present at a frame, scan its
+ * block and keep those whose span includes the frame.
+ *
+ * Dancers come out in the order they have in dances, which is the order the
+ * old per-frame lists had; population statistics depend on that order.
+ */
+public class Attendance
+{
+  static final int BLOCK_BITS = 8;
+  static final int BLOCK = 1 << BLOCK_BITS;
+
+  final Dance[] dances;
+  final int n_frames;
+  final int[] block_at;  // Block b lists who[block_at[b] until block_at[b+1]]
+  final int[] who;
+  final int max_present;
+
+  public Attendance(Dance[] dances,int n_frames)
+  {
+    this.dances = dances;
+    this.n_frames = n_frames;
+    int n_blocks = (n_frames + BLOCK - 1) >> BLOCK_BITS;
+    block_at = new int[n_blocks+1];
+    int[] delta = new int[n_frames+1];
+    for (Dance d : dances)
+    {
+      if (d==null || d.first_frame<0 || d.last_frame<d.first_frame) continue;
+      for (int b = d.first_frame>>BLOCK_BITS ; b <= d.last_frame>>BLOCK_BITS ; b++) block_at[b+1]++;
+      delta[d.first_frame]++;
+      delta[d.last_frame+1]--;
+    }
+    for (int b=0 ; b<n_blocks ; b++) block_at[b+1] += block_at[b];
+    who = new int[block_at[n_blocks]];
+    int[] fill = Arrays.copyOf(block_at,n_blocks);
+    for (int i=0 ; i<dances.length ; i++)
+    {
+      Dance d = dances[i];
+      if (d==null || d.first_frame<0 || d.last_frame<d.first_frame) continue;
+      for (int b = d.first_frame>>BLOCK_BITS ; b <= d.last_frame>>BLOCK_BITS ; b++) who[fill[b]++] = i;
+    }
+    int n = 0;
+    int most = 0;
+    for (int i=0 ; i<n_frames ; i++) { n += delta[i]; if (n>most) most = n; }
+    max_present = most;
+  }
+
+  public int frames() { return n_frames; }
+
+  // No frame has more dancers than this, so a buffer this big always suffices for present()
+  public int maxPresent() { return max_present; }
+
+  // Puts the dancers present at frame into buf (in dances order) and returns how many there are
+  public int present(int frame,Dance[] buf)
+  {
+    if (frame<0 || frame>=n_frames) return 0;
+    int n = 0;
+    int b = frame>>BLOCK_BITS;
+    for (int k = block_at[b] ; k < block_at[b+1] ; k++)
+    {
+      Dance d = dances[who[k]];
+      if (d.first_frame <= frame && frame <= d.last_frame) buf[n++] = d;
+    }
+    return n;
+  }
+
+  // Indices into dances, in order, of everyone present at any frame from lo to hi (or, if hi<lo, present at both hi and lo)
+  public int[] spanning(int lo,int hi)
+  {
+    int b0 = Math.max(0 , Math.min(lo,hi)) >> BLOCK_BITS;
+    int b1 = Math.min(n_frames-1 , Math.max(lo,hi)) >> BLOCK_BITS;
+    int[] found = new int[16];
+    int n = 0;
+    for (int b = b0 ; b <= b1 ; b++)
+    {
+      for (int k = block_at[b] ; k < block_at[b+1] ; k++)
+      {
+        Dance d = dances[who[k]];
+        if (d.first_frame > hi || d.last_frame < lo) continue;
+        if (Math.max(b0 , d.first_frame>>BLOCK_BITS) != b) continue;  // Already found in an earlier block
+        if (n==found.length) found = Arrays.copyOf(found,2*n);
+        found[n++] = who[k];
+      }
+    }
+    found = Arrays.copyOf(found,n);
+    if (b1 > b0) Arrays.sort(found);
+    return found;
+  }
+
+  // Convenient but allocates; use present(frame,buf) in loops over frames
+  public ArrayList<Dance> at(int frame)
+  {
+    Dance[] buf = new Dance[max_present];
+    int n = present(frame,buf);
+    ArrayList<Dance> ald = new ArrayList<Dance>(n);
+    for (int i=0 ; i<n ; i++) ald.add(buf[i]);
+    return ald;
+  }
+}
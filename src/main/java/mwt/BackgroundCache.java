@@ -0,0 +1,152 @@
+/* BackgroundCache.java - Holds decoded map backgrounds, reading ahead of playback
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.imageio.ImageIO;
+
+/* An experiment may come with a set of background PNGs taken as it ran.
+ * Decoding one (often out of a zip) takes long enough to stall the map, so
+ * decoded pictures are kept here, shared by every background that draws
+ * them, and dropped least-recently-used first once they take up more than
+ * the budget in bytes.  Pictures that will be wanted soon can be handed to
+ * readAhead, which decodes them on a thread of their own.
+ *
+ * Image -1 is the experiment's main PNG; image k is png_set_files[k] (or
+ * png_zip_set[k] if the data is in a zip).
+ */
+public class BackgroundCache
+{
+  static final long DEFAULT_BUDGET = 1L << 28;
+  static final int MAX_PENDING = 4;
+
+  // A decoded image stored a column at a time, since each row of the map is a column of the image
+  public static class Picture
+  {
+    public final int width, height;
+    final int[] columns;
+    Picture(BufferedImage bi)
+    {
+      width = bi.getWidth();
+      height = bi.getHeight();
+      int[] rows = bi.getRGB(0,0,width,height,null,0,width);
+      columns = new int[width*height];
+      for (int y=0 ; y<height ; y++) for (int x=0 ; x<width ; x++) columns[x*height+y] = rows[y*width+x];
+    }
+    public int getRGB(int x,int y) { return columns[x*height+y]; }
+    long bytes() { return 4L*columns.length; }
+  }
+
+  final Choreography chore;
+  long budget;
+  long held = 0;
+  final LinkedHashMap<Integer,Picture> decoded = new LinkedHashMap<Integer,Picture>(16, 0.75f, true);
+  final HashSet<Integer> pending = new HashSet<Integer>();
+  ExecutorService reader = null;
+
+  public BackgroundCache(Choreography c)
+  {
+    chore = c;
+    budget = Math.min(DEFAULT_BUDGET, Runtime.getRuntime().maxMemory()/4);
+  }
+
+  // Sets how many bytes of decoded pictures may be kept (0 keeps nothing beyond what's being drawn)
+  public synchronized void setBudget(long bytes)
+  {
+    budget = Math.max(0, bytes);
+    evict();
+  }
+
+  public synchronized long held() { return held; }
+
+  // The picture for image k, decoding it here and now if nobody has yet; null if it can't be read
+  public Picture get(int k)
+  {
+    synchronized (this)
+    {
+      while (pending.contains(k))
+      {
+        try { wait(); }
+        catch (InterruptedException ie) { break; }  // Read it ourselves instead
+      }
+      Picture p = decoded.get(k);
+      if (p != null) return p;
+    }
+    return keep(k, decode(k));
+  }
+
+  // Starts decoding images that aren't already kept, in the order given, as long as not too many are waiting
+  public synchronized void readAhead(int... ks)
+  {
+    for (final int k : ks)
+    {
+      if (pending.size() >= MAX_PENDING) break;
+      if (decoded.containsKey(k) || pending.contains(k)) continue;
+      pending.add(k);
+      if (reader == null) reader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) { Thread t = new Thread(r, "choreography-backgrounds"); t.setDaemon(true); return t; }
+      });
+      reader.execute(new Runnable() { public void run() {
+        Picture p = null;
+        try { p = decode(k); }
+        finally {
+          synchronized (BackgroundCache.this)
+          {
+            pending.remove(k);
+            keep(k, p);
+            BackgroundCache.this.notifyAll();
+          }
+        }
+      } });
+    }
+  }
+
+  synchronized Picture keep(int k, Picture p)
+  {
+    if (p == null) return null;
+    Picture old = decoded.put(k, p);
+    if (old != null) held -= old.bytes();
+    held += p.bytes();
+    evict();
+    return p;
+  }
+
+  void evict()
+  {
+    Iterator< Map.Entry<Integer,Picture> > it = decoded.entrySet().iterator();
+    while (held > budget && it.hasNext())
+    {
+      held -= it.next().getValue().bytes();
+      it.remove();
+    }
+  }
+
+  Picture decode(int k)
+  {
+    if (chore == null) return null;
+    try
+    {
+      BufferedImage bi = null;
+      if (chore.png_zip != null)
+      {
+        if (k < 0) bi = ImageIO.read(chore.directory_zip.getInputStream(chore.png_zip));
+        else if (chore.png_zip_set != null && k < chore.png_zip_set.length) bi = ImageIO.read(chore.directory_zip.getInputStream(chore.png_zip_set[k]));
+      }
+      else if (chore.png_file != null)
+      {
+        if (k < 0) bi = ImageIO.read(chore.png_file);
+        else if (chore.png_set_files != null && k < chore.png_set_files.length) bi = ImageIO.read(chore.png_set_files[k]);
+      }
+      return (bi == null) ? null : new Picture(bi);
+    }
+    catch (IOException ioe) { return null; }  // No background is better than no map
+  }
+}
@@ -0,0 +1,174 @@
+/* ChoreCache.java - Keeps parsed dancers in a binary file so the same data can be reloaded quickly
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/* The cache holds every dancer that passed the built-in criteria, in the order
+ * they were loaded, just as they were before any plugin saw them.  Each is
+ * stored with its slot (where it goes in dances) as a length-prefixed record.
+ *
+ * A cache is only used if its key matches, meaning it was made with the same
+ * loading options, and if it is at least as new as every file it came from.
+ * Anything else--including a damaged file--means the data is loaded normally.
+ * The file is memory-mapped a window at a time, like LineScanner does.
+ */
+public class ChoreCache
+{
+  public static final String SUFFIX = ".chorecache";
+  static final int MAGIC = 0x43484f43;  // "CHOC"
+  static final int VERSION = 1;
+  static final int WINDOW_SIZE = 1 << 28;
+
+  public static class Contents
+  {
+    public final Dance[] dancers;
+    public final int[] slots;
+    public Contents(Dance[] dancers,int[] slots) { this.dancers = dancers; this.slots = slots; }
+  }
+
+  final File file;
+  final String key;
+  final long newest_source;
+
+  public ChoreCache(File file,String key,long newest_source)
+  {
+    this.file = file;
+    this.key = key;
+    this.newest_source = newest_source;
+  }
+
+  public File file() { return file; }
+
+  public boolean usable() { return file.isFile() && file.lastModified() >= newest_source; }
+
+  // Returns null if there is no usable cache for this key
+  public Contents read(Choreography chore) throws IOException
+  {
+    if (!usable()) return null;
+    FileInputStream fis = new FileInputStream(file);
+    try
+    {
+      Window w = new Window(fis.getChannel());
+      ByteBuffer bb = w.need(12);
+      if (bb.getInt() != MAGIC || bb.getInt() != VERSION) return null;
+      int n_key = bb.getInt();
+      bb = w.need(n_key + 4);
+      byte[] kb = new byte[n_key];
+      bb.get(kb);
+      if (!key.equals(new String(kb,"UTF-8"))) return null;
+      int n = bb.getInt();
+      Dance[] dancers = new Dance[n];
+      int[] slots = new int[n];
+      for (int i=0 ; i<n ; i++)
+      {
+        bb = w.need(4);
+        int length = bb.getInt();
+        bb = w.need(length);
+        int end = bb.position() + length;
+        slots[i] = bb.getInt();
+        dancers[i] = new Dance(bb.getInt(), chore, chore.attend, chore.shun);
+        dancers[i].readCache(bb);
+        if (bb.position() != end) throw new IOException("Damaged record in " + file.getName());
+      }
+      return new Contents(dancers,slots);
+    }
+    finally { fis.close(); }
+  }
+
+  // Writes to a temporary file first so a partly written cache is never picked up
+  public void write(Contents c) throws IOException
+  {
+    File temp = new File(file.getPath() + ".tmp");
+    DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(temp) , 1 << 16 ) );
+    boolean done = false;
+    try
+    {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      byte[] kb = key.getBytes("UTF-8");
+      out.writeInt(kb.length);
+      out.write(kb);
+      out.writeInt(c.dancers.length);
+      ByteArrayOutputStream record = new ByteArrayOutputStream(1 << 16);
+      DataOutputStream rec = new DataOutputStream(record);
+      for (int i=0 ; i<c.dancers.length ; i++)
+      {
+        record.reset();
+        rec.writeInt(c.slots[i]);
+        rec.writeInt(c.dancers[i].ID);
+        c.dancers[i].writeCache(rec);
+        rec.flush();
+        out.writeInt(record.size());
+        record.writeTo(out);
+      }
+      out.close();
+      if (file.exists() && !file.delete()) throw new IOException("Could not replace " + file.getPath());
+      if (!temp.renameTo(file)) throw new IOException("Could not create " + file.getPath());
+      done = true;
+    }
+    finally
+    {
+      if (!done) { try { out.close(); } catch (IOException ioe) {} temp.delete(); }
+    }
+  }
+
+  // Maps a file a window at a time; need(n) returns a buffer with at least n bytes left, moving the window if necessary
+  static class Window
+  {
+    final FileChannel channel;
+    final long size;
+    long start = 0;
+    ByteBuffer buf;
+
+    Window(FileChannel fc) throws IOException
+    {
+      channel = fc;
+      size = fc.size();
+      buf = ByteBuffer.allocate(0);
+    }
+
+    ByteBuffer need(int n) throws IOException
+    {
+      if (n < 0) throw new IOException("Damaged cache file");
+      if (buf.remaining() >= n) return buf;
+      start += buf.position();
+      if (start + n > size) throw new EOFException("Cache file is truncated");
+      long length = Math.min( Math.max((long)WINDOW_SIZE, (long)n) , size - start );
+      buf = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+      return buf;
+    }
+  }
+
+  // Bulk transfers used by Dance to read and write its arrays
+  static int[] getInts(ByteBuffer bb,int n)
+  {
+    int[] a = new int[n];
+    bb.asIntBuffer().get(a);
+    bb.position(bb.position() + 4*n);
+    return a;
+  }
+  static float[] getFloats(ByteBuffer bb,int n)
+  {
+    float[] a = new float[n];
+    bb.asFloatBuffer().get(a);
+    bb.position(bb.position() + 4*n);
+    return a;
+  }
+  static short[] getShorts(ByteBuffer bb,int n)
+  {
+    short[] a = new short[n];
+    bb.asShortBuffer().get(a);
+    bb.position(bb.position() + 2*n);
+    return a;
+  }
+  static void putFloats(DataOutputStream out,float[] a) throws IOException { for (float f : a) out.writeFloat(f); }
+}
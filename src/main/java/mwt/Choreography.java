@@ -12,6 +12,7 @@ import java.io.*;
 import java.lang.reflect.*;
 import java.nio.CharBuffer;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.zip.*;
 
 import mwt.numerics.*;
@@ -30,6 +31,15 @@ public class Choreography
   boolean headless;
   public boolean quiet_operation;
   boolean write_timecourse;
+  boolean write_text = true;
+  boolean write_binary = false;
+  boolean following = false;      // Set by --follow: rows are appended a few at a time as data arrives
+  float follow_after = Float.NEGATIVE_INFINITY;  // Rows up to here were written by an earlier pass
+  public int frame_offset = 0;    // Frames skipped before --from by a --follow pass, so object frame numbers still line up
+  ConcurrentHashMap<String,Long> follow_skip = null;  // Kept by --follow across passes: bytes at the start of each object file with nothing left in the window
+  Set<String> follow_wrote = null;  // Set by --follow: every output file this pass writes, so stale ones can be cleared at the end
+  SummaryTail follow_summary = null;  // Kept by --follow across passes: the summary lines parsed so far
+  public Profile profile = null;  // Only made for --profile; everything that records to it checks for null first
   boolean tell_who;
   boolean interactive_mode;
   public boolean reject_duplicates;
@@ -38,9 +48,13 @@ public class Choreography
   boolean one_by_one;
   boolean view_graph;
   boolean view_datamap;
+  double[] map_frames = null;  // start, stop, step, trail for --map-frames
+  double[] map_area = null;  // x0, y0, x1, y1 in mm and then width in pixels, for --map-view
+  String[] map_style = null;
   boolean all_individuals;
   boolean static_trigger_mask;
   boolean blob_in_blobs;
+  boolean use_cache;
   public boolean nanless = false;
   String print_header = null;
   public boolean segment_path;
@@ -58,6 +72,10 @@ public class Choreography
   float min_time;
   public float speed_window;
   float output_time_chunk;
+  public int n_threads = 1;
+  ForkJoinPool stats_pool = null;  // Made on first use if n_threads > 1
+  static final int DANCERS_PER_TASK = 2;
+  static final int FRAMES_PER_TASK = 1024;
   
   // Times to trigger averaging
   public Triggerer triggers[];
@@ -66,18 +84,21 @@ public class Choreography
   PluginLoader plugloader;
   CustomComputation[] providedPlugins;   // For programmatic use--skip normal class-loading mechanism and use what we're given.
   public ArrayList<ComputationInfo> plugininfo;
+  boolean legacy_vectors = false;  // A plugin from outside mwt.plugins may read or write Dance.centroid[] and the like
   PlugMapper plug_map;
   LinkedList<CustomOutputModification> plugmods;
   
   // Areas of the field of view from which to specifically include or exclude data
   public Dance.ReceptiveField attend[];
   public Dance.ReceptiveField shun[];
+  String field_key;  // The --in and --out options as given, for the cache key
   
   // Various things relating to the mechanics of output
   public String file_prefix;  // findFiles may change this
   public String[] output_names;
   DataSpecifier[][] output_requests;
   HashSet<DataSource> computables;
+  HashSet<DataSource> ordered_sources;  // Population median and quartiles are only computed for these
   HashSet<Integer> id_table;
   
   
@@ -107,8 +128,9 @@ public class Choreography
   public int[][] events;
   public Dance[] refs;
   public Dance[] dances;
+  final OutlineCache outline_cache = new OutlineCache();  // Goes when this run does, and the outlines with it
   HashMap<Integer,LinkedList<Ancestry>> geneology;  // Records how objects were created/destroyed
-  Vector<LinkedList<Dance>> attendance;  // Lists which dancers were present at each timepoint
+  Attendance attendance;  // Knows which dancers were present at each timepoint
   HashSet<Integer> duplicate_frame_numbers;
   float[] trigger_start;
   float[] trigger_end;
@@ -117,36 +139,36 @@ public class Choreography
   
   // These are set by recomputeOnlineStatistics and are summary statistics for display and output
   int[] good_number;
-  Statistic[] area;
-  Statistic[] persistence;
-  Statistic[] speed;
-  Statistic[] angular_speed;
-  Statistic[] length;
-  Statistic[] rel_length;
-  Statistic[] width;
-  Statistic[] rel_width;
-  Statistic[] aspect;
-  Statistic[] rel_aspect;
-  Statistic[] spine_length;
-  Statistic[] spine_width;
-  Statistic[] end_wiggle;
-  Statistic[] bias;
-  Statistic[] pathlen;
-  Statistic[] curve;
-  Statistic[] dir_change;
-  Statistic[] loc_x;
-  Statistic[] loc_y;
-  Statistic[] vel_x;
-  Statistic[] vel_y;
-  Statistic[] orient;
-  Statistic[] crab;
-  Statistic[] qxfw;
-  Statistic[][] custom;
+  StatisticSeries area;
+  StatisticSeries persistence;
+  StatisticSeries speed;
+  StatisticSeries angular_speed;
+  StatisticSeries length;
+  StatisticSeries rel_length;
+  StatisticSeries width;
+  StatisticSeries rel_width;
+  StatisticSeries aspect;
+  StatisticSeries rel_aspect;
+  StatisticSeries spine_length;
+  StatisticSeries spine_width;
+  StatisticSeries end_wiggle;
+  StatisticSeries bias;
+  StatisticSeries pathlen;
+  StatisticSeries curve;
+  StatisticSeries dir_change;
+  StatisticSeries loc_x;
+  StatisticSeries loc_y;
+  StatisticSeries vel_x;
+  StatisticSeries vel_y;
+  StatisticSeries orient;
+  StatisticSeries crab;
+  StatisticSeries qxfw;
+  StatisticSeries[] custom;
   
   // Graphical output
   DataMapVisualizer dmv;
 
-  float catchnan(Float f) { return (nanless && Float.isNaN(f)) ? 0.0f : f; }
+  float catchnan(float f) { return (nanless && Float.isNaN(f)) ? 0.0f : f; }
 
   public static class SystemExit extends RuntimeException {
     public int exitValue;
@@ -337,6 +359,34 @@ public class Choreography
     p.printf(format,args);
     return p;
   }
+  // Same, but writes (and then clears) a line built up in a FormatBuffer
+  public static PrintWriter nfprintf(PrintWriter p,File f,FormatBuffer line) throws IOException {
+    if (p==null) p = new PrintWriter( new BufferedOutputStream( new FileOutputStream( f ) ) );
+    line.writeTo(p);
+    line.clear();
+    return p;
+  }
+  
+  
+  // Profiling: all of these do nothing (and make no labels) without --profile
+  long tick() { return (profile==null) ? 0L : System.nanoTime(); }
+  void tock(String what, long since) { if (profile!=null) profile.time(what, System.nanoTime()-since); }
+  void tock(String what, String detail, long since) { if (profile!=null) profile.time(what + detail, System.nanoTime()-since); }
+  long profile_lap;  // When the current stretch of recomputeOnlineStatistics began
+  void lap(String what, String detail)
+  {
+    if (profile==null) return;
+    long now = System.nanoTime();
+    profile.time(what + detail, now - profile_lap);
+    profile_lap = now;
+  }
+  void scanned(String what, LineScanner sc)
+  {
+    if (profile==null) return;
+    profile.count(what + " lines", sc.line_number);
+    profile.count(what + " bytes", sc.bytes_scanned);
+    if (sc.read_nanos > 0) profile.time("load: reading/inflating " + what + " files", sc.read_nanos);
+  }
   
   
   // Filters to pull out various filenames
@@ -372,7 +422,7 @@ public class Choreography
   
   
   // Keep track of files in which to find dancers (when bundled)
-  public class MultiFileInfo implements Comparable<MultiFileInfo> {
+  public static class MultiFileInfo implements Comparable<MultiFileInfo> {
     int id;
     int fnum;
     long offset;
@@ -439,12 +489,379 @@ public class Choreography
       else { raf.seek(n+m); return n; }
     }
   }
+
+
+  // Reads and checks a single-object .blob file; may run on a worker thread, so plugins are not consulted here
+  public class DancerLoader implements Callable<Dance> {
+    int id;
+    File file;
+    ZipEntry zip;
+    String name;
+    public DancerLoader(int i,File f,ZipEntry z,String s) { id=i; file=f; zip=z; name=s; }
+    public Dance call() throws LoadDataException {
+      LineScanner sc;
+      long length = 0;
+      if (follow_skip!=null && file!=null)
+      {
+        // An object that had nothing in an earlier pass's window has nothing in this one, unless it has grown since
+        try { length = readableLength(file); }
+        catch (IOException ioe) { throw new LoadDataException("Can't read file " + name); }
+        Long done = follow_skip.get(file.getPath());
+        if (done!=null && done.longValue()==length) return null;
+      }
+      try { sc = scannerFor(file,zip); }
+      catch (IOException ioe) { throw new LoadDataException("Can't read file " + name); }
+
+      Dance d = new Dance(id, Choreography.this, attend, shun);
+      long t0 = tick();
+      try { d.readInputStream( sc , valid ); }
+      catch (Dance.DancerFileException d_dfe) { throw new LoadDataException("Error reading " + name + "\n  " + d_dfe); }
+      finally {
+        tock("load: parsing objects", t0);
+        scanned("object", sc);
+        try { sc.close(); } catch (IOException ioe) {}  // Don't worry if we can't close the file
+      }
+      if (follow_skip!=null && file!=null && !d.hasData()) follow_skip.put(file.getPath(), length);
+
+      return checkCriteria(d) ? d : null;
+    }
+  }
+
+  // Reads and checks every object in a .blobs file; may run on a worker thread, so plugins are not consulted here
+  public class BlobsLoader implements Callable< LinkedList<Dance> > {
+    File file;
+    ZipEntry zip;
+    public BlobsLoader(File f,ZipEntry z) { file=f; zip=z; }
+    public LinkedList<Dance> call() throws LoadDataException {
+      LinkedList<Dance> found = new LinkedList<Dance>();
+      String f_name = (file!=null) ? file.getName() : zip.getName();
+      LineScanner sc;
+      String id_line;
+      String s;
+      int id;
+      Dance one_dance;
+      // When following, objects that ended before an earlier pass's window are skipped; the file only ever grows
+      boolean settling = (follow_skip!=null && file!=null);
+      long from = 0;
+      if (settling)
+      {
+        Long done = follow_skip.get(file.getPath());
+        if (done!=null && done.longValue() <= file.length()) from = done.longValue();
+      }
+      try {
+        if (from > 0) { sc = LineScanner.open(file, from, readableLength(file)); sc.timed = (profile!=null); }
+        else sc = scannerFor(file,zip);
+      }
+      catch (IOException ioe) { throw new LoadDataException("Can't read file " + f_name); }
+      long settled = from;  // Every object before here is complete and had nothing in the window
+      long t0 = tick();
+      try {
+        try {
+          id_line = sc.nextLine() ? sc.lineString() : null;
+        }
+        catch (IOException ioe) { throw new LoadDataException("Can't find data in " + f_name); }
+        if (id_line==null && from>0) return found;  // Nothing written since then
+        if (id_line==null || id_line.length()<3 || id_line.charAt(0) != '%') throw new LoadDataException("Malformed blobs file " + f_name);
+        while (id_line != null && id_line.length()>0) {
+          long at = from + sc.lineOffset();
+          s = id_line.substring(2);
+          try { id = Integer.parseInt(s); }
+          catch (NumberFormatException nfe) { throw new LoadDataException("In " + f_name + " can't read ID: '" + s + "'"); }
+          one_dance = new Dance(id, Choreography.this, attend, shun);
+          try { id_line = one_dance.readInputStream(sc,valid); }
+          catch (Dance.DancerFileException d_dfe) { throw new LoadDataException("Error reading " + id + " from " + f_name + "\n  " + d_dfe); }
+          if (settling && settled==at && id_line!=null && !one_dance.hasData()) settled = from + sc.lineOffset();  // Another object follows, so this one is finished
+          if (id_table!=null && !id_table.contains(id)) continue;  // Have to read it and then throw it away to advance file
+          if (checkCriteria(one_dance)) found.add(one_dance);
+        }
+        if (settled > from) follow_skip.put(file.getPath(), settled);
+      }
+      finally {
+        tock("load: parsing objects (and checking criteria)", t0);
+        scanned("object", sc);
+        try { sc.close(); } catch (IOException ioe) {}  // Don't worry if we can't close the file
+      }
+      return found;
+    }
+  }
+
+  // Reads only the listed objects from a .blobs file, seeking to the offsets given in the summary file's %%% index
+  public class IndexedBlobsLoader implements Callable< LinkedList<Dance> > {
+    File file;
+    ZipEntry zip;
+    MultiFileInfo[] wanted;  // In order of offset
+    long[] ends;             // Where the next object starts (-1 if nothing follows)
+    public IndexedBlobsLoader(File f,ZipEntry z,MultiFileInfo[] w,long[] e) { file=f; zip=z; wanted=w; ends=e; }
+    Dance readIndexed(LineScanner sc,MultiFileInfo mfi,String f_name) throws LoadDataException {
+      int id = -1;
+      try {
+        // Offset should be that of the "% id" line that starts the object
+        if (sc.nextLine() && sc.startsWith("% ")) {
+          try { id = sc.restAsInt(2); }
+          catch (NumberFormatException nfe) { id = -1; }
+        }
+      }
+      catch (IOException ioe) { throw new LoadDataException("Can't find data in " + f_name); }
+      if (id != mfi.id) throw new StaleIndexException("Summary file index doesn't match contents of " + f_name);
+      
+      Dance d = new Dance(mfi.id, Choreography.this, attend, shun);
+      long t0 = tick();
+      try { d.readInputStream(sc,valid); }
+      catch (Dance.DancerFileException d_dfe) { throw new LoadDataException("Error reading " + mfi.id + " from " + f_name + "\n  " + d_dfe); }
+      finally { tock("load: parsing objects", t0); }
+      return d;
+    }
+    public LinkedList<Dance> call() throws LoadDataException {
+      LinkedList<Dance> found = new LinkedList<Dance>();
+      String f_name = (file!=null) ? file.getName() : zip.getName();
+      InputStream is = null;
+      long at = 0;
+      try {
+        try { if (file==null) { is = directory_zip.getInputStream(zip); if (profile!=null) profile.count("zip compressed bytes", zip.getCompressedSize()); } }
+        catch (IOException ioe) { throw new LoadDataException("Can't read file " + f_name); }
+        for (int k=0 ; k<wanted.length ; k++) {
+          MultiFileInfo mfi = wanted[k];
+          LineScanner sc;
+          try {
+            if (file!=null) {
+              // Map exactly this object's bytes
+              long end = (ends[k]<0) ? readableLength(file) : ends[k];
+              if (end > file.length() || mfi.offset > end) throw new StaleIndexException("Summary file index doesn't match contents of " + f_name);
+              sc = LineScanner.open(file, mfi.offset, end);
+            }
+            else {
+              // Compressed, so we can only skip forwards (but at least we don't parse what we skip)
+              while (at < mfi.offset) {
+                long n = is.skip(mfi.offset - at);
+                if (n <= 0) {
+                  if (is.read() < 0) throw new StaleIndexException("Summary file index doesn't match contents of " + f_name);
+                  n = 1;
+                }
+                at += n;
+              }
+              if (ends[k] < 0) sc = new LineScanner(is);  // Last thing in the file
+              else {
+                if (ends[k] - mfi.offset > Integer.MAX_VALUE) throw new StaleIndexException("Summary file index doesn't match contents of " + f_name);
+                byte[] bytes = new byte[(int)(ends[k] - mfi.offset)];
+                new DataInputStream(is).readFully(bytes);
+                at += bytes.length;
+                sc = new LineScanner(new ByteArrayInputStream(bytes));
+              }
+            }
+          }
+          catch (StaleIndexException sie) { throw sie; }
+          catch (EOFException eofe) { throw new StaleIndexException("Summary file index doesn't match contents of " + f_name); }
+          catch (IOException ioe) { throw new LoadDataException("Can't read file " + f_name); }
+          
+          if (profile!=null) sc.timed = true;
+          Dance d;
+          try { d = readIndexed(sc, mfi, f_name); }
+          finally {
+            scanned("object", sc);
+            if (file!=null) try { sc.close(); } catch (IOException ioe) {}
+          }
+          if (checkCriteria(d)) found.add(d);
+        }
+      }
+      finally {
+        try { if (is!=null) is.close(); } catch (IOException ioe) {}  // Don't worry if we can't close the file
+      }
+      return found;
+    }
+  }
+
+  // Files on disk are memory-mapped and scanned in place; zipped ones have to be streamed
+  LineScanner scannerFor(File f,ZipEntry z) throws IOException {
+    LineScanner sc;
+    if (f!=null) sc = LineScanner.open(f, 0, readableLength(f));
+    else {
+      sc = new LineScanner(directory_zip.getInputStream(z));
+      if (profile!=null) profile.count("zip compressed bytes", z.getCompressedSize());
+    }
+    sc.timed = (profile!=null);
+    return sc;
+  }
+
+  // When following, the tracker may be partway through a line, so only read up to the end of the last whole one
+  long readableLength(File f) throws IOException {
+    long n = f.length();
+    if (!following) return n;
+    RandomAccessFile raf = new RandomAccessFile(f, "r");
+    try {
+      byte[] buf = new byte[4096];
+      while (n > 0) {
+        int k = (int)Math.min(buf.length, n);
+        raf.seek(n-k);
+        raf.readFully(buf, 0, k);
+        for (int i=k-1 ; i>=0 ; i--) if (buf[i]=='\n' || buf[i]=='\r') return n-k+i+1;
+        n -= k;
+      }
+      return 0;
+    }
+    finally { raf.close(); }
+  }
+
+  // Run jobs on n_threads worker threads (or right here if there is only one) and hand back results in job order
+  public <T> ArrayList<T> runInOrder(List< ? extends Callable<T> > jobs) throws ExecutionException {
+    ArrayList<T> results = new ArrayList<T>(jobs.size());
+    if (n_threads <= 1 || jobs.size() <= 1) {
+      for (Callable<T> job : jobs) {
+        try { results.add(job.call()); }
+        catch (Exception e) { throw new ExecutionException(e); }
+      }
+      return results;
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(n_threads, jobs.size()), new ThreadFactory() {
+      public Thread newThread(Runnable r) { Thread t = new Thread(r, "choreography-worker"); t.setDaemon(true); return t; }
+    });
+    try {
+      ArrayList< Future<T> > pending = new ArrayList< Future<T> >(jobs.size());
+      for (Callable<T> job : jobs) pending.add(pool.submit(job));
+      for (Future<T> f : pending) {
+        try { results.add(f.get()); }
+        catch (InterruptedException ie) { throw new ExecutionException(ie); }
+      }
+    }
+    finally { pool.shutdownNow(); }
+    return results;
+  }
+
+
+  // Per-dancer work for the statistics; each call should touch nothing but that dancer
+  public abstract class DancerWork { public abstract void on(Dance d); }
+  
+  // Do work on every dancer, fanned out over a fork-join pool of n_threads if there is more than one
+  public void eachDancer(DancerWork work) {
+    if (n_threads <= 1 || dances.length <= 1) {
+      for (Dance d : dances) if (d!=null) work.on(d);
+    }
+    else statsPool().invoke(new DancerSpan(work,0,dances.length));
+  }
   
+  ForkJoinPool statsPool() {
+    if (stats_pool==null) stats_pool = new ForkJoinPool(n_threads);
+    return stats_pool;
+  }
+
+  // Plugins only get called on several dancers at once if they promise they can take it (see ParallelSafe)
+  boolean pluginInParallel(CustomComputation plugin) {
+    return n_threads > 1 && (plugin instanceof ParallelSafe) && ((ParallelSafe)plugin).parallelSafe();
+  }
+
+  // After a plugin from outside mwt.plugins has run on d, whatever it did to the old vector fields goes into the columns
+  void vectorsBack(Dance d) { if (legacy_vectors && d!=null) d.vectorsBack(); }
+
+  File specialFile(ComputationInfo ci,Dance d) {
+    if (!ci.mapoutput) return null;
+    File f = new File(targetDir() , file_prefix + "." + String.format("%05d",d.ID) + "." + ci.plugin.desiredExtension());
+    if (follow_wrote!=null) follow_wrote.add(f.getPath());
+    return f;
+  }
+
+  // Runs the plugin's computeDancerSpecial on every dancer and returns all the results or'ed together; the first IO error wins
+  public int computeDancerSpecials(final ComputationInfo ci) throws IOException {
+    final int[] wrote = new int[1];
+    if (!pluginInParallel(ci.plugin)) {
+      for (Dance d : dances) if (d!=null) { wrote[0] |= ci.plugin.computeDancerSpecial(d , specialFile(ci,d)); vectorsBack(d); }
+      return wrote[0];
+    }
+    final IOException[] failed = new IOException[1];
+    eachDancer(new DancerWork() { public void on(Dance d) {
+      try {
+        int w = ci.plugin.computeDancerSpecial(d , specialFile(ci,d));
+        vectorsBack(d);
+        synchronized (wrote) { wrote[0] |= w; }
+      }
+      catch (IOException ioe) { synchronized (failed) { if (failed[0]==null) failed[0] = ioe; } }
+    } });
+    if (failed[0]!=null) throw failed[0];
+    return wrote[0];
+  }
   
+  // Splits dances[i0 until i1] down to a few dancers per task (they differ a lot in length, so keep it fine-grained)
+  class DancerSpan extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    final DancerWork work;
+    final int i0,i1;
+    DancerSpan(DancerWork work,int i0,int i1) { this.work = work; this.i0 = i0; this.i1 = i1; }
+    protected void compute() {
+      if (i1-i0 <= DANCERS_PER_TASK) {
+        for (int i=i0 ; i<i1 ; i++) if (dances[i]!=null) work.on(dances[i]);
+      }
+      else {
+        int m = (i0+i1)>>>1;
+        invokeAll(new DancerSpan(work,i0,m) , new DancerSpan(work,m,i1));
+      }
+    }
+  }
+  
+  // Splits frames[i0 until i1] into blocks that each get their own scratch space; every frame is computed as in serial
+  class FrameSpan extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    final int scratch;
+    final StatisticSeries answer;
+    final int i0,i1;
+    FrameSpan(int scratch,StatisticSeries answer,int i0,int i1) { this.scratch = scratch; this.answer = answer; this.i0 = i0; this.i1 = i1; }
+    protected void compute() {
+      if (i1-i0 <= FRAMES_PER_TASK) computeDataSkipJunk(new float[scratch],answer,i0,i1);
+      else {
+        int m = (i0+i1)>>>1;
+        invokeAll(new FrameSpan(scratch,answer,i0,m) , new FrameSpan(scratch,answer,m,i1));
+      }
+    }
+  }
+
+  // Work on frames i0 until i1 of one dancer; each call should make its own scratch space
+  public static abstract class FrameBlockWork { public abstract void on(int i0,int i1); }
+
+  // Do work on frames 0 until n in blocks over the pool if there is more than one thread; already on the pool, the blocks just join in
+  public void eachFrameBlock(int n,FrameBlockWork work) {
+    if (n_threads <= 1 || n <= FRAMES_PER_TASK) work.on(0,n);
+    else {
+      FrameBlockSpan span = new FrameBlockSpan(work,0,n);
+      if (ForkJoinTask.inForkJoinPool()) span.invoke();
+      else statsPool().invoke(span);
+    }
+  }
+
+  static class FrameBlockSpan extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    final FrameBlockWork work;
+    final int i0,i1;
+    FrameBlockSpan(FrameBlockWork work,int i0,int i1) { this.work = work; this.i0 = i0; this.i1 = i1; }
+    protected void compute() {
+      if (i1-i0 <= FRAMES_PER_TASK) work.on(i0,i1);
+      else {
+        int m = (i0+i1)>>>1;
+        invokeAll(new FrameBlockSpan(work,i0,m) , new FrameBlockSpan(work,m,i1));
+      }
+    }
+  }
+
+  // Runs checkPluginCriteria on candidates[i0 until i1], recording who passed in keep
+  class ValidateSpan extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    final Dance[] candidates;
+    final boolean[] keep;
+    final int i0,i1;
+    ValidateSpan(Dance[] candidates,boolean[] keep,int i0,int i1) { this.candidates = candidates; this.keep = keep; this.i0 = i0; this.i1 = i1; }
+    protected void compute() {
+      if (i1-i0 <= DANCERS_PER_TASK) {
+        for (int i=i0 ; i<i1 ; i++) keep[i] = checkPluginCriteria(candidates[i]);
+      }
+      else {
+        int m = (i0+i1)>>>1;
+        invokeAll(new ValidateSpan(candidates,keep,i0,m) , new ValidateSpan(candidates,keep,m,i1));
+      }
+    }
+  }
+
+
   // Custom exceptions
   public class WrongFilesException extends IOException { WrongFilesException(String s) { super(s); } }
   public class LoadDataException extends IOException { LoadDataException(String s) { super(s); } }
   public class SaveDataException extends IOException { SaveDataException(String s) { super(s); } }
+  public class StaleIndexException extends LoadDataException { private static final long serialVersionUID = 1L; StaleIndexException(String s) { super(s); } }
   
   
   // Statistics one can extract from the data
@@ -501,6 +918,7 @@ public class Choreography
       return interpreter.get(s);
     }
     public static String toText(DataMeasure dm) { return reterprenti.get(dm); }
+    public boolean ordered() { return this==MED || this==Q_1 || this==Q_4; }  // Needs median or quartiles
     public static String singleLetterNames() {
       if (mySingleLetterNames == null) {
         StringBuilder sb = new StringBuilder();
@@ -661,12 +1079,13 @@ public class Choreography
     boolean count_events;
     int[] i_data;
     float[] f_data;
-    Statistic[] s_data;
+    StatisticSeries s_data;
     public DataMeasure what;
-    String fformat;
+    int digits;
     float mult;
     String title;
     float[] times;
+    Extremator extrema = null;
     public DataPrinter(float[] t)
     {
       count_events=false;
@@ -674,7 +1093,7 @@ public class Choreography
       f_data=null;
       s_data=null;
       what=DataMeasure.AVG; 
-      fformat="%.2f";
+      digits=2;
       mult=1.0f;
       title = "";
       times = t;
@@ -682,8 +1101,8 @@ public class Choreography
     // Setup methods
     public DataPrinter setI(int[] i) { i_data=i; return this; }
     public DataPrinter setF(float[] f) { f_data=f; return this; }
-    public DataPrinter setS(Statistic[] s) { s_data=s; return this; }
-    public DataPrinter setDig(int dig) { fformat = "%." + dig + "f"; return this; }
+    public DataPrinter setS(StatisticSeries s) { s_data=s; return this; }
+    public DataPrinter setDig(int dig) { digits = dig; return this; }
     public DataPrinter setMult(double d) { mult=(float)d; return this; }
     public DataPrinter countOn() { count_events=true; return this; }
     public DataPrinter countOff() { count_events=false; return this; }
@@ -764,18 +1183,18 @@ public class Choreography
       {
         switch (what)
         {
-          case AVG: f = (float)s_data[i].average; break;
-          case MED: f = (float)s_data[i].median; break;
-          case MAX: f = (float)s_data[i].maximum; break;
-          case MIN: f = (float)s_data[i].minimum; break;
-          case Q_1:  f = (float)s_data[i].first_quartile; break;
-          case Q_4:  f = (float)s_data[i].last_quartile; break;
-          case SEM: multiplier /= Math.sqrt(s_data[i].n); // Fall through to STD case
-          case STD: f = (float)s_data[i].deviation; break;
-          case VAR: f = (float)(s_data[i].deviation*s_data[i].deviation); break;
-          case ONE: f = (Double.isNaN(s_data[i].average) || s_data[i].n==0) ? 0.0f : 1.0f; multiplier=1.0f; break;
-          case NUM: f = (float)s_data[i].n; multiplier=1.0f; break;
-          case JIT: f = (float)s_data[i].jitter; break;
+          case AVG: f = (float)s_data.average[i]; break;
+          case MED: f = (float)s_data.median[i]; break;
+          case MAX: f = (float)s_data.maximum[i]; break;
+          case MIN: f = (float)s_data.minimum[i]; break;
+          case Q_1:  f = (float)s_data.first_quartile[i]; break;
+          case Q_4:  f = (float)s_data.last_quartile[i]; break;
+          case SEM: multiplier /= Math.sqrt(s_data.n[i]); // Fall through to STD case
+          case STD: f = (float)s_data.deviation[i]; break;
+          case VAR: f = (float)(s_data.deviation[i]*s_data.deviation[i]); break;
+          case ONE: f = (Double.isNaN(s_data.average[i]) || s_data.n[i]==0) ? 0.0f : 1.0f; multiplier=1.0f; break;
+          case NUM: f = (float)s_data.n[i]; multiplier=1.0f; break;
+          case JIT: f = (float)s_data.jitter[i]; break;
           default: f = Float.NaN;
         }
       }
@@ -785,6 +1204,24 @@ public class Choreography
       return f*multiplier;
     }
     public float value(float t) { int i = indexOf(t); return (i<0) ? Float.NaN : value(i); }
+    // The range at each time, binned up so a plot can get any span's extremes quickly; made when first asked for, once the data are final
+    public Extremator extrema()
+    {
+      if (extrema==null)
+      {
+        float[] lo = new float[times.length];
+        float[] hi = new float[times.length];
+        float[] fa = new float[2];
+        for (int i=0 ; i<times.length ; i++)
+        {
+          fa = value(i,i,fa);
+          lo[i] = fa[0];
+          hi[i] = fa[1];
+        }
+        extrema = new Extremator(lo,hi,4,64);
+      }
+      return extrema;
+    }
     // The data with a statistic computed across a range of times
     public float[] value(int i,int j,float[] fa)
     {
@@ -800,7 +1237,7 @@ public class Choreography
       {
         if (what!=DataMeasure.NUM)
         {
-          while (i<=j && s_data[i].n<=0) i++;
+          while (i<=j && s_data.n[i]<=0) i++;
           if (j<i)
           {
             fa[0] = fa[1] = Float.NaN;
@@ -810,118 +1247,118 @@ public class Choreography
         switch (what)
         {
           case AVG:
-            fa[0] = fa[1] = (float)s_data[i].average;
+            fa[0] = fa[1] = (float)s_data.average[i];
             for ( ; i<=j ; i++)
             {
-              if (s_data[i].n<=0) continue;
-              f = (float)s_data[i].average;
+              if (s_data.n[i]<=0) continue;
+              f = (float)s_data.average[i];
               if (f<fa[0]) fa[0] = f;
               else if (f>fa[1]) fa[1] = f;
             }
             break;
           case MED:
-            fa[0] = fa[1] = (float)s_data[i].median;
+            fa[0] = fa[1] = (float)s_data.median[i];
             for ( ; i<=j ; i++)
             {
-              if (s_data[i].n<=0) continue;
-              f = (float)s_data[i].median;
+              if (s_data.n[i]<=0) continue;
+              f = (float)s_data.median[i];
               if (f<fa[0]) fa[0] = f;
               else if (f>fa[1]) fa[1] = f;
             }
             break;
           case JIT:
-            fa[0] = fa[1] = (float)s_data[i].jitter;
+            fa[0] = fa[1] = (float)s_data.jitter[i];
             for ( ; i<=j ; i++) {
-              if (s_data[i].n<=0) continue;
-              f = (float)s_data[i].jitter;
+              if (s_data.n[i]<=0) continue;
+              f = (float)s_data.jitter[i];
               if (f<fa[0]) fa[0] = f;
               else if (f>fa[1]) fa[1] = f;
             }
             break;
           case MAX:
-            fa[0] = fa[1] = (float)s_data[i].maximum;
+            fa[0] = fa[1] = (float)s_data.maximum[i];
             for ( ; i<=j ; i++)
             {
-              if (s_data[i].n<=0) continue;
-              f = (float)s_data[i].maximum;
+              if (s_data.n[i]<=0) continue;
+              f = (float)s_data.maximum[i];
               if (f<fa[0]) fa[0] = f;
               else if (f>fa[1]) fa[1] = f;
             }
             break;
           case MIN:
-            fa[0] = fa[1] = (float)s_data[i].minimum;
+            fa[0] = fa[1] = (float)s_data.minimum[i];
             for ( ; i<=j ; i++)
             {
-              if (s_data[i].n<=0) continue;
-              f = (float)s_data[i].minimum;
+              if (s_data.n[i]<=0) continue;
+              f = (float)s_data.minimum[i];
               if (f<fa[0]) fa[0] = f;
               else if (f>fa[1]) fa[1] = f;
             }
             break;
           case Q_1:
           case Q_4:
-            fa[0] = (float)s_data[i].first_quartile;
-            fa[1] = (float)s_data[i].last_quartile;
+            fa[0] = (float)s_data.first_quartile[i];
+            fa[1] = (float)s_data.last_quartile[i];
             for ( ; i<=j ; i++)
             {
-              if (s_data[i].n <= 0) continue;
-              f = (float) s_data[i].first_quartile;
+              if (s_data.n[i] <= 0) continue;
+              f = (float) s_data.first_quartile[i];
               if (f < fa[0]) fa[0] = f;
-              f = (float) s_data[i].last_quartile;
+              f = (float) s_data.last_quartile[i];
               if (f > fa[1]) fa[1] = f;
             }
             break;
           case STD:
-            while (i<=j && Double.isNaN(s_data[i].deviation)) i++;
+            while (i<=j && Double.isNaN(s_data.deviation[i])) i++;
             if (j<i)
             {
               fa[0] = fa[1] = Float.NaN;
               break;
             }
-            fa[0] = (float)(s_data[i].average - s_data[i].deviation);
-            fa[1] = (float)(s_data[i].average + s_data[i].deviation);
+            fa[0] = (float)(s_data.average[i] - s_data.deviation[i]);
+            fa[1] = (float)(s_data.average[i] + s_data.deviation[i]);
             for ( ; i<=j ; i++)
             {
-              if (s_data[i].n <= 0 || Double.isNaN(s_data[i].deviation)) continue;
-              f = (float)(s_data[i].average - s_data[i].deviation);
+              if (s_data.n[i] <= 0 || Double.isNaN(s_data.deviation[i])) continue;
+              f = (float)(s_data.average[i] - s_data.deviation[i]);
               if (f < fa[0]) fa[0] = f;
-              f = (float)(s_data[i].average + s_data[i].deviation);
+              f = (float)(s_data.average[i] + s_data.deviation[i]);
               if (f > fa[1]) fa[1] = f;
             }
             break;
           case SEM:
-            while (i<=j && Double.isNaN(s_data[i].deviation)) i++;
+            while (i<=j && Double.isNaN(s_data.deviation[i])) i++;
             if (j<0)
             {
               fa[0] = fa[1] = Float.NaN;
               break;
             }
-            fa[0] = (float)(s_data[i].average - s_data[i].deviation/Math.sqrt(s_data[i].n));
-            fa[1] = (float)(s_data[i].average + s_data[i].deviation/Math.sqrt(s_data[i].n));
+            fa[0] = (float)(s_data.average[i] - s_data.deviation[i]/Math.sqrt(s_data.n[i]));
+            fa[1] = (float)(s_data.average[i] + s_data.deviation[i]/Math.sqrt(s_data.n[i]));
             for ( ; i<=j ; i++)
             {
-              if (s_data[i].n <= 0 || Double.isNaN(s_data[i].deviation)) continue;
-              f = (float)(s_data[i].average - s_data[i].deviation/Math.sqrt(s_data[i].n));
+              if (s_data.n[i] <= 0 || Double.isNaN(s_data.deviation[i])) continue;
+              f = (float)(s_data.average[i] - s_data.deviation[i]/Math.sqrt(s_data.n[i]));
               if (f < fa[0]) fa[0] = f;
-              f = (float)(s_data[i].average + s_data[i].deviation/Math.sqrt(s_data[i].n));
+              f = (float)(s_data.average[i] + s_data.deviation[i]/Math.sqrt(s_data.n[i]));
               if (f > fa[1]) fa[1] = f;
             }
             break;
           case VAR:
-            while (i<=j && Double.isNaN(s_data[i].deviation)) i++;
+            while (i<=j && Double.isNaN(s_data.deviation[i])) i++;
             if (j<0)
             {
               fa[0] = fa[1] = Float.NaN;
               break;
             }
-            fa[0] = (float)(s_data[i].deviation*s_data[i].deviation);
-            fa[1] = (float)(s_data[i].deviation*s_data[i].deviation);
+            fa[0] = (float)(s_data.deviation[i]*s_data.deviation[i]);
+            fa[1] = (float)(s_data.deviation[i]*s_data.deviation[i]);
             for ( ; i<=j ; i++)
             {
-              if (s_data[i].n <= 0 || Double.isNaN(s_data[i].deviation)) continue;
-              f = (float)(s_data[i].deviation*s_data[i].deviation);
+              if (s_data.n[i] <= 0 || Double.isNaN(s_data.deviation[i])) continue;
+              f = (float)(s_data.deviation[i]*s_data.deviation[i]);
               if (f < fa[0]) fa[0] = f;
-              f = (float)(s_data[i].deviation*s_data[i].deviation);
+              f = (float)(s_data.deviation[i]*s_data.deviation[i]);
               if (f > fa[1]) fa[1] = f;
             }
             break;
@@ -929,7 +1366,7 @@ public class Choreography
             fa[0] = fa[1] = -1;
             while (i<=j)
             {
-              if ( Double.isNaN(s_data[i].average) || s_data[i].n==0 ) fa[0] = 0;
+              if ( Double.isNaN(s_data.average[i]) || s_data.n[i]==0 ) fa[0] = 0;
               else fa[1] = 1;
               i++;
             }
@@ -938,10 +1375,10 @@ public class Choreography
             break;
           case NUM:
             no_mult = true;
-            fa[0] = fa[1] = (float)s_data[i].n;
+            fa[0] = fa[1] = (float)s_data.n[i];
             for ( ; i<=j ; i++)
             {
-              f = (float)s_data[i].n;
+              f = (float)s_data.n[i];
               if (f < fa[0]) fa[0] = f;
               else if (f > fa[1]) fa[1] = f;
             }
@@ -987,44 +1424,90 @@ public class Choreography
       else return value(i,j,fa);
     }
     // Get the value and return it as a string instead of a number
-    public String printValue(float one_value) { return String.format(fformat,catchnan(one_value)*mult); }
-    public String print(int i)
+    public String printValue(float one_value) { return printValue(new FormatBuffer(16),one_value).toString(); }
+    public String print(int i) { return print(new FormatBuffer(16),i).toString(); }
+    public String print(int i,int j) { return print(new FormatBuffer(16),i,j).toString(); }
+    public String printAvg(int i,int j) { return printAvg(new FormatBuffer(16),i,j).toString(); }
+    // As above, but appended to a line being built for output
+    public FormatBuffer printValue(FormatBuffer fb,float one_value) { return fb.add(catchnan(one_value)*mult,digits); }
+    public FormatBuffer print(FormatBuffer fb,int i)
     {
-      if (s_data!=null || f_data!=null) return String.format(fformat,catchnan(value(i)));
+      if (s_data!=null || f_data!=null) return fb.add(catchnan(value(i)),digits);
       else if (i_data!=null)
       {
-        if (mult==1.0f) return Integer.toString( i_data[i] );
-        else return Integer.toString( (int)Math.round( i_data[i]*mult ) );
+        if (mult==1.0f) return fb.add( i_data[i] );
+        else return fb.add( (int)Math.round( i_data[i]*mult ) );
       }
-      else if (nanless) return "0";
-      else return "NaN";
+      else if (nanless) return fb.add('0');
+      else return fb.add("NaN");
     }
-    public String print(int i,int j)
+    public FormatBuffer print(FormatBuffer fb,int i,int j)
     {
-      if (i>=j || !count_events || s_data!=null || f_data!=null) return print(j);
+      if (i>=j || !count_events || s_data!=null || f_data!=null) return print(fb,j);
       else
       {
         int count = 0;
         for (int k=i;k<=j;k++) if (i_data[k]!=0) count++;
-        return Integer.toString(count);
+        return fb.add(count);
       }
     }
-    public String printAvg(int i,int j)
+    public FormatBuffer printAvg(FormatBuffer fb,int i,int j)
+    {
+      float v_tot = average(i,j);
+      if (s_data!=null || f_data!=null) return fb.add(catchnan(v_tot),digits);
+      else if (i_data!=null) return fb.add( Math.round(v_tot) );
+      else if (nanless) return fb.add('0');
+      else return fb.add("NaN");
+    }
+    // Weighted by sample size where there is one
+    float average(int i,int j)
     {
       int n_tot = 0;
       float v_tot = 0.0f;
       for (int k=i ; k<=j ; k++)
       {
-        if (s_data!=null) n_tot += s_data[k].n;
+        if (s_data!=null) n_tot += s_data.n[k];
         else n_tot++;
-        if (s_data!=null && what!=DataMeasure.NUM && what!=DataMeasure.ONE) v_tot += s_data[k].n * value(k);
+        if (s_data!=null && what!=DataMeasure.NUM && what!=DataMeasure.ONE) v_tot += s_data.n[k] * value(k);
         else v_tot += value(k);
       }
       if (s_data==null || (what!=DataMeasure.NUM && what!=DataMeasure.ONE)) v_tot /= n_tot;
-      if (s_data!=null || f_data!=null) return String.format(fformat,catchnan(v_tot));
-      else if (i_data!=null) return Integer.toString( Math.round(v_tot) );
-      else if (nanless) return "0";
-      else return "NaN";
+      return v_tot;
+    }
+    // The numbers that print and printAvg show, before formatting; integral columns are the plain event/count data
+    public boolean isIntegral() { return s_data==null && f_data==null && i_data!=null; }
+    // What value() scales by: counts are never scaled, and SEM is further divided by sqrt(n), so this is only the part every row shares
+    public float getMultiplier()
+    {
+      if (s_data!=null && (what==DataMeasure.NUM || what==DataMeasure.ONE)) return 1.0f;
+      return mult;
+    }
+    public String getUnits()
+    {
+      int i = title.lastIndexOf('(');
+      return (i>=0 && title.endsWith(")")) ? title.substring(i+1,title.length()-1) : "";
+    }
+    public int intValue(int i,int j)
+    {
+      if (i>=j || !count_events)
+      {
+        if (mult==1.0f) return i_data[j];
+        else return Math.round( i_data[j]*mult );
+      }
+      int count = 0;
+      for (int k=i;k<=j;k++) if (i_data[k]!=0) count++;
+      return count;
+    }
+    public float floatValue(int j)
+    {
+      if (s_data!=null || f_data!=null) return catchnan(value(j));
+      else return nanless ? 0.0f : Float.NaN;
+    }
+    public int intAvg(int i,int j) { return Math.round(average(i,j)); }
+    public float floatAvg(int i,int j)
+    {
+      if (s_data!=null || f_data!=null) return catchnan(average(i,j));
+      else return nanless ? 0.0f : Float.NaN;
     }
   }
   
@@ -1077,7 +1560,7 @@ public class Choreography
 
   
   // Interpreting lines of text files
-  public class SummaryLine
+  public static class SummaryLine
   {
     int frame;
     int n_frames;
@@ -1086,6 +1569,8 @@ public class Choreography
     int number;
     LinkedList<Integer> events;
     Ancestry ancestry;
+    LinkedList<MultiFileInfo> index;  // Where this frame says objects are in .blobs files
+    int bad_line;                     // First line whose events or ancestry wouldn't parse (0 if none); an error only if the frame is used
     String[] tokens;
     
     public SummaryLine() { frame=-1; events=null; ancestry=null; tokens=null; }
@@ -1126,7 +1611,7 @@ public class Choreography
       last_time = Float.parseFloat( tokens[1] );
     }
     
-    public void extraParse() throws NumberFormatException  // Used to parse stimulus events and object creation/destruction
+    public void extraParse() throws NumberFormatException  // Used to parse stimulus events and object creation/destruction (indexParse does the rest)
     {
       if (tokens==null || tokens.length < 14) return;
       int i = 0;
@@ -1173,29 +1658,48 @@ public class Choreography
           ancestry.addOriginFate(ori,fate);
         }
       }
-      if (i>=tokens.length) return;
-      
-      // Check for list of where blobs files are found
-      if (tokens[i].equals("%%%")) {
-        int id;
-        int fnum;
-        long offset;
-        for (i++ ; i+1<tokens.length ; i+=2) {
-          id = Integer.parseInt(tokens[i]);
-          int j = tokens[i+1].indexOf('.');
-          if (j<0) { fnum = Integer.parseInt(tokens[i+1]); offset=0; }
-          else {
-            fnum = Integer.parseInt( tokens[i+1].substring(0,j) );
-            offset = Long.parseLong( tokens[i+1].substring(j+1) );
-          }
-          dancer_multi_list.add( new MultiFileInfo(id,fnum,offset) );
+    }
+    
+    // Reads where objects are found in .blobs files (the %%% section); wanted even from lines we otherwise ignore
+    public void indexParse() throws NumberFormatException
+    {
+      if (tokens==null || tokens.length < 14) return;
+      for (int i=0 ; i<tokens.length ; i++) if (tokens[i].equals("%%%")) { indexParse(i); return; }
+    }
+    void indexParse(int i) throws NumberFormatException
+    {
+      int id;
+      int fnum;
+      long offset;
+      for (i++ ; i+1<tokens.length ; i+=2) {
+        id = Integer.parseInt(tokens[i]);
+        int j = tokens[i+1].indexOf('.');
+        if (j<0) { fnum = Integer.parseInt(tokens[i+1]); offset=0; }
+        else {
+          fnum = Integer.parseInt( tokens[i+1].substring(0,j) );
+          offset = Long.parseLong( tokens[i+1].substring(j+1) );
         }
+        if (index==null) index = new LinkedList<MultiFileInfo>();
+        index.add( new MultiFileInfo(id,fnum,offset) );
       }
     }
     
     public void completeParse() { tokens = null; }
   }
 
+  /* The summary file as parsed so far.  Which frames a run uses depends on
+   * --from, --to and trigger masks, but how each line parses does not, so
+   * --follow keeps one of these from pass to pass and each pass parses only
+   * what the tracker has added since.
+   */
+  static class SummaryTail
+  {
+    long offset = 0;  // Bytes parsed, always ending at the end of a line
+    int n_lines = 0;
+    ArrayList<SummaryLine> lines = new ArrayList<SummaryLine>();  // One per frame, with any duplicate lines folded in
+    void restart() { offset = 0; n_lines = 0; lines.clear(); }
+  }
+
   public enum PrefixSI {
     ATTO(-18,'a'),
     FEMTO(-15,'f'),
@@ -1459,6 +1963,7 @@ public class Choreography
     Vector<String> outname_array = new Vector<String>();
     Vector<Double> outtime_array = new Vector<Double>();
     Vector<String> header_array = new Vector<String>();
+    Vector<String> format_array = new Vector<String>();
     Vector<String> trigger_array = new Vector<String>();
     Vector<String> worm_id_array = new Vector<String>();
     Vector<String> worm_id2_array = new Vector<String>();
@@ -1466,12 +1971,17 @@ public class Choreography
     Vector<String> out_array = new Vector<String>();
     Vector<String> plugin_array = new Vector<String>();
     Vector<String> target_array = new Vector<String>();
+    Vector<Integer> threads_array = new Vector<Integer>();
+    Vector<String> mapframes_array = new Vector<String>();
+    Vector<String> mapview_array = new Vector<String>();
+    Vector<String> mapstyle_array = new Vector<String>();
     
     op.addOption("?","help");
     
     op.addOption("I","interactive");
     op.addOption("no-timecourse");
     op.addOption("no-repeat");
+    op.addOption("no-cache");
     op.addOption("shadowless");
     op.addOption("body-length-units");
     op.addOption("graph");
@@ -1481,6 +1991,7 @@ public class Choreography
     op.addOption("ignore-outside-triggers");
     op.addOption("q","quiet");
     op.addOption("S","segment");
+    op.addOption("profile");
     
     op.addDouble("p","pixelsize").setStorage(pixelsize_array);
     
@@ -1500,6 +2011,7 @@ public class Choreography
     op.addString("O","output-name").setStorage(outname_array);
     op.addDouble("T","output-time").setStorage(outtime_array);
     op.addString("header").setStorage(header_array);
+    op.addString("format").setStorage(format_array);
     
     op.addString("trigger").setStorage(trigger_array);
     op.addString("n","id").setStorage(worm_id_array);
@@ -1511,6 +2023,12 @@ public class Choreography
     op.addString("plugin").setStorage(plugin_array);
     op.addString("target").setStorage(target_array);
     
+    op.addInteger("threads").setStorage(threads_array);
+    
+    op.addString("map-frames").setStorage(mapframes_array);
+    op.addString("map-view").setStorage(mapview_array);
+    op.addString("map-style").setStorage(mapstyle_array);
+    
     plain_arguments = op.parse(args);
     
     if (op.optionFound("?"))
@@ -1531,6 +2049,7 @@ public class Choreography
     quiet_operation = op.optionFound("q");
     write_timecourse = !(op.optionFound("no-timecourse"));
     reject_duplicates = op.optionFound("no-repeat");
+    use_cache = !op.optionFound("no-cache");
     avoid_shadow = op.optionFound("shadowless");
     speed_over_length = op.optionFound("body-length-units");
     tell_who = op.optionFound("who");
@@ -1539,6 +2058,7 @@ public class Choreography
     view_datamap = op.optionFound("map");
     static_trigger_mask = op.optionFound("ignore-outside-triggers");
     segment_path = op.optionFound("S");
+    if (op.optionFound("profile") && profile==null) profile = new Profile();
     
     if (interactive_mode)
     {
@@ -1592,6 +2112,36 @@ public class Choreography
 
     if (!header_array.isEmpty()) print_header = header_array.lastElement();
 
+    if (!format_array.isEmpty())
+    {
+      String fmt = format_array.lastElement();
+      if (fmt.equalsIgnoreCase("text")) { write_text = true; write_binary = false; }
+      else if (fmt.equalsIgnoreCase("binary")) { write_text = false; write_binary = true; }
+      else if (fmt.equalsIgnoreCase("both")) { write_text = true; write_binary = true; }
+      else throw new IllegalArgumentException("Output format must be text, binary, or both, not " + fmt);
+    }
+    if (following && write_binary) throw new IllegalArgumentException("Binary output can't be appended to, so it can't be used with --follow");
+
+    if (threads_array.isEmpty()) n_threads = 1;
+    else if (threads_array.lastElement().intValue() < 0) throw new IllegalArgumentException("Number of threads must not be negative");
+    else if (threads_array.lastElement().intValue() == 0) n_threads = Runtime.getRuntime().availableProcessors();
+    else n_threads = threads_array.lastElement().intValue();
+
+    if (!mapframes_array.isEmpty())
+    {
+      map_frames = parseNumbers(mapframes_array.lastElement(), 3, 4, "--map-frames wants start,stop,step or start,stop,step,trail");
+      if (map_frames.length < 4) map_frames = new double[] { map_frames[0], map_frames[1], map_frames[2], 0 };
+      if (!(map_frames[2] > 0)) throw new IllegalArgumentException("--map-frames step must be positive");
+      if (output_array.isEmpty()) throw new IllegalArgumentException("--map-frames needs some output (-o) to draw");
+    }
+    if (!mapview_array.isEmpty())
+    {
+      map_area = parseNumbers(mapview_array.lastElement(), 4, 5, "--map-view wants x0,y0,x1,y1 or x0,y0,x1,y1,width");
+      if (!(map_area[2] > map_area[0]) || !(map_area[3] > map_area[1])) throw new IllegalArgumentException("--map-view needs x0 < x1 and y0 < y1");
+      if (map_area.length > 4 && !(map_area[4] >= 1)) throw new IllegalArgumentException("--map-view width must be at least one pixel");
+    }
+    if (!mapstyle_array.isEmpty()) map_style = mapstyle_array.lastElement().split(",",-1);
+
     // Target directories need to exist
     for (String s : target_array) {
       File f = new File(s);
@@ -1603,7 +2153,7 @@ public class Choreography
     
     // Plugins need to have the plugin name split apart from the plugin's arguments.
     plugininfo = new ArrayList<ComputationInfo>();
-    plugloader = (plugin_array.size() > 0) ? new PluginLoader() : null;
+    if (plugloader==null && plugin_array.size() > 0) plugloader = new PluginLoader();  // Batch runs hand everyone the same one
     int h = -1;
     for (String s : plugin_array)
     {
@@ -1661,6 +2211,7 @@ public class Choreography
     if (plain_arguments.length != 1) throw new IllegalArgumentException("Exactly one filename required");
     
     // Parse regions to include and exclude
+    field_key = "in=" + in_array + " out=" + out_array;
     if (in_array.isEmpty()) attend = new Dance.ReceptiveField[0];
     else
     {
@@ -1811,6 +2362,7 @@ public class Choreography
     
     computables = new HashSet<DataSource>();
     for (DataSource ds : DataSource.values()) if (ds.alwaysCompute()) computables.add(ds);
+    ordered_sources = new HashSet<DataSource>();
 
     if (output_array.size() > 0)
     {
@@ -1826,6 +2378,7 @@ public class Choreography
         for (DataSpecifier ds : merged_outputs)
         {
           computables.add(ds.source);
+          if (ds.measure.ordered()) ordered_sources.add(ds.source);
           if (ds.source == DataSource.TIME) has_time=true;
         }
         
@@ -1843,6 +2396,7 @@ public class Choreography
           for (DataSpecifier ds : outputs.get(i))
           { 
             computables.add(ds.source);
+            if (ds.measure.ordered()) ordered_sources.add(ds.source);
             if (ds.source==DataSource.TIME) has_time=true;
           }
           if (!has_time) outputs.get(i).add( 0 , new DataSpecifier(DataSource.TIME,DataMeasure.AVG) );
@@ -1916,7 +2470,7 @@ public class Choreography
         if (spec.lastElement().measure==DataMeasure.JIT) jittering_sources.add(spec.lastElement().source);
       }
     }
-    custom = new Statistic[plug_map.out.size()][];
+    custom = new StatisticSeries[plug_map.out.size()];
     for (int i=0;i<custom.length;i++) custom[i] = null;
 
     return spec;
@@ -2021,6 +2575,7 @@ public class Choreography
         );
       }
     }
+    if (!cc.getClass().getName().startsWith("mwt.plugins.")) legacy_vectors = true;
     plugininfo.add(new ComputationInfo(cc, classname, nickname, arguments, mapoutput));
   }
   
@@ -2035,7 +2590,11 @@ public class Choreography
     System.out.println("Options:");
     //                  012345678911234567892123456789312345678941234567895123456789612345678971234567898
     System.out.println("  -?  --help               This message (use -? output for help on output type)");
+    System.out.println("      --batch              Process every experiment directory under this root");
+    System.out.println("      --batch-jobs         How many experiments --batch runs at once (default 1)");
     System.out.println("      --body-length-units  Speeds are in units of body lengths (default is mm)");
+    System.out.println("      --follow             Keep updating output while data is recorded (seconds)");
+    System.out.println("      --format             Write text (.dat), binary (.bdat) columns, or both");
     System.out.println("      --from               Time from which to read data (in seconds, default 0)");
     System.out.println("      --graph              Bring up GUI to graph population data");
     System.out.println("      --header #           Write header for data file with # as comment char");
@@ -2046,8 +2605,12 @@ public class Choreography
     System.out.println("  -M (--minimum-move-body)   (same thing, except unit is object-lengths)");
     System.out.println("      --minimum-biased     If object travels this far, it's mostly forwards");
     System.out.println("      --map                Use GUI to display the data as a browsable map");
+    System.out.println("      --map-frames         Draw the map to PNG files at times start,stop,step");
+    System.out.println("      --map-style          Menu choices for --map-frames (colors,background,...)");
+    System.out.println("      --map-view           Area for --map-frames as x0,y0,x1,y1[,width] (in mm)");
     System.out.println("  -n (--id)                Only use listed object IDs (use commas: -n 1,5,22)");
     System.out.println("  -N (--each-id)           Write one output file for each ID listed");
+    System.out.println("      --no-cache           Don't read or write .chorecache files of parsed data");
     System.out.println("      --no-output          Don't write any output");
     System.out.println("      --no-repeat          Remove any frames that appear to be repeated");
     System.out.println("      --out                Data must be outside specified shape.");
@@ -2056,6 +2619,7 @@ public class Choreography
     System.out.println("  -p (--pixelsize)         Size of one pixel, in mm");
     System.out.println("      --plugin             Use plugin; --plugin help gives generic help");
     System.out.println("      --prefix             Specify data file prefix explicitly");
+    System.out.println("      --profile            Time each phase; writes prefix.profile.json");
     System.out.println("  -q (--quiet)             Don't print progress information to console");
     System.out.println("  -s (--speed-window)      Time window (in seconds) to average velocity");
     System.out.println("  -S (--segment)           Shape analysis of path: lines, arcs, etc.");
@@ -2066,6 +2630,7 @@ public class Choreography
     System.out.println("  -T (--output-rate)       Time between output data points (in seconds)");
     System.out.println("      --to                 Time after which to ignore data (in seconds)");
     System.out.println("      --target             Place all output in specified directory (must exist)");
+    System.out.println("      --threads            Threads for loading, statistics, and map drawing (0 = all cores)");
     System.out.println("      --trigger            Report a stimulus-triggered average to .trig file");
     System.out.println("      --trig-only          Only write triggered averages, not regular output");
     System.out.println("      --who                Print out object ID numbers that pass criteria");
@@ -2078,6 +2643,21 @@ public class Choreography
     System.out.println("  A .zip file containing the data can be specified instead of the directory.");
     System.out.println("    The corresponding directory will be created for output purposes.");
     System.out.println("  -m,M,p,s,t,--from,--to expect a floating-point value as an argument");
+    System.out.println("  --threads expects an integer; output is identical whatever the thread count");
+    System.out.println("  --follow appends rows to .dat/.trig as they settle, rereading recent data");
+    System.out.println("    every so many seconds.  Criteria and normalizations see only the recent");
+    System.out.println("    data until nothing new arrives for 12 checks; then a full analysis");
+    System.out.println("    rewrites the output, so it ends up just as a run without --follow.");
+    System.out.println("  --batch replaces the directory; experiments are yyyymmdd_hhmmss directories");
+    System.out.println("    and each gets the other options.  --batch-jobs 0 means one per core.");
+    System.out.println("  --profile prints where the time went and saves it, with lines and bytes");
+    System.out.println("    read and peak heap, to prefix.profile.json beside the output files.");
+    System.out.println("  --map-frames start,stop,step[,trail] writes prefix.map.00001.png and so on,");
+    System.out.println("    each showing tracks since start (or the last trail seconds) and objects at");
+    System.out.println("    that time, drawn over --threads.  No display is needed.  --map-style takes");
+    System.out.println("    menu names from --map in the order colors,background,dots,values (e.g.");
+    System.out.println("    Rainbow,Image,Spot,Value); values come from the first -o output.");
+    System.out.println("    --map-view defaults to all the tracks, 640 pixels wide.");
     System.out.println("  -O name turns output from prefix.dat to prefix.name.dat");
     System.out.println("    If only one -O is given, it will change the .pos file name also.");
     System.out.println("    If multiple -O's are given, only .dat files are changed, and there must be");
@@ -2101,6 +2681,9 @@ public class Choreography
     System.out.println("    (default is mm; note no space between number and units)");
     System.out.println("  --header creates a tab-delimited header that starts with whatever string");
     System.out.println("    is specified (be careful to quote spaces if you need them in the header!)");
+    System.out.println("  --format binary writes .bdat (and .btrig) instead of .dat (and .trig): the");
+    System.out.println("    same rows as little-endian float32/int32 columns after a header of titles,");
+    System.out.println("    units, and multipliers (see ColumnFile.java for the layout)");
     }
     else
     {
@@ -2355,6 +2938,19 @@ public class Choreography
   
   
   public boolean computeAndCheck(Dance candidate)
+  {
+    return checkCriteria(candidate) && checkPluginCriteria(candidate);
+  }
+
+  // Built-in criteria only depend on the candidate, so it's safe to check many at once
+  public boolean checkCriteria(Dance candidate)
+  {
+    if (profile==null) return meetsCriteria(candidate);
+    long t0 = System.nanoTime();
+    try { return meetsCriteria(candidate); }
+    finally { tock("load: checking criteria", t0); }
+  }
+  boolean meetsCriteria(Dance candidate)
   {
     float f;
     
@@ -2370,26 +2966,55 @@ public class Choreography
     if (!anything_left) return false;
     if (f < min_move_bodylen.getPx(candidate)) return false;
     if (candidate.body_length.average == 0.0f) return false;
-    
-    for (ComputationInfo ci : plugininfo) if (!ci.plugin.validateDancer(candidate)) return false;
-    
+
+    return true;
+  }
+
+  // Plugins may keep state, so always ask them one dancer at a time, in file order
+  public boolean checkPluginCriteria(Dance candidate)
+  {
+    for (ComputationInfo ci : plugininfo)
+    {
+      long t0 = tick();
+      boolean ok = ci.plugin.validateDancer(candidate);
+      vectorsBack(candidate);
+      tock("plugin validateDancer: ", ci.name, t0);
+      if (!ok) return false;
+    }
     return true;
   }
+
+  // Unless every plugin says it can validate many dancers at once (see ParallelValidation)
+  boolean pluginsValidateInParallel()
+  {
+    if (n_threads <= 1 || plugininfo.isEmpty()) return false;
+    for (ComputationInfo ci : plugininfo)
+    {
+      if (!(ci.plugin instanceof ParallelValidation) || !((ParallelValidation)ci.plugin).validatesInParallel()) return false;
+    }
+    return true;
+  }
+
+  // Asks the plugins about every candidate; keep[i] says whether candidates[i] passed
+  public boolean[] checkPluginCriteria(Dance[] candidates)
+  {
+    boolean[] keep = new boolean[candidates.length];
+    if (pluginsValidateInParallel()) statsPool().invoke(new ValidateSpan(candidates,keep,0,candidates.length));
+    else for (int i=0 ; i<candidates.length ; i++) keep[i] = checkPluginCriteria(candidates[i]);
+    if (profile!=null && !plugininfo.isEmpty())
+    {
+      long n_frames = 0;
+      for (Dance d : candidates) n_frames += d.area.length;
+      profile.count("frames checked by plugins", n_frames);  // Against "load: plugin validation" for frames per second
+    }
+    return keep;
+  }
   
   public void takeAttendance()
   {
     if (dances!=null)
     {
-      attendance = new Vector<LinkedList<Dance>>( frames.length );
-      for (int i=0 ; i<frames.length ; i++) attendance.add(new LinkedList<Dance>());
-      for (Dance d : dances)
-      {
-        if (d==null) continue;
-        for (int i = d.first_frame ; i <= d.last_frame ; i++)
-        {
-          attendance.get(i).add(d);
-        }
-      }
+      attendance = new Attendance(dances , frames.length);
     }
   }
 
@@ -2479,26 +3104,192 @@ public class Choreography
       }
     }
   }
+  // Runs loading jobs (in parallel if requested) and reports failures as the serial loader would have
+  <T> ArrayList<T> loadInOrder(List< ? extends Callable<T> > jobs) throws LoadDataException
+  {
+    try { return runInOrder(jobs); }
+    catch (ExecutionException ee) {
+      Throwable t = ee.getCause();
+      if (t instanceof LoadDataException) throw (LoadDataException)t;
+      if (t instanceof RuntimeException) throw (RuntimeException)t;
+      if (t instanceof Error) throw (Error)t;
+      throw new LoadDataException("Error loading data: " + t);
+    }
+  }
+  // If only some objects are wanted and the summary file says where they all are, make jobs to read just those
+  // (null means we have to read everything)
+  ArrayList< Callable< LinkedList<Dance> > > indexedBlobsJobs()
+  {
+    if (id_table==null || dancer_multi_list==null || dancer_multi_list.isEmpty()) return null;
+    
+    int n_files = (dancer_files==null) ? dancer_zips.length : dancer_files.length;
+    HashMap<Integer,Integer> file_of_fnum = new HashMap<Integer,Integer>();
+    for (int i=0 ; i<n_files ; i++) {
+      String s = (dancer_files!=null) ? dancer_files[i].getName() : dancer_zips[i].getName();
+      s = s.substring( s.lastIndexOf('_')+1 , s.lastIndexOf('.') );
+      int j = s.length();
+      while (j>0 && !Character.isDigit(s.charAt(j-1))) j--;  // Drop the k in 00000k
+      try { file_of_fnum.put( Integer.parseInt(s.substring(0,j)) , i ); }
+      catch (NumberFormatException nfe) { return null; }
+    }
+    
+    MultiFileInfo[] index = dancer_multi_list.toArray( new MultiFileInfo[dancer_multi_list.size()] );
+    Arrays.sort(index);  // By file, then by offset
+    HashSet<Integer> listed = new HashSet<Integer>();
+    for (MultiFileInfo mfi : index) listed.add(mfi.id);
+    for (Integer id : id_table) if (!listed.contains(id)) return null;  // Index may be incomplete; don't risk missing anything
+    
+    ArrayList< LinkedList<MultiFileInfo> > wanted = new ArrayList< LinkedList<MultiFileInfo> >(n_files);
+    ArrayList< LinkedList<Long> > ends = new ArrayList< LinkedList<Long> >(n_files);
+    for (int i=0 ; i<n_files ; i++) { wanted.add(new LinkedList<MultiFileInfo>()); ends.add(new LinkedList<Long>()); }
+    for (int k=0 ; k<index.length ; k++) {
+      MultiFileInfo mfi = index[k];
+      if (!id_table.contains(mfi.id)) continue;
+      Integer fi = file_of_fnum.get(mfi.fnum);
+      if (fi==null) return null;
+      int k2 = k+1;
+      while (k2<index.length && index[k2].fnum==mfi.fnum && index[k2].offset==mfi.offset) k2++;
+      wanted.get(fi).add(mfi);
+      ends.get(fi).add( (k2<index.length && index[k2].fnum==mfi.fnum) ? index[k2].offset : -1L );
+    }
+    
+    ArrayList< Callable< LinkedList<Dance> > > jobs = new ArrayList< Callable< LinkedList<Dance> > >();
+    for (int i=0 ; i<n_files ; i++) {
+      if (wanted.get(i).isEmpty()) continue;
+      long[] e = new long[ends.get(i).size()];
+      int j = 0;
+      for (Long l : ends.get(i)) e[j++] = l;
+      MultiFileInfo[] w = wanted.get(i).toArray( new MultiFileInfo[wanted.get(i).size()] );
+      if (dancer_files==null) jobs.add( new IndexedBlobsLoader(null, dancer_zips[i], w, e) );
+      else jobs.add( new IndexedBlobsLoader(dancer_files[i], null, w, e) );
+    }
+    return jobs;
+  }
+
+  // Reads every dancer file and keeps those that pass the built-in criteria, in file order, with where each goes in dances
+  ChoreCache.Contents loadDancers(int n_dancers) throws LoadDataException
+  {
+    int i,j,id;
+    String s;
+    ArrayList<Dance> kept = new ArrayList<Dance>();
+    ArrayList<Integer> slots = new ArrayList<Integer>();
+    if (n_dancers==0) { }
+    else if (!blob_in_blobs)
+    {
+      ArrayList<DancerLoader> jobs = new ArrayList<DancerLoader>(n_dancers);
+      int[] job_index = new int[n_dancers];
+      for (i=0 ; i<n_dancers ; i++)
+      {
+        s = (dancer_files!=null) ? dancer_files[i].getName() : dancer_zips[i].getName();
+        s = s.substring( s.lastIndexOf('_')+1 , s.lastIndexOf('.') );
+        try { id = Integer.parseInt(s); }
+        catch (NumberFormatException nfe) { throw new LoadDataException("Can't read ID number of " + s); }
+        
+        if (id_table!=null && !id_table.contains(id)) continue;
+        
+        job_index[jobs.size()] = i;
+        jobs.add( new DancerLoader(id, (dancer_files!=null) ? dancer_files[i] : null, (dancer_files!=null) ? null : dancer_zips[i], s) );
+      }
+      
+      ArrayList<Dance> loaded = loadInOrder(jobs);
+      for (j=0 ; j<loaded.size() ; j++)
+      {
+        Dance d = loaded.get(j);
+        if (d==null) continue;
+        kept.add(d);
+        slots.add(job_index[j]);
+      }
+    }
+    else {
+      ArrayList< LinkedList<Dance> > loaded = null;
+      ArrayList< Callable< LinkedList<Dance> > > jobs = indexedBlobsJobs();
+      if (jobs != null) {
+        try { loaded = loadInOrder(jobs); }
+        catch (StaleIndexException sie) {
+          if (!quiet_operation) System.out.println("  " + sie.getMessage() + "; reading every object instead.");
+          loaded = null;
+        }
+      }
+      if (loaded == null) {
+        int n_files = (dancer_files==null) ? dancer_zips.length : dancer_files.length;
+        jobs = new ArrayList< Callable< LinkedList<Dance> > >(n_files);
+        for (i=0 ; i<n_files ; i++) {
+          if (dancer_files==null) jobs.add( new BlobsLoader(null, dancer_zips[i]) );
+          else jobs.add( new BlobsLoader(dancer_files[i], null) );
+        }
+        loaded = loadInOrder(jobs);
+      }
+      
+      for (LinkedList<Dance> lld : loaded) {
+        for (Dance one_dance : lld) {
+          kept.add(one_dance);
+          slots.add(one_dance.ID);
+        }
+      }
+    }
+    int[] slot_array = new int[slots.size()];
+    for (i=0 ; i<slot_array.length ; i++) slot_array[i] = slots.get(i);
+    return new ChoreCache.Contents( kept.toArray(new Dance[kept.size()]) , slot_array );
+  }
+  
+  /* The cache sits beside the data and is keyed by every option that changes
+   * what is loaded.  A hash of the key goes in the name, so runs with different
+   * criteria each keep their own file rather than overwriting one another's.
+   * Loads of only some objects (-n) or some times (--from, --to) aren't cached
+   * at all; each slice would leave another file behind.
+   */
+  ChoreCache openCache(int n_dancers)
+  {
+    if (!use_cache || n_dancers==0 || static_trigger_mask) return null;
+    if (id_table!=null || select_t0 > 0.0f || select_t1 < 1e20f) return null;
+    File where;
+    long newest = 0;
+    if (summary_file!=null)
+    {
+      where = summary_file.getAbsoluteFile().getParentFile();
+      newest = summary_file.lastModified();
+      if (dancer_files!=null) for (File f : dancer_files) newest = Math.max(newest, f.lastModified());
+    }
+    else where = new File(directory_zip.getName()).getAbsoluteFile().getParentFile();
+    if (directory_zip!=null) newest = Math.max(newest, new File(directory_zip.getName()).lastModified());
+    if (where==null) return null;
+    
+    StringBuilder key = new StringBuilder();
+    key.append(blob_in_blobs ? "blobs " : "dancers ").append(n_dancers);
+    key.append(" frames=").append(frames.length);
+    key.append(" no-repeat=").append(reject_duplicates).append(" shadowless=").append(avoid_shadow);
+    key.append(" t=").append(min_time);
+    key.append(" m=").append(min_move_mm.value).append(min_move_mm.unit);
+    key.append(" M=").append(min_move_bodylen.value).append(min_move_bodylen.unit);
+    key.append(" p=").append(mm_per_pixel);
+    key.append(' ').append(field_key);
+    String name = file_prefix + String.format(".%08x", key.toString().hashCode()) + ChoreCache.SUFFIX;
+    return new ChoreCache( new File(where, name) , key.toString() , newest );
+  }
+  
   public void loadData(String out_name) throws LoadDataException
   {
-    // First read summary file
-    BufferedReader summary_data;
+    // First read summary file (when following, only what's new since the last pass)
+    SummaryTail parsed = (follow_summary!=null && summary_file!=null) ? follow_summary : new SummaryTail();
+    if (summary_file!=null && summary_file.length() < parsed.offset) parsed.restart();  // Written afresh, not added to
+    LineScanner summary_data;
     if (summary_file!=null)
     {
-      try { summary_data = new BufferedReader( new InputStreamReader( new FileInputStream( summary_file ) ) ); }
+      try { summary_data = LineScanner.open( summary_file, parsed.offset, readableLength(summary_file) ); }
       catch (IOException ioe) { throw new LoadDataException("Cannot open file " + summary_file.getPath()); }
     }
     else
     {
-      try { summary_data = new BufferedReader(new InputStreamReader(directory_zip.getInputStream(summary_zip))); }
+      try { summary_data = new LineScanner(directory_zip.getInputStream(summary_zip)); }
       catch (IOException ioe) { throw new LoadDataException("Cannot open " + summary_zip.getName() + " in " + directory_zip.getName()); }
+      if (profile!=null) profile.count("zip compressed bytes", summary_zip.getCompressedSize());
     }
+    summary_data.timed = (profile!=null);
+    long t_summary = tick();
     
     int i,j;
-    int n_lines;
-    String input_line;
     String[] tokens;
-    SummaryLine summary = null;
+    SummaryLine summary = parsed.lines.isEmpty() ? null : parsed.lines.get(parsed.lines.size()-1);
     LinkedList<SummaryLine> summaries = new LinkedList<SummaryLine>();
     LinkedList<FrameMap> valid_frames = new LinkedList<FrameMap>();
     dancer_multi_list = new LinkedList<MultiFileInfo>();
@@ -2521,84 +3312,85 @@ public class Choreography
     Vec2D[] window_array = window_list.toArray( new Vec2D[window_list.size()] );
     
     // Time for file I/O
-    n_lines = 0;
+    long parsed_from = parsed.offset;
+    boolean parsed_ok = false;
     try
     {
-      String[] old_tokens = null;
-      int n_valid = 0;
       while (true) // Read summary data; break from loop when done
       {
-        boolean is_duplicate = false;
-        try { input_line = summary_data.readLine(); }
+        try { if (!summary_data.nextLine()) break; }  // Out of input
         catch (IOException ioe) { throw new LoadDataException("Unable to access file " + summary_file.getPath()); }
         
-        if (input_line==null) break;  // Out of input
-        
-        n_lines++;
-        if (input_line.length()==0) continue;  // Ignore blank lines
-        if (input_line.startsWith("#")) continue; // Comment character
+        parsed.n_lines++;
+        if (summary_data.isEmpty()) continue;  // Ignore blank lines
+        if (summary_data.startsWith("#")) continue; // Comment character
         
-        tokens = input_line.split("\\s+");
+        tokens = summary_data.tokens();
         
-        if (tokens.length < 2)
-        {
-          try { summary_data.close(); } catch (IOException ioe) { }
-          throw new LoadDataException("Too few tokens on line " + n_lines + " of " + summary_file.getPath());
-        }
-        
-        if (reject_duplicates && summary!=null && summary.isSame(tokens)) is_duplicate = true;
-        else is_duplicate = false;
+        if (tokens.length < 2) throw new LoadDataException("Too few tokens on line " + parsed.n_lines + " of " + summary_file.getPath());
         
+        boolean is_duplicate = (reject_duplicates && summary!=null && summary.isSame(tokens));
         if (!is_duplicate)
         {
           if (summary != null) summary.completeParse();
           summary = new SummaryLine();
+          parsed.lines.add(summary);
         }
         
         try
         {
           if (is_duplicate) summary.duplicateParse(tokens);
-          else
-          {
-            summary.initialParse(tokens);
-            if (summary.time < select_t0 || summary.time > select_t1)
-            {
-              valid_frames.add( new FrameMap(summary.frame,-1,false) );
-              continue;   // We're ignoring this data, read next line
-            }
-            else if (static_trigger_mask)
-            {
-              int i0 = 0;
-              int i1 = window_array.length-1;
-              while (i0+1 < i1)
-              {
-                i = (i0+i1)/2;
-                if (window_array[i].x > summary.time) i1 = i;
-                else i0 = i;
-              }
-              if (! ((window_array[i0].x <= summary.time && window_array[i0].y >= summary.time) ||
-                     (window_array[i1].x <= summary.time && window_array[i1].y >= summary.time)) )
-              {
-                valid_frames.add( new FrameMap(summary.frame,-1,false) );
-                continue;  // Data not close to a trigger, and we're ignoring those
-              }
-            }
-            valid_frames.add( new FrameMap(summary.frame,n_valid++,true) );
-            summaries.add(summary);
-          }
-        
-          summary.extraParse();
+          else summary.initialParse(tokens);
+          summary.indexParse();
         }
-        catch (NumberFormatException nfe) { throw new LoadDataException("Error in parsing number on line " + n_lines); }
+        catch (NumberFormatException nfe) { throw new LoadDataException("Error in parsing number on line " + parsed.n_lines); }
+        try { summary.extraParse(); }
+        catch (NumberFormatException nfe) { if (summary.bad_line==0) summary.bad_line = parsed.n_lines; }
       }
+      parsed_ok = true;
     }
-    catch (LoadDataException lde) { throw lde; }
     finally
     {
-      if (summary!=null) summary.completeParse();
+      if (parsed_ok) parsed.offset = parsed_from + summary_data.bytes_scanned;
+      else parsed.restart();  // Half-parsed lines can't be picked up from, so start over next time
+      tock("load: summary file", t_summary);
+      scanned("summary", summary_data);
       try { summary_data.close(); } catch(IOException ioe) { } // If we can't close it, don't worry about it
     }
     
+    // Pick out the frames we were asked for; .blobs locations are wanted even from frames we otherwise ignore
+    int n_valid = 0;
+    for (SummaryLine sl : parsed.lines)
+    {
+      if (sl.index!=null) dancer_multi_list.addAll(sl.index);
+      if (sl.time < select_t0 || sl.time > select_t1)
+      {
+        if (following && sl.time < select_t0 && n_valid==0) frame_offset++;
+        valid_frames.add( new FrameMap(sl.frame,-1,false) );
+        continue;   // We're ignoring this data
+      }
+      else if (static_trigger_mask)
+      {
+        int i0 = 0;
+        int i1 = window_array.length-1;
+        while (i0+1 < i1)
+        {
+          i = (i0+i1)/2;
+          if (window_array[i].x > sl.time) i1 = i;
+          else i0 = i;
+        }
+        if (! ((window_array[i0].x <= sl.time && window_array[i0].y >= sl.time) ||
+               (window_array[i1].x <= sl.time && window_array[i1].y >= sl.time)) )
+        {
+          valid_frames.add( new FrameMap(sl.frame,-1,false) );
+          continue;  // Data not close to a trigger, and we're ignoring those
+        }
+      }
+      if (sl.bad_line > 0) throw new LoadDataException("Error in parsing number on line " + sl.bad_line);
+      valid_frames.add( new FrameMap(sl.frame,n_valid++,true) );
+      summaries.add(sl);
+    }
+    
     // Put the summary data in arrays (pretty easy)
     loadSummaryToArrays(valid_frames,summaries);
     
@@ -2618,8 +3410,6 @@ public class Choreography
     // Now read files for each reference object and moving object
     int id;
     String s;
-    InputStream is = null;
-    BufferedReader br = null;
     if (n_sitters == 0) refs=null;
     else
     {
@@ -2631,93 +3421,69 @@ public class Choreography
         try { id = Integer.parseInt(s); }
         catch (NumberFormatException nfe) { throw new LoadDataException("Can't read ID number of " + s); }
         
-        try { is = (sitter_files!=null) ? new FileInputStream(sitter_files[i]) : directory_zip.getInputStream(sitter_zips[i]); }
+        LineScanner sc;
+        try { sc = scannerFor( (sitter_files!=null) ? sitter_files[i] : null , (sitter_zips!=null) ? sitter_zips[i] : null ); }
         catch (IOException ioe) { throw new LoadDataException("Can't read file " + s); }
         
         refs[i] = new Dance(id, this, attend, shun);
-        try { br = new BufferedReader(new InputStreamReader(is)); refs[i].readInputStream( br , valid ); }
+        try { refs[i].readInputStream( sc , valid ); }
         catch (Dance.DancerFileException d_dfe) { throw new LoadDataException("Error reading " + s + "\n  " + d_dfe); }
         
-        try { is.close(); } catch (IOException ioe) {}  // Don't worry if we can't close the file
+        try { sc.close(); } catch (IOException ioe) {}  // Don't worry if we can't close the file
       }
     }
     int good_dancer_count = 0;
-    if (n_dancers==0) dances = new Dance[0];
-    else if (!blob_in_blobs)
+    ChoreCache cache = openCache(n_dancers);
+    ChoreCache.Contents found = null;
+    long t_objects = tick();
+    if (cache!=null)
+    {
+      try { found = cache.read(this); }
+      catch (IOException ioe) { found = null; }
+      catch (RuntimeException re) { found = null; }  // Damaged cache; just load normally
+      if (found!=null && !quiet_operation) System.out.println("  Read " + found.dancers.length + " objects from " + cache.file().getName());
+      if (found!=null) tock("load: objects from cache", t_objects);
+    }
+    if (found==null)
+    {
+      t_objects = tick();
+      found = loadDancers(n_dancers);
+      tock("load: objects from files", t_objects);
+      if (cache!=null)
+      {
+        t_objects = tick();
+        try { cache.write(found); }
+        catch (IOException ioe) { if (!quiet_operation) System.out.println("  Could not write " + cache.file().getPath() + "\n  " + ioe.getMessage()); }
+        tock("load: writing cache", t_objects);
+      }
+    }
+    if (profile!=null) profile.count("objects loaded", found.dancers.length);
+    if (legacy_vectors) for (Dance d : found.dancers) d.vectorView();
+    
+    // Plugins may reject dancers also; unless they all say otherwise, they see them in file order
+    long t_plugins = tick();
+    boolean[] keep = checkPluginCriteria(found.dancers);
+    tock("load: plugin validation", t_plugins);
+    if (!blob_in_blobs)
     {
-      boolean good;
-      
       dances = new Dance[ n_dancers ];
-      for (i=0 ; i<n_dancers ; i++)
+      for (j=0 ; j<found.dancers.length ; j++)
       {
-        s = (dancer_files!=null) ? dancer_files[i].getName() : dancer_zips[i].getName();
-        s = s.substring( s.lastIndexOf('_')+1 , s.lastIndexOf('.') );
-        try { id = Integer.parseInt(s); }
-        catch (NumberFormatException nfe) { throw new LoadDataException("Can't read ID number of " + s); }
-        
-        if (id_table!=null && !id_table.contains(id))
-        {
-          dances[i] = null;
-          continue;
-        }
-        
-        try { is = (dancer_files!=null) ? new FileInputStream(dancer_files[i]) : directory_zip.getInputStream(dancer_zips[i]); }
-        catch (IOException ioe) { throw new LoadDataException("Can't read file " + s); }
-        
-        dances[i] = new Dance(id, this, attend, shun);
-        try { br = new BufferedReader(new InputStreamReader(is)); dances[i].readInputStream( br , valid ); }
-        catch (Dance.DancerFileException d_dfe) { throw new LoadDataException("Error reading " + s + "\n  " + d_dfe); }
-        
-        try { is.close(); } catch (IOException ioe) {}  // Don't worry if we can't close the file
-
-        good = computeAndCheck( dances[i] );
-        if (!good) dances[i] = null;
-        else
-        {
-          dances[i].findOriginsFates( geneology );
-          good_dancer_count++;
-        }
+        Dance d = found.dancers[j];
+        if (!keep[j]) continue;
+        d.findOriginsFates( geneology );
+        dances[ found.slots[j] ] = d;
+        good_dancer_count++;
       }
     }
     else {
       LinkedList<Dance> dance_list = new LinkedList<Dance>();
-      Dance one_dance;
-      int n_files = (dancer_files==null) ? dancer_zips.length : dancer_files.length;
-      
-      for (i=0 ; i<n_files ; i++) {
-        int cr_count = 1;
-        boolean found_eol = false;
-        char c;
-        String id_line;
-        String f_name = null;
-        try { 
-          if (dancer_files==null) { f_name = dancer_zips[i].getName(); is = directory_zip.getInputStream(dancer_zips[i]); }
-          else { f_name = dancer_files[i].getName(); is = new FileInputStream(dancer_files[i]); }
-        }
-        catch (IOException ioe) { throw new LoadDataException("Can't read file " + f_name); }
-        try { 
-          br = new BufferedReader(new InputStreamReader(is));
-          id_line = br.readLine();
-        }
-        catch (IOException ioe) { throw new LoadDataException("Can't find data in " + f_name); }
-        if (id_line.length()<3 || id_line.charAt(0) != '%') throw new LoadDataException("Malformed blobs file " + f_name);
-        while (id_line != null && id_line.length()>0) {
-          s = id_line.substring(2);
-          try { id = Integer.parseInt(s); }
-          catch (NumberFormatException nfe) { throw new LoadDataException("In " + f_name + " can't read ID: '" + s + "'"); }
-          one_dance = new Dance(id, this, attend, shun);
-          try { id_line = one_dance.readInputStream(br,valid); }
-          catch (Dance.DancerFileException d_dfe) { throw new LoadDataException("Error reading " + id + " from " + f_name + "\n  " + d_dfe); }
-          if (id_table!=null && !id_table.contains(id)) one_dance=null;  // Have to read it and then throw it away to advance file
-          else if (!computeAndCheck(one_dance)) one_dance=null;
-          else {
-            one_dance.findOriginsFates(geneology);
-            good_dancer_count++;
-            dance_list.add(one_dance);
-          }
-        }
-        
-        try { is.close(); } catch (IOException ioe) {}  // Don't worry if we can't close the file        
+      for (j=0 ; j<found.dancers.length ; j++) {
+        Dance one_dance = found.dancers[j];
+        if (!keep[j]) continue;
+        one_dance.findOriginsFates(geneology);
+        good_dancer_count++;
+        dance_list.add(one_dance);
       }
       
       n_dancers = 0;
@@ -2728,6 +3494,7 @@ public class Choreography
     }
     
     // Note which dancers were present in which timepoint
+    long t_rest = tick();
     takeAttendance();    
     if (!quiet_operation) System.out.println("  " + good_dancer_count + " out of " + ((dances==null)?0:dances.length) + " objects meet criteria.");
     
@@ -2772,6 +3539,7 @@ public class Choreography
       if (denom[i]>0) obid[i] /= denom[i];
       else obid[i] = Float.NaN;
     }
+    tock("load: attendance and noise estimates", t_rest);
   }
   
   
@@ -2786,12 +3554,13 @@ public class Choreography
     for (Dance d : dances)
     {
       if (d==null) continue;
-      for (int j=0 ; j<d.centroid.length ; j++)
+      for (int j=0 ; j<d.cx.length ; j++)
       {
-        if (d.centroid[j]!=null && d.loc_okay(d.centroid[j])) good_number[d.first_frame + j]++;
+        if (d.present(j) && d.loc_okay(j)) good_number[d.first_frame + j]++;
       }
     }
-    for (i=0 ; i<attendance.size() ; i++) if (max_good < attendance.get(i).size()) max_good = attendance.get(i).size();
+    max_good = attendance.maxPresent();
+    if (profile!=null) profile_lap = System.nanoTime();
     
     int n;
     float f;
@@ -2799,52 +3568,51 @@ public class Choreography
     float[] data = new float[ max_good ];
     
     // How big are they?  (Note--may be some spurious zeros, just throw them out.)
-    for (Dance d : dances) if (d!=null) d.quantityIsArea( jittering_sources.contains(DataSource.AREA) );
-    area = new Statistic[ frames.length ];
+    eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsArea( jittering_sources.contains(DataSource.AREA) ); } });
+    area = seriesFor(DataSource.AREA);
     computeDataSkipJunk(data,area);
     
     // How long do they last, on average?
-    persistence = new Statistic[ frames.length ];
+    persistence = seriesFor(DataSource.PERS);
+    Dance[] here = new Dance[ max_good ];
     for (i=0 ; i<frames.length ; i++)
     {
       n = 0;
-      for (Dance d : attendance.get(i))
+      int m = attendance.present(i,here);
+      for (int k=0 ; k<m ; k++)
       {
-        if (d==null || d.centroid[i-d.first_frame]==null || !d.loc_okay(d.centroid[i-d.first_frame])) continue;
+        Dance d = here[k];
+        if (!d.present(i-d.first_frame) || !d.loc_okay(i-d.first_frame)) continue;
         data[n++] = d.totalT();
       }
-      persistence[i] = new Statistic(data,0,n);
+      persistence.compute(i,data,0,n);
     }
+    lap("statistics: ", DataSource.toText(DataSource.PERS));
     
     // Which way do they go?
     if (segment_path) {
-      for (Dance d : dances) if (d!=null) d.findSegmentation();
+      eachDancer(new DancerWork() { public void on(Dance d) { d.findSegmentation(); } });
+      lap("statistics: ", "path segmentation");
     }
     if (!computables.contains(DataSource.BIAS)) bias = null;
     else
     {
-      for (Dance d : dances) {
-        if (d==null) continue;
-        d.quantityIsBias(times,speed_window,minTravelPx(d),false);
-      }
-      bias = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsBias(times,speed_window,minTravelPx(d),false); } });
+      bias = seriesFor(DataSource.BIAS);
       computeDataSkipJunk(data,bias);
     }
     if (!computables.contains(DataSource.PATH)) pathlen = null;
     else
     {
-      for (Dance d : dances) {
-        if (d==null) continue;
-        d.quantityIsPath(times,speed_window,minTravelPx(d));
-      }
-      pathlen = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsPath(times,speed_window,minTravelPx(d)); } });
+      pathlen = seriesFor(DataSource.PATH);
       computeDataSkipJunk(data,pathlen);
     }
     if (!computables.contains(DataSource.DIRC)) dir_change = null;
     else
     {
-      for (Dance d : dances) if (d!=null) d.quantityIsDirectionChange(times,speed_window);
-      dir_change = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsDirectionChange(times,speed_window); } });
+      dir_change = seriesFor(DataSource.DIRC);
       computeDataSkipJunk(data,dir_change);
     }
     
@@ -2852,8 +3620,8 @@ public class Choreography
     if (!computables.contains(DataSource.SPED)) speed = null;
     else
     {
-      for (Dance d : dances) if (d!=null) d.quantityIsSpeed(times,speed_window,speed_over_length,jittering_sources.contains(DataSource.SPED));
-      speed = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsSpeed(times,speed_window,speed_over_length,jittering_sources.contains(DataSource.SPED)); } });
+      speed = seriesFor(DataSource.SPED);
       computeDataSkipJunk(data,speed);
     }
     
@@ -2861,52 +3629,52 @@ public class Choreography
     if (!computables.contains(DataSource.ASPD)) angular_speed = null;
     else
     {
-      for (Dance d : dances) if (d!=null) d.quantityIsAngularSpeed(times,speed_window,jittering_sources.contains(DataSource.ASPD));
-      angular_speed = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsAngularSpeed(times,speed_window,jittering_sources.contains(DataSource.ASPD)); } });
+      angular_speed = seriesFor(DataSource.ASPD);
       computeDataSkipJunk(data,angular_speed);
     }
     
     // What size and shape are they?
     if (computables.contains(DataSource.LENG) || computables.contains(DataSource.RLEN)) {
-      for (Dance d : dances) if (d!=null) d.quantityIsLength(jittering_sources.contains(DataSource.LENG) || jittering_sources.contains(DataSource.RLEN));
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsLength(jittering_sources.contains(DataSource.LENG) || jittering_sources.contains(DataSource.RLEN)); } });
       if (computables.contains(DataSource.LENG)) {
-        length = new Statistic[ frames.length ];
+        length = seriesFor(DataSource.LENG);
         computeDataSkipJunk(data,length);
       }
       else length = null;
       if (computables.contains(DataSource.RLEN)) {
-        for (Dance d : dances) if (d!=null) d.quantityMult( (d.body_length.average==0.0f) ? 0.0f : 1.0f/(float)d.body_length.average );        
-        rel_length = new Statistic[ frames.length ];
+        eachDancer(new DancerWork() { public void on(Dance d) { d.quantityMult( (d.body_length.average==0.0f) ? 0.0f : 1.0f/(float)d.body_length.average ); } });
+        rel_length = seriesFor(DataSource.RLEN);
         computeDataSkipJunk(data,rel_length);
       }
       else rel_length = null;
     }
     else length = rel_length = null;
     if (computables.contains(DataSource.WIDT) || computables.contains(DataSource.RWID)) {
-      for (Dance d : dances) if (d!=null) d.quantityIsWidth(jittering_sources.contains(DataSource.WIDT) || jittering_sources.contains(DataSource.RWID));
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsWidth(jittering_sources.contains(DataSource.WIDT) || jittering_sources.contains(DataSource.RWID)); } });
       if (computables.contains(DataSource.WIDT)) {
-        width = new Statistic[ frames.length ];
+        width = seriesFor(DataSource.WIDT);
         computeDataSkipJunk(data,width);
       }
       else width = null;
       if (computables.contains(DataSource.RWID)) {
-        for (Dance d : dances) if (d!=null) d.quantityMult( (d.body_width.average==0.0f) ? 0.0f : 1.0f/(float)d.body_width.average );        
-        rel_length = new Statistic[ frames.length ];
+        eachDancer(new DancerWork() { public void on(Dance d) { d.quantityMult( (d.body_width.average==0.0f) ? 0.0f : 1.0f/(float)d.body_width.average ); } });
+        rel_width = seriesFor(DataSource.RWID);
         computeDataSkipJunk(data,rel_width);
       }
       else rel_width = null;
     }
     else width = rel_width = null;
     if (computables.contains(DataSource.ASPC) || computables.contains(DataSource.RASP)) {
-      for (Dance d : dances) if (d!=null) d.quantityIsAspect(jittering_sources.contains(DataSource.ASPC) || jittering_sources.contains(DataSource.RASP));
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsAspect(jittering_sources.contains(DataSource.ASPC) || jittering_sources.contains(DataSource.RASP)); } });
       if (computables.contains(DataSource.ASPC)) {
-        aspect = new Statistic[ frames.length ];
+        aspect = seriesFor(DataSource.ASPC);
         computeDataSkipJunk(data,aspect);
       }
-      else length = null;
+      else aspect = null;
       if (computables.contains(DataSource.RASP)) {
-        for (Dance d : dances) if (d!=null) d.quantityMult( (d.body_aspect.average==0.0f) ? 0.0f : 1.0f/(float)d.body_aspect.average );        
-        rel_aspect = new Statistic[ frames.length ];
+        eachDancer(new DancerWork() { public void on(Dance d) { d.quantityMult( (d.body_aspect.average==0.0f) ? 0.0f : 1.0f/(float)d.body_aspect.average ); } });
+        rel_aspect = seriesFor(DataSource.RASP);
         computeDataSkipJunk(data,rel_aspect);
       }
       else rel_aspect = null;
@@ -2916,16 +3684,16 @@ public class Choreography
     // How long are they as drawn along the curve of the object?
     if (computables.contains(DataSource.MIDL))
     {
-      for (Dance d : dances) if (d!=null) d.quantityIsMidline(jittering_sources.contains(DataSource.MIDL));
-      spine_length = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsMidline(jittering_sources.contains(DataSource.MIDL)); } });
+      spine_length = seriesFor(DataSource.MIDL);
       computeDataSkipJunk(data,spine_length);
     }
     else spine_length = null;
     
     if (computables.contains(DataSource.OUTW))
     {
-      for (Dance d : dances) if (d!=null) d.quantityIsOutlineWidth(jittering_sources.contains(DataSource.OUTW));
-      spine_width = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsOutlineWidth(jittering_sources.contains(DataSource.OUTW)); } });
+      spine_width = seriesFor(DataSource.OUTW);
       computeDataSkipJunk(data,spine_width);
     }
     else spine_width = null;
@@ -2934,8 +3702,8 @@ public class Choreography
     if (!computables.contains(DataSource.KINK)) end_wiggle = null;
     else
     {
-      for (Dance d : dances) if (d!=null) d.quantityIsKink(jittering_sources.contains(DataSource.KINK));
-      end_wiggle = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsKink(jittering_sources.contains(DataSource.KINK)); } });
+      end_wiggle = seriesFor(DataSource.KINK);
       computeDataSkipJunk(data,end_wiggle);
     }
     
@@ -2943,64 +3711,64 @@ public class Choreography
     if (!computables.contains(DataSource.CURV)) curve = null;
     else
     {
-      for (Dance d : dances) if (d!=null) d.quantityIsCurve(jittering_sources.contains(DataSource.CURV));
-      curve = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsCurve(jittering_sources.contains(DataSource.CURV)); } });
+      curve = seriesFor(DataSource.CURV);
       computeDataSkipJunk(data,curve);
     }
     
     // Location X coordinate
     if (!computables.contains(DataSource.LOCX)) loc_x = null;
     else {
-      for (Dance d : dances) if (d!=null) d.quantityIsX(jittering_sources.contains(DataSource.LOCX));
-      loc_x = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsX(jittering_sources.contains(DataSource.LOCX)); } });
+      loc_x = seriesFor(DataSource.LOCX);
       computeDataSkipJunk(data,loc_x);
     }
 
     // Location Y coordinate
     if (!computables.contains(DataSource.LOCY)) loc_y = null;
     else {
-      for (Dance d : dances) if (d!=null) d.quantityIsY(jittering_sources.contains(DataSource.LOCY));
-      loc_y = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsY(jittering_sources.contains(DataSource.LOCY)); } });
+      loc_y = seriesFor(DataSource.LOCY);
       computeDataSkipJunk(data,loc_y);
     }
     
     // Velocity X coordinate
     if (!computables.contains(DataSource.VELX)) vel_x = null;
     else {
-      for (Dance d : dances) if (d!=null) d.quantityIsVx(times,speed_window,speed_over_length,jittering_sources.contains(DataSource.VELX));
-      vel_x = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsVx(times,speed_window,speed_over_length,jittering_sources.contains(DataSource.VELX)); } });
+      vel_x = seriesFor(DataSource.VELX);
       computeDataSkipJunk(data,vel_x);
     }
     
     // Velocity Y coordinate
     if (!computables.contains(DataSource.VELY)) vel_y = null;
     else {
-      for (Dance d : dances) if (d!=null) d.quantityIsVy(times,speed_window,speed_over_length,jittering_sources.contains(DataSource.VELY));
-      vel_y = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsVy(times,speed_window,speed_over_length,jittering_sources.contains(DataSource.VELY)); } });
+      vel_y = seriesFor(DataSource.VELY);
       computeDataSkipJunk(data,vel_y);
     }
     
     // Orientation
     if (!computables.contains(DataSource.ORNT)) orient = null;
     else {
-      for (Dance d : dances) if (d!=null) d.quantityIsTheta(jittering_sources.contains(DataSource.ORNT));
-      orient = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsTheta(jittering_sources.contains(DataSource.ORNT)); } });
+      orient = seriesFor(DataSource.ORNT);
       computeDataSkipJunk(data,orient);
     }
     
     // Crab speed
     if (!computables.contains(DataSource.CRAB)) crab = null;
     else {
-      for (Dance d : dances) if (d!=null) d.quantityIsCrab(times,speed_window,speed_over_length,jittering_sources.contains(DataSource.ORNT));
-      crab = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsCrab(times,speed_window,speed_over_length,jittering_sources.contains(DataSource.ORNT)); } });
+      crab = seriesFor(DataSource.CRAB);
       computeDataSkipJunk(data,crab);
     }
     
     // Random weird testing
     if (!computables.contains(DataSource.QXFW)) qxfw = null;
     else {
-      for (Dance d : dances) if (d!=null) d.quantityIsQxfw(this,jittering_sources.contains(DataSource.QXFW));
-      qxfw = new Statistic[ frames.length ];
+      eachDancer(new DancerWork() { public void on(Dance d) { d.quantityIsQxfw(Choreography.this,jittering_sources.contains(DataSource.QXFW)); } });
+      qxfw = seriesFor(DataSource.QXFW);
       computeDataSkipJunk(data,qxfw);
     }
 
@@ -3008,36 +3776,65 @@ public class Choreography
   }
   
    public void recomputeCustomOnlineStatistics(float[] data) {
+    if (profile!=null) profile_lap = System.nanoTime();
     // Custom via plugins
     if (!computables.contains(DataSource.CUST)) custom = null;
     else {
+      final boolean jitty = jittering_sources.contains(DataSource.CUST);
       for (int i=0 ; i<custom.length ; i++) {
-        custom[i] = new Statistic[ frames.length ];
-        for (Dance d : dances) {
-          if (d==null) continue;
-          plugininfo.get(plug_map.out.get(i).plugnum).plugin.computeDancerQuantity(d , plug_map.out.get(i).which);
-          d.quantityAlreadyIsCustom(i,jittering_sources.contains(DataSource.CUST));
-        }
+        custom[i] = seriesFor(DataSource.CUST);
+        final CustomComputation plugin = plugininfo.get(plug_map.out.get(i).plugnum).plugin;
+        final int which = plug_map.out.get(i).which;
+        final int index = i;
+        final String label = plugininfo.get(plug_map.out.get(i).plugnum).name;
+        DancerWork work = new DancerWork() { public void on(Dance d) {
+          long t0 = tick();
+          plugin.computeDancerQuantity(d , which);
+          vectorsBack(d);
+          tock("plugin computeDancerQuantity: ", label, t0);
+          d.quantityAlreadyIsCustom(index,jitty);
+        } };
+        if (pluginInParallel(plugin)) eachDancer(work);
+        else for (Dance d : dances) if (d!=null) work.on(d);
         computeDataSkipJunk(data,custom[i]);
       }
     }
   }
  
-  public void computeDataSkipJunk(float[] data,Statistic[] answer)
+  DataSource profile_source;  // For --profile, what the series being computed is of
+  public StatisticSeries seriesFor(DataSource ds)
+  {
+    profile_source = ds;
+    return new StatisticSeries(frames.length , ordered_sources.contains(ds));
+  }
+  
+  // With --profile, everything since the last series was finished (the dancers' quantities and then this) is charged to this one
+  public void computeDataSkipJunk(float[] data,StatisticSeries answer)
+  {
+    if (n_threads <= 1) computeDataSkipJunk(data,answer,0,frames.length);
+    else statsPool().invoke(new FrameSpan(data.length,answer,0,frames.length));
+    if (profile!=null) lap("statistics: ", DataSource.toText(profile_source));
+  }
+  
+  // Fills answer[i0] until answer[i1] using data as scratch space
+  void computeDataSkipJunk(float[] data,StatisticSeries answer,int i0,int i1)
   {
     int n;
-    for (int i=0 ; i<frames.length ; i++)
+    Dance[] here = new Dance[ attendance.maxPresent() ];
+    for (int i=i0 ; i<i1 ; i++)
     {
       n = 0;
       float jitsum = 0.0f;
-      for (Dance d : attendance.get(i))
+      int m = attendance.present(i,here);
+      for (int k=0 ; k<m ; k++)
       {
+        Dance d = here[k];
         if ( Float.isNaN(d.quantity[ i - d.first_frame ]) ) continue;  // Some data needed for the calc was missing, skip it
         data[n++] = d.quantity[ i - d.first_frame ];
         jitsum += d.loaded_jitter;
       }
-      answer[i] = new Statistic(data,0,n);
-      answer[i].jitter = jitsum / Math.max(1.0f , answer[i].n);
+      answer.compute(i,data,0,n);
+      answer.jitter[i] = jitsum / Math.max(1.0f , answer.n[i]);
     }
   }
 
@@ -3097,10 +3894,11 @@ public class Choreography
         case VELY: d.quantityIsVy(times,speed_window,speed_over_length,jitty); if (!speed_over_length) { multiplier = mm_per_pixel; } break;
         case ORNT: d.quantityIsTheta(jitty); multiplier = 180/Math.PI; break;
         case CRAB: d.quantityIsCrab(times,speed_window,speed_over_length,jitty); if (!speed_over_length) { multiplier = mm_per_pixel; } break;
-        case QXFW: d.quantityIsQxfw(this,jitty); break;
+        case QXFW: d.quantityIsQxfw(Choreography.this,jitty); break;
         case CUST: int i = plug_map.out.indexOf(ds);
                    if (i < 0 || d.loaded_custom.length <= i || !d.loaded_custom[i].already) {
                      plugininfo.get(ds.plugnum).plugin.computeDancerQuantity(d,ds.which);
+                     vectorsBack(d);
                      d.quantityAlreadyIsCustom(i,jitty);
                    }
                    break;
@@ -3117,6 +3915,7 @@ public class Choreography
       if (ds.measure != DataMeasure.JIT && (ds.plugnum < 0 || !(plugininfo.get(ds.plugnum).plugin instanceof CustomOutputModification))) {
         boolean modified = false;
         for (CustomOutputModification com : plugmods) modified |= com.modifyQuantity(d, ds.source);
+        vectorsBack(d);
         if (modified) d.allUnload();
       }
     }
@@ -3234,7 +4033,7 @@ public class Choreography
   {
     DataSpecifier[] out_data = null;
     boolean do_trigger = !(trigger_start==null || trigger_end==null);
-    do_trigger = do_trigger && !(trigger_end[0] < times[0] || trigger_start[trigger_start.length-1] > times[times.length-1]);
+    if (!following) do_trigger = do_trigger && !(trigger_end[0] < times[0] || trigger_start[trigger_start.length-1] > times[times.length-1]);  // Otherwise triggers are taken as they settle
     if (out_data_unfiltered.length==0) write_timecourse=false;
     else out_data = filterNopData(out_data_unfiltered);
     
@@ -3245,39 +4044,31 @@ public class Choreography
 
     BufferedWriter underlying_stream;
     PrintWriter data_file;
+    FormatBuffer line = new FormatBuffer();
     float[] t = data[0].timeBase();
 
+    float horizon = followHorizon();
+    boolean appending = following && follow_after > Float.NEGATIVE_INFINITY;
+    
     // Raw statistics timecourse part
     if (write_timecourse)
     {
-      File target = new File(targetDir(),file_prefix + out_name + bit + ".dat");
-      
-      if (!quiet_operation) System.out.println("Writing summary file " + target.getPath());
-      
-      try { underlying_stream = new BufferedWriter(new FileWriter( target )); }
-      catch (IOException ioe) { throw new SaveDataException("Could not open " + target.getPath() + " for output."); }
-    
-      data_file = new PrintWriter( underlying_stream );
+      // Pick the rows first (-T folds several frames into one); text and binary output share them
+      int[] first = new int[t.length];
+      int[] last = new int[t.length];
+      int rows = 0;
       int last_printed = -1;
       float next_p_time = output_time_chunk;
-      if (print_header != null) {
-        if (print_header.length()>0) data_file.print(print_header);
-        for (int j=0; j<data.length; j++) {
-          if (j>0 || print_header.length()>0) data_file.print("\t");
-          data_file.print(data[j].title);
-        }
-        data_file.println();
-      }
       for (int i=0 ; i<t.length ; i++)
       {
         if (t[i]*(1+1e-6) < next_p_time) continue;
         
-        for (int j=0 ; j<data.length ; j++)
+        if (!following || (t[i] > follow_after && t[i] <= horizon))
         {
-          if (j>0) data_file.print(" ");
-          data_file.print( data[j].print(last_printed+1,i) );
+          first[rows] = last_printed+1;
+          last[rows] = i;
+          rows++;
         }
-        data_file.println();
         
         last_printed = i;
         if (output_time_chunk > 0)
@@ -3287,28 +4078,57 @@ public class Choreography
         }
         else next_p_time = t[i];
       }
-      if (data_file.checkError()) { throw new SaveDataException("Unable to write to " + target.getPath()); }
       
-      try { underlying_stream.close(); } catch (IOException ioe) { }   // Don't worry if we can't close the file; things are pretty much OK anyway
+      if (write_text)
+      {
+        File target = new File(targetDir(),file_prefix + out_name + bit + ".dat");
+        
+        if (!quiet_operation) System.out.println("Writing summary file " + target.getPath());
+        boolean fresh = (target.length()==0);  // A -N object may first turn up in a later --follow pass
+        if (follow_wrote!=null) follow_wrote.add(target.getPath());
+        
+        try { underlying_stream = new BufferedWriter(new FileWriter( target , appending )); }
+        catch (IOException ioe) { throw new SaveDataException("Could not open " + target.getPath() + " for output."); }
       
-      if (!quiet_operation) System.out.println("  Write successful.");
+        data_file = new PrintWriter( underlying_stream );
+        if (print_header != null && (!appending || fresh)) {
+          if (print_header.length()>0) data_file.print(print_header);
+          for (int j=0; j<data.length; j++) {
+            if (j>0 || print_header.length()>0) data_file.print("\t");
+            data_file.print(data[j].title);
+          }
+          data_file.println();
+        }
+        for (int k=0 ; k<rows ; k++)
+        {
+          for (int j=0 ; j<data.length ; j++)
+          {
+            if (j>0) line.add(' ');
+            data[j].print(line,first[k],last[k]);
+          }
+          line.newline().writeTo(data_file);
+          line.clear();
+        }
+        if (data_file.checkError()) { throw new SaveDataException("Unable to write to " + target.getPath()); }
+        
+        try { underlying_stream.close(); } catch (IOException ioe) { }   // Don't worry if we can't close the file; things are pretty much OK anyway
+        
+        if (!quiet_operation) System.out.println("  Write successful.");
+      }
+      
+      if (write_binary) writeColumns(new File(targetDir(),file_prefix + out_name + bit + ".bdat"), data, first, last, rows, false);
     }
     
     // Triggered statistics part
     if (do_trigger) {
-      File target = new File(targetDir() , file_prefix + out_name + bit + ".trig");
-      
-      if (!quiet_operation) System.out.println("Writing triggered averages to " + target.getName());
-      
-      try { underlying_stream = new BufferedWriter(new FileWriter( target )); }
-      catch (IOException ioe) { throw new SaveDataException("Could not open " + target.getPath() + " for output."); }
-      
-      data_file = new PrintWriter( underlying_stream );
-      
-      int a,b;
+      int[] first = new int[trigger_start.length];
+      int[] last = new int[trigger_start.length];
+      int rows = 0;
       int hi,lo,mid;
       for (int i=0 ; i<trigger_start.length ; i++)
       {
+        // When following, a trigger is reported once its whole window has settled
+        if (following && !(trigger_end[i] > follow_after && trigger_end[i] <= horizon)) continue;
         lo = 0;
         hi = t.length-1;
         while (hi-lo>1)
@@ -3317,7 +4137,7 @@ public class Choreography
           if (trigger_start[i] < t[mid]) hi = mid;
           else lo = mid;
         }
-        a = hi;
+        first[rows] = hi;
         lo = 0;
         hi = t.length-1;
         while (hi-lo>1)
@@ -3326,27 +4146,62 @@ public class Choreography
           if (trigger_end[i] < t[mid]) hi = mid;
           else lo = mid;
         }
-        b = lo;
-        if (b<a) b = a;
+        last[rows] = (lo < first[rows]) ? first[rows] : lo;
+        rows++;
+      }
+      
+      if (write_text)
+      {
+        File target = new File(targetDir() , file_prefix + out_name + bit + ".trig");
+        
+        if (!quiet_operation) System.out.println("Writing triggered averages to " + target.getName());
+        if (follow_wrote!=null) follow_wrote.add(target.getPath());
+        
+        try { underlying_stream = new BufferedWriter(new FileWriter( target , appending )); }
+        catch (IOException ioe) { throw new SaveDataException("Could not open " + target.getPath() + " for output."); }
+        
+        data_file = new PrintWriter( underlying_stream );
         
-        for (int j=0 ; j<data.length ; j++)
+        for (int i=0 ; i<rows ; i++)
         {
-          if (j>0) data_file.print(" ");
-          data_file.print( data[j].printAvg(a,b) );
+          for (int j=0 ; j<data.length ; j++)
+          {
+            if (j>0) line.add(' ');
+            data[j].printAvg(line,first[i],last[i]);
+          }
+          line.newline().writeTo(data_file);
+          line.clear();
         }
-        data_file.println();
+        if (data_file.checkError()) { throw new SaveDataException("Unable to write to " + target.getPath()); }
+        
+        try { underlying_stream.close(); } catch (IOException ioe) { }
+        
+        if (!quiet_operation) System.out.println("  Write successful.");
       }
-      if (data_file.checkError()) { throw new SaveDataException("Unable to write to " + target.getPath()); }
       
-      try { underlying_stream.close(); } catch (IOException ioe) { }
-      
-      if (!quiet_operation) System.out.println("  Write successful.");
+      if (write_binary) writeColumns(new File(targetDir() , file_prefix + out_name + bit + ".btrig"), data, first, last, rows, true);
     }
     
     return data;
   }
   
   
+  // Frames near the newest one can still change as data arrives (speeds look ahead, objects may yet pass criteria), so --follow holds them back
+  float followHorizon()
+  {
+    if (!following || times==null || times.length==0) return Float.POSITIVE_INFINITY;
+    return times[times.length-1] - Math.max(2*speed_window, output_time_chunk);
+  }
+  
+  void writeColumns(File target, DataPrinter[] data, int[] first, int[] last, int rows, boolean averaged) throws SaveDataException
+  {
+    if (!quiet_operation) System.out.println("Writing binary columns to " + target.getPath());
+    try { ColumnFile.write(target, data, first, last, rows, averaged); }
+    catch (IOException ioe) { throw new SaveDataException("Unable to write to " + target.getPath()); }
+    if (!quiet_operation) System.out.println("  Write successful.");
+  }
+  
+  
   public void showStatistics(DataSpecifier[] out_data)
   {
     DataPrinter[] data = new DataPrinter[out_data.length-1];
@@ -3397,6 +4252,35 @@ public class Choreography
     }
   }
   
+  // Draws the map as --map-frames asks to numbered PNGs beside the other output; no window needed
+  public void writeMapFrames(DataPrinter[] dps,DataSpecifier[] dss)
+  {
+    for (Dance d : dances)
+    {
+      if (d==null) continue;
+      d.readyMultiscale(mm_per_pixel);
+    }
+    MapRenderer mr = new MapRenderer( new DataMapper(this,dps,dss) );
+    int n = 0;
+    try
+    {
+      if (map_style!=null) mr.setStyle(map_style);
+      if (map_area!=null) mr.setArea(map_area[0], map_area[1], map_area[2], map_area[3], (map_area.length > 4) ? (int)Math.round(map_area[4]) : MapRenderer.DEFAULT_WIDTH);
+      n = mr.writeFrames(targetDir(), file_prefix + ".map", map_frames[0], map_frames[1], map_frames[2], map_frames[3]);
+    }
+    catch (IllegalArgumentException iae)
+    {
+      System.out.println("Error in Arguments\n  " + iae.getMessage());
+      throw new SystemExit(1);
+    }
+    catch (IOException ioe)
+    {
+      System.out.println("Error Saving Map Frames\n  " + ioe.getMessage() + "\n");
+      throw new SystemExit(1);
+    }
+    if (!quiet_operation) System.out.println("Wrote " + n + " map frames as " + file_prefix + ".map.#####.png");
+  }
+  
   public int indexNear(float t)
   {
     int lo=0;
@@ -3438,7 +4322,12 @@ public class Choreography
     Choreography chore = new Choreography();
     chore.headless = isHeadless;
     chore.providedPlugins = providedPlugins;
-    
+    return doEverything(chore, args);
+  }
+
+  // Everything for one experiment, given a fresh Choreography to do it with
+  static Choreography doEverything(Choreography chore, String[] args)
+  {
     try { chore.parseInput(args); }
     catch (CustomHelpException che) {
       throw new SystemExit(1);
@@ -3453,6 +4342,7 @@ public class Choreography
       throw new SystemExit(1);
     }
     
+    long t_find = chore.tick();
     try { chore.findFiles(); }
     catch (WrongFilesException wfe)
     {
@@ -3460,6 +4350,7 @@ public class Choreography
       throw new SystemExit(1);
     }
 
+    chore.tock("finding files", t_find);
     long t0 = System.nanoTime();
     try { chore.loadData( (chore.output_names!=null && chore.output_names.length==1) ? chore.output_names[0] : "" ); }
     catch (LoadDataException sre)
@@ -3469,6 +4360,7 @@ public class Choreography
     }
     long t1 = System.nanoTime();
     System.out.printf("Took %.3f seconds to load data\n",(t1-t0)*1e-9);
+    if (chore.profile!=null) chore.profile.time("loading data (all of the above)", t1-t0);
     
     HashMap<Integer,Integer> id_to_index = new HashMap<Integer,Integer>();
     if (chore.all_individuals)
@@ -3486,20 +4378,22 @@ public class Choreography
     }
 
     float[] for_custom = null;
+    long t_stats = chore.tick();
     if (!chore.one_by_one) for_custom = chore.recomputeOnlineStatistics();
+    chore.tock("population statistics (all of the above)", t_stats);
 
     // Custom computations
     if (chore.plugininfo!=null && chore.plugininfo.size()>0) {
       int wrote = 0;
       for (ComputationInfo ci : chore.plugininfo) {
         try {
+          long t_plug = chore.tick();
           wrote |= ci.plugin.computeAll((ci.mapoutput) ? new File(chore.targetDir() , chore.file_prefix + "." + ci.plugin.desiredExtension()) : null);
-          for (Dance d : chore.dances) {
-            if (d==null) continue;
-            wrote |= ci.plugin.computeDancerSpecial( d ,
-              (ci.mapoutput) ? new File(chore.targetDir() , chore.file_prefix + "." + String.format("%05d",d.ID) + "." + ci.plugin.desiredExtension()) : null
-            );
-          }
+          if (chore.dances!=null) for (Dance d : chore.dances) chore.vectorsBack(d);
+          chore.tock("plugin computeAll: ", ci.name, t_plug);
+          t_plug = chore.tick();
+          wrote |= chore.computeDancerSpecials(ci);
+          chore.tock("plugin computeDancerSpecial: ", ci.name, t_plug);
         }
         catch (IOException ioe) {
           System.out.println("IO error in custom computation:");
@@ -3507,14 +4401,20 @@ public class Choreography
           throw new SystemExit(1);
         }
       }
-      if ((wrote & 2) != 0) if (!chore.one_by_one) for_custom = chore.recomputeOnlineStatistics();
+      if ((wrote & 2) != 0) {
+        for (Dance d : chore.dances) if (d!=null) d.forgetQuantities();  // Plugin changed the data under us
+        if (!chore.one_by_one) for_custom = chore.recomputeOnlineStatistics();
+      }
     }
+    t_stats = chore.tick();
     if (!chore.one_by_one) chore.recomputeCustomOnlineStatistics(for_custom);
+    chore.tock("plugin statistics (all of the above)", t_stats);
     
     if (chore.output_names!=null)
     {
       DataPrinter[] dps = null;
       DataSpecifier[] dss = null;
+      long t_out = chore.tick();
       for (int i=0 ; i<chore.output_names.length ; i++)
       {
         DataPrinter[] temp = null;
@@ -3543,6 +4443,14 @@ public class Choreography
           throw new SystemExit(1);
         }
       }
+      chore.tock("writing output", t_out);
+      if (chore.map_frames!=null)
+      {
+        long t_map = chore.tick();
+        chore.writeMapFrames(dps,chore.filterNopData(dss));
+        chore.tock("drawing map frames", t_map);
+      }
+      chore.reportProfile();
       if ( (chore.interactive_mode || chore.view_graph || chore.view_datamap))
       {
         if (chore.view_graph)
@@ -3559,8 +4467,271 @@ public class Choreography
     return chore;
   }
   
+  // Removes every --key value (or --key=value) from args and returns the last value given, or null if there was none
+  static String takeOption(ArrayList<String> args, String key) throws IllegalArgumentException
+  {
+    String value = null;
+    int i = 0;
+    while (i < args.size())
+    {
+      String a = args.get(i);
+      if (a.equals(key))
+      {
+        if (i+1 >= args.size()) throw new IllegalArgumentException("Argument " + key + " requires a value");
+        args.remove(i);
+        value = args.remove(i);
+      }
+      else if (a.startsWith(key + "=")) value = args.remove(i).substring(key.length()+1);
+      else i++;
+    }
+    return value;
+  }
+
+  // Comma-separated numbers, from least to most of them; otherwise complain with why
+  static double[] parseNumbers(String s, int least, int most, String why) throws IllegalArgumentException
+  {
+    String[] parts = s.split(",",-1);
+    if (parts.length < least || parts.length > most) throw new IllegalArgumentException(why);
+    double[] d = new double[parts.length];
+    for (int i=0 ; i<parts.length ; i++)
+    {
+      try { d[i] = Double.parseDouble(parts[i]); }
+      catch (NumberFormatException nfe) { throw new IllegalArgumentException(why); }
+    }
+    return d;
+  }
+
+  static boolean hasOption(String[] args, String key)
+  {
+    for (String a : args) if (a.equals(key) || a.startsWith(key + "=")) return true;
+    return false;
+  }
+
+  // Writes prefix.profile.json beside the output and prints a summary
+  void reportProfile()
+  {
+    if (profile==null) return;
+    File target = new File(targetDir(), file_prefix + ".profile.json");
+    profile.printSummary(System.out);
+    try { profile.writeJson(target, ChoreographyVersion.CURRENT_IDENTIFIER, n_threads); }
+    catch (IOException ioe) { System.out.println("Could not write " + target.getPath() + "\n  " + ioe.getMessage()); }
+  }
+  
+  // Finds the --batch root and --batch-jobs count and returns everything else
+  static ArrayList<String> batchArguments(String[] args, String[] root, int[] jobs) throws IllegalArgumentException
+  {
+    ArrayList<String> rest = new ArrayList<String>(Arrays.asList(args));
+    root[0] = takeOption(rest, "--batch");
+    String value = takeOption(rest, "--batch-jobs");
+    if (value != null)
+    {
+      try { jobs[0] = Integer.parseInt(value); }
+      catch (NumberFormatException nfe) { throw new IllegalArgumentException("--batch-jobs expects an integer, not " + value); }
+      if (jobs[0] < 0) throw new IllegalArgumentException("Number of batch jobs must not be negative");
+      if (jobs[0] == 0) jobs[0] = Runtime.getRuntime().availableProcessors();
+    }
+    return rest;
+  }
+
+  /* Runs every yyyymmdd_hhmmss experiment directory under a root, each with
+   * its own Choreography and the rest of the arguments, a few at a time in
+   * this one JVM.  Plugin classes are loaded once and shared.  An experiment
+   * that fails (what would have been an exit) is reported and skipped; the
+   * return value is how many failed.
+   */
+  public static int runBatch(String[] args)
+  {
+    String[] root = new String[1];
+    int[] jobs = { 1 };
+    final ArrayList<String> rest;
+    List<File> experiments;
+    try
+    {
+      rest = batchArguments(args, root, jobs);
+      experiments = FileListing.getDataDirectoryListing(new File(root[0]));
+    }
+    catch (IllegalArgumentException iae)
+    {
+      System.out.println("Error in Arguments\n  " + iae.getMessage());
+      System.out.println("  Use --help to list valid options.");
+      return 1;
+    }
+    catch (FileNotFoundException fnfe)
+    {
+      System.out.println("Error Finding Files\n  " + fnfe.getMessage() + "\n");
+      return 1;
+    }
+    System.out.println("Batch: " + experiments.size() + " experiments under " + root[0]);
+
+    final PluginLoader shared_loader = new PluginLoader();
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(jobs[0], experiments.size())), new ThreadFactory() {
+      public Thread newThread(Runnable r) { Thread t = new Thread(r, "choreography-batch"); t.setDaemon(true); return t; }
+    });
+    ArrayList< Future<String> > pending = new ArrayList< Future<String> >(experiments.size());
+    for (final File dir : experiments)
+    {
+      pending.add(pool.submit(new Callable<String>() {
+        public String call() {
+          ArrayList<String> own = new ArrayList<String>(rest);
+          own.add(dir.getPath());
+          Choreography chore = new Choreography();
+          chore.headless = true;
+          chore.plugloader = shared_loader;
+          String problem = null;
+          try { doEverything(chore, own.toArray(new String[own.size()])); }
+          catch (SystemExit se) { if (se.exitValue != 0) problem = "stopped with exit value " + se.exitValue; }
+          catch (RuntimeException re) { problem = re.toString(); }
+          finally { if (chore.stats_pool!=null) chore.stats_pool.shutdown(); }
+          System.out.println("Batch: " + ((problem==null) ? "finished " : "FAILED ") + dir.getPath() + ((problem==null) ? "" : "\n  " + problem));
+          return problem;
+        }
+      }));
+    }
+    int failed = 0;
+    try
+    {
+      for (int i=0 ; i<pending.size() ; i++)
+      {
+        String problem;
+        try { problem = pending.get(i).get(); }
+        catch (ExecutionException ee) { problem = String.valueOf(ee.getCause()); }
+        catch (InterruptedException ie) { problem = "interrupted"; }
+        if (problem != null) failed++;
+      }
+    }
+    finally { pool.shutdownNow(); }
+    System.out.println("Batch: " + (experiments.size() - failed) + " of " + experiments.size() + " experiments finished" + ((failed>0) ? "; " + failed + " failed" : ""));
+    return failed;
+  }
+
+  static final float FOLLOW_LOOKBACK = 60.0f;  // Seconds of earlier data reloaded to warm up each pass
+  static final int FOLLOW_IDLE_WAITS = 12;     // Quiet waits before we decide the recording has ended
+
+  // Sizes and times of the tracker's files in a directory, to notice when it has written more; our own output doesn't count
+  static long followSignature(File dir)
+  {
+    long sig = 0;
+    File[] fs = (dir==null) ? null : dir.listFiles();
+    if (fs!=null) for (File f : fs)
+    {
+      String s = f.getName();
+      if (s.endsWith(".summary") || s.endsWith(".blob") || s.endsWith(".blobs")) sig = 31*sig + f.length()*1000003L + f.lastModified();
+    }
+    return sig;
+  }
+
+  /* Follows an experiment that is still being recorded.  Every --follow
+   * seconds, if the tracker has written anything, the data is read again with
+   * a fresh Choreography, starting FOLLOW_LOOKBACK seconds (or more, if speed
+   * windows or -t need it) before the last row already written, and rows that
+   * have since settled are appended to the .dat and .trig files.  A pass that
+   * trips over a half-written line is simply tried again next time.
+   *
+   * Passes share follow_skip, which remembers how much of each object file
+   * holds only objects that were over before the window; later windows start
+   * later, so those bytes are never read again.  They also share a
+   * SummaryTail, so each pass parses only the summary lines added since the
+   * last one (even the final pass) and picks its frames from all of them.
+   *
+   * Because each pass only sees recent data, criteria such as -t and -M are
+   * judged on that stretch, and per-object normalizations use it too, so the
+   * rows appended need not match a run over the finished recording.  So once
+   * nothing has changed for FOLLOW_IDLE_WAITS waits in a row, the last pass is
+   * an ordinary run over everything: it rewrites .dat and .trig rather than
+   * appending, and files that only earlier passes wrote (objects that fail the
+   * criteria over the whole recording) are deleted.
+   */
+  public static int follow(String[] args)
+  {
+    ArrayList<String> rest = new ArrayList<String>(Arrays.asList(args));
+    long pause;
+    try
+    {
+      String value = takeOption(rest, "--follow");
+      double every;
+      try { every = Double.parseDouble(value); }
+      catch (NumberFormatException nfe) { throw new IllegalArgumentException("--follow expects a number of seconds, not " + value); }
+      if (!(every > 0)) throw new IllegalArgumentException("Time between --follow updates must be positive");
+      pause = (long)Math.ceil(every*1000);
+    }
+    catch (IllegalArgumentException iae)
+    {
+      System.out.println("Error in Arguments\n  " + iae.getMessage());
+      System.out.println("  Use --help to list valid options.");
+      return 1;
+    }
+    rest.add(0, "--no-cache");  // Every file is still changing, so a cache would never be reused
+
+    PluginLoader shared_loader = new PluginLoader();
+    ConcurrentHashMap<String,Long> skip = new ConcurrentHashMap<String,Long>();
+    Set<String> wrote = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+    SummaryTail summary_tail = new SummaryTail();
+    float written = Float.NEGATIVE_INFINITY;
+    float lookback = FOLLOW_LOOKBACK;
+    File dir = null;
+    boolean last_pass = false;
+    while (true)
+    {
+      long signature = followSignature(dir);
+      Choreography chore = new Choreography();
+      chore.headless = true;
+      chore.plugloader = shared_loader;
+      chore.follow_summary = summary_tail;
+      ArrayList<String> own = new ArrayList<String>(rest);
+      if (last_pass) chore.follow_wrote = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+      else
+      {
+        chore.follow_skip = skip;
+        chore.following = true;
+        chore.follow_after = written;
+        chore.follow_wrote = wrote;
+        if (written - lookback > 0) { own.add(0, "--from"); own.add(1, Float.toString(written - lookback)); }
+      }
+      boolean ok = true;
+      try { doEverything(chore, own.toArray(new String[own.size()])); }
+      catch (SystemExit se)
+      {
+        if (chore.base_directory==null) return se.exitValue;  // Bad arguments or --help; no point trying again
+        ok = (se.exitValue == 0);
+      }
+      finally { if (chore.stats_pool!=null) chore.stats_pool.shutdown(); }
+      if (dir==null && chore.base_directory!=null)
+      {
+        dir = new File(chore.base_directory);
+        if (dir.exists() && !dir.isDirectory()) { System.out.println("Can only follow an experiment directory, not " + chore.base_directory); return 1; }
+        signature = followSignature(dir);
+      }
+      if (ok && chore.times!=null && chore.times.length>0)
+      {
+        written = Math.max(written, chore.followHorizon());
+        lookback = Math.max(FOLLOW_LOOKBACK, 4*chore.speed_window + chore.min_time + chore.output_time_chunk);
+      }
+      if (last_pass)
+      {
+        if (!ok) return 1;
+        for (String path : wrote) if (!chore.follow_wrote.contains(path)) new File(path).delete();
+        return 0;
+      }
+      if (!ok) System.out.println("Following: will try again when more data arrives");
+
+      int idle = 0;
+      while (true)
+      {
+        try { Thread.sleep(pause); }
+        catch (InterruptedException ie) { return 1; }
+        long now = followSignature(dir);
+        if (now != signature) break;
+        if (++idle >= FOLLOW_IDLE_WAITS) { last_pass = true; break; }
+      }
+    }
+  }
+
   public static void main(String[] args) { 
-    try { doEverything(args, null, false); }
+    try {
+      if (hasOption(args, "--batch")) { if (runBatch(args) > 0) throw new SystemExit(1); }
+      else if (hasOption(args, "--follow")) { int exit = follow(args); if (exit != 0) throw new SystemExit(exit); }
+      else doEverything(args, null, false);
+    }
     catch (SystemExit se) { System.exit(se.exitValue); }
   }
 }
@@ -0,0 +1,109 @@
+/* ColumnFile.java - Writes output statistics as binary columns
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/* The same rows and columns as a .dat or .trig file, but as raw numbers so
+ * nothing has to parse text to read them back.  Everything is little-endian:
+ *
+ *   8 bytes    "CHOREBIN"
+ *   int32      format version (1)
+ *   int32      number of columns
+ *   int32      number of rows
+ *   per column:
+ *     int32    FLOAT32 (0) or INT32 (1)
+ *     float32  multiplier already applied to the values (1 if none, and
+ *              always 1 for counts); an SEM column's rows are each further
+ *              divided by the square root of that row's count
+ *     string   title, e.g. "Median Speed (mm/s)"
+ *     string   units, taken from the parentheses in the title ("" if none)
+ *   per column, in the same order:
+ *     rows values, each 4 bytes
+ *
+ * A string is an int32 byte count followed by that many bytes of UTF-8.
+ * Float columns hold the same numbers the text output would (before
+ * rounding), so NaN is still NaN unless --nanless was given.
+ */
+public class ColumnFile
+{
+  public static final byte[] MAGIC = "CHOREBIN".getBytes(StandardCharsets.US_ASCII);
+  public static final int VERSION = 1;
+  public static final int FLOAT32 = 0;
+  public static final int INT32 = 1;
+
+  OutputStream out;
+  ByteBuffer bb;
+
+  ColumnFile(File f) throws IOException
+  {
+    out = new FileOutputStream(f);
+    bb = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  void room(int n) throws IOException { if (bb.remaining() < n) flush(); }
+  void flush() throws IOException
+  {
+    out.write(bb.array(), 0, bb.position());
+    bb.clear();
+  }
+  void putInt(int i) throws IOException { room(4); bb.putInt(i); }
+  void putFloat(float f) throws IOException { room(4); bb.putFloat(f); }
+  void putString(String s) throws IOException
+  {
+    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    putInt(b.length);
+    for (int i = 0 ; i < b.length ; i++) { room(1); bb.put(b[i]); }
+  }
+
+  void header(Choreography.DataPrinter[] data, int rows) throws IOException
+  {
+    room(MAGIC.length);
+    bb.put(MAGIC);
+    putInt(VERSION);
+    putInt(data.length);
+    putInt(rows);
+    for (Choreography.DataPrinter dp : data)
+    {
+      putInt(dp.isIntegral() ? INT32 : FLOAT32);
+      putFloat(dp.getMultiplier());
+      putString(dp.getTitle());
+      putString(dp.getUnits());
+    }
+  }
+
+  /* Row k covers indices first[k] through last[k] of each DataPrinter.  With
+   * averaged false the row holds what a .dat line would (the value at last[k],
+   * or for event counts the number of events in the span); with it true, what
+   * a .trig line would (the average over the span).
+   */
+  public static void write(File f, Choreography.DataPrinter[] data, int[] first, int[] last, int rows, boolean averaged) throws IOException
+  {
+    ColumnFile cf = new ColumnFile(f);
+    try
+    {
+      cf.header(data, rows);
+      for (Choreography.DataPrinter dp : data)
+      {
+        if (dp.isIntegral())
+        {
+          for (int k = 0 ; k < rows ; k++) cf.putInt( averaged ? dp.intAvg(first[k],last[k]) : dp.intValue(first[k],last[k]) );
+        }
+        else
+        {
+          for (int k = 0 ; k < rows ; k++) cf.putFloat( averaged ? dp.floatAvg(first[k],last[k]) : dp.floatValue(last[k]) );
+        }
+      }
+      cf.flush();
+    }
+    finally { cf.out.close(); }
+  }
+}
@@ -94,6 +94,7 @@ public class CursorTools
     Cursor c;
     try { c = makeSensibleCursor(u,hotspot,cursor_name); }
     catch (IOException ioe) { c = new Cursor(Cursor.DEFAULT_CURSOR); }
+    catch (HeadlessException he) { c = new Cursor(Cursor.DEFAULT_CURSOR); }  // No screen (e.g. benchmarks); nobody will see it anyway
     return c;
   }
   
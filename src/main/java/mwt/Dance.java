@@ -23,6 +23,7 @@ public class Dance
   
   public static final int ERROR_CONVERGE_ITERATIONS = 12;
   public static final double ERROR_CONVERGE_FRACTION = Math.sqrt(0.001);
+  static final double BOX_SLACK = 1.0001;  // Bounding boxes are measured in doubles and distances in floats, so allow for rounding
 
   
   public int ID;
@@ -40,9 +41,13 @@ public class Dance
   public ReceptiveField[] shun;
   
   public int area[];
-  public Vec2F centroid[];
-  public Vec2F bearing[];
-  public Vec2F extent[];
+  public float cx[], cy[];  // Centroid, bearing, and extent are stored a column at a time;
+  public float bx[], by[];  // frames without data are NaN.  Use centroid(i) and so on to get
+  public float ex[], ey[];  // them as vectors (or null if the frame is missing).
+  @Deprecated public Vec2F centroid[];  // Old per-frame vectors, only filled in for plugins that
+  @Deprecated public Vec2F bearing[];   // aren't ours (see vectorView); changes to them are copied
+  @Deprecated public Vec2F extent[];    // back once the plugin returns (see vectorsBack).
+  float[] viewed;  // The cx the vectors were built from
   public Vec2I circles[];
   public Spine spine[];
   public Outline outline[];
@@ -87,6 +92,17 @@ public class Dance
       if (jittery==null) jittery = new Float( estimateNoise() );
       loaded_jitter = jittery.floatValue();
     }
+    // Copy of what this quantity computed to, and the parameters it was computed with, so it needn't be computed again
+    float[] kept = null;
+    float kept_p, kept_q;
+    void keep(float p,float q) { kept = Arrays.copyOf(quantity,quantity.length); kept_p = p; kept_q = q; }
+    boolean restore(float p,float q) {
+      if (kept==null || kept.length!=area.length || kept_p!=p || kept_q!=q) return false;
+      allUnload();
+      System.arraycopy(kept,0,quantity,0,kept.length);
+      return true;
+    }
+    void forget() { already = false; jittery = null; kept = null; }
   };
 
   // Egad, is this horrible or what?  Map from enum, anyone?!
@@ -130,40 +146,55 @@ public class Dance
 
 
   // Holds spine data
+  // Points are xy[at until at+n] (x) then xy[at+n until at+2n] (y); xy may be shared by every spine of a dancer
   public class RawSpine implements Spine {
-    short[] x;
-    short[] y;
+    short[] xy;
+    int at;
+    int n;
     boolean orientationKnown = false;
     public RawSpine(LinkedList<Vec2S> points) {
-       x = new short[points.size()];
-      y = new short[points.size()];
+      n = points.size();
+      at = 0;
+      xy = new short[2*n];
       int i = 0;
-      for (Vec2S p : points) { x[i] = p.x; y[i] = p.y; i++; }
+      for (Vec2S p : points) { xy[i] = p.x; xy[n+i] = p.y; i++; }
+    }
+    public RawSpine(short[] xs, short[] ys, int n) {
+      this.n = n;
+      at = 0;
+      xy = new short[2*n];
+      System.arraycopy(xs, 0, xy, 0, n);
+      System.arraycopy(ys, 0, xy, n, n);
     }
-    public int size() { return x.length; }
+    public RawSpine(short[] packed, int at, int n) {  // Uses packed without copying
+      xy = packed;
+      this.at = at;
+      this.n = n;
+    }
+    public int size() { return n; }
     public boolean quantized() { return true; }
     public boolean oriented() { return orientationKnown; }
     public void headfirstKnown(boolean b) {}
     public void flip() {
       short temp;
-      int n = x.length/2;
-      for (int i=0,j=x.length-1 ; i<n ; i++,j--) {
-        temp = x[i];
-        x[i] = x[j];
-        x[j] = temp;
-        temp = y[i];
-        y[i] = y[j];
-        y[j] = temp;
-      }
-    }
-    public Vec2S get(int i) { return new Vec2S(x[i],y[i]); }
-    public Vec2S get(int i, Vec2S buf) { return buf.eq(x[i],y[i]); }
-    public Vec2F get(int i, Vec2F buf) { return buf.eq(x[i],y[i]); }
+      for (int i=at,j=at+n-1 ; i<j ; i++,j--) {
+        temp = xy[i];
+        xy[i] = xy[j];
+        xy[j] = temp;
+        temp = xy[n+i];
+        xy[n+i] = xy[n+j];
+        xy[n+j] = temp;
+      }
+    }
+    public Vec2S get(int i) { return new Vec2S(xy[at+i],xy[at+n+i]); }
+    public Vec2S get(int i, Vec2S buf) { return buf.eq(xy[at+i],xy[at+n+i]); }
+    public Vec2F get(int i, Vec2F buf) { return buf.eq(xy[at+i],xy[at+n+i]); }
     public float width(int i) { return Float.NaN; }
   }
   
   
   // Converts bitwise packed outlines into vectors
+  // Outlines stay packed; walk them with a Cursor or unpackInto, or use get for random access via the run's OutlineCache
   public class RawOutline implements Outline
   {
     Vec2I loc;
@@ -171,6 +202,8 @@ public class Dance
     byte[] bits;
     Vec2S[] points;
     boolean pre_verified;
+    volatile short[] unpacked;  // Only OutlineCache sets this
+    boolean used;  // Looked at since OutlineCache last checked; a lost update only costs an early eviction
     public RawOutline(int x,int y,int l,String o) {
       loc = new Vec2I(x,y);
       length = l;
@@ -178,6 +211,12 @@ public class Dance
       for (int i=0 ; i<bits.length ; i++) bits[i] = (byte)(o.charAt(i) - '0');
       points = null;
     }
+    public RawOutline(int x,int y,int l,byte[] b) {  // b is already offset from '0', and now belongs to us
+      loc = new Vec2I(x,y);
+      length = l;
+      bits = b;
+      points = null;
+    }
     public RawOutline(Vec2S[] o) {
       loc = null;
       length = o.length;
@@ -186,9 +225,56 @@ public class Dance
     }
     public int size() { return length; }
     public boolean quantized() { return true; }
-    public void compact() { if (bits!=null && points!=null) points=null; }
-    public Vec2S get(int i, Vec2S buf) { return buf.eq(unpack(true)[i]); }
-    public Vec2F get(int i, Vec2F buf) { return buf.eq(unpack(true)[i]); }
+    OutlineCache cache() { return (chore==null) ? OutlineCache.LOOSE : chore.outline_cache; }
+    public void compact() {
+      if (bits!=null && points!=null) points=null;
+      if (unpacked!=null) cache().release(this);
+    }
+    public Vec2S get(int i, Vec2S buf) {
+      if (points!=null) return buf.eq(points[i]);
+      short[] xy = unpacked;
+      if (xy==null) xy = cache().fetch(this);
+      else if (!used) used = true;
+      return buf.eq(xy[i], xy[length+i]);
+    }
+    public Vec2F get(int i, Vec2F buf) {
+      if (points!=null) return buf.eq(points[i]);
+      short[] xy = unpacked;
+      if (xy==null) xy = cache().fetch(this);
+      else if (!used) used = true;
+      return buf.eq(xy[i], xy[length+i]);
+    }
+    
+    // Walks the outline a pixel at a time without unpacking it: while (c.next()) { use c.x and c.y }
+    public class Cursor {
+      public short x, y;
+      int n = 0;
+      public boolean next() {
+        if (n>=length) return false;
+        if (points!=null) { x = points[n].x; y = points[n].y; }
+        else if (n==0) { x = (short)loc.x; y = (short)loc.y; }
+        else if ((n-1)/3 >= bits.length) { x = 0; y = 0; }  // Too few bits for length; unpackBits leaves these zero too
+        else {
+          int k = n-1;
+          switch ((bits[k/3] >> (4 - 2*(k%3))) & 0x3) {
+            case 0: x--; break;
+            case 1: x++; break;
+            case 2: y--; break;
+            case 3: y++; break;
+          }
+        }
+        n++;
+        return true;
+      }
+    }
+    public Cursor cursor() { return new Cursor(); }
+    
+    // Puts x into xy[0 until length] and y into xy[length until 2*length]; returns length
+    public int unpackInto(short[] xy) {
+      Cursor c = new Cursor();
+      for (int i=0 ; c.next() ; i++) { xy[i] = c.x; xy[length+i] = c.y; }
+      return length;
+    }
 
     void bip(int a,int n,Vec2S[] pts) {
       switch (a) {
@@ -219,12 +305,8 @@ public class Dance
       }
       return pts;
     }
-    public Vec2S[] unpack(boolean store) {
-      if (bits!=null && (points==null || !store)) {
-        Vec2S[] pts = unpackBits(null);
-        if (store) points=pts;
-        return pts;
-      }
+    public Vec2S[] unpack(boolean store) {  // Never stores: a Vec2S per pixel is far bigger than the packed outline
+      if (bits!=null && points==null) return unpackBits(null);
       else return points;
     }
     public Vec2S[] unpack(Vec2S[] storage) {
@@ -276,10 +358,10 @@ public class Dance
     }
     public Vec2F[] unpack(Vec2F[] storage) {
       if (storage==null || storage.length < length) storage = new Vec2F[length];
-      Vec2S[] pts = unpack(true);
-      for (int i=0 ; i<pts.length ; i++) {
-        if (storage[i]==null) storage[i] = pts[i].toF();
-        else storage[i].eq(pts[i]);
+      Cursor c = new Cursor();
+      for (int i=0 ; c.next() ; i++) {
+        if (storage[i]==null) storage[i] = new Vec2F(c.x, c.y);
+        else storage[i].eq(c.x, c.y);
       }
       return storage;
     }
@@ -305,7 +387,14 @@ public class Dance
     Outline outline;
     String[] tokens;
     
-    public DanceLine() { index=area=-1; centroid=null; bearing=null; extent=null; spine=null; outline=null; tokens=null; }
+    // When read from a LineScanner we fill these instead of the vectors and tokens
+    boolean scanned;
+    float cx,cy,bx,by,ex,ey;
+    short[] spine_x;
+    short[] spine_y;
+    int spine_n;
+    
+    public DanceLine() { index=area=-1; centroid=null; bearing=null; extent=null; spine=null; outline=null; tokens=null; scanned=false; }
     
     public boolean isSame(String[] tok , Choreography.FrameMap[] valid)
     {
@@ -410,6 +499,153 @@ public class Dance
       
       return true;  // Line was in-range, all is okay
     }
+    
+    // Same as isSame(String[]...), for a line that has at least 10 tokens
+    public boolean isSame(LineScanner sc , Choreography.FrameMap[] valid)
+    {
+      if (!scanned) return false;
+      int i;
+      try { i = sc.nextInt() - 1; }
+      catch (NumberFormatException nfe) { return false; }
+      finally { sc.rewind(); }
+      if (i<0) i = 0;
+      else if (i>=valid.length) i = valid.length-1;
+      return index==valid[i].actual;
+    }
+    
+    // Same as parseLine(String[]...), but reads straight into primitives; this line object is reused
+    public boolean parseLine(LineScanner sc , Choreography.FrameMap[] valid) throws NumberFormatException
+    {
+      scanned = true;
+      spine_n = 0;
+      outline = null;
+      if (!sc.hasTokens(10)) return false;
+      int i;
+      
+      // Read index number
+      i = sc.nextInt() - 1;
+      if (i<0) i = 0;
+      if (i>=valid.length) i = valid.length-1;
+      index = valid[i].actual;
+      
+      // Time is only needed if we're going to quit early
+      if (!valid[i].okay) time = sc.nextFloat();
+      else sc.skipToken();
+      
+      cx = sc.nextFloat();
+      cy = sc.nextFloat();
+      
+      if ( !valid[i].okay ) return false;  // Don't parse any more if we're supposed to ignore it
+      
+      area = sc.nextInt();
+      bx = sc.nextFloat();
+      by = sc.nextFloat();
+      sc.skipToken();  // Width measured as variance
+      ex = sc.nextFloat();
+      ey = sc.nextFloat();
+      
+      // Is there a spine?
+      if (!sc.hasToken()) return true;
+      if (sc.tokenIs("%"))
+      {
+        int n = 0;
+        sc.skipToken();
+        while (sc.hasTokens(2))
+        {
+          if (sc.tokenStartsWith('%')) break;
+          int m = sc.mark();
+          sc.skipToken();
+          boolean early = sc.tokenStartsWith('%');
+          sc.reset(m);
+          if (early) { sc.skipToken(); break; }
+          if (spine_x==null || n>=spine_x.length) {
+            spine_x = Arrays.copyOf(spine_x==null ? new short[0] : spine_x, Math.max(16,2*n));
+            spine_y = Arrays.copyOf(spine_y==null ? new short[0] : spine_y, spine_x.length);
+          }
+          spine_x[n] = sc.nextShort();
+          spine_y[n] = sc.nextShort();
+          n++;
+        }
+        if (n>1) spine_n = n;
+      }
+      
+      // Is there an outline?
+      if (!sc.hasToken()) return true;
+      if (sc.tokenIs("%%") && sc.hasTokens(5))
+      {
+        int m = sc.mark();
+        try {
+          sc.skipToken();
+          int ox = sc.nextInt();
+          int oy = sc.nextInt();
+          int oL = sc.nextInt();
+          byte[] bits = new byte[sc.tokenLength()];
+          sc.nextTokenOffsets(bits,'0');
+          RawOutline raw = new RawOutline(ox,oy,oL,bits);
+          if (!raw.verify()) throw new NumberFormatException();
+          outline = raw;
+        }
+        catch (NumberFormatException nfe) {
+          // Old-style outline
+          sc.reset(m);
+          sc.skipToken();
+          LinkedList<Vec2S> edge = new LinkedList<Vec2S>();
+          while (sc.hasTokens(2)) {
+            short a = sc.nextShort();
+            short b = sc.nextShort();
+            edge.add( new Vec2S(a,b) );
+          }
+          if (edge.size()>1) outline = new RawOutline( edge.toArray(new Vec2S[edge.size()]) );
+        }
+      }
+      
+      return true;
+    }
+  }
+  
+  // Columns of data lines as they are read in, before we know how many there will be
+  class LineStore
+  {
+    int n = 0;
+    int[] index = new int[256];
+    int[] area = new int[256];
+    float[] cx = new float[256];
+    float[] cy = new float[256];
+    float[] bx = new float[256];
+    float[] by = new float[256];
+    float[] ex = new float[256];
+    float[] ey = new float[256];
+    int[] spine_at = new int[256];  // Offset into spine_xy, or -1 if there is no spine
+    int[] spine_n = new int[256];
+    short[] spine_xy = new short[1024];
+    int spine_used = 0;
+    Outline[] outline = new Outline[256];
+    
+    void add(DanceLine dl) {
+      if (n==index.length) {
+        int m = 2*n;
+        index = Arrays.copyOf(index,m); area = Arrays.copyOf(area,m);
+        cx = Arrays.copyOf(cx,m); cy = Arrays.copyOf(cy,m);
+        bx = Arrays.copyOf(bx,m); by = Arrays.copyOf(by,m);
+        ex = Arrays.copyOf(ex,m); ey = Arrays.copyOf(ey,m);
+        spine_at = Arrays.copyOf(spine_at,m); spine_n = Arrays.copyOf(spine_n,m); outline = Arrays.copyOf(outline,m);
+      }
+      index[n] = dl.index; area[n] = dl.area;
+      cx[n] = dl.cx; cy[n] = dl.cy;
+      bx[n] = dl.bx; by[n] = dl.by;
+      ex[n] = dl.ex; ey[n] = dl.ey;
+      if (dl.spine_n > 0) {
+        int k = dl.spine_n;
+        if (spine_used + 2*k > spine_xy.length) spine_xy = Arrays.copyOf(spine_xy, Math.max(2*spine_xy.length, spine_used + 2*k));
+        System.arraycopy(dl.spine_x, 0, spine_xy, spine_used, k);
+        System.arraycopy(dl.spine_y, 0, spine_xy, spine_used+k, k);
+        spine_at[n] = spine_used; spine_n[n] = k;
+        spine_used += 2*k;
+      }
+      else { spine_at[n] = -1; spine_n[n] = 0; }
+      outline[n] = dl.outline;
+      n++;
+    }
   }
   
   // Handle regions of interest inside or outside of which we reject data
@@ -445,17 +681,18 @@ public class Dance
       else return null;
     }
     public abstract boolean includes(Vec2F v);
+    public boolean includes(float x,float y) { return includes(new Vec2F(x,y)); }  // Ours test the numbers without making a vector
   }
   public static class CircularField extends ReceptiveField
   {
     Vec2F center;
     float radius;
     public CircularField(Vec2F c,float r) { center = new Vec2F(c); radius = r; }
-    public boolean includes(Vec2F v)
+    public boolean includes(Vec2F v) { return includes(v.x,v.y); }
+    @Override public boolean includes(float x,float y)
     {
-      Vec2F u = new Vec2F(v);
-      u.eqMinus(center);
-      return (u.length2() <= radius*radius);
+      float dx = x - center.x, dy = y - center.y;
+      return (dx*dx + dy*dy <= radius*radius);
     }
   }
   public static class RectangularField extends ReceptiveField
@@ -463,9 +700,10 @@ public class Dance
     Vec2F lowerleft;
     Vec2F upperright;
     public RectangularField(Vec2F ll,Vec2F ur) { lowerleft = new Vec2F(ll); upperright = new Vec2F(ur); }
-    public boolean includes(Vec2F v)
+    public boolean includes(Vec2F v) { return includes(v.x,v.y); }
+    @Override public boolean includes(float x,float y)
     {
-      return (lowerleft.x <= v.x && v.x <= upperright.x && lowerleft.y <= v.y && v.y <= upperright.y);
+      return (lowerleft.x <= x && x <= upperright.x && lowerleft.y <= y && y <= upperright.y);
     }
   }
   
@@ -608,12 +846,12 @@ public class Dance
       if (kind==Styled.Dwell) return fit.spot.sqError(v.x,v.y);
       return Double.NaN;
     }
-    public void addRightSimply( int i ) { i1 = i; fit.addC(centroid[i].x,centroid[i].y); }
-    public void addLeftSimply( int i ) { i0 = i; fit.addC(centroid[i].x,centroid[i].y); }
-    public int addRight( int i ) { addRightSimply(i); i++; while (i<area.length && centroid[i]==null) i++; return i; }
-    public int addLeft( int i ) { addLeftSimply(i); i--; while (i>=0 && centroid[i]==null) i--; return i ; }
-    public void subRight() { fit.subC(centroid[i1].x,centroid[i1].y); i1--; while (i1>=0 && centroid[i1]==null) i1--; }
-    public void subLeft() { fit.subC(centroid[i0].x,centroid[i0].y); i0++; while (i0<area.length && centroid[i0]==null) i0++; }
+    public void addRightSimply( int i ) { i1 = i; fit.addC(cx[i],cy[i]); }
+    public void addLeftSimply( int i ) { i0 = i; fit.addC(cx[i],cy[i]); }
+    public int addRight( int i ) { addRightSimply(i); i++; while (i<area.length && !present(i)) i++; return i; }
+    public int addLeft( int i ) { addLeftSimply(i); i--; while (i>=0 && !present(i)) i--; return i ; }
+    public void subRight() { fit.subC(cx[i1],cy[i1]); i1--; while (i1>=0 && !present(i1)) i1--; }
+    public void subLeft() { fit.subC(cx[i0],cy[i0]); i0++; while (i0<area.length && !present(i0)) i0++; }
     public int shiftRight( int i ) { subLeft(); return addRight(i); }
     public void deltaVector(Vec2F delta,Vec2F u,Vec2F v) {
       if (kind==Styled.Straight) {
@@ -644,15 +882,15 @@ public class Dance
       else return endpoints.length-1;
     }
     public void initialVector(Vec2F direction) {
-      if (endpoints==null || endpoints.length==0) deltaVector(direction,centroid[i0],centroid[i1]);
-      else deltaVector(direction,centroid[endpoints[0]],centroid[endpoints[1]]);
+      if (endpoints==null || endpoints.length==0) deltaVector(direction,centroid(i0),centroid(i1));
+      else deltaVector(direction,centroid(endpoints[0]),centroid(endpoints[1]));
     }
     public void finalVector(Vec2F direction) {
-      if (endpoints==null || endpoints.length<2) deltaVector(direction,centroid[i0],centroid[i1]);
-      else deltaVector(direction,centroid[endpoints[endpoints.length-2]],centroid[endpoints[endpoints.length-1]]);
+      if (endpoints==null || endpoints.length<2) deltaVector(direction,centroid(i0),centroid(i1));
+      else deltaVector(direction,centroid(endpoints[endpoints.length-2]),centroid(endpoints[endpoints.length-1]));
     }
     public void pickVector(Vec2F direction,int n) {
-      deltaVector(direction,centroid[endpoints[n]],centroid[endpoints[n+1]]);
+      deltaVector(direction,centroid(endpoints[n]),centroid(endpoints[n+1]));
     }
     public float dotWith(Style s) {
       Vec2F mydir = new Vec2F();
@@ -717,8 +955,8 @@ public class Dance
         if (n<0 || n>=endpoints.length-1) return 0.0;
         else { j0=endpoints[n]; j1=endpoints[n+1]; }
       }
-      if (kind!=Styled.Arc) return centroid[j1].dist(centroid[j0]);
-      else return Math.abs(fit.circ.params.R * fit.circ.arcDeltaCoord(centroid[j0].x,centroid[j0].y,centroid[j1].x,centroid[j1].y));
+      if (kind!=Styled.Arc) return centroidDist(j1,j0);
+      else return Math.abs(fit.circ.params.R * fit.circ.arcDeltaCoord(cx[j0],cy[j0],cx[j1],cy[j1]));
     }
     public float distanceTraversed() {
       if (endpoints==null) return (float)distanceTraversed(0);
@@ -743,9 +981,7 @@ public class Dance
     endpoint_angle_fraction = 0.1f;
     
     area = null;
-    centroid = null;
-    bearing = null;
-    extent = null;
+    cx = cy = bx = by = ex = ey = null;
     spine = null;
     circles = null;
     origins = new Vector<Integer>(2,2);
@@ -836,9 +1072,7 @@ public class Dance
     if (last_frame==-1 || first_frame==-1) return input_line;  // Empty file; be sure to catch this later
     
     area = new int[ 1+last_frame-first_frame ];
-    centroid = new Vec2F[ 1+last_frame-first_frame ];
-    bearing = new Vec2F[ 1+last_frame-first_frame ];
-    extent = new Vec2F[ 1+last_frame-first_frame ];
+    allocateColumns( 1+last_frame-first_frame );
     if (any_skeletons) spine = new Spine[1+last_frame-first_frame];
     if (any_outlines) outline = new Outline[1+last_frame-first_frame];
     
@@ -853,9 +1087,9 @@ public class Dance
       }
       
       area[n] = dl.area;
-      centroid[n] = dl.centroid;
-      bearing[n] = dl.bearing;
-      extent[n] = dl.extent;
+      cx[n] = dl.centroid.x; cy[n] = dl.centroid.y;
+      bx[n] = dl.bearing.x; by[n] = dl.bearing.y;
+      ex[n] = dl.extent.x; ey[n] = dl.extent.y;
       if (any_skeletons) spine[n] = dl.spine;
       if (any_outlines) outline[n] = dl.outline;
       n++;
@@ -867,6 +1101,100 @@ public class Dance
     if (attend!=null || shun!=null) has_holes = true;
     return input_line;
   }
+  
+  // Reads the same data as above but straight from bytes, without building Strings for each line
+  public String readInputStream(LineScanner data_file,Choreography.FrameMap[] valid) throws DancerFileException
+  {
+    boolean any_skeletons = false;
+    boolean any_outlines = false;
+    int n_lines = 0;
+    DanceLine line = new DanceLine();
+    LineStore data = new LineStore();
+    String stop_line = null;
+    
+    boolean good_line;
+    float t_bad = -1.0f;
+    
+    while (true) // Read data_file; break to terminate in the middle when we run out
+    {
+      try { if (!data_file.nextLine()) break; }  // Done--end of file
+      catch (IOException ioe) { throw new DancerFileException("Unable to access file."); }
+      
+      n_lines++;
+      if (data_file.isEmpty()) continue;  // Ignore blank lines
+      if (data_file.charAt(0)=='#') continue;  // Comment character
+      if (data_file.startsWith("% ")) {
+        try {
+          int new_id = data_file.restAsInt(2);
+          if (new_id!=ID) { stop_line = data_file.lineString(); break; }  // Done--beginning of next entry in file
+        }
+        catch (NumberFormatException nfe) {}  // Wasn't really a new entry; just ignore it.
+      }
+      
+      if (!data_file.hasTokens(10))
+      {
+        throw new DancerFileException("Too few tokens on line " + n_lines + ":\n'" + data_file.lineString() + "'");
+      }
+      
+      if (line.isSame(data_file,valid)) continue;
+      
+      try
+      {
+        good_line = line.parseLine(data_file,valid);
+        if (ignored_start!=null) ignored_travel = Math.max( ignored_travel , (float)Math.sqrt( (ignored_start.x-line.cx)*(ignored_start.x-line.cx) + (ignored_start.y-line.cy)*(ignored_start.y-line.cy) ) );
+        else ignored_start = new Vec2F(line.cx,line.cy);
+        if (!good_line) {
+          if (t_bad>=0.0f) ignored_dt += line.time-t_bad;
+          t_bad = line.time;
+          continue;
+        }
+        t_bad = -1.0f;
+        data.add(line);
+      }
+      catch (NumberFormatException nfe)
+      {
+        throw new DancerFileException("Format error on line " + n_lines + ".");
+      }
+      
+      if (first_frame < 0) first_frame = line.index;
+      last_frame = line.index;
+      if (line.spine_n>0) any_skeletons = true;
+      if (line.outline!=null) any_outlines = true;
+    }
+    
+    if (last_frame==-1 || first_frame==-1) return stop_line;  // Empty file; be sure to catch this later
+    
+    area = new int[ 1+last_frame-first_frame ];
+    allocateColumns( 1+last_frame-first_frame );
+    short[] packed = (any_skeletons) ? Arrays.copyOf(data.spine_xy, data.spine_used) : null;  // All the spines live here
+    if (any_skeletons) spine = new Spine[1+last_frame-first_frame];
+    if (any_outlines) outline = new Outline[1+last_frame-first_frame];
+    
+    int n = 0;
+    has_holes = false;
+    for (int k=0 ; k<data.n ; k++)
+    {
+      if (n+first_frame != data.index[k])
+      {
+        n = data.index[k] - first_frame;
+        has_holes = true;
+      }
+      
+      area[n] = data.area[k];
+      cx[n] = data.cx[k]; cy[n] = data.cy[k];
+      bx[n] = data.bx[k]; by[n] = data.by[k];
+      ex[n] = data.ex[k]; ey[n] = data.ey[k];
+      if (any_skeletons && data.spine_at[k]>=0) spine[n] = new RawSpine(packed, data.spine_at[k], data.spine_n[k]);
+      if (any_outlines) outline[n] = data.outline[k];
+      n++;
+    }
+    
+    // Fix up skeletons so they match each other through time as well as possible
+    if (any_skeletons) alignAllSpines();
+    
+    if (attend!=null || shun!=null) has_holes = true;
+    return stop_line;
+  }
 
   public static void alignSpines(Spine template, Spine fix) {
     if (template.quantized() || fix.quantized()) {
@@ -894,7 +1222,136 @@ public class Dance
   }
   
   public boolean hasData() { return last_frame!=-1 && first_frame!=-1; }
-  
+
+  // Writes what loading and checkCriteria produced; readCache restores it.  Spines are already aligned.
+  public void writeCache(DataOutputStream out) throws IOException {
+    int n = area.length;
+    out.writeInt(first_frame);
+    out.writeInt(last_frame);
+    out.writeBoolean(has_holes);
+    out.writeBoolean(shadow_avoided);
+    out.writeFloat(ignored_dt);
+    out.writeBoolean(ignored_start!=null);
+    if (ignored_start!=null) { out.writeFloat(ignored_start.x); out.writeFloat(ignored_start.y); }
+    out.writeFloat(ignored_travel);
+    out.writeInt(n);
+    for (int a : area) out.writeInt(a);
+    ChoreCache.putFloats(out,cx); ChoreCache.putFloats(out,cy);
+    ChoreCache.putFloats(out,bx); ChoreCache.putFloats(out,by);
+    ChoreCache.putFloats(out,ex); ChoreCache.putFloats(out,ey);
+    Vec2S v = new Vec2S();
+    out.writeBoolean(spine!=null);
+    if (spine!=null) {
+      for (Spine s : spine) {
+        if (s!=null && !s.quantized()) throw new IOException("Can't cache unquantized spine of object " + ID);
+        out.writeInt( (s==null) ? -1 : s.size() );
+      }
+      for (Spine s : spine) if (s!=null) {
+        for (int i=0 ; i<s.size() ; i++) out.writeShort( s.get(i,v).x );
+        for (int i=0 ; i<s.size() ; i++) out.writeShort( s.get(i,v).y );
+      }
+    }
+    out.writeBoolean(outline!=null);
+    if (outline!=null) {
+      for (Outline o : outline) {
+        if (o==null) out.writeByte(0);
+        else if ((o instanceof RawOutline) && ((RawOutline)o).bits!=null) {
+          RawOutline ro = (RawOutline)o;
+          out.writeByte(1);
+          out.writeInt(ro.loc.x); out.writeInt(ro.loc.y); out.writeInt(ro.length);
+          out.writeInt(ro.bits.length);
+          out.write(ro.bits);
+        }
+        else {
+          if (!o.quantized()) throw new IOException("Can't cache unquantized outline of object " + ID);
+          out.writeByte(2);
+          out.writeInt(o.size());
+          for (int i=0 ; i<o.size() ; i++) out.writeShort( o.get(i,v).x );
+          for (int i=0 ; i<o.size() ; i++) out.writeShort( o.get(i,v).y );
+        }
+      }
+    }
+    writeStatistic(out,body_area);
+    writeStatistic(out,body_length);
+    writeStatistic(out,body_width);
+    writeStatistic(out,body_aspect);
+    writeStatistic(out,noise_estimate);
+  }
+  public void readCache(java.nio.ByteBuffer bb) throws IOException {
+    first_frame = bb.getInt();
+    last_frame = bb.getInt();
+    has_holes = bb.get()!=0;
+    shadow_avoided = bb.get()!=0;
+    ignored_dt = bb.getFloat();
+    if (bb.get()!=0) ignored_start = new Vec2F(bb.getFloat(), bb.getFloat());
+    ignored_travel = bb.getFloat();
+    int n = bb.getInt();
+    if (n<0 || n>bb.remaining()) throw new IOException("Damaged cache record for object " + ID);
+    area = ChoreCache.getInts(bb,n);
+    cx = ChoreCache.getFloats(bb,n); cy = ChoreCache.getFloats(bb,n);
+    bx = ChoreCache.getFloats(bb,n); by = ChoreCache.getFloats(bb,n);
+    ex = ChoreCache.getFloats(bb,n); ey = ChoreCache.getFloats(bb,n);
+    if (bb.get()!=0) {
+      spine = new Spine[n];
+      int[] sizes = ChoreCache.getInts(bb,n);
+      int total = 0;
+      for (int k : sizes) if (k>0) total += 2*k;
+      short[] packed = ChoreCache.getShorts(bb,total);
+      int at = 0;
+      for (int i=0 ; i<n ; i++) {
+        if (sizes[i]<0) continue;
+        spine[i] = new RawSpine(packed, at, sizes[i]);
+        at += 2*sizes[i];
+      }
+    }
+    if (bb.get()!=0) {
+      outline = new Outline[n];
+      for (int i=0 ; i<n ; i++) {
+        switch (bb.get()) {
+          case 0: break;
+          case 1:
+            int x = bb.getInt(), y = bb.getInt(), l = bb.getInt();
+            byte[] bits = new byte[bb.getInt()];
+            bb.get(bits);
+            outline[i] = new RawOutline(x,y,l,bits);
+            break;
+          case 2:
+            int m = bb.getInt();
+            short[] xy = ChoreCache.getShorts(bb,2*m);
+            Vec2S[] pts = new Vec2S[m];
+            for (int j=0 ; j<m ; j++) pts[j] = new Vec2S(xy[j],xy[m+j]);
+            outline[i] = new RawOutline(pts);
+            break;
+          default: throw new IOException("Damaged cache record for object " + ID);
+        }
+      }
+    }
+    body_area = readStatistic(bb);
+    body_length = readStatistic(bb);
+    body_width = readStatistic(bb);
+    body_aspect = readStatistic(bb);
+    noise_estimate = readStatistic(bb);
+  }
+  static void writeStatistic(DataOutputStream out,Statistic s) throws IOException {
+    out.writeBoolean(s!=null);
+    if (s==null) return;
+    out.writeDouble(s.maximum); out.writeDouble(s.minimum);
+    out.writeDouble(s.average); out.writeDouble(s.deviation);
+    out.writeDouble(s.median); out.writeDouble(s.first_quartile); out.writeDouble(s.last_quartile);
+    out.writeDouble(s.jitter);
+    out.writeInt(s.n);
+  }
+  static Statistic readStatistic(java.nio.ByteBuffer bb) {
+    if (bb.get()==0) return null;
+    Statistic s = new Statistic();
+    s.maximum = bb.getDouble(); s.minimum = bb.getDouble();
+    s.average = bb.getDouble(); s.deviation = bb.getDouble();
+    s.median = bb.getDouble(); s.first_quartile = bb.getDouble(); s.last_quartile = bb.getDouble();
+    s.jitter = bb.getDouble();
+    s.n = bb.getInt();
+    return s;
+  }
+
   public void trimData(int how_many,boolean start_at_front)
   {
     if (how_many <= 0) return;
@@ -909,16 +1366,13 @@ public class Dance
     area = new int[new_length];
     for (int i=0 ; i<area.length ; i++) area[i] = a[i+delta];
     
-    Vec2F[] v;
-    v = centroid;
-    centroid = new Vec2F[new_length];
-    for (int i=0 ; i<centroid.length ; i++) centroid[i] = v[i+delta];
-    v = bearing;
-    bearing = new Vec2F[new_length];
-    for (int i=0 ; i<bearing.length ; i++) bearing[i] = v[i+delta];
-    v = extent;
-    extent = new Vec2F[new_length];
-    for (int i=0 ; i<extent.length ; i++) extent[i] = v[i+delta];
+    cx = Arrays.copyOfRange(cx, delta, delta+new_length);
+    cy = Arrays.copyOfRange(cy, delta, delta+new_length);
+    bx = Arrays.copyOfRange(bx, delta, delta+new_length);
+    by = Arrays.copyOfRange(by, delta, delta+new_length);
+    ex = Arrays.copyOfRange(ex, delta, delta+new_length);
+    ey = Arrays.copyOfRange(ey, delta, delta+new_length);
+    if (centroid!=null) vectorView();
     
     if (spine != null)
     {
@@ -935,6 +1389,7 @@ public class Dance
     
     if (start_at_front) first_frame += a.length-area.length;
     else last_frame -= a.length-area.length;
+    forgetQuantities();
   }
   
   public void findOriginsFates(HashMap<Integer,LinkedList<Ancestry>> geneology)
@@ -963,6 +1418,66 @@ public class Dance
     for (ReceptiveField rf : shun) { if (rf.includes(v)) return false; }
     return true;
   }
+  public boolean loc_okay(int i)
+  {
+    if (!has_holes) return true;
+    for (ReceptiveField rf : attend) { if (!rf.includes(cx[i],cy[i])) return false; }
+    for (ReceptiveField rf : shun) { if (rf.includes(cx[i],cy[i])) return false; }
+    return true;
+  }
+  
+  void allocateColumns(int n) {
+    cx = new float[n]; cy = new float[n];
+    bx = new float[n]; by = new float[n];
+    ex = new float[n]; ey = new float[n];
+    Arrays.fill(cx, Float.NaN); Arrays.fill(cy, Float.NaN);
+    Arrays.fill(bx, Float.NaN); Arrays.fill(by, Float.NaN);
+    Arrays.fill(ex, Float.NaN); Arrays.fill(ey, Float.NaN);
+  }
+  public int frames() { return (cx==null) ? 0 : cx.length; }
+  public boolean present(int i) { return !Float.isNaN(cx[i]); }
+
+  /* Fills in centroid[], bearing[] and extent[] the way they used to be
+   * loaded, for plugins written before the columns.  Choreography asks for
+   * this when such a plugin is loaded; after that, trimData keeps them in step,
+   * and vectorsBack carries whatever the plugin changed into the columns.
+   */
+  public void vectorView() {
+    if (cx==null) { centroid = bearing = extent = null; viewed = null; return; }
+    if (viewed==cx && centroid!=null) return;
+    centroid = new Vec2F[cx.length];
+    bearing = new Vec2F[cx.length];
+    extent = new Vec2F[cx.length];
+    for (int i=0 ; i<cx.length ; i++) {
+      centroid[i] = centroid(i);
+      bearing[i] = bearing(i);
+      extent[i] = extent(i);
+    }
+    viewed = cx;
+  }
+
+  // Copies centroid[], bearing[] and extent[] back into the columns after a plugin has had them; a null centroid means a missing frame
+  public void vectorsBack() {
+    if (centroid==null || bearing==null || extent==null) return;
+    if (cx==null || cx.length!=centroid.length) allocateColumns(centroid.length);
+    for (int i=0 ; i<cx.length ; i++) {
+      Vec2F c = centroid[i];
+      Vec2F b = (i<bearing.length) ? bearing[i] : null;
+      Vec2F e = (i<extent.length) ? extent[i] : null;
+      cx[i] = (c==null) ? Float.NaN : c.x; cy[i] = (c==null) ? Float.NaN : c.y;
+      bx[i] = (c==null || b==null) ? Float.NaN : b.x; by[i] = (c==null || b==null) ? Float.NaN : b.y;
+      ex[i] = (c==null || e==null) ? Float.NaN : e.x; ey[i] = (c==null || e==null) ? Float.NaN : e.y;
+    }
+    viewed = cx;
+  }
+
+  // Per-frame vectors, built from the columns; null where the frame is missing
+  public Vec2F centroid(int i) { return Float.isNaN(cx[i]) ? null : new Vec2F(cx[i],cy[i]); }
+  public Vec2F bearing(int i) { return Float.isNaN(cx[i]) ? null : new Vec2F(bx[i],by[i]); }
+  public Vec2F extent(int i) { return Float.isNaN(cx[i]) ? null : new Vec2F(ex[i],ey[i]); }
+  public Vec2F centroid(int i, Vec2F buf) { return buf.eq(cx[i],cy[i]); }  // Fills buf; frame must be present
+  public float centroidDist2(int i, int j) { float dx = cx[i]-cx[j], dy = cy[i]-cy[j]; return dx*dx + dy*dy; }
+  public float centroidDist(int i, int j) { return (float)Math.sqrt( centroidDist2(i,j) ); }
   
   public void loadMinMax() {
     quantity_min = Float.NaN;
@@ -1004,13 +1519,13 @@ public class Dance
     
     float better;
     for (int i=1 ; i<area.length-1 ; i++) {
-      if (centroid[i+1]==null) { i+=2; continue; }
-      else if (centroid[i]==null) { i++; continue; }
-      else if (centroid[i-1]==null) { continue; }
-      v.eq( centroid[i-1] );
-      v.eqPlus( centroid[i+1] );
+      if (!present(i+1)) { i+=2; continue; }
+      else if (!present(i)) { i++; continue; }
+      else if (!present(i-1)) { continue; }
+      v.eq( centroid(i-1) );
+      v.eqPlus( centroid(i+1) );
       v.eqTimes( 0.5f );
-      quantity[i] = v.dist(centroid[i]);
+      quantity[i] = v.dist(centroid(i));
     }
     
     float[] qtemp = Arrays.copyOf(quantity,quantity.length);
@@ -1052,6 +1567,46 @@ public class Dance
     }
   }
   
+  // Minimum and maximum of a[lo..hi] (ignoring NaNs) as lo and hi move forwards, using a monotonic queue for each
+  static final class SlidingRange {
+    final float[] a;
+    final int[] hi_q;
+    final int[] lo_q;
+    int hi_head = 0, hi_tail = 0, lo_head = 0, lo_tail = 0;
+    int next = 0;
+    int from = 0;
+    SlidingRange(float[] a) { this.a = a; hi_q = new int[a.length]; lo_q = new int[a.length]; }
+    // Returns false if the window moved backwards, in which case min and max are not valid
+    boolean span(int lo,int hi) {
+      if (lo < from || hi < next-1) return false;
+      from = lo;
+      for ( ; next<=hi ; next++) {
+        float f = a[next];
+        if (Float.isNaN(f)) continue;
+        while (hi_tail > hi_head && a[hi_q[hi_tail-1]] <= f) hi_tail--;
+        hi_q[hi_tail++] = next;
+        while (lo_tail > lo_head && a[lo_q[lo_tail-1]] >= f) lo_tail--;
+        lo_q[lo_tail++] = next;
+      }
+      while (hi_head < hi_tail && hi_q[hi_head] < lo) hi_head++;
+      while (lo_head < lo_tail && lo_q[lo_head] < lo) lo_head++;
+      return true;
+    }
+    float max() { return (hi_head < hi_tail) ? a[hi_q[hi_head]] : Float.NaN; }
+    float min() { return (lo_head < lo_tail) ? a[lo_q[lo_head]] : Float.NaN; }
+  }
+  
+  // Same as seek(t,time_array) given m, the first index from first_frame whose time is not below t
+  double seekFrom(float t,float[] time_array,int m) {
+    if (m<=last_frame && Float.compare(time_array[m],t)==0) {
+      if (m<last_frame && Float.compare(time_array[m+1],t)==0) return seek(t,time_array);  // Which duplicate seek finds is up to binarySearch
+      if (m>=first_frame && m<last_frame) return m-first_frame;
+      else return Double.NaN;
+    }
+    if (m<=first_frame || m>=last_frame) return Double.NaN;
+    else return ((double)(m-1-first_frame)) + (t-time_array[m-1])/(time_array[m]-time_array[m-1]);
+  }
+  
   // Same thing except near a given index with time specified as an offset
   public double seekNearT(float dt,float[] time_array,int i) {
     int j = i+first_frame;
@@ -1083,7 +1638,7 @@ public class Dance
     double i1 = (range.y+tol > t[last_frame]) ? 1.0+last_frame-first_frame : seek((float)range.y,t);
     Vec2I v = new Vec2I( (int)Math.round(i0) , (int)Math.round(i1) );
     if (v.x<0) v.x=0;
-    if (v.y>=centroid.length) v.y = centroid.length-1;
+    if (v.y>=cx.length) v.y = cx.length-1;
     if (v.y<v.x) v.y=v.x;
     return v;
   }
@@ -1141,19 +1696,17 @@ public class Dance
   
   public float maximumExcursion()
   {
-    Vec2F v0;
     float max_d2 = 0.0f;
     float d2;
     
-    v0 = null;
     int i = 0;
-    for ( ; i<centroid.length && centroid[i]==null ; i++) {}
-    if (i==centroid.length) return Float.NaN;
+    for ( ; i<cx.length && !present(i) ; i++) {}
+    if (i==cx.length) return Float.NaN;
     
-    v0 = centroid[i];
-    for (i++ ; i<centroid.length ; i++) {
-      if (centroid[i]==null) continue;
-      d2 = v0.dist2(centroid[i]);
+    int i0 = i;
+    for (i++ ; i<cx.length ; i++) {
+      if (!present(i)) continue;
+      d2 = centroidDist2(i0,i);
       if (d2>max_d2) max_d2 = d2;
     }
     return (float)Math.sqrt(max_d2);
@@ -1167,14 +1720,14 @@ public class Dance
     
     if (first_index < 0) first_index = 0;
     
-    while (first_index < centroid.length && centroid[first_index]==null) first_index++;
+    while (first_index < cx.length && !present(first_index)) first_index++;
     
-    for (int i=first_index ; i<centroid.length ; i++)
+    for (int i=first_index ; i<cx.length ; i++)
     {
-      if (centroid[i]==null) continue;
-      if (centroid[i].dist2(centroid[first_index]) > dist_squared) return i;
+      if (!present(i)) continue;
+      if (centroidDist2(i,first_index) > dist_squared) return i;
     }
-    return centroid.length;
+    return cx.length;
   }
   
   // Assuming Gaussian white noise and an underlying time series with no impulses, estimate the noise
@@ -1231,27 +1784,27 @@ public class Dance
     {
       int i,j;
       float f;
-      for (i=j=0;i<extent.length;i++) if (extent[i]!=null && loc_okay(centroid[i])) quantity[j++] = extent[i].x;
+      for (i=j=0;i<ex.length;i++) if (present(i) && loc_okay(i)) quantity[j++] = ex[i];
       body_length = new Statistic( quantity , 0 , j );
-      float distance_to_trim = (float)body_length.average - ((centroid.length>0 && ignored_start!=null) ? centroid[0].dist(ignored_start) : 0.0f);
+      float distance_to_trim = (float)body_length.average - ((cx.length>0 && ignored_start!=null) ? centroid(0).dist(ignored_start) : 0.0f);
       if (distance_to_trim <= 0.0f) shadow_avoided = true;
       if (avoid_shadow && !shadow_avoided)
       {
         shadow_avoided = true;
         trimData( findFirstBeyond(0,distance_to_trim) , true );
-        if (centroid==null || centroid.length==0) return false;
+        if (cx==null || cx.length==0) return false;
         calcBasicStatistics(false);
         return true;
       }
-      for (i=j=0;i<extent.length;i++) if (extent[i]!=null && loc_okay(centroid[i])) quantity[j++] = extent[i].y;
+      for (i=j=0;i<ex.length;i++) if (present(i) && loc_okay(i)) quantity[j++] = ey[i];
       body_width = new Statistic( quantity , 0 , j );
-      for (i=j=0;i<area.length;i++) if (!Double.isNaN(area[i]) && centroid[i]!=null && loc_okay(centroid[i])) quantity[j++] = area[i];
+      for (i=j=0;i<area.length;i++) if (!Double.isNaN(area[i]) && present(i) && loc_okay(i)) quantity[j++] = area[i];
       body_area = new Statistic( quantity , 0 , j );
-      for (i=j=0;i<extent.length;i++)
+      for (i=j=0;i<ex.length;i++)
       {
-        if (extent[i]!=null && loc_okay(centroid[i]))
+        if (present(i) && loc_okay(i))
         {
-          quantity[j++] = (extent[i].x*extent[i].x < 1e-12) ? 0.0f : extent[i].y / extent[i].x;
+          quantity[j++] = (ex[i]*ex[i] < 1e-12) ? 0.0f : ey[i] / ex[i];
         }
       }
       body_aspect = new Statistic( quantity , 0 , j );
@@ -1259,23 +1812,23 @@ public class Dance
     else
     {
       int j;
-      j=0; for (Vec2F v : extent) quantity[j++] = v.x;
+      j=0; for (float x : ex) quantity[j++] = x;
       body_length = new Statistic( quantity );
-      float distance_to_trim = (float)body_length.average - ((centroid.length>0 && ignored_start!=null) ? centroid[0].dist(ignored_start) : 0.0f);
+      float distance_to_trim = (float)body_length.average - ((cx.length>0 && ignored_start!=null) ? centroid(0).dist(ignored_start) : 0.0f);
       if (distance_to_trim <= 0.0f) shadow_avoided = true;
       if (avoid_shadow && !shadow_avoided)
       {
         shadow_avoided = true;
         trimData( findFirstBeyond(0,distance_to_trim) , true );
-        if (centroid==null || centroid.length==0) return false;
+        if (cx==null || cx.length==0) return false;
         calcBasicStatistics(false);
         return true;
       }
-      j=0; for (Vec2F v : extent) quantity[j++] = v.y;
+      j=0; for (float y : ey) quantity[j++] = y;
       body_width = new Statistic( quantity );
       j=0; for (float a : area) quantity[j++] = a;
       body_area = new Statistic( quantity );
-      j=0; for (Vec2F v : extent) quantity[j++] = (v.x*v.x < 1e-12) ? 0.0f : v.y/v.x;
+      for (j=0 ; j<ex.length ; j++) quantity[j] = (ex[j]*ex[j] < 1e-12) ? 0.0f : ey[j]/ex[j];
       body_aspect = new Statistic( quantity );
     }
     calcPositionNoise();
@@ -1292,14 +1845,15 @@ public class Dance
     int i,j;
     Vec2F u = new Vec2F();
     Vec2F v = new Vec2F();
+    Vec2F w = new Vec2F();
     
     // Calculate the approximate position noise based on the magnitude of second derivative vectors
-    for (j=0 , i=2 ; i<centroid.length ; i++)
+    for (j=0 , i=2 ; i<cx.length ; i++)
     {
-      if (centroid[i]==null || centroid[i-1]==null || centroid[i-2]==null) continue;
-      u.eq( centroid[i] );
-      u.eqPlus( centroid[i-2] );
-      v.eq( centroid[i-1] );
+      if (!present(i) || !present(i-1) || !present(i-2)) continue;
+      centroid(i,u);
+      u.eqPlus( centroid(i-2,w) );
+      centroid(i-1,v);
       v.eqTimes(2.0f);
       u.eqMinus(v);
       quantity[j++] = u.length() * curvature_noise_factor / (float)Math.sqrt(2.0);
@@ -1311,8 +1865,8 @@ public class Dance
   protected void findNonNullSegment(Vec2I seg) {
     if (seg.y >= area.length) seg.y = area.length-1;
     if (seg.x < 0) seg.x = 0;
-    while (seg.x <= seg.y && centroid[seg.x]==null) seg.x++;
-    while (seg.y >= seg.x && centroid[seg.y]==null) seg.y--;
+    while (seg.x <= seg.y && !present(seg.x)) seg.x++;
+    while (seg.y >= seg.x && !present(seg.y)) seg.y--;
   }
   protected boolean identical(int value,int[] values) {
     for (int v : values) if (v!=value) return false;
@@ -1343,7 +1897,7 @@ public class Dance
     // Find all patches where the object is still, just dwelling about a point.
     i = 0;
     while (i<area.length) {
-      if (centroid[i]==null) { i++; continue; }
+      if (!present(i)) { i++; continue; }
       
       f = new Fitter(shared);
       s = new Style(Styled.Dwell , i , i-1 , f);
@@ -1394,14 +1948,14 @@ public class Dance
           okay = false;
         }
         else if (last.kind != Styled.Dwell && current.kind == Styled.Dwell) {
-          while (last.size()>0 && current.fit.spot.sqError(centroid[last.i1].x,centroid[last.i1].y)<credibleDistSq) {
+          while (last.size()>0 && current.fit.spot.sqError(cx[last.i1],cy[last.i1])<credibleDistSq) {
             last.i1 = current.addLeft( last.i1 );
             current.fit.spot.fit();
             okay = false;
           }
         }
         else if (last.kind == Styled.Dwell && current.kind != Styled.Dwell) {
-          while (current.size()>0 && last.fit.spot.sqError(centroid[current.i0].x,centroid[current.i0].y)<credibleDistSq) {
+          while (current.size()>0 && last.fit.spot.sqError(cx[current.i0],cy[current.i0])<credibleDistSq) {
             current.i0 = last.addRight( current.i0 );
             last.fit.spot.fit();
             okay = false;
@@ -1410,10 +1964,10 @@ public class Dance
         else {
           boolean changed = true;
           do {
-            double deltaErrorL = last.fit.spot.sqError(centroid[current.i0].x,centroid[current.i0].y) -
-              current.fit.spot.sqError(centroid[current.i0].x,centroid[current.i0].y);
-            double deltaErrorR = current.fit.spot.sqError(centroid[last.i1].x,centroid[last.i1].y) -
-              last.fit.spot.sqError(centroid[last.i1].x,centroid[last.i1].y);
+            double deltaErrorL = last.fit.spot.sqError(cx[current.i0],cy[current.i0]) -
+              current.fit.spot.sqError(cx[current.i0],cy[current.i0]);
+            double deltaErrorR = current.fit.spot.sqError(cx[last.i1],cy[last.i1]) -
+              last.fit.spot.sqError(cx[last.i1],cy[last.i1]);
             if (deltaErrorL >= 0 && deltaErrorR >=0) changed = false;
             else if (deltaErrorL < deltaErrorR || (deltaErrorL==deltaErrorR && last.size()<current.size())) {
               last.addRightSimply( current.i0 ); current.subLeft();
@@ -1542,12 +2096,12 @@ public class Dance
             changed = false;
             max_iterations--;
             if (last.isLine()) {
-              d2ll = last.sqError( centroid[last.i1] );
-              d2lr = last.sqError( centroid[current.i0] );
+              d2ll = last.sqError( centroid(last.i1) );
+              d2lr = last.sqError( centroid(current.i0) );
             }
             if (current.isLine()) {
-              d2rl = current.sqError( centroid[last.i1] );
-              d2rr = current.sqError( centroid[current.i0] );
+              d2rl = current.sqError( centroid(last.i1) );
+              d2rr = current.sqError( centroid(current.i0) );
             }
             if (d2ll>d2rl && d2rr>d2lr) {
               if (d2rl < d2lr) d2lr = d2rr = credibleDistSq;
@@ -1612,13 +2166,13 @@ public class Dance
       Style m = segmentation[n];
       if (!m.isLine()) continue;  // Anything that's junk is already junk
       if (m.size()>20) continue;  // Anything this big should be fine
-      u.eq(centroid[m.i0+1]).eqMinus(centroid[m.i0]);
+      u.eq(cx[m.i0+1],cy[m.i0+1]).eqMinus(centroid(m.i0));
       int dotp = 0;
       int dotn = 0;
       int bigp = 0;
       int bign = 0;
       for (i=m.i0+1; i<=m.i1-1; i++) {
-        v.eq(centroid[i+1]).eqMinus(centroid[i]);
+        v.eq(cx[i+1],cy[i+1]).eqMinus(centroid(i));
         if (u.dot(v)>0) {
           dotp++;
           u.eqPlus(v);
@@ -1644,13 +2198,13 @@ public class Dance
         if (dotn>=i) {
           tfit.reset();
           if (m.kind == Styled.Straight) {
-            for (i=m.i0; i<=m.i1; i++) tfit.addL(i-m.i0, m.parameterize(dv.eq(centroid[i])));
+            for (i=m.i0; i<=m.i1; i++) tfit.addL(i-m.i0, m.parameterize(dv.eq(cx[i],cy[i])));
             tfit.line.fit();
             if (Statistic.cdfTstat(tfit.line.tScoreCorrelation(),m.i1-m.i0-1) < 0.95f) m.kind = Styled.Clutter;  // Not a significant time correlation; throw it away
           }
           else {
             double[] param = new double[1+m.i1-m.i0];
-            for (i=m.i0; i<=m.i1; i++) param[i-m.i0] = m.parameterize(dv.eq(centroid[i]));
+            for (i=m.i0; i<=m.i1; i++) param[i-m.i0] = m.parameterize(dv.eq(cx[i],cy[i]));
             double[] pcopy = Arrays.copyOf(param,param.length);
             Arrays.sort(param);
             j = 0;
@@ -1683,10 +2237,10 @@ public class Dance
       
       u.eq(0,0);
       for (e0=e1=m.i0,i=m.i0+1 ; i<=m.i1 && u.length2()<credibleDistSq ; i++) {
-        m.deltaVector(v,centroid[e0],centroid[i]);
+        m.deltaVector(v,centroid(e0),centroid(i));
         if (u.dot(v)<0) {
           e0 = e1; e1 = i;
-          m.deltaVector(u,centroid[e0],centroid[e1]);
+          m.deltaVector(u,centroid(e0),centroid(e1));
         }
         else if (u.length2() < v.length2()) { 
           e1 = i;
@@ -1695,15 +2249,15 @@ public class Dance
       }
       if (n>0 && !segmentation[n-1].isLine()) {
         ss = segmentation[n-1];
-        m.deltaVector(v,centroid[ss.i1],centroid[e0]);
-        if (u.dot(v)>0 && m.sqError(centroid[ss.i1])<credibleDistSq && u.length2()+v.length()>=credibleDistSq) {
+        m.deltaVector(v,centroid(ss.i1),centroid(e0));
+        if (u.dot(v)>0 && m.sqError(centroid(ss.i1))<credibleDistSq && u.length2()+v.length()>=credibleDistSq) {
           m.i0 = e0 = ss.i1;
           u.eqPlus(v);
           extend_pre = true;
         }
       }
       for ( ; i<=m.i1 ; i++) {
-        m.deltaVector(v,centroid[e1],centroid[i]);
+        m.deltaVector(v,centroid(e1),centroid(i));
         if (u.dot(v)>=0) {
           e1 = i;
           u.eqPlus(v);
@@ -1717,16 +2271,16 @@ public class Dance
       }
       if (n<segmentation.length-1 && !segmentation[n+1].isLine()) {
         ss = segmentation[n+1];
-        m.deltaVector(v,centroid[e1],centroid[ss.i0]);
-        if (u.dot(v)>0 && m.sqError(centroid[ss.i0])<credibleDistSq && u.length2()+v.length2()>=credibleDistSq) {
+        m.deltaVector(v,centroid(e1),centroid(ss.i0));
+        if (u.dot(v)>0 && m.sqError(centroid(ss.i0))<credibleDistSq && u.length2()+v.length2()>=credibleDistSq) {
           m.i1 = e1 = ss.i0;
           u.eqPlus(v);
           extend_post = true;
         }
       }
       if (u.length2() >= credibleDistSq || endpoint_list.size()>0) {
-        if (extend_pre) m.fit.addC( centroid[m.i0].x , centroid[m.i0].y );
-        if (extend_post) m.fit.addC( centroid[m.i1].x , centroid[m.i1].y );
+        if (extend_pre) m.fit.addC( cx[m.i0] , cy[m.i0] );
+        if (extend_post) m.fit.addC( cx[m.i1] , cy[m.i1] );
         if (extend_pre || extend_post) m.fit();
         
         if (e0==m.i0 && e1==m.i1) continue;  // No sense in storing default case, just leave it as null!
@@ -1762,10 +2316,10 @@ public class Dance
     int i0 = (i>s.i0) ? i-1 : i;
     int i1 = (i<s.i1) ? i+1 : i;
     if (i0==i1) return v;
-    s.snapToLine(v.eq(centroid[i0]));
+    s.snapToLine(v.eq(cx[i0],cy[i0]));
     float x0 = v.x;
     float y0 = v.y;
-    s.snapToLine(v.eq(centroid[i1]));
+    s.snapToLine(v.eq(cx[i1],cy[i1]));
     v.x -= x0;
     v.y -= y0;
     return v;
@@ -1792,10 +2346,10 @@ public class Dance
     }
     else {
       int i = i0;
-      while (i0<area.length && centroid[i0]==null) i0++;
+      while (i0<area.length && !present(i0)) i0++;
       while (i<i1) {
-        i = i0+1; while (i<area.length && centroid[i]==null) i++;
-        if (i<area.length) path += centroid[i].dist(centroid[i0]);
+        i = i0+1; while (i<area.length && !present(i)) i++;
+        if (i<area.length) path += centroidDist(i,i0);
         i0 = i;
       }
     }
@@ -1899,8 +2453,8 @@ public class Dance
                 int sz = spine[i1].size();
                 float dots = 0.0f;
                 for (k=0; k<sz; k++) {
-                  u.eqPlus(spine[i1].get(k,w)).eqPlus(centroid[i1]).eqMinus(spine[i0].get(k,w)).eqMinus(centroid[i0]);
-                  v.eqPlus(spine[ii1].get(k,w)).eqPlus(centroid[ii1]).eqMinus(spine[ii0].get(k,w)).eqMinus(centroid[ii0]);
+                  u.eqPlus(spine[i1].get(k,w)).eqPlus(centroid(i1)).eqMinus(spine[i0].get(k,w)).eqMinus(centroid(i0));
+                  v.eqPlus(spine[ii1].get(k,w)).eqPlus(centroid(ii1)).eqMinus(spine[ii0].get(k,w)).eqMinus(centroid(ii0));
                   dots += u.dot(v);
                 }
                 if (dots <= 0.0f) g = -g;   // Flow along body seems to agree that it's backwards
@@ -1934,7 +2488,7 @@ public class Dance
   }
   
   public void findDirectionBiasUnsegmented(float speed_window,float[] t) {
-    float accuracy_limit = (float)(noise_estimate.average * Statistic.invnormcdf_tail( 0.05f/centroid.length ));
+    float accuracy_limit = (float)(noise_estimate.average * Statistic.invnormcdf_tail( 0.05f/cx.length ));
     float direction_scale = (float)Math.pow( body_length.average / accuracy_limit , 1.0/3.0 );
     findDirectionChange(speed_window,t);
     float[] reference = Arrays.copyOf(quantity,quantity.length);
@@ -1973,8 +2527,8 @@ public class Dance
       }
     }
     else {
-      for (i=0 ; i<centroid.length ; i++) {
-        bigness[i] = (extent[i]==null || extent[i].x==0 || area[i]==0) ? 0 : (extent[i].y/extent[i].x)/area[i]; 
+      for (i=0 ; i<cx.length ; i++) {
+        bigness[i] = (!present(i) || ex[i]==0 || area[i]==0) ? 0 : (ey[i]/ex[i])/area[i]; 
       }
     }
     float[] temp = Arrays.copyOf(bigness,bigness.length);
@@ -1984,12 +2538,12 @@ public class Dance
     for (i=0 ; i<quantity.length ; i++) {
       if (quantity[i]<-0.9f) {
         for (j=i+1 ; j<reference.length ; j++) if (reference[j]>0) break;
-        for (k=i-1 ; k>=0 ; k--) if (reference[k]<-0.9f || centroid[k].dist2(centroid[i])>accuracy_limit*accuracy_limit) break;
-        for (l=j+1 ; l<reference.length ; l++) if (reference[l]<-0.9f || centroid[l].dist2(centroid[j])>accuracy_limit*accuracy_limit) break;
+        for (k=i-1 ; k>=0 ; k--) if (reference[k]<-0.9f || centroidDist2(k,i)>accuracy_limit*accuracy_limit) break;
+        for (l=j+1 ; l<reference.length ; l++) if (reference[l]<-0.9f || centroidDist2(l,j)>accuracy_limit*accuracy_limit) break;
         for (int h=i ; h<j ; h++) quantity[i] = 0;
         if (k>=0 && l<reference.length) {
-          u = centroid[i].opMinus(centroid[k]);
-          v = centroid[l].opMinus(centroid[j]);
+          u = centroid(i).opMinus(centroid(k));
+          v = centroid(l).opMinus(centroid(j));
           if (u.unitDot(v)<0) sign = -sign;
         }
         for (int h=i ; h<j ; h++) { 
@@ -2015,8 +2569,8 @@ public class Dance
       float dist_reverse = 0.0f;
       for (i=sureness.x+1 ; i<=sureness.y ; i++) {
         if (quantity[i]==0) continue;
-        if (centroid[i]==null || centroid[i-1]==null) continue;
-        float dist = (float)Math.max(0.0f , centroid[i].dist(centroid[i-1]) - noise_estimate.last_quartile);
+        if (!present(i) || !present(i-1)) continue;
+        float dist = (float)Math.max(0.0f , centroidDist(i,i-1) - noise_estimate.last_quartile);
         if (quantity[i]>0) dist_forward += dist;
         else if (quantity[i]<0) dist_reverse += dist;
       }
@@ -2050,7 +2604,7 @@ public class Dance
   public void findDirectionChangeAtScale(float speed_window,float[] t,float scale) {
     prepareForData(false);
 
-    float accuracy_limit = (float)(noise_estimate.average * Statistic.invnormcdf_tail( 0.05f/centroid.length ));
+    float accuracy_limit = (float)(noise_estimate.average * Statistic.invnormcdf_tail( 0.05f/cx.length ));
     float circle_size = accuracy_limit*scale;
     float circle_exclusive = Math.max( accuracy_limit , circle_size*0.5f );
     LinkedList<Vec2I> circle_list = new LinkedList<Vec2I>();
@@ -2058,14 +2612,14 @@ public class Dance
     // Cover the track with circles
     Vec2I circle = Vec2I.zero();
     int i,i0,j,n;
-    for (i=i0=0 ; i<centroid.length ; i++) {
-      if (centroid[i]==null) continue;
-      if (centroid[circle.x]!=null) i0=circle.x;
-      else if (centroid[i0]==null) { i0=i; continue; }
-      if (centroid[i].dist(centroid[i0]) > circle_size) {
+    for (i=i0=0 ; i<cx.length ; i++) {
+      if (!present(i)) continue;
+      if (present(circle.x)) i0=circle.x;
+      else if (!present(i0)) { i0=i; continue; }
+      if (centroidDist(i,i0) > circle_size) {
         circle.y = i;
         circle_list.add(circle);
-        for (j=i ; j>i0 ; j--) { if (centroid[j]==null) continue; if (centroid[j].dist(centroid[i0]) < circle_exclusive) break; }
+        for (j=i ; j>i0 ; j--) { if (!present(j)) continue; if (centroidDist(j,i0) < circle_exclusive) break; }
         circle = new Vec2I(j+1,i);
       }
     }
@@ -2080,7 +2634,7 @@ public class Dance
     for (i=0 ; i<circles.length ; i++) {
       v = Vec2F.zero();
       for (n=0 , j=circles[i].x ; j<circles[i].y ; j++) {
-        if (centroid[j]!=null) { v.eqPlus(centroid[j]); n++; }
+        if (present(j)) { v.eqPlus(centroid(j)); n++; }
       }
       if (n>0) v.eqDivide(n);
       centers[i] = v;
@@ -2093,39 +2647,39 @@ public class Dance
       while (circles[n-1].y > circles[n].x) {
         boolean warn_x = false;
         boolean warn_y = false;
-        if (centroid[circles[n].x]==null) {
+        if (!present(circles[n].x)) {
           if (circles[n].y-circles[n].x >= circles[n-1].y-circles[n-1].x) { circles[n].x++; continue; }
           warn_x = true;
         }
-        if (centroid[circles[n-1].y-1]==null) {
+        if (!present(circles[n-1].y-1)) {
           if (circles[n].y-circles[n].x <= circles[n-1].y-circles[n-1].x) { circles[n-1].y--; continue; }
           warn_y = true;
         }
         if (warn_x || warn_y) continue;
         warn_x = warn_y = true;
         i = circles[n].x;
-        if (centers[n].dist2(centroid[i]) >= centers[n-1].dist2(centroid[i]) && numbers[n]>1) {
-          centers[n].eqTimes( numbers[n] ).eqMinus( centroid[i] ).eqDivide( numbers[n]-1 );
+        if (centers[n].dist2(centroid(i)) >= centers[n-1].dist2(centroid(i)) && numbers[n]>1) {
+          centers[n].eqTimes( numbers[n] ).eqMinus( centroid(i) ).eqDivide( numbers[n]-1 );
           numbers[n]--; circles[n].x++; warn_x = false;
         }
         j = circles[n-1].y-1;
-        if (centers[n].dist2(centroid[j]) <= centers[n-1].dist2(centroid[j]) && numbers[n-1]>1 && circles[n-1].y>circles[n].x) {
-          centers[n-1].eqTimes( numbers[n-1] ).eqMinus( centroid[j] ).eqDivide( numbers[n-1]-1 );
+        if (centers[n].dist2(centroid(j)) <= centers[n-1].dist2(centroid(j)) && numbers[n-1]>1 && circles[n-1].y>circles[n].x) {
+          centers[n-1].eqTimes( numbers[n-1] ).eqMinus( centroid(j) ).eqDivide( numbers[n-1]-1 );
           numbers[n-1]--; circles[n-1].y--; warn_y = false;
         }
         if (warn_x && warn_y) {
           if (circles[n-1].y-1 > circles[n].x && circles[n-1].y-circles[n-1].x>1 && circles[n].y-circles[n].x>1) {
-            centers[n].eqTimes( numbers[n] ).eqMinus( centroid[i] ).eqDivide( Math.max(1,numbers[n]-1) );
-            centers[n-1].eqTimes( numbers[n-1] ).eqMinus( centroid[j] ).eqDivide( Math.max(1,numbers[n-1]-1) );
+            centers[n].eqTimes( numbers[n] ).eqMinus( centroid(i) ).eqDivide( Math.max(1,numbers[n]-1) );
+            centers[n-1].eqTimes( numbers[n-1] ).eqMinus( centroid(j) ).eqDivide( Math.max(1,numbers[n-1]-1) );
             numbers[n]--; numbers[n-1]--;
             circles[n].x++; circles[n-1].y--;
           }
           else if (circles[n-1].y-circles[n-1].x > circles[n].y-circles[n].x) {
-            centers[n-1].eqTimes( numbers[n-1] ).eqMinus( centroid[j] ).eqDivide( Math.max(1,numbers[n-1]-1) );
+            centers[n-1].eqTimes( numbers[n-1] ).eqMinus( centroid(j) ).eqDivide( Math.max(1,numbers[n-1]-1) );
             numbers[n-1]--; circles[n-1].y--;
           }
           else {
-            centers[n].eqTimes( numbers[n] ).eqMinus( centroid[i] ).eqDivide( Math.max(1,numbers[n]-1) );
+            centers[n].eqTimes( numbers[n] ).eqMinus( centroid(i) ).eqDivide( Math.max(1,numbers[n]-1) );
             numbers[n]--; circles[n].x++;
           }
         }
@@ -2140,28 +2694,28 @@ public class Dance
         else circles[n-1].y = circles[n].x;
       }
     }
-    circles[circles.length-1].y = centroid.length;
+    circles[circles.length-1].y = cx.length;
 
     // Find centers of half-overlapping circles
     Vec2F[] betweeners = new Vec2F[circles.length+1];
     n=0;
     betweeners[0] = Vec2F.zero();
-    for (j=0 ; j<(circles[0].y+1)/2 ; j++) if (centroid[j]!=null) { betweeners[0].eqPlus(centroid[j]); n++; }
+    for (j=0 ; j<(circles[0].y+1)/2 ; j++) if (present(j)) { betweeners[0].eqPlus(centroid(j)); n++; }
     if (n>0) betweeners[0].eqDivide(n);
     else betweeners[0].eq(centers[0]);
     for (i=1 ; i<circles.length ; i++) {
       n=0;
       betweeners[i] = Vec2F.zero();
       for (j = (circles[i-1].x+circles[i-1].y+1)/2 ; j < (circles[i].x+circles[i].y+1)/2 ; j++) {
-        if (centroid[j]!=null) { betweeners[i].eqPlus(centroid[j]); n++; }
+        if (present(j)) { betweeners[i].eqPlus(centroid(j)); n++; }
       }
       if (n>0) betweeners[i].eqDivide(n);
       else betweeners[i].eq(centers[i-1]).eqPlus(centers[i]).eqTimes(0.5f);
     }
     n=0;
     betweeners[centers.length] = Vec2F.zero();
-    for (j = (circles[circles.length-1].x+circles[circles.length-1].y+1)/2 ; j<centroid.length ; j++) {
-      if (centroid[j]!=null) { betweeners[centers.length].eqPlus(centroid[j]); n++; }
+    for (j = (circles[circles.length-1].x+circles[circles.length-1].y+1)/2 ; j<cx.length ; j++) {
+      if (present(j)) { betweeners[centers.length].eqPlus(centroid(j)); n++; }
     }
     if (n>0) betweeners[centers.length].eqDivide(n);
     else betweeners[centers.length].eq(centers[centers.length-1]);
@@ -2193,7 +2747,7 @@ public class Dance
   }
 
   public void findDirectionChangeUnsegmented(float speed_window , float[] t) {
-    float accuracy_limit = (float)(noise_estimate.average * Statistic.invnormcdf_tail( 0.05f/centroid.length ));
+    float accuracy_limit = (float)(noise_estimate.average * Statistic.invnormcdf_tail( 0.05f/cx.length ));
     float big_scale = (float)Math.pow( body_length.average / accuracy_limit , 1.0/3.0 );
     float small_scale = (float)(big_scale*Math.sqrt(0.5));
     findDirectionChangeAtScale(speed_window,t,big_scale);
@@ -2250,7 +2804,7 @@ public class Dance
     //findSpineLength();
     //float[] spinelen = Arrays.copyOf(quantity,quantity.length);
     for (int i=0; i<quantity.length; i++) {
-      if (centroid[i]==null || !loc_okay(centroid[i])) continue;
+      if (!present(i) || !loc_okay(i)) continue;
       if (spine!=null && spine[i]!=null && !Float.isNaN(spine[i].width(0))) {
         for (int j=1; j<spine[i].size()-1; j++) {
           mlws += spine[i].width(j);
@@ -2258,7 +2812,7 @@ public class Dance
         }
       }
       else {
-        mlws += area[i]/Math.max(1.0f,extent[i].x);
+        mlws += area[i]/Math.max(1.0f,ex[i]);
         nm++;
       }
       if (outline!=null && outline[i]!=null) {
@@ -2321,19 +2875,19 @@ public class Dance
         else {
           spine[i].get(0,u);
           spine[i].get(spine[i].size()-1,v);
-          w.eq(bearing[i]).eqNorm();
+          w.eq(bx[i],by[i]).eqNorm();
           float uw = u.dot(w);
           float vw = v.dot(w);
           u.eq(w).eqTimes(uw);
           v.eq(w).eqTimes(vw);
-          quantity[i] = u.dist2(v)/Math.max(1.0f,extent[i].x*extent[i].x);
+          quantity[i] = u.dist2(v)/Math.max(1.0f,ex[i]*ex[i]);
         }
       }
       for (int i=1; i<spine.length; i++) {
         if (quantity[i-1]<0.6f && quantity[i]>0.9f || quantity[i-1]>0.9f && quantity[i]<0.6f) {
           if (spine[i-1]!=null && spine[i]!=null) {
-            float d0 = spine[i-1].get(0,u).dist(spine[i].get(0,v))/Math.max(1.0f,Math.min(extent[i-1].x,extent[i].x));
-            float dn = spine[i-1].get(spine[i-1].size()-1,u).dist(spine[i].get(spine[i].size()-1,v))/Math.max(1.0f,Math.min(extent[i-1].x,extent[i].x));
+            float d0 = spine[i-1].get(0,u).dist(spine[i].get(0,v))/Math.max(1.0f,Math.min(ex[i-1],ex[i]));
+            float dn = spine[i-1].get(spine[i-1].size()-1,u).dist(spine[i].get(spine[i].size()-1,v))/Math.max(1.0f,Math.min(ex[i-1],ex[i]));
             if (Math.max(d0,dn) > 0.3f) {
               quantity[i-1] = 1.0f;
               quantity[i] = 1.0f;
@@ -2349,8 +2903,8 @@ public class Dance
     else {
       // Fall back to big changes in bearing--bad idea, really unreliable, but what else can we do?
       quantity[0] = 0.0f;
-      for (int i=1; i<bearing.length; i++) {
-        if (Math.abs(bearing[i].unitDot(bearing[i-1]))<0.9f) { quantity[i] = quantity[i-1] = 0.0f; i++; }
+      for (int i=1; i<bx.length; i++) {
+        if (Math.abs(bearing(i).unitDot(bearing(i-1)))<0.9f) { quantity[i] = quantity[i-1] = 0.0f; i++; }
         else quantity[i-1] = 0.0f;
       }
     }
@@ -2407,8 +2961,8 @@ public class Dance
           segi++;
           if (segi<segmentation.length) seg = segmentation[segi]; else seg = null;
         }
-        u.eq(centroid[i-1]);
-        v.eq(centroid[i]);
+        u.eq(cx[i-1],cy[i-1]);
+        v.eq(cx[i],cy[i]);
         if (seg!=null) {
           if (seg.kind == Styled.Arc || seg.kind == Styled.Straight) {
             seg.snapToLine(u); seg.snapToLine(v);
@@ -2417,7 +2971,7 @@ public class Dance
           }
         }
         else {
-          w.eq(bearing[i]).eqNorm();
+          w.eq(bx[i],by[i]).eqNorm();
           v.eqMinus(u);
           if (directions.isForward(i)) cud += Math.abs(v.dot(w));
           else cud -= Math.abs(v.dot(w));
@@ -2459,7 +3013,7 @@ public class Dance
           ReversalEvent re = llre.getLast();
           re.t1 = t[i+first_frame];
           re.path_length = 0f;
-          for (int j = reversal_i0 ; j<i-1 ; j++) re.path_length += centroid[j].dist(centroid[j+1]);
+          for (int j = reversal_i0 ; j<i-1 ; j++) re.path_length += centroidDist(j,j+1);
           in_reversal = false;
         }
       }
@@ -2471,7 +3025,7 @@ public class Dance
   }
   public List<ReversalEvent> extractReversals(float speed_window,float[] t) { return extractReversals(speed_window,t,false); }
   
-  public void findAbstractSpeed(float speed_window,float[] t,Vec2F[] location,Metric metric,float normalization)
+  public void findAbstractSpeed(float speed_window,float[] t,float[] lx,float[] ly,Metric metric,float normalization)
   {
     prepareForData(false);
     
@@ -2481,25 +3035,47 @@ public class Dance
     float frac = 0.0f;
     Vec2F u = new Vec2F();
     Vec2F v = new Vec2F();
-    
-    for (i=0 ; i<location.length ; i++)
+    Vec2F p = new Vec2F();
+    Vec2F q = new Vec2F();
+    
+    // Window edges only move forwards, so walk them along instead of searching for them every frame
+    int ja = first_frame;
+    int jb = first_frame;
+    float ta = Float.NEGATIVE_INFINITY;
+    float tb = Float.NEGATIVE_INFINITY;
+    float t0;
+    
+    // For distances, no two points inside the window can be farther apart than the corners of their bounding box
+    SlidingRange xr = (metric == Metric.ANGLE) ? null : new SlidingRange(lx);
+    SlidingRange yr = (metric == Metric.ANGLE) ? null : new SlidingRange(ly);
+    double w,h;
+    
+    for (i=0 ; i<lx.length ; i++)
     {
       quantity[i] = Float.NaN;
-      if (location[i]==null || !loc_okay(centroid[i])) continue;
+      if (Float.isNaN(lx[i]) || !loc_okay(i)) continue;
       
-      a = seek(t[i+first_frame]-0.5f*speed_window , t);
+      t0 = t[i+first_frame]-0.5f*speed_window;
+      if (Float.compare(t0,ta) < 0) ja = first_frame;
+      ta = t0;
+      while (ja<=last_frame && Float.compare(t[ja],ta) < 0) ja++;
+      a = seekFrom(ta , t , ja);
       if (Double.isNaN(a)) continue;
       j = (int)Math.floor(a);
-      if (j+1>i || location[j]==null || location[j+1]==null) continue;
+      if (j+1>i || Float.isNaN(lx[j]) || Float.isNaN(lx[j+1])) continue;
       frac = (float)(a-j);
-      u.eq(location[j]).eqWeightedSum(1.0f-frac , frac , location[j+1]);
+      u.eq(lx[j],ly[j]).eqWeightedSum(1.0f-frac , frac , p.eq(lx[j+1],ly[j+1]));
       
-      b = seek(t[i+first_frame]+0.5f*speed_window , t);
+      t0 = t[i+first_frame]+0.5f*speed_window;
+      if (Float.compare(t0,tb) < 0) jb = first_frame;
+      tb = t0;
+      while (jb<=last_frame && Float.compare(t[jb],tb) < 0) jb++;
+      b = seekFrom(tb , t , jb);
       if (Double.isNaN(b)) continue;
       k = (int)Math.ceil(b);
-      if (k-1<i || location[k]==null || location[k-1]==null) continue;
+      if (k-1<i || Float.isNaN(lx[k]) || Float.isNaN(lx[k-1])) continue;
       frac = (float)(k-b);
-      v.eq(location[k]).eqWeightedSum(1.0f-frac , frac , location[k-1]);
+      v.eq(lx[k],ly[k]).eqWeightedSum(1.0f-frac , frac , p.eq(lx[k-1],ly[k-1]));
       
       switch (metric) {
         case DIST:
@@ -2515,14 +3091,21 @@ public class Dance
       
       j++;
       k--;
+      if (xr!=null && j<k && xr.span(j,k) && yr.span(j,k)) {
+        w = (double)xr.max() - xr.min();
+        h = (double)yr.max() - yr.min();
+        if (Math.sqrt(w*w + h*h)*BOX_SLACK + 1e-20 < max_s) j = k;  // Nothing inside can beat the ends
+      }
       while (j<k) {
+        p.eq(lx[j],ly[j]);
+        q.eq(lx[k],ly[k]);
         switch (metric) {
           case DIST:
           case DISTX:
           case DISTY:
           case CRAB:
-            s = location[k].dist( location[j] ); break;
-          case ANGLE: s = 1.0f-0.5f*location[k].unitDot( location[j] ); break;
+            s = q.dist( p ); break;
+          case ANGLE: s = 1.0f-0.5f*q.unitDot( p ); break;
           default:    s = 0.0f;
         }
         if (s>max_s) {
@@ -2531,8 +3114,8 @@ public class Dance
             case DISTX:
             case DISTY:
             case CRAB:
-              u.eq( location[j] );
-              v.eq( location[k] );
+              u.eq( p );
+              v.eq( q );
               break;
             default:
           }
@@ -2544,7 +3127,7 @@ public class Dance
       switch (metric) {
         case DISTX: quantity[i] = (v.x-u.x) * normalization; break;
         case DISTY: quantity[i] = (v.y-u.y) * normalization; break;
-        case CRAB: v.eqMinus(u); u.eq( bearing[i] ).eqNorm(); u.eqTimes(v.dot(u)); v.eqMinus(u); quantity[i] = v.length()*normalization; break;
+        case CRAB: v.eqMinus(u); u.eq( bx[i],by[i] ).eqNorm(); u.eqTimes(v.dot(u)); v.eqMinus(u); quantity[i] = v.length()*normalization; break;
         default:    quantity[i] = max_s * normalization;
       }
     }
@@ -2562,9 +3145,9 @@ public class Dance
     Vec2F back_angle = new Vec2F();
     float front_wiggle;
     float back_wiggle;
-    for (i=0 ; i<centroid.length ; i++)
+    for (i=0 ; i<cx.length ; i++)
     {
-      if ( spine[i]==null || spine[i].size() < 3 || !loc_okay(centroid[i])) { quantity[i] = Float.NaN; continue; }
+      if ( spine[i]==null || spine[i].size() < 3 || !loc_okay(i)) { quantity[i] = Float.NaN; continue; }
 
       spine[i].get(0,front_angle);
       j = (int)(spine[i].size()*0.2 + 0.5);
@@ -2606,10 +3189,10 @@ public class Dance
     Vec2F u = new Vec2F();
     Vec2F v = new Vec2F();
     Vec2F w = new Vec2F();
-    for (n=0 ; n<centroid.length ; n++)
+    for (n=0 ; n<cx.length ; n++)
     {
       Spine s = spine[n];
-      if ( s==null || s.size() < 6 || !loc_okay(centroid[n])) { quantity[n] = Float.NaN; continue; }
+      if ( s==null || s.size() < 6 || !loc_okay(n)) { quantity[n] = Float.NaN; continue; }
       
       angle_sum = 0.0f;
       step = (s.size()-1)/5.0f;
@@ -2634,10 +3217,10 @@ public class Dance
     float d;
     Vec2S u = Vec2S.zero();
     Vec2S v = Vec2S.zero();
-    for (int i=0 ; i<centroid.length ; i++)
+    for (int i=0 ; i<cx.length ; i++)
     {
       Spine s = spine[i];
-      if ( s==null || s.size() < 2 || !loc_okay(centroid[i])) { quantity[i] = Float.NaN; continue; }
+      if ( s==null || s.size() < 2 || !loc_okay(i)) { quantity[i] = Float.NaN; continue; }
       d = 0.0f;
       for (int j=1 ; j<s.size() ; j++) d += Math.sqrt( s.get(j,v).dist2( s.get(j-1,u) ) );
       quantity[i] = d;
@@ -3004,6 +3587,40 @@ public class Dance
     for (Preloaded pc : loaded_custom) pc.already = false;
   }
   
+  // Throws away every computed quantity; call this whenever the underlying data (position, spine, etc.) changes
+  public void forgetQuantities() {
+    allUnload();
+    loaded_time.forget();
+    loaded_frame.forget();
+    loaded_constant.forget();
+    loaded_area.forget();
+    loaded_speed.forget();
+    loaded_angular.forget();
+    loaded_length.forget();
+    loaded_width.forget();
+    loaded_aspect.forget();
+    loaded_midline.forget();
+    loaded_outlinewidth.forget();
+    loaded_kink.forget();
+    loaded_bias.forget();
+    loaded_path.forget();
+    loaded_curve.forget();
+    loaded_dirchange.forget();
+    loaded_phaseadvance.forget();
+    loaded_x.forget();
+    loaded_y.forget();
+    loaded_vx.forget();
+    loaded_vy.forget();
+    loaded_theta.forget();
+    loaded_crab.forget();
+    loaded_qxfw.forget();
+    loaded_stim1.forget();
+    loaded_stim2.forget();
+    loaded_stim3.forget();
+    loaded_stim4.forget();
+    for (Preloaded pc : loaded_custom) pc.forget();
+  }
+  
   public void quantityMult(float f) {
     float oldj = loaded_jitter;
     allUnload();
@@ -3029,7 +3646,8 @@ public class Dance
   public void quantityIsFrame() {
     if (loaded_frame.already) return;
     allUnload();
-    for (int i=first_frame;i<=last_frame;i++) quantity[i-first_frame] = i;
+    int offset = (chore==null) ? 0 : chore.frame_offset;
+    for (int i=first_frame;i<=last_frame;i++) quantity[i-first_frame] = i + offset;
     loaded_frame.already = true;
   }
   
@@ -3043,19 +3661,25 @@ public class Dance
   
   public void quantityIsSpeed(float[] times , float speed_window , boolean normalize, boolean jitting) {
     if (loaded_speed.already) return;
-    allUnload();
-    findAbstractSpeed(speed_window,times,centroid,Metric.DIST,((normalize)?1.0f/meanBodyLengthEstimate():1.0f)/speed_window);
+    if (!loaded_speed.restore(speed_window,(normalize)?1:0)) {
+      allUnload();
+      findAbstractSpeed(speed_window,times,cx,cy,Metric.DIST,((normalize)?1.0f/meanBodyLengthEstimate():1.0f)/speed_window);
+      loaded_speed.keep(speed_window,(normalize)?1:0);
+    }
     loaded_speed.already = true;
     if (jitting) loaded_speed.setJit();
   }
   
   public void quantityIsAngularSpeed(float[] times,float speed_window, boolean jitting) {
     if (loaded_angular.already) return;
-    allUnload();
-    findAbstractSpeed(speed_window,times,bearing,Metric.ANGLE,1.0f);
-    for (int i=0 ; i<bearing.length ; i++) {
-      if (Float.isNaN(quantity[i])) continue;
-      quantity[i] = (float)Math.acos( Math.min(1.0 , Math.max(-1.0 , 2.0*(1.0 - quantity[i])) ) )/speed_window;  // To radians
+    if (!loaded_angular.restore(speed_window,0)) {
+      allUnload();
+      findAbstractSpeed(speed_window,times,bx,by,Metric.ANGLE,1.0f);
+      for (int i=0 ; i<bx.length ; i++) {
+        if (Float.isNaN(quantity[i])) continue;
+        quantity[i] = (float)Math.acos( Math.min(1.0 , Math.max(-1.0 , 2.0*(1.0 - quantity[i])) ) )/speed_window;  // To radians
+      }
+      loaded_angular.keep(speed_window,0);
     }
     loaded_angular.already = true;
     if (jitting) loaded_angular.setJit();
@@ -3064,7 +3688,7 @@ public class Dance
   public void quantityIsLength(boolean jitting) {
     if (loaded_length.already) return;
     allUnload();
-    for (int i=0;i<quantity.length;i++) quantity[i] = (extent[i]==null) ? Float.NaN : extent[i].x;
+    for (int i=0;i<quantity.length;i++) quantity[i] = (!present(i)) ? Float.NaN : ex[i];
     loaded_length.already = true;
     if (jitting) loaded_length.setJit();
   }
@@ -3072,7 +3696,7 @@ public class Dance
   public void quantityIsWidth(boolean jitting) {
     if (loaded_width.already) return;
     allUnload();
-    for (int i=0;i<quantity.length;i++) quantity[i] = (extent[i]==null) ? Float.NaN : extent[i].y;
+    for (int i=0;i<quantity.length;i++) quantity[i] = (!present(i)) ? Float.NaN : ey[i];
     loaded_width.already = true;
     if (jitting) loaded_width.setJit();
   }
@@ -3080,31 +3704,40 @@ public class Dance
   public void quantityIsAspect(boolean jitting) {
     if (loaded_aspect.already) return;
     allUnload();
-    for (int i=0;i<quantity.length;i++) quantity[i] = (extent[i]==null || extent[i].x==0) ? Float.NaN : extent[i].y/extent[i].x;
+    for (int i=0;i<quantity.length;i++) quantity[i] = (!present(i) || ex[i]==0) ? Float.NaN : ey[i]/ex[i];
     loaded_aspect.already = true;
     if (jitting) loaded_aspect.setJit();
   }
   
   public void quantityIsMidline(boolean jitting) {
     if (loaded_midline.already) return;
-    allUnload();
-    findSpineLength();
+    if (!loaded_midline.restore(0,0)) {
+      allUnload();
+      findSpineLength();
+      loaded_midline.keep(0,0);
+    }
     loaded_midline.already = true;
     if (jitting) loaded_midline.setJit();
   }
   
   public void quantityIsOutlineWidth(boolean jitting) {
     if (loaded_outlinewidth.already) return;
-    allUnload();
-    findOutlineWidth();
+    if (!loaded_outlinewidth.restore(0,0)) {
+      allUnload();
+      findOutlineWidth();
+      loaded_outlinewidth.keep(0,0);
+    }
     loaded_outlinewidth.already = true;
     if (jitting) loaded_outlinewidth.setJit();
   }
   
   public void quantityIsKink(boolean jitting) {
     if (loaded_kink.already) return;
-    allUnload();
-    findEndWiggle();
+    if (!loaded_kink.restore(0,0)) {
+      allUnload();
+      findEndWiggle();
+      loaded_kink.keep(0,0);
+    }
     loaded_kink.already = true;
     if (jitting) loaded_kink.setJit();
   }
@@ -3129,30 +3762,39 @@ public class Dance
   
   public void quantityIsPath(float[] times,float speed_window,float min_travel) {
     if (loaded_path.already) return;
-    findCumulativePath(speed_window,times,min_travel);
-    allUnload();
+    if (!loaded_path.restore(speed_window,min_travel)) {
+      findCumulativePath(speed_window,times,min_travel);
+      allUnload();
+      loaded_path.keep(speed_window,min_travel);
+    }
     loaded_path.already = true;
   }
 
   public void quantityIsCurve(boolean jitting) {
     if (loaded_curve.already) return;
-    allUnload();
-    findBodyWiggle();
+    if (!loaded_curve.restore(0,0)) {
+      allUnload();
+      findBodyWiggle();
+      loaded_curve.keep(0,0);
+    }
     loaded_curve.already = true;
     if (jitting) loaded_curve.setJit();
   }
   
   public void quantityIsDirectionChange(float[] times,float speed_window) {
     if (loaded_dirchange.already) return;
-    allUnload();
-    findDirectionChange(speed_window,times);
+    if (!loaded_dirchange.restore(speed_window,0)) {
+      allUnload();
+      findDirectionChange(speed_window,times);
+      loaded_dirchange.keep(speed_window,0);
+    }
     loaded_dirchange.already = true;
   }
   
   public void quantityIsX(boolean jitting) {
     if (loaded_x.already) return;
     allUnload();
-    for (int i=0;i<quantity.length;i++) quantity[i] = (centroid[i]==null) ? Float.NaN : centroid[i].x;
+    for (int i=0;i<quantity.length;i++) quantity[i] = (!present(i)) ? Float.NaN : cx[i];
     loaded_x.already = true;
     if (jitting) loaded_x.setJit();
   }
@@ -3160,23 +3802,29 @@ public class Dance
   public void quantityIsY(boolean jitting) {
     if (loaded_y.already) return;
     allUnload();
-    for (int i=0;i<quantity.length;i++) quantity[i] = (centroid[i]==null) ? Float.NaN : centroid[i].y;
+    for (int i=0;i<quantity.length;i++) quantity[i] = (!present(i)) ? Float.NaN : cy[i];
     loaded_y.already = true;
     if (jitting) loaded_y.setJit();
   }
   
   public void quantityIsVx(float[] times,float speed_window,boolean normalize, boolean jitting) {
     if (loaded_vx.already) return;
-    allUnload();
-    findAbstractSpeed(speed_window,times,centroid,Metric.DISTX,((normalize)?1.0f/meanBodyLengthEstimate():1.0f)/speed_window);
+    if (!loaded_vx.restore(speed_window,(normalize)?1:0)) {
+      allUnload();
+      findAbstractSpeed(speed_window,times,cx,cy,Metric.DISTX,((normalize)?1.0f/meanBodyLengthEstimate():1.0f)/speed_window);
+      loaded_vx.keep(speed_window,(normalize)?1:0);
+    }
     loaded_vx.already = true;
     if (jitting) loaded_vx.setJit();
   }
   
   public void quantityIsVy(float[] times,float speed_window,boolean normalize,boolean jitting) {
     if (loaded_vy.already) return;
-    allUnload();
-    findAbstractSpeed(speed_window,times,centroid,Metric.DISTY,((normalize)?1.0f/meanBodyLengthEstimate():1.0f)/speed_window);
+    if (!loaded_vy.restore(speed_window,(normalize)?1:0)) {
+      allUnload();
+      findAbstractSpeed(speed_window,times,cx,cy,Metric.DISTY,((normalize)?1.0f/meanBodyLengthEstimate():1.0f)/speed_window);
+      loaded_vy.keep(speed_window,(normalize)?1:0);
+    }
     loaded_vy.already = true;
     if (jitting) loaded_vy.setJit();
   }
@@ -3185,9 +3833,9 @@ public class Dance
     if (loaded_theta.already) return;
     allUnload();
     for (int i=0;i<quantity.length;i++) {
-      if (bearing[i]==null || centroid[i]==null || !loc_okay(centroid[i])) quantity[i] = Float.NaN;
+      if (!present(i) || !loc_okay(i)) quantity[i] = Float.NaN;
       else {
-        float f = (float)Math.atan2(bearing[i].y,bearing[i].x);
+        float f = (float)Math.atan2(by[i],bx[i]);
         quantity[i] = f;
       }
     }
@@ -3197,16 +3845,22 @@ public class Dance
   
   public void quantityIsCrab(float[] times,float speed_window,boolean normalize,boolean jitting) {
     if (loaded_crab.already) return;
-    allUnload();
-    findAbstractSpeed(speed_window,times,centroid,Metric.CRAB,((normalize)?1.0f/meanBodyLengthEstimate():1.0f)/speed_window);
+    if (!loaded_crab.restore(speed_window,(normalize)?1:0)) {
+      allUnload();
+      findAbstractSpeed(speed_window,times,cx,cy,Metric.CRAB,((normalize)?1.0f/meanBodyLengthEstimate():1.0f)/speed_window);
+      loaded_crab.keep(speed_window,(normalize)?1:0);
+    }
     loaded_crab.already = true;
     if (jitting) loaded_crab.setJit();
   }
   
   public void quantityIsQxfw(Choreography chore,boolean jitting) {
     if (loaded_qxfw.already) return;
-    allUnload();
-    findQxfw(chore);
+    if (!loaded_qxfw.restore(0,0)) {
+      allUnload();
+      findQxfw(chore);
+      loaded_qxfw.keep(0,0);
+    }
     loaded_qxfw.already = true;
     if (jitting) loaded_qxfw.setJit();
   }
@@ -3252,12 +3906,12 @@ public class Dance
   {
     if (multiscale_x==null || multiscale_y==null)
     {
-      float[] all_x = new float[ centroid.length ];
-      float[] all_y = new float[ centroid.length ];
-      for (int i=0;i<centroid.length;i++)
+      float[] all_x = new float[ cx.length ];
+      float[] all_y = new float[ cx.length ];
+      for (int i=0;i<cx.length;i++)
       {
-        all_x[i] = centroid[i].x * mm_per_pixel * 1000;
-        all_y[i] = centroid[i].y * mm_per_pixel * 1000;
+        all_x[i] = cx[i] * mm_per_pixel * 1000;
+        all_y[i] = cy[i] * mm_per_pixel * 1000;
       }
       multiscale_x = new Fractionator(all_x,2,32);
       multiscale_y = new Fractionator(all_y,2,32);
@@ -3271,10 +3925,10 @@ public class Dance
   public float[] extractCurrentQuantity() { return Arrays.copyOf(quantity,quantity.length); }
   
   public float[] extractCentroidPoints() {
-    float[] vs = new float[2*centroid.length];
-    for (int i=0; i<centroid.length; i++) {
-      vs[i] = centroid[i].x;
-      vs[i+centroid.length] = centroid[i].y;
+    float[] vs = new float[2*cx.length];
+    for (int i=0; i<cx.length; i++) {
+      vs[i] = cx[i];
+      vs[i+cx.length] = cy[i];
     }
     return vs;
   }
@@ -3294,8 +3948,8 @@ public class Dance
     for (int i=0; i<spine.length ; i++) {
       if (spine[i] != null) spine[i].get(n,v);
       else { v.x = Float.NaN; v.y = Float.NaN; }
-      vs[i] = v.x + centroid[i].x;
-      vs[i+spine.length] = v.y + centroid[i].y;
+      vs[i] = v.x + cx[i];
+      vs[i+spine.length] = v.y + cy[i];
     }
     return vs;
   }
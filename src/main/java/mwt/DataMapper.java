@@ -7,12 +7,14 @@
  
 package mwt;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Stack;
 import java.util.TreeSet;
 import java.io.*;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.*;
 import java.awt.*;
 import java.awt.event.*;
@@ -37,6 +39,9 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
   public static final double TIME_TOLERANCE = 1e-3;
   public static final double BEARING_SIZE = 2.0;
   public static final double OUTLINE_SIZE = 7.0;
+  public static final int MIN_TILE_ROWS = 32;
+  public static final int DANCERS_PER_TASK = 16;
+  public static final double READ_AHEAD_SECONDS = 3.0;
   public static final double DWELL_RADIUS_FACTOR = Statistic.invnormcdf_tail(0.05f);
   
   class ViewRequest
@@ -105,17 +110,22 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
       view_dim.eq(d);
       t_at = t;
       
-      for (Dance dance : chore.dances) {
+      // Nobody is drawn if their centroid is more than their size beyond the edge
+      double reach = (whereabouts==null) ? 0.0 : whereabouts.maxExtent()*1000.0*chore.mm_per_pixel + size;
+      int[] which = visibleNear(t , t , view_pos.opMinus(reach) , view_pos.opPlus(d.toD().eqTimes(size)).eqPlus(reach));
+      Dance[] near = (which==null) ? presentNear(t) : new Dance[which.length];
+      if (which!=null) for (int i=0 ; i<which.length ; i++) near[i] = chore.dances[which[i]];
+      for (Dance dance : near) {
         if (dance==null) continue;
         int idx = dance.seekTimeIndex(chore.times , t , TIME_TOLERANCE);
         if (idx<0) continue;
-        if (idx>=dance.centroid.length) {
+        if (idx>=dance.cx.length) {
           System.out.println("Weird, couldn't seek " + t + " in [" + chore.times[dance.first_frame] + "," + chore.times[dance.last_frame] + "]");
           continue;
         }
-        if (dance.centroid[idx]==null) continue;
-        double wormsize = dance.extent[idx].x * (1000.0*chore.mm_per_pixel) / size;
-        Vec2D v = dance.centroid[idx].toD().eqTimes(1000.0*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size);
+        if (!dance.present(idx)) continue;
+        double wormsize = dance.ex[idx] * (1000.0*chore.mm_per_pixel) / size;
+        Vec2D v = dance.centroid(idx).toD().eqTimes(1000.0*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size);
         Vec2I q = v.toI();
         if (v.x+wormsize<0 || v.y+wormsize<0 || v.x-wormsize>=d.x || v.y-wormsize>=d.y) continue;
         
@@ -169,7 +179,7 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
               }
               for (int i=0 ; i<len ; i++) {
                 u = (olf==null) ? ol[i].toD() : olf[i].toD();
-                if (!is_outline) u.eqPlus(dance.centroid[idx].toD());
+                if (!is_outline) u.eqPlus(dance.centroid(idx).toD());
                 u.eqTimes(1000*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size);
                 if (i==0) { w=u; s.moveTo(u.x,u.y); }
                 else s.lineTo(u.x,u.y);
@@ -180,7 +190,7 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
                   if (wd[i]*1000*chore.mm_per_pixel/size > 4) {
                     va.eq(olf[i+1]).eqMinus(olf[i-1]).eqNorm();
                     vb.eq(-va.y,va.x).eqTimes(0.5*wd[i]*1000*chore.mm_per_pixel/size);
-                    va.eq(dance.centroid[idx]).eqPlus(olf[i]);
+                    va.eq(dance.cx[idx],dance.cy[idx]).eqPlus(olf[i]);
                     v.eq(va.x,va.y);
                     v.eqTimes(1000*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size);
                     v.eqMinus(vb);
@@ -196,8 +206,8 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
                 s.reset();
                 g2.setColor(mi);
                 if (dance.spine != null && dance.spine[idx] != null && dance.spine[idx].oriented()) {
-                  v.eq(dance.spine[idx].get(0,va).eqPlus(dance.centroid[idx])).eqTimes(1000*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size).eqMinus(3);
-                  vb.eq(dance.spine[idx].get(dance.spine[idx].size()-1,va).eqPlus(dance.centroid[idx])).eqTimes(1000*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size).eqMinus(3);
+                  v.eq(dance.spine[idx].get(0,va).eqPlus(dance.centroid(idx))).eqTimes(1000*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size).eqMinus(3);
+                  vb.eq(dance.spine[idx].get(dance.spine[idx].size()-1,va).eqPlus(dance.centroid(idx))).eqTimes(1000*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size).eqMinus(3);
                   if (vb.dist2(v) > 400) {
                     g2.drawOval(Math.round((float)v.x),Math.round((float)v.y),6,6);
                     g2.drawRect(Math.round((float)vb.x),Math.round((float)vb.y),6,6);
@@ -207,13 +217,13 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
             }
           }
           else {
-            w = dance.bearing[idx].toD().eqNorm().eqTimes( 0.5*dance.extent[idx].x );
-            u = dance.centroid[idx].toD().eqMinus( w ).eqTimes(1000*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size);
-            v = dance.centroid[idx].toD().eqPlus( w ).eqTimes(1000*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size);
+            w = dance.bearing(idx).toD().eqNorm().eqTimes( 0.5*dance.ex[idx] );
+            u = dance.centroid(idx).toD().eqMinus( w ).eqTimes(1000*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size);
+            v = dance.centroid(idx).toD().eqPlus( w ).eqTimes(1000*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size);
             s.moveTo(u.x,u.y); s.lineTo(v.x,v.y);
-            w = (new Vec2D(1,1)).eqCross( dance.bearing[idx].toD().eqNorm().eqTimes( 0.5*dance.extent[idx].y ) );
-            u = dance.centroid[idx].toD().eqMinus( w ).eqTimes(1000*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size);
-            v = dance.centroid[idx].toD().eqPlus( w ).eqTimes(1000*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size);
+            w = (new Vec2D(1,1)).eqCross( dance.bearing(idx).toD().eqNorm().eqTimes( 0.5*dance.ey[idx] ) );
+            u = dance.centroid(idx).toD().eqMinus( w ).eqTimes(1000*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size);
+            v = dance.centroid(idx).toD().eqPlus( w ).eqTimes(1000*chore.mm_per_pixel).eqMinus(view_pos).eqTimes(1.0/size);
             s.moveTo(u.x,u.y); s.lineTo(v.x,v.y);
           }
           g2.draw(s);
@@ -298,8 +308,17 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
     }
     public Backgrounder atTime(double t) { return this; }
     public int idAtTime(double t) { return 0; }
+    // A copy that can move through time on another thread; only backgrounds that change with time need one
+    public Backgrounder fork() { return this; }
+    // Playback is at t going speed data seconds a second, in case we want to get ready
+    public void expect(double t,double speed) { }
     public String bgName() { return "Black"; }
     public String toString() { return bgName(); }
+    // Writes rows j0 until j1 of the request's background straight into an ARGB raster; override if colorAt depends on position
+    public void fill(int[] pixels,int scan,int j0,int j1,ViewRequest vr) {
+      int c = colorAt(vr.pos);
+      for (int j=j0 ; j<j1 ; j++) Arrays.fill(pixels , j*scan , j*scan+vr.dim.x , c);
+    }
   }
   
   class Whitegrounder extends Backgrounder {
@@ -325,29 +344,16 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
   class Imagegrounder extends Backgrounder {
     Choreography chore;
     int which = -1;
-    int last = -1;
     HashMap< Long , Integer > timeindex = new HashMap< Long , Integer >();
     long keytimes[];
-    BufferedImage lastbi;
-    BufferedImage bi;
+    BackgroundCache.Picture pic;
     public Imagegrounder(Choreography c) {
       chore = c;
-      bi = null;
+      pic = null;
       if (chore!=null) {
-        if (chore.png_zip!=null) {
-          try {
-            lastbi = bi = ImageIO.read( chore.directory_zip.getInputStream(chore.png_zip) );
-            timeindex.put(0L,-1);
-          }
-          catch (IOException ioe) { }
-          
-        }
-        else if (chore.png_file!=null) {
-          try {
-            lastbi = bi = ImageIO.read(chore.png_file);
-            timeindex.put(0L,-1);
-          }
-          catch (IOException ioe) { } // Just leave it null if we can't read it
+        if (chore.png_zip!=null || chore.png_file!=null) {
+          pic = background_images.get(-1);
+          if (pic!=null) timeindex.put(0L,-1);
         }
         if (chore.png_zip!=null && chore.png_zip_set != null && chore.png_zip_set.length > 0) {
           for (int i=0 ; i<chore.png_zip_set.length ; i++) {
@@ -376,11 +382,38 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
     @Override public int highlight() { return 0xFF000000; }
     @Override public int midlight() { return 0xFFFF00FF; }
     @Override public int colorAt(Vec2D p) {
-      if (chore==null || bi==null) return super.colorAt(p);
+      BackgroundCache.Picture image = pic;
+      if (chore==null || image==null) return super.colorAt(p);
       int x = (int)Math.round(p.y/(1000.0*chore.mm_per_pixel));  // Axes flipped thanks to LabView
       int y = (int)Math.round(p.x/(1000.0*chore.mm_per_pixel));  // Axes flipped thanks to LabView
-      if (x<0 || y<0 || x>=bi.getWidth() || y>=bi.getHeight()) return super.colorAt(p);
-      return bi.getRGB(x,y);
+      if (x<0 || y<0 || x>=image.width || y>=image.height) return super.colorAt(p);
+      return image.getRGB(x,y);
+    }
+    // Same pixels as colorAt, but copied in runs from the picture's columns instead of one lookup each
+    @Override public void fill(int[] pixels,int scan,int j0,int j1,ViewRequest vr) {
+      BackgroundCache.Picture image = pic;
+      if (chore==null || image==null) { super.fill(pixels,scan,j0,j1,vr); return; }
+      int[] src = image.columns;
+      int w = image.width;
+      int h = image.height;
+      int black = super.colorAt(vr.pos);
+      double px = 1000.0*chore.mm_per_pixel;
+      int[] ys = new int[vr.dim.x];
+      for (int i=0 ; i<ys.length ; i++) ys[i] = (int)Math.round((vr.pos.x + i*vr.size)/px);  // Axes flipped thanks to LabView
+      for (int j=j0 ; j<j1 ; j++) {
+        int x = (int)Math.round((vr.pos.y + j*vr.size)/px);
+        int o = j*scan;
+        if (x<0 || x>=w) { Arrays.fill(pixels , o , o+ys.length , black); continue; }
+        int i = 0;
+        while (i<ys.length) {
+          int y = ys[i];
+          if (y<0 || y>=h) { pixels[o+i] = black; i++; continue; }
+          int n = 1;
+          while (i+n<ys.length && ys[i+n]==y+n && y+n<h) n++;
+          System.arraycopy(src , x*h+y , pixels , o+i , n);
+          i += n;
+        }
+      }
     }
     @Override public int idAtTime(double t) {
       long tl = Math.round(t*1000);
@@ -395,72 +428,104 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
       if (Math.abs(tl-keytimes[j]) < 2L) return j;
       else return i;
     }
+    // Image number (for the cache) of key time i
+    int imageAt(int i) { return timeindex.get(keytimes[i]); }
     @Override public Backgrounder atTime(double t) {
       if (keytimes==null || keytimes.length==0) return this;
       int i = idAtTime(t);
-      if (i==which) { } // Already there, do nothing
-      else if (i==last) {
-        int temp = last;
-        BufferedImage tempbi = lastbi;
-        last = which;
-        lastbi = bi;
-        which = temp;
-        bi = tempbi;
-      }
-      else if (chore!=null) {
-        BufferedImage nextbi = null;
-        int k = timeindex.get(keytimes[i]);
-        int next = -1;
-        if (chore.png_zip_set != null && chore.png_zip_set.length > 0) {
-          try {
-            if (k<0) nextbi = ImageIO.read(chore.directory_zip.getInputStream(chore.png_zip));
-            else nextbi = ImageIO.read( chore.directory_zip.getInputStream(chore.png_zip_set[k]) );
-            next = i;
-          }
-          catch (IOException ioe) { }
-        }
-        else if (chore.png_set_files != null && chore.png_set_files.length > 0) {
-          try {
-            if (k<0) nextbi = ImageIO.read(chore.png_file);
-            else nextbi = ImageIO.read(chore.png_set_files[k]);
-            next = i;
-          }
-          catch (IOException ioe) { }
-        }
-        if (nextbi != null) {
-          last = which;
-          lastbi = bi;
-          which = next;
-          bi = nextbi;
-        }
+      if (i==which) return this;  // Already there, do nothing
+      BackgroundCache.Picture next = background_images.get(imageAt(i));
+      if (next != null) {
+        int after = i + Integer.signum(i-which);  // Whoever moves through the images one way probably keeps going that way
+        if (which >= 0 && after >= 0 && after < keytimes.length) background_images.readAhead( imageAt(after) );
+        which = i;
+        pic = next;
       }
       return this;
     }
+    // Reads ahead the images that playback from t at speed (data seconds per second, negative for backwards) will want in the next few seconds
+    @Override public void expect(double t,double speed) {
+      if (keytimes==null || keytimes.length<2 || speed==0) return;
+      int i = idAtTime(t);
+      int step = (speed > 0) ? 1 : -1;
+      long horizon = Math.round(1000*(t + speed*READ_AHEAD_SECONDS));
+      int[] ks = new int[BackgroundCache.MAX_PENDING];
+      int n = 0;
+      for (int j=i+step ; j>=0 && j<keytimes.length && n<ks.length ; j+=step) {
+        if (n>0 && ((step>0) ? keytimes[j]>horizon : keytimes[j]<horizon)) break;  // Always the very next one, then whatever comes up soon
+        ks[n++] = imageAt(j);
+      }
+      background_images.readAhead( Arrays.copyOf(ks,n) );
+    }
+    @Override public Backgrounder fork() { return new Imagegrounder(chore); }
     @Override public String bgName() { return "Image"; }
   }
   
   class Dimimagegrounder extends Imagegrounder {
     public Dimimagegrounder(Choreography c) { super(c); }
+    @Override public Backgrounder fork() { return new Dimimagegrounder(chore); }
     @Override public int highlight() { return 0xFFFFFFFF; }
     @Override public int midlight() { return 0xFFFF00FF; }
     @Override public int colorAt(Vec2D p) { return ((super.colorAt(p)>>1) & 0xFF7F7F7F) | 0xFF000000; }
+    @Override public void fill(int[] pixels,int scan,int j0,int j1,ViewRequest vr) {
+      super.fill(pixels,scan,j0,j1,vr);
+      for (int j=j0 ; j<j1 ; j++) {
+        for (int o=j*scan ; o<j*scan+vr.dim.x ; o++) pixels[o] = ((pixels[o]>>1) & 0xFF7F7F7F) | 0xFF000000;
+      }
+    }
     @Override public String bgName() { return "Dimmed"; }
   }
   
   
+  /* The painters in the dot menu are only patterns: each tile of a view is
+   * drawn by its own copy (see forTile), which paints only the rows
+   * j0 until j1 and is never shared between threads, so nothing here locks.
+   */
   class DotPainter {
     BufferedImage image;
+    int[] pixels;  // image's ARGB raster, if we can write it directly
+    int scan;
+    int j0 = 0, j1 = Integer.MAX_VALUE;
     ViewRequest request;
     Dance dance;
     ColorMapper cm;
+    DotPainter[] tiles;
     public DotPainter() { image=null; cm = null; dance=null; }
-    public synchronized void setTarget(BufferedImage bi) { image=bi; }
-    public synchronized void setSubject(Dance d) { dance=d; }
-    public synchronized void setRequest(ViewRequest vr) { request=vr; }
-    public synchronized void setMapper(ColorMapper c) { cm=c; }
-    public synchronized void putDot(Vec2D v,int index,double value) { if (v!=null) justADot(v,value); }
-    public synchronized void justADot(Vec2D v,double value) { image.setRGB((int)Math.round(v.x),(int)Math.round(v.y),cm.colorMap(value)); }
-    public synchronized void allDone() { }
+    public DotPainter fork() { return new DotPainter(); }
+    // Our copy for tile k, made the first time and reused after that
+    public DotPainter forTile(int k) {
+      if (tiles==null || tiles.length<=k) tiles = (tiles==null) ? new DotPainter[k+1] : Arrays.copyOf(tiles,k+1);
+      if (tiles[k]==null) tiles[k] = fork();
+      return tiles[k];
+    }
+    public void setTile(int lo,int hi) { j0=lo; j1=hi; }
+    public void setTarget(BufferedImage bi) {
+      image=bi;
+      pixels = (bi==null) ? null : rasterOf(bi);
+      scan = (pixels==null) ? 0 : bi.getWidth();
+    }
+    public void setSubject(Dance d) { dance=d; }
+    public void setRequest(ViewRequest vr) { request=vr; }
+    public void setMapper(ColorMapper c) { cm=c; }
+    // Microns per pixel in the view being drawn; each request has its own, since a map drawn to files never touches the window's
+    public double pixelSize() { return request.size; }
+    // How many rows beyond its own a dot may reach, or -1 if every dot can matter anywhere
+    public int reach() { return 0; }
+    public void putDot(Vec2D v,int index,double value) { if (v!=null) justADot(v,value); }
+    public void justADot(Vec2D v,double value) {
+      int y = (int)Math.round(v.y);
+      if (y<j0 || y>=j1) return;
+      if (pixels!=null) pixels[y*scan + (int)Math.round(v.x)] = cm.colorMap(value);
+      else image.setRGB((int)Math.round(v.x),y,cm.colorMap(value));
+    }
+    public void allDone() { }
+    // Antialiased, and clipped to our tile
+    Graphics2D graphicsFor(BufferedImage bi) {
+      Graphics2D g = bi.createGraphics();
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
+      g.clipRect(0 , j0 , bi.getWidth() , Math.min(j1,bi.getHeight())-j0);
+      return g;
+    }
     public String dotName() { return "Pixel"; }
     public String toString() { return dotName(); }
   }
@@ -469,16 +534,18 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
     double diameter;
     Graphics2D g2;
     public CirclePainter(double d) { super(); g2=null; diameter = d; }
-    @Override public synchronized void setTarget(BufferedImage bi) {
+    @Override public DotPainter fork() { return new CirclePainter(diameter); }
+    @Override public void setTarget(BufferedImage bi) {
       super.setTarget(bi);
-      if (bi!=null) { g2=bi.createGraphics(); g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON); }
-      else g2=null;
+      if (g2!=null) g2.dispose();
+      g2 = (bi!=null) ? graphicsFor(bi) : null;
     }
-    @Override public synchronized void putDot(Vec2D v,int index,double value) {
-      if (diameter < lastPixelSize) super.putDot(v,index,value);
+    @Override public int reach() { return (diameter < pixelSize()) ? 0 : 2 + (int)Math.ceil(0.5*diameter/pixelSize()); }
+    @Override public void putDot(Vec2D v,int index,double value) {
+      if (diameter < pixelSize()) super.putDot(v,index,value);
       else {
         g2.setColor(new Color(cm.colorMap(value)));
-        double diam = diameter/lastPixelSize;
+        double diam = diameter/pixelSize();
         g2.drawOval(
           (int)Math.round(v.x-0.5*diam),
           (int)Math.round(v.y-0.5*diam),
@@ -493,7 +560,9 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
   class SpotPainter extends CirclePainter {
     Ellipse2D spot;
     public SpotPainter(double d) { super(d); spot = new Ellipse2D.Double(0,0,0,0); }
-    @Override public synchronized void putDot(Vec2D v,int index,double value) {
+    @Override public DotPainter fork() { return new SpotPainter(diameter); }
+    @Override public int reach() { return 2 + (int)Math.ceil(0.5*diameter); }
+    @Override public void putDot(Vec2D v,int index,double value) {
       if (g2!=null) {
         spot.setFrame(v.x - 0.5*diameter , v.y-0.5*diameter , diameter , diameter);
         g2.setColor( new Color(cm.colorMap(value)) );
@@ -516,14 +585,18 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
       super(); g2=null; backup=dp; recent=null; recent_value=0.0; recent_number=0;
       dwell=new Ellipse2D.Double(); straight=new Line2D.Double(); arc=new Arc2D.Double(); 
     }
-    @Override public synchronized void setTarget(BufferedImage bi) {
+    @Override public DotPainter fork() { return new LinePainter( (backup==null) ? null : backup.fork() ); }
+    @Override public void setTile(int lo,int hi) { super.setTile(lo,hi); if (backup!=null) backup.setTile(lo,hi); }
+    @Override public void setTarget(BufferedImage bi) {
       super.setTarget(bi);
       if (backup!=null) backup.setTarget(bi);
-      if (bi!=null) { g2=bi.createGraphics(); g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON); }
-      else g2 = null;
+      if (g2!=null) g2.dispose();
+      g2 = (bi!=null) ? graphicsFor(bi) : null;
     }
-    @Override public synchronized void setSubject(Dance d) { recent=null; super.setSubject(d); if (backup!=null) backup.setSubject(d); }
-    @Override public synchronized void setMapper(ColorMapper c) { super.setMapper(c); if (backup!=null) backup.setMapper(c); }
+    @Override public int reach() { return -1; }  // Segments are averaged over every dot in them, wherever they fall
+    @Override public void setSubject(Dance d) { recent=null; super.setSubject(d); if (backup!=null) backup.setSubject(d); }
+    @Override public void setMapper(ColorMapper c) { super.setMapper(c); if (backup!=null) backup.setMapper(c); }
+    @Override public void setRequest(ViewRequest vr) { super.setRequest(vr); if (backup!=null) backup.setRequest(vr); }
     protected void putArrowhead(Vec2D where,Vec2F arrow,float arlen) {
       arlen *= 0.1f;
       if (arlen < 3.0f) arlen = 3.0f;
@@ -558,8 +631,8 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
       else if (recent.kind==Dance.Styled.Straight) {
         int i0 = recent.i0;
         int i1 = recent.i1;
-        double c0 = recent.fit.line.lineCoord( dance.centroid[i0].x , dance.centroid[i0].y );
-        double c1 = recent.fit.line.lineCoord( dance.centroid[i1].x , dance.centroid[i1].y );
+        double c0 = recent.fit.line.lineCoord( dance.cx[i0] , dance.cy[i0] );
+        double c1 = recent.fit.line.lineCoord( dance.cx[i1] , dance.cy[i1] );
         if (recent.endpoints!=null) {
           int i,j;
           double c;
@@ -567,17 +640,17 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
           for (j=0 ; j<recent.endpoints.length ; j++) {
             i = recent.endpoints[j];
             if (i==i0 || i==i1) continue;
-            c = recent.fit.line.lineCoord( dance.centroid[i].x , dance.centroid[i].y );
+            c = recent.fit.line.lineCoord( dance.cx[i] , dance.cy[i] );
             if (c>c1) { i1=i; c1=c; }
             else if (c<c0) { i0=i; c0=c; }
           }
         }
-        pixeler.eq(dance.centroid[i0]);
+        pixeler.eq(dance.cx[i0],dance.cy[i0]);
         recent.snapToLine(pixeler);
         pixeler.eqTimes(1000*chore.mm_per_pixel).eqMinus(request.pos).eqTimes(1.0/request.size);
         straight.x1 = pixeler.x;
         straight.y1 = pixeler.y;
-        pixeler.eq(dance.centroid[i1]);
+        pixeler.eq(dance.cx[i1],dance.cy[i1]);
         recent.snapToLine(pixeler);
         pixeler.eqTimes(1000*chore.mm_per_pixel).eqMinus(request.pos).eqTimes(1.0/request.size);
         straight.x2 = pixeler.x;
@@ -589,15 +662,15 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
       else if (recent.kind==Dance.Styled.Arc) {
         int i0 = recent.i0;
         int i1 = recent.i1;
-        double c = recent.fit.circ.arcDeltaCoord( dance.centroid[i0].x , dance.centroid[i0].y , dance.centroid[i1].x , dance.centroid[i1].y );
+        double c = recent.fit.circ.arcDeltaCoord( dance.cx[i0] , dance.cy[i0] , dance.cx[i1] , dance.cy[i1] );
         if (recent.endpoints!=null) {
           int i,j;
           double c0,c1;
           for (j=0 ; j<recent.endpoints.length ; j++) {
             i = recent.endpoints[j];
             if (i==i0 || i==i1) continue;
-            c0 = recent.fit.circ.arcDeltaCoord( dance.centroid[i0].x , dance.centroid[i0].y , dance.centroid[i].x , dance.centroid[i].y );
-            c1 = recent.fit.circ.arcDeltaCoord( dance.centroid[i1].x , dance.centroid[i1].y , dance.centroid[i].x , dance.centroid[i].y );
+            c0 = recent.fit.circ.arcDeltaCoord( dance.cx[i0] , dance.cy[i0] , dance.cx[i] , dance.cy[i] );
+            c1 = recent.fit.circ.arcDeltaCoord( dance.cx[i1] , dance.cy[i1] , dance.cx[i] , dance.cy[i] );
             if (Math.abs(c0)>Math.abs(c) || Math.abs(c1)>Math.abs(c)) {
               if (Math.abs(c1)>Math.abs(c0)) { i0=i; c=-c1; }
               else { i1=i; c=c0; }
@@ -612,7 +685,7 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
         arc.x = pixeler.x - radius;
         arc.y = pixeler.y - radius;
         arc.height = arc.width = 2*radius;
-        pixeler.eq(dance.centroid[i0]);
+        pixeler.eq(dance.cx[i0],dance.cy[i0]);
         recent.snapToLine(pixeler);
         pixeler.x -= recent.fit.circ.params.x0;
         pixeler.y -= recent.fit.circ.params.y0;
@@ -625,16 +698,16 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
       if (line_length>3.0f && recent.hasDirection()) {
         Vec2F arrowhead = new Vec2F();
         recent.initialVector(arrowhead);
-        pixeler.eq( (recent.endpoints==null) ? dance.centroid[recent.i0] : dance.centroid[recent.endpoints[0]] );
+        pixeler.eq( (recent.endpoints==null) ? dance.centroid(recent.i0) : dance.centroid(recent.endpoints[0]) );
         recent.snapToLine(pixeler);
         putArrowhead(pixeler,arrowhead,line_length);
         recent.finalVector(arrowhead);
-        pixeler.eq( (recent.endpoints==null) ? dance.centroid[recent.i1] : dance.centroid[recent.endpoints[recent.endpoints.length-1]] );
+        pixeler.eq( (recent.endpoints==null) ? dance.centroid(recent.i1) : dance.centroid(recent.endpoints[recent.endpoints.length-1]) );
         recent.snapToLine(pixeler);
         putArrowhead(pixeler,arrowhead,line_length);
       }
     }
-    @Override public synchronized void putDot(Vec2D v,int index,double value) {
+    @Override public void putDot(Vec2D v,int index,double value) {
       if (backup!=null) backup.putDot(v,index,value);
       else super.putDot(v,index,value);
       
@@ -654,7 +727,7 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
         recent_number = 1;
       }
     }
-    @Override public synchronized void allDone() {
+    @Override public void allDone() {
       if (recent!=null) {
         putLine(recent_value/recent_number);
         recent = null;
@@ -673,21 +746,23 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
       frc = null;
       id_string = null;
     }
-    @Override public synchronized void setTarget(BufferedImage bi) {
+    @Override public DotPainter fork() { return new IdentityPainter(diameter); }
+    @Override public int reach() { return (diameter < 3.0*pixelSize() || g2==null) ? 0 : 32; }  // Text is at most 16 points
+    @Override public void setTarget(BufferedImage bi) {
       super.setTarget(bi);
       if (g2!=null) {
-        f = new Font(Font.SANS_SERIF,Font.PLAIN,Math.min(16,(int)Math.round(diameter/lastPixelSize)));
+        f = new Font(Font.SANS_SERIF,Font.PLAIN,Math.min(16,(int)Math.round(diameter/pixelSize())));
         g2.setFont(f);
         frc = g2.getFontRenderContext();
       }
       else { f=null; frc=null; }
     }
-    @Override public synchronized void setSubject(Dance d) {
+    @Override public void setSubject(Dance d) {
       super.setSubject(d);
       if (d!=null) id_string = String.valueOf(d.ID); else id_string = "X";
     }
-    @Override public synchronized void putDot(Vec2D v,int index,double value) {
-      if (diameter < 3.0*lastPixelSize || g2==null) justADot(v,value);
+    @Override public void putDot(Vec2D v,int index,double value) {
+      if (diameter < 3.0*pixelSize() || g2==null) justADot(v,value);
       else if (g2!=null) {
         g2.setColor(new Color(cm.colorMap(value)));
         TextLayout tl = new TextLayout(myString(index),f,frc);
@@ -701,6 +776,7 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
   
   class FramePainter extends IdentityPainter {
     public FramePainter(double d) { super(d); }
+    @Override public DotPainter fork() { return new FramePainter(diameter); }
     @Override public String myString(int index) { return (dance==null) ? "X" : String.valueOf(index); }
     @Override public String dotName() { return "Frame"; }
   }
@@ -709,7 +785,13 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
     Choreography.DataPrinter printer;
     public ValuePainter(double d) { super(d); printer=null; }
     public synchronized void setPrinter(Choreography.DataPrinter dp) { printer=dp; }
-    @Override public synchronized String myString(int index) { 
+    @Override public DotPainter fork() { return new ValuePainter(diameter); }
+    @Override public synchronized DotPainter forTile(int k) {
+      ValuePainter vp = (ValuePainter)super.forTile(k);
+      vp.printer = printer;
+      return vp;
+    }
+    @Override public String myString(int index) { 
       if (dance==null || dance.quantity==null || index<0 || index>=dance.quantity.length) return "X";
       return printer.printValue( dance.quantity[index] );
     }
@@ -786,6 +868,254 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
   }
   
   
+  // Where one dancer's dots land in a view (pixels from the top left of the request), and what they're worth
+  static class DotList {
+    int n = 0;
+    double[] x = new double[16];
+    double[] y = new double[16];
+    double[] value = new double[16];
+    int[] index = new int[16];
+    void add(Vec2D v,int k,double val) {
+      if (n==x.length) {
+        x = Arrays.copyOf(x,2*n); y = Arrays.copyOf(y,2*n);
+        value = Arrays.copyOf(value,2*n); index = Arrays.copyOf(index,2*n);
+      }
+      x[n] = v.x; y[n] = v.y; value[n] = val; index[n] = k;
+      n++;
+    }
+  }
+  
+  // Everyone seekTimeIndex could find within TIME_TOLERANCE of t, from attendance rather than asking every dancer
+  Dance[] presentNear(double t) {
+    Attendance att = chore.attendance;
+    if (att==null || att.dances!=chore.dances || att.frames()!=chore.times.length) return chore.dances;
+    Vec2I f = framesNear(t,t);
+    int[] which = att.spanning(f.x,f.y);
+    Dance[] near = new Dance[which.length];
+    for (int i=0 ; i<which.length ; i++) near[i] = chore.dances[which[i]];
+    return near;
+  }
+  
+  // First frame not before t0-TIME_TOLERANCE and last not after t1+TIME_TOLERANCE (the last comes first if there are none)
+  Vec2I framesNear(double t0,double t1) {
+    int lo = 0;
+    int hi = chore.times.length;
+    while (lo<hi) { int m = (lo+hi)>>>1; if (chore.times[m] < t0-TIME_TOLERANCE) lo = m+1; else hi = m; }
+    int first = lo;
+    lo = 0;
+    hi = chore.times.length;
+    while (lo<hi) { int m = (lo+hi)>>>1; if (chore.times[m] <= t1+TIME_TOLERANCE) lo = m+1; else hi = m; }
+    return new Vec2I(first , lo-1);
+  }
+  
+  // Indices into dances, in order, of everyone who might be seen between corners a and b (in microns) from t0 to t1; null if the index can't say
+  int[] visibleNear(double t0,double t1,Vec2D a,Vec2D b) {
+    Whereabouts w = whereabouts;
+    if (w==null || w.dances!=chore.dances || w.frames()!=chore.times.length) return null;
+    Vec2I f = framesNear(Math.min(t0,t1) , Math.max(t0,t1));
+    int[] near = w.near(a.x , a.y , b.x , b.y , Math.min(f.x,f.y)-1 , Math.max(f.x,f.y)+1);  // A frame either side, since seeking rounds to the nearest
+    // Dance.seekTimeIndices starts from the beginning if t0 is on or just past someone's last frame, so they could be anywhere
+    Vec2I g = framesNear(Math.min(t0,t1) , Math.min(t0,t1));
+    int[] ended = w.ending(Math.min(g.x,g.y)-1 , Math.max(g.x,g.y)+1);
+    if (ended.length==0) return near;
+    int[] both = new int[near.length + ended.length];
+    int n = 0;
+    for (int i=0, j=0 ; i<near.length || j<ended.length ; ) {
+      int k = (j>=ended.length || (i<near.length && near[i]<=ended[j])) ? near[i++] : ended[j++];
+      if (n==0 || both[n-1]!=k) both[n++] = k;
+    }
+    return Arrays.copyOf(both,n);
+  }
+  
+  // The dots for one dancer, or null if it has no data in the time range (so the painter never hears of it)
+  DotList placeDots(Dance d,ViewRequest vr,ValueSource vs,Vec2F this_corner,Vec2F other_corner,double area) {
+    Vec2I clip = d.seekTimeIndices( chore.times , vr.t_range , TIME_TOLERANCE );
+    if (clip==null) return null;
+    DotList dl = new DotList();
+    Vec2D v = new Vec2D();
+    double pixelSize = vr.size;
+    
+    int scale;
+    double stepsize;
+    for (scale = 0 ; scale < d.multiscale_x.data.length-1 ; scale++)
+    {
+      stepsize = d.multiscale_x.diffsize[scale] + d.multiscale_y.diffsize[scale];
+      if (stepsize*ANTIALIASING_FACTOR > pixelSize) break;
+    }
+    if (d.ranges_xy.boundedArea() * AREA_FRACTION_OPTIMIZED > area)
+    {
+      java.util.List<QuadRanger.Interval> lqri = d.ranges_xy.accumulateValid(this_corner,other_corner,null);
+      for (QuadRanger.Interval qri : lqri)
+      {
+        int k0 = Math.max(qri.x0 , clip.x);
+        int k1 = Math.min(qri.x1 , clip.y+1);
+        if (k1<k0) continue;
+        
+        for (int k=k0 ; k<k1 ; k++)
+        {
+          v.eq( d.multiscale_x.data[0][k] , d.multiscale_y.data[0][k] );
+          v.eqMinus(vr.pos).eqDivide(pixelSize);
+          if (v.x < 0 || v.y < 0 || v.x+0.5001 >= vr.dim.x || v.y+0.5001 >= vr.dim.y) continue;
+          dl.add( v , k , vs.valueAt(d,k) );
+        }
+      }
+    }
+    else
+    {
+      for (int k=0 ; k < d.multiscale_x.data[ scale ].length ; k++)
+      {
+        v.eq( d.multiscale_x.data[ scale ][k] , d.multiscale_y.data[ scale ][k] );
+        v.eqMinus(vr.pos).eqDivide(pixelSize);
+        if (v.x < 0 || v.y < 0 || v.x+0.5001 >= vr.dim.x || v.y+0.5001 >= vr.dim.y) continue;
+        int idx = (int)(k*Math.pow(2,scale));
+        if (idx<clip.x || idx>clip.y) continue;
+        dl.add( v , idx , vs.valueAt(d,idx) );
+      }
+    }
+    return dl;
+  }
+  
+  // Background and dots for rows j0 until j1; every tile goes through the dancers in the same order, so overlaps come out as in one pass
+  void paintTile(DotPainter dp,DotList[] dots,BufferedImage buffer,int[] pixels,int j0,int j1,ViewRequest vr,Backgrounder bg,ColorMapper cm) {
+    if (pixels!=null) bg.fill(pixels , buffer.getWidth() , j0 , j1 , vr);
+    else {
+      Vec2D v = new Vec2D();
+      for (int j=j0 ; j<j1 ; j++)
+      {
+        v.y = vr.pos.y + j*vr.size;
+        for (int i=0 ; i<vr.dim.x ; i++)
+        {
+          v.x = vr.pos.x + i*vr.size;
+          buffer.setRGB(i,j,bg.colorAt(v));
+        }
+      }
+    }
+    
+    dp.setTile(j0,j1);
+    dp.setRequest(vr);  // Before the target, which may size a font to the pixels
+    dp.setTarget(buffer);
+    dp.setMapper(cm);
+    int reach = dp.reach();
+    double lo = (reach<0) ? Double.NEGATIVE_INFINITY : j0-reach-1;
+    double hi = (reach<0) ? Double.POSITIVE_INFINITY : j1+reach;
+    Vec2D v = new Vec2D();
+    for (int i=0 ; i<dots.length ; i++)
+    {
+      DotList dl = dots[i];
+      if (dl==null) continue;
+      dp.setSubject(chore.dances[i]);
+      for (int m=0 ; m<dl.n ; m++)
+      {
+        if (dl.y[m] < lo || dl.y[m] > hi) continue;
+        v.eq(dl.x[m],dl.y[m]);
+        dp.putDot( v , dl.index[m] , dl.value[m] );
+      }
+    }
+    dp.allDone();
+    dp.setTarget(null);
+  }
+  
+  class PlaceSpan extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    final DotList[] dots;
+    final int[] which;  // Indices of the dancers to place, or null for all of them
+    final ViewRequest vr;
+    final ValueSource vs;
+    final Vec2F this_corner, other_corner;
+    final double area;
+    final int i0,i1;
+    PlaceSpan(DotList[] dots,int[] which,ViewRequest vr,ValueSource vs,Vec2F this_corner,Vec2F other_corner,double area,int i0,int i1) {
+      this.dots = dots; this.which = which; this.vr = vr; this.vs = vs; this.this_corner = this_corner; this.other_corner = other_corner; this.area = area; this.i0 = i0; this.i1 = i1;
+    }
+    protected void compute() {
+      if (i1-i0 <= DANCERS_PER_TASK) {
+        for (int i=i0 ; i<i1 ; i++) {
+          int k = (which==null) ? i : which[i];
+          if (chore.dances[k]!=null) dots[k] = placeDots(chore.dances[k],vr,vs,this_corner,other_corner,area);
+        }
+      }
+      else {
+        int m = (i0+i1)>>>1;
+        invokeAll(new PlaceSpan(dots,which,vr,vs,this_corner,other_corner,area,i0,m) , new PlaceSpan(dots,which,vr,vs,this_corner,other_corner,area,m,i1));
+      }
+    }
+  }
+  
+  // Tile k covers an equal share of the request's rows
+  class TileSpan extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    final DotPainter[] painters;
+    final DotList[] dots;
+    final BufferedImage buffer;
+    final int[] pixels;
+    final ViewRequest vr;
+    final Backgrounder bg;
+    final ColorMapper cm;
+    final int k0,k1;
+    TileSpan(DotPainter[] painters,DotList[] dots,BufferedImage buffer,int[] pixels,ViewRequest vr,Backgrounder bg,ColorMapper cm,int k0,int k1) {
+      this.painters = painters; this.dots = dots; this.buffer = buffer; this.pixels = pixels; this.vr = vr; this.bg = bg; this.cm = cm; this.k0 = k0; this.k1 = k1;
+    }
+    protected void compute() {
+      if (k1-k0 <= 1) {
+        int n = painters.length;
+        for (int k=k0 ; k<k1 ; k++) paintTile(painters[k] , dots , buffer , pixels , (int)((long)vr.dim.y*k/n) , (int)((long)vr.dim.y*(k+1)/n) , vr , bg , cm);
+      }
+      else {
+        int m = (k0+k1)>>>1;
+        invokeAll(new TileSpan(painters,dots,buffer,pixels,vr,bg,cm,k0,m) , new TileSpan(painters,dots,buffer,pixels,vr,bg,cm,m,k1));
+      }
+    }
+  }
+  
+  // Work out where every dancer's dots go, then draw the request into buffer in horizontal tiles, one per painter; both fan out over the pool if asked
+  void drawRequest(ViewRequest vr,BufferedImage buffer,Backgrounder bg,ColorMapper cm,DotPainter[] painters,ValueSource vs,boolean pooled) {
+    Vec2F this_corner = vr.pos.toF();
+    Vec2F other_corner = vr.urc.toD().eqTimes(vr.size).toF();
+    double area = other_corner.opMinus(this_corner).length2();
+    DotList[] dots = new DotList[chore.dances.length];
+    int[] which = visibleNear(vr.t_range.x , vr.t_range.y , vr.pos , vr.urc.toD().eqTimes(vr.size));  // Anyone left out would have had no dots anyway
+    PlaceSpan places = new PlaceSpan(dots,which,vr,vs,this_corner,other_corner,area,0,(which==null) ? dots.length : which.length);
+    TileSpan tiles = new TileSpan(painters,dots,buffer,rasterOf(buffer),vr,bg,cm,0,painters.length);
+    if (pooled) {
+      chore.statsPool().invoke(places);
+      chore.statsPool().invoke(tiles);
+    }
+    else {
+      places.compute();
+      tiles.compute();
+    }
+  }
+  
+  /* One view from scratch, for times t_range with the present at t_now,
+   * ignoring the menus, the time bar, and the cache.  Several threads can
+   * draw at once as long as each brings its own painter and backgrounder
+   * (see DotPainter.forTile and Backgrounder.fork).
+   */
+  public BufferedImage drawView(Vec2D position,Vec2I dimensions,double pixelSize,Vec2D t_range,double t_now,ColorMapper cm,Backgrounder bg,DotPainter dp,ValueSource vs)
+  {
+    ViewRequest vr = new ViewRequest(position , dimensions , pixelSize , t_range , t_now , bg.idAtTime(t_now));
+    vr.coloration = cm;
+    vr.background = bg.atTime(t_now);
+    vr.dotter = dp;
+    vr.valuer = vs;
+    BufferedImage buffer = new BufferedImage(vr.dim.x , vr.dim.y , BufferedImage.TYPE_INT_ARGB);
+    drawRequest(vr,buffer,vr.background,cm,new DotPainter[] { dp },vs,false);
+    vr.buf = buffer;
+    vr.setView(position,dimensions,t_now);
+    return vr.view;
+  }
+  
+  // The int[] behind a plain ARGB image, or null if it isn't one we can write pixels into directly
+  static int[] rasterOf(BufferedImage bi) {
+    if (bi.getType() != BufferedImage.TYPE_INT_ARGB) return null;
+    WritableRaster wr = bi.getRaster();
+    if (wr.getParent()!=null || !(wr.getDataBuffer() instanceof DataBufferInt) || !(wr.getSampleModel() instanceof SinglePixelPackedSampleModel)) return null;
+    DataBufferInt dbi = (DataBufferInt)wr.getDataBuffer();
+    if (dbi.getNumBanks()!=1 || dbi.getOffset()!=0 || ((SinglePixelPackedSampleModel)wr.getSampleModel()).getScanlineStride()!=bi.getWidth()) return null;
+    return dbi.getData();
+  }
+  
+  
   class Player extends JPanel implements ChangeListener,ActionListener,Runnable {
     public boolean already_working_on_dancers = false;
     public AtomicBoolean painting;
@@ -868,6 +1198,7 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
       add(new JLabel("speed (%)"));
       
       waits_to_repaint = new Thread(this);
+      waits_to_repaint.setDaemon(true);  // An open window keeps us running; a map drawn only to files shouldn't
       waits_to_repaint.start();
     }
     
@@ -875,7 +1206,7 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
       if (already_working_on_dancers) return;  // Need this to avoid re-entering when we throw list-changed events on updating list
       already_working_on_dancers = true;
       TreeSet< Integer > present = new TreeSet< Integer >();
-      for (Dance d : chore.attendance.get(chore.indexNear(t))) {
+      for (Dance d : chore.attendance.at(chore.indexNear(t))) {
         if (d==null) continue;
         present.add(d.ID);
       }
@@ -984,6 +1315,7 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
             LinearSelectorBar.RangeSpinner lsb_rs = lsb.getTriSpinner();
             last_play_time.set( now );
             painting.set(true);
+            ((Backgrounder)background_picker.getSelectedItem()).expect( t+dt , (reverse.get() ? -0.01 : 0.01)*rate.get() );
             lsb_rs.setCenter(t+dt);
             
             // Check to make sure something actually happened
@@ -1010,8 +1342,10 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
   LinearSelectorBar lsb;
   java.util.List<DataReadyListener> drl_list;
   Rectangle2D.Double data_bounds;
+  Whereabouts whereabouts;
   java.util.List<ViewRequest> vr_list;
   double lastPixelSize;
+  BackgroundCache background_images;
   ColorMapper[] color_options;
   JComboBox color_picker;
   Backgrounder[] background_options;
@@ -1037,6 +1371,7 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
     drl_list = new LinkedList<DataReadyListener>();
     vr_list = new LinkedList<ViewRequest>();
     data_bounds = null;
+    whereabouts = new Whereabouts(chore.dances , chore.times.length);  // Dancers are ready for multiscale by now
 
     double[] d_times = new double[ chore.times.length ];
     for (int i=0;i<d_times.length;i++) d_times[i] = 0.001*Math.rint( chore.times[i]*1000 );  // Float has crappy precision--put it back at 3 decimals
@@ -1058,6 +1393,7 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
     color_picker.addActionListener(this);
     option_panel.add(color_picker);
     
+    background_images = new BackgroundCache(chore);
     background_options = new Backgrounder[5];
     background_options[0] = new Backgrounder();
     background_options[1] = new Whitegrounder();
@@ -1171,7 +1507,7 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
     try { id = Integer.valueOf(chosen); } catch (Exception e) { }
     if (id < 0) return null;
     if (tracked_dancer == null || tracked_dancer.ID!=id) {
-      LinkedList< Dance > ld = chore.attendance.get( chore.indexNear(t) );
+      ArrayList< Dance > ld = chore.attendance.at( chore.indexNear(t) );
       if (ld != null) {
         for (Dance d : ld) {
           if (d!=null && d.ID==id) {
@@ -1183,8 +1519,8 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
     }
     if (tracked_dancer != null && tracked_dancer.ID==id) {
       int idx = tracked_dancer.seekTimeIndex(chore.times,t,1e-3);
-      if (idx<0 || idx >= tracked_dancer.centroid.length) return null;
-      return tracked_dancer.centroid[idx].toD().eqTimes(1000*chore.mm_per_pixel);
+      if (idx<0 || idx >= tracked_dancer.cx.length) return null;
+      return tracked_dancer.centroid(idx).toD().eqTimes(1000*chore.mm_per_pixel);
     }
     else return null;
   }
@@ -1278,72 +1614,11 @@ public class DataMapper implements DataMapSource,ActionListener,ChangeListener
       buffer = new BufferedImage(vr.dim.x , vr.dim.y , BufferedImage.TYPE_INT_ARGB);
     }
     lastPixelSize = pixelSize;
-    Vec2D v = new Vec2D();
-    for (int j=0 ; j<vr.dim.y ; j++)
-    {
-      v.y = vr.pos.y + j*vr.size;
-      for (int i=0 ; i<vr.dim.x ; i++)
-      {
-        v.x = vr.pos.x + i*vr.size;
-        buffer.setRGB(i,j,bg.colorAt(v));
-      }
-    }
     
-    Vec2F this_corner = vr.pos.toF();
-    Vec2F other_corner = vr.urc.toD().eqTimes(pixelSize).toF();
-    double area = other_corner.opMinus(this_corner).length2();
-    java.util.List<QuadRanger.Interval> lqri = null;
-    
-    dp.setTarget(buffer);
-    dp.setRequest(vr);
-    dp.setMapper(cm);
-    for (Dance d : chore.dances)
-    {
-      if (d==null) continue;
-      Vec2I clip = d.seekTimeIndices( chore.times , vr.t_range , TIME_TOLERANCE );
-      if (clip==null) continue;
-      dp.setSubject(d);
-      
-      int scale;
-      double stepsize;
-      for (scale = 0 ; scale < d.multiscale_x.data.length-1 ; scale++)
-      {
-        stepsize = d.multiscale_x.diffsize[scale] + d.multiscale_y.diffsize[scale];
-        if (stepsize*ANTIALIASING_FACTOR > pixelSize) break;
-      }
-      if (d.ranges_xy.boundedArea() * AREA_FRACTION_OPTIMIZED > area)
-      {
-        lqri = d.ranges_xy.accumulateValid(this_corner,other_corner,null);
-        for (QuadRanger.Interval qri : lqri)
-        {
-          int k0 = Math.max(qri.x0 , clip.x);
-          int k1 = Math.min(qri.x1 , clip.y+1);
-          if (k1<k0) continue;
-          
-          for (int k=k0 ; k<k1 ; k++)
-          {
-            v.eq( d.multiscale_x.data[0][k] , d.multiscale_y.data[0][k] );
-            v.eqMinus(vr.pos).eqDivide(pixelSize);
-            if (v.x < 0 || v.y < 0 || v.x+0.5001 >= vr.dim.x || v.y+0.5001 >= vr.dim.y) continue;
-            dp.putDot( v , k , vs.valueAt(d,k) );
-          }
-        }
-      }
-      else
-      {
-        for (int k=0 ; k < d.multiscale_x.data[ scale ].length ; k++)
-        {
-          v.eq( d.multiscale_x.data[ scale ][k] , d.multiscale_y.data[ scale ][k] );
-          v.eqMinus(vr.pos).eqDivide(pixelSize);
-          if (v.x < 0 || v.y < 0 || v.x+0.5001 >= vr.dim.x || v.y+0.5001 >= vr.dim.y) continue;
-          int idx = (int)(k*Math.pow(2,scale));
-          if (idx<clip.x || idx>clip.y) continue;
-          dp.putDot( v , idx , vs.valueAt(d,idx) );
-        }
-      }
-    }
-    dp.allDone();
-    dp.setTarget(null);
+    int n_tiles = (chore.n_threads > 1) ? Math.max(1 , Math.min(chore.n_threads , vr.dim.y/MIN_TILE_ROWS)) : 1;
+    DotPainter[] painters = new DotPainter[n_tiles];
+    for (int k=0 ; k<n_tiles ; k++) painters[k] = dp.forTile(k);
+    drawRequest(vr,buffer,bg,cm,painters,vs,chore.n_threads > 1);
     
     vr.buf = buffer;
     vr.setView(position,dimensions,t_now);
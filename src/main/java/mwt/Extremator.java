@@ -0,0 +1,95 @@
+/* Extremator.java - Subdivides ranged data so extremes over any span are quick to find
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+/* Like Fractionator, but each bin of a level holds the lowest low and highest
+ * high of the bins below it instead of their mean, so a spike survives any
+ * amount of binning.  A span of the original data is then covered by a few
+ * bins from each level, never more than about 2*binning*depth of them.
+ * NaNs are skipped; a span with nothing else in it comes out NaN.
+ */
+public class Extremator
+{
+  public float lo[][];
+  public float hi[][];
+  int binsize;
+
+  public Extremator(float low[],float high[],int binning,int max_n)
+  {
+    binsize = binning;
+    if (binsize < 2) binsize = 2;
+    if (max_n < 1) max_n = 1;
+
+    int n_levels = 1;
+    int current_length = low.length;
+    while ( max_n < current_length ) { n_levels++; current_length = (current_length + binsize - 1)/binsize; }
+
+    lo = new float[n_levels][];
+    hi = new float[n_levels][];
+    lo[0] = low;
+    hi[0] = high;
+    for (int i=1 ; i<n_levels ; i++)
+    {
+      int n = (lo[i-1].length + binsize - 1)/binsize;
+      lo[i] = new float[n];
+      hi[i] = new float[n];
+      for (int j=0 ; j<n ; j++)
+      {
+        float a = Float.NaN;
+        float b = Float.NaN;
+        for (int k = binsize*j ; k < binsize*(j+1) && k < lo[i-1].length ; k++)
+        {
+          float l = lo[i-1][k];
+          float h = hi[i-1][k];
+          if (!(l >= a) && !Float.isNaN(l)) a = l;  // Comparisons with NaN are false, so the first number gets in
+          if (!(h <= b) && !Float.isNaN(h)) b = h;
+        }
+        lo[i][j] = a;
+        hi[i][j] = b;
+      }
+    }
+  }
+
+  public int depth() { return lo.length; }
+  public int length() { return lo[0].length; }
+
+  // Lowest and highest values from index i to j inclusive, in fa[0] and fa[1]
+  public float[] range(int i,int j,float[] fa)
+  {
+    if (fa==null || fa.length<2) fa = new float[2];
+    fa[0] = fa[1] = Float.NaN;
+    if (i<0) i = 0;
+    if (j>=lo[0].length) j = lo[0].length-1;
+    int level = 0;
+    while (i <= j)
+    {
+      if (level+1 < lo.length && j-i+1 >= 2*binsize)
+      {
+        // Pick off the ragged ends, then go up a level for the whole bins in between
+        while (i%binsize != 0) take(level,i++,fa);
+        while ((j+1)%binsize != 0) take(level,j--,fa);
+        i = i/binsize;
+        j = (j+1)/binsize - 1;
+        level++;
+      }
+      else
+      {
+        for ( ; i<=j ; i++) take(level,i,fa);
+      }
+    }
+    return fa;
+  }
+
+  void take(int level,int k,float[] fa)
+  {
+    float l = lo[level][k];
+    float h = hi[level][k];
+    if (!(l >= fa[0]) && !Float.isNaN(l)) fa[0] = l;
+    if (!(h <= fa[1]) && !Float.isNaN(h)) fa[1] = h;
+  }
+}
@@ -0,0 +1,148 @@
+/* FormatBuffer.java - Builds lines of numbers without going through String.format
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.io.*;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/* A reusable character buffer that numbers can be appended to.  add(x,n)
+ * gives exactly what String.format("%.nf",x) would, and add(i) exactly
+ * what Integer.toString(i) would, but without making a Formatter, boxing,
+ * or building intermediate strings; fill a line, write it out, clear, and
+ * go again.  Nothing is allocated once the buffer has grown to fit a line.
+ *
+ * Formatter rounds half-up on the shortest decimal that identifies the
+ * double, which isn't quite the same as rounding the binary value.  We
+ * scale and round in floating point, and hand anything close enough to a
+ * tie for the two to disagree (or too big to scale exactly) to
+ * String.format, as we do for NaN, infinities, and locales that don't
+ * write numbers with plain digits and a period.
+ */
+public class FormatBuffer
+{
+  static final int FAST_DIGITS = 9;
+  static final double FAST_LIMIT = 1e9;
+  static final double[] POWERS = { 1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9 };
+  static final String[] FORMATS = { "%.0f", "%.1f", "%.2f", "%.3f", "%.4f", "%.5f", "%.6f", "%.7f", "%.8f", "%.9f" };
+  static final char[] NEWLINE = System.getProperty("line.separator").toCharArray();
+  static final boolean PLAIN_LOCALE;
+  static
+  {
+    DecimalFormatSymbols dfs = DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT));
+    PLAIN_LOCALE = dfs.getDecimalSeparator()=='.' && dfs.getZeroDigit()=='0';
+  }
+
+  char[] buf;
+  int n;
+
+  public FormatBuffer() { this(256); }
+  public FormatBuffer(int capacity) { buf = new char[Math.max(16,capacity)]; n = 0; }
+
+  public int length() { return n; }
+  public FormatBuffer clear() { n = 0; return this; }
+
+  void room(int more)
+  {
+    if (n+more <= buf.length) return;
+    char[] bigger = new char[Math.max(n+more, 2*buf.length)];
+    System.arraycopy(buf, 0, bigger, 0, n);
+    buf = bigger;
+  }
+
+  public FormatBuffer add(char c)
+  {
+    room(1);
+    buf[n++] = c;
+    return this;
+  }
+
+  public FormatBuffer add(String s)
+  {
+    room(s.length());
+    s.getChars(0, s.length(), buf, n);
+    n += s.length();
+    return this;
+  }
+
+  // Same as Integer.toString(i)
+  public FormatBuffer add(int i)
+  {
+    if (i==Integer.MIN_VALUE) return add(Integer.toString(i));
+    room(11);
+    if (i<0) { buf[n++] = '-'; i = -i; }
+    int end = n + digitCount(i);
+    for (int k = end-1 ; k >= n ; k--) { buf[k] = (char)('0' + i%10); i /= 10; }
+    n = end;
+    return this;
+  }
+
+  // Same as String.format("%0<width>d",i), e.g. for object IDs
+  public FormatBuffer addPadded(int i, int width)
+  {
+    if (!PLAIN_LOCALE || i==Integer.MIN_VALUE) return add(String.format("%0" + width + "d", i));
+    room(Math.max(width,11));
+    if (i<0) { buf[n++] = '-'; i = -i; width--; }
+    for (int k = digitCount(i) ; k < width ; k++) buf[n++] = '0';
+    return add(i);
+  }
+
+  // Same as String.format("%.<digits>f",x); floats may be passed too, as Formatter widens them just the same
+  public FormatBuffer add(double x, int digits)
+  {
+    if (!PLAIN_LOCALE || digits < 0 || digits > FAST_DIGITS || Double.isNaN(x) || Double.isInfinite(x)) return slow(x, digits);
+    boolean negative = Double.doubleToRawLongBits(x) < 0;  // Formatter writes -0.0 as "-0.00" too
+    double scaled = Math.abs(x) * POWERS[digits];
+    if (scaled >= FAST_LIMIT) return slow(x, digits);
+    double whole = Math.floor(scaled);
+    double part = scaled - whole;
+    // Scaling is off by a few ulps at most, and so is Formatter's decimal; only a near-tie can go either way
+    if (Math.abs(part - 0.5) <= 1e-6) return slow(x, digits);
+    int r = (int)whole + ((part > 0.5) ? 1 : 0);
+    int ip = r / (int)POWERS[digits];
+    int fp = r - ip*(int)POWERS[digits];
+    room(digits + 12);
+    if (negative) buf[n++] = '-';
+    add(ip);
+    if (digits > 0)
+    {
+      buf[n++] = '.';
+      int end = n + digits;
+      for (int k = end-1 ; k >= n ; k--) { buf[k] = (char)('0' + fp%10); fp /= 10; }
+      n = end;
+    }
+    return this;
+  }
+
+  FormatBuffer slow(double x, int digits)
+  {
+    return add(String.format((digits >= 0 && digits < FORMATS.length) ? FORMATS[digits] : "%." + digits + "f", x));
+  }
+
+  // Same line ending as PrintWriter.println
+  public FormatBuffer newline()
+  {
+    room(NEWLINE.length);
+    for (char c : NEWLINE) buf[n++] = c;
+    return this;
+  }
+
+  public void writeTo(Writer w) throws IOException { w.write(buf, 0, n); }
+
+  // PrintWriter never throws; it remembers the trouble for checkError instead
+  public void writeTo(PrintWriter pw) { pw.write(buf, 0, n); }
+
+  @Override public String toString() { return new String(buf, 0, n); }
+
+  static int digitCount(int i)
+  {
+    int k = 1;
+    while (i >= 10) { i /= 10; k++; }
+    return k;
+  }
+}
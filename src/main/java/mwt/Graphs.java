@@ -600,6 +600,7 @@ public class Graphs
     public float value(float t);
     public float[] value(int i,int j,float[] fa);
     public float[] value(float t0,float t1,float[] fa);
+    public Extremator extrema();  // What value(i,j,fa) gives, but fast for long spans
   }
   
   protected class Plotter extends JPanel
@@ -610,6 +611,10 @@ public class Graphs
     int[] plot_order;
     Path2D[] paths;
     boolean[] fills;
+    float[] back_x = new float[64];  // Bottom edge of a filled range, to be traced backwards once the top is done
+    float[] back_y = new float[64];
+    int n_back = 0;
+    int[] edges = null;  // Sample nearest each column boundary when zoomed out
     
     public Plotter(FunctionData[] fs)
     {
@@ -676,12 +681,11 @@ public class Graphs
       if (recalc)
       {
         float f,f_old;
-        LinkedList<Point2D> backpath = new LinkedList<Point2D>();
         for (int i=0 ; i<functions.length ; i++)
         {
           if (!y_onoff[i].isSelected()) continue;
           fills[i] = false;
-          backpath.clear();
+          n_back = 0;
           paths[i].reset();
           
           int j0,j1,j;
@@ -722,14 +726,7 @@ public class Graphs
               for (j=j0 ; j<=j1 ; j++)
               {
                 fa = functions[i].value(j,j,fa);
-                if (Float.isNaN(f_old))
-                {
-                  while (!backpath.isEmpty())
-                  {
-                    paths[i].lineTo( backpath.peek().getX() , backpath.peek().getY() );
-                    backpath.pop();
-                  }
-                }
+                if (Float.isNaN(f_old)) traceBack(paths[i]);
                 if (!Float.isNaN(fa[0]))
                 {
                   x = W*(functions[i].timeOf(j)-(float)x_tick.lo)/dt;
@@ -738,40 +735,29 @@ public class Graphs
                   if (Float.isNaN(f_old))
                   {
                     paths[i].moveTo(x,y);
-                    backpath.push( new Point2D.Float(x,y) );
-                    backpath.push( new Point2D.Float(x,yy) );
-                  }
-                  else
-                  {
-                    paths[i].lineTo(x,y);
-                    backpath.push( new Point2D.Float(x,yy) );
+                    pushBack(x,y);
                   }
+                  else paths[i].lineTo(x,y);
+                  pushBack(x,yy);
                 }
                 f_old = fa[0];
               }
-              while (!backpath.isEmpty())
-              {
-                paths[i].lineTo( backpath.peek().getX() , backpath.peek().getY() );
-                backpath.pop();
-              }
+              traceBack(paths[i]);
             }
           }
           else
           {
+            // More samples than pixels: each column spans its samples' extremes, straight from the pyramid
+            Extremator ex = functions[i].extrema();
             fills[i] = true;
             f_old = Float.NaN;
+            if (edges==null || edges.length!=W+1) edges = new int[W+1];
+            for (j=0 ; j<=W ; j++) edges[j] = functions[i].indexOf( (float)x_tick.lo + (dt*j)/W );  // Neighboring columns share a sample
             for (j=0 ; j<W ; j++)
             {
-              f = (float)x_tick.lo + (dt*j)/W;
-              fa = functions[i].value( f , f + dt/W , fa );
-              if (Float.isNaN(f_old))
-              {
-                while (!backpath.isEmpty())
-                {
-                  paths[i].lineTo( backpath.peek().getX() , backpath.peek().getY() );
-                  backpath.pop();
-                }
-              }
+              if (edges[j]<0 || edges[j+1]<0) fa[0] = fa[1] = Float.NaN;
+              else fa = ex.range(edges[j],edges[j+1],fa);
+              if (Float.isNaN(f_old)) traceBack(paths[i]);
               if (!Float.isNaN(fa[0]))
               {
                 x = j;
@@ -780,26 +766,14 @@ public class Graphs
                 if (Float.isNaN(f_old))
                 {
                   paths[i].moveTo(x,y);
-                  backpath.push( new Point2D.Float(x,y) );
-                  backpath.push( new Point2D.Float(x,yy) );
-                }
-                else
-                {
-                  paths[i].lineTo(x,y);
-                  backpath.push( new Point2D.Float(x,yy) );
+                  pushBack(x,y);
                 }
+                else paths[i].lineTo(x,y);
+                pushBack(x,yy);
               }
               f_old = fa[0];
             }
-            while (!backpath.isEmpty())
-            {
-              paths[i].lineTo( backpath.peek().getX() , backpath.peek().getY() );
-              backpath.pop();
-            }
-          }
-          for (j=j0 ; j<j1 ; j++)
-          {
-            
+            traceBack(paths[i]);
           }
         }
       }
@@ -824,6 +798,28 @@ public class Graphs
         }
       }
     }
+    
+    void pushBack(float x,float y)
+    {
+      if (n_back==back_x.length)
+      {
+        back_x = Arrays.copyOf(back_x,2*n_back);
+        back_y = Arrays.copyOf(back_y,2*n_back);
+      }
+      back_x[n_back] = x;
+      back_y[n_back] = y;
+      n_back++;
+    }
+    
+    // Closes off a filled range by running back along its bottom edge
+    void traceBack(Path2D path)
+    {
+      while (n_back>0)
+      {
+        n_back--;
+        path.lineTo(back_x[n_back],back_y[n_back]);
+      }
+    }
   }
   
   protected class MainGUI extends JFrame
@@ -0,0 +1,302 @@
+/* LineScanner.java - Reads whitespace-separated numbers from ASCII text without making Strings
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/* Tokens follow the rules of String.split("\\s+") and the numbers those of
+ * Integer.parseInt, Short.parseShort and Float.parseFloat, so that lines parse
+ * exactly the same way they did when each was turned into a String[].
+ *
+ * Bytes come either from an InputStream (copied into a heap buffer a chunk at a
+ * time) or from a file on disk.  Large files are memory-mapped a window at a time
+ * and tokenized in place; small ones are just read, since every mapping lingers
+ * until the garbage collector gets to it and there may be thousands of files.
+ */
+public class LineScanner
+{
+  static final int BUFFER_SIZE = 1 << 16;
+  static final int WINDOW_SIZE = 1 << 28;
+  static final int MAP_THRESHOLD = 1 << 22;
+  static final int FLOAT_EXACT = 1 << 24;
+  static final float[] POWERS_OF_TEN = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+
+  InputStream source;   // Either this...
+  byte[] heap;
+  FileChannel channel;  // ...or this is where the bytes come from
+  long window_start;
+  long window_stop;     // Never map or read past here
+
+  ByteBuffer buf;
+  int filled;       // Valid bytes in buf
+  int line_start;   // Current line is buf[line_start until line_end]
+  int line_end;
+  int next_line;    // Where the line after this one starts
+  int pos;          // Start of the next token on this line
+  boolean exhausted;
+  public int line_number;
+  public long bytes_scanned;  // Including line endings
+  public boolean timed;       // If set, read_nanos adds up time spent waiting for (or inflating) bytes
+  public long read_nanos;
+
+  public LineScanner(InputStream is) {
+    source = is;
+    heap = new byte[BUFFER_SIZE];
+    buf = ByteBuffer.wrap(heap);
+    channel = null;
+    filled = line_start = line_end = next_line = pos = 0;
+    exhausted = false;
+    line_number = 0;
+  }
+
+  // Scan bytes from..until of an open channel (which we now own)
+  public LineScanner(FileChannel fc, long from, long until) throws IOException {
+    source = null;
+    channel = fc;
+    window_start = from;
+    window_stop = Math.min(until, fc.size());
+    if (window_stop - window_start < MAP_THRESHOLD) {
+      heap = new byte[(int)Math.max(0, Math.min(BUFFER_SIZE, window_stop - window_start))];
+      buf = ByteBuffer.wrap(heap);
+    }
+    else {
+      heap = null;
+      buf = ByteBuffer.allocate(0);
+    }
+    filled = line_start = line_end = next_line = pos = 0;
+    exhausted = false;
+    line_number = 0;
+  }
+
+  // Memory-map a file on disk (or part of it)
+  public static LineScanner open(File f) throws IOException { return open(f, 0, Long.MAX_VALUE); }
+  public static LineScanner open(File f, long from, long until) throws IOException {
+    FileChannel fc = new FileInputStream(f).getChannel();
+    try { return new LineScanner(fc, from, until); }
+    catch (IOException ioe) { fc.close(); throw ioe; }
+  }
+
+  // Get more of the file, keeping everything from keep onwards; returns false if there was nothing left
+  boolean refill(int keep) throws IOException {
+    if (exhausted) return false;
+    if (!timed) return fill(keep);
+    long t0 = System.nanoTime();
+    try { return fill(keep); }
+    finally { read_nanos += System.nanoTime() - t0; }
+  }
+  boolean fill(int keep) throws IOException {
+    if (heap == null) {
+      long start = window_start + keep;
+      long size = Math.min( Math.max((long)WINDOW_SIZE, 2L*(filled-keep)) , window_stop - start );
+      if (size > Integer.MAX_VALUE) size = Integer.MAX_VALUE;
+      if (size <= filled-keep) { exhausted = true; return false; }
+      buf = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+      window_start = start;
+      filled = (int)size;
+      line_start -= keep; line_end -= keep; next_line -= keep; pos -= keep;
+      return true;
+    }
+    if (keep > 0) {
+      System.arraycopy(heap, keep, heap, 0, filled-keep);
+      filled -= keep;
+      line_start -= keep; line_end -= keep; next_line -= keep; pos -= keep;
+    }
+    if (filled == heap.length) { heap = Arrays.copyOf(heap, 2*heap.length); buf = ByteBuffer.wrap(heap); }  // Enormous line
+    int n;
+    if (source != null) n = source.read(heap, filled, heap.length-filled);
+    else {
+      int want = (int)Math.min(heap.length-filled, window_stop - window_start);
+      n = (want <= 0) ? -1 : channel.read(ByteBuffer.wrap(heap, filled, want), window_start);
+      if (n > 0) window_start += n;
+    }
+    if (n < 0) { exhausted = true; return false; }
+    filled += n;
+    return true;
+  }
+
+  // Advance to the next line (ending in \n, \r or \r\n, like BufferedReader.readLine); false if there isn't one
+  public boolean nextLine() throws IOException {
+    int i = next_line;
+    line_start = next_line;
+    while (true) {
+      while (i < filled && buf.get(i) != '\n' && buf.get(i) != '\r') i++;
+      if (i < filled) break;
+      int old_start = line_start;
+      if (!refill(line_start)) {
+        if (line_start >= filled) { line_end = next_line = pos = filled; return false; }
+        line_end = next_line = filled;
+        pos = line_start;
+        line_number++;
+        bytes_scanned += next_line - line_start;
+        return true;
+      }
+      i -= old_start - line_start;
+    }
+    line_end = i;
+    if (buf.get(i) == '\r') {
+      if (i+1 >= filled) {
+        int old_start = line_start;
+        refill(line_start);
+        i -= old_start - line_start;
+        line_end = i;
+      }
+      if (i+1 < filled && buf.get(i+1) == '\n') i++;
+    }
+    next_line = i+1;
+    pos = line_start;
+    line_number++;
+    bytes_scanned += next_line - line_start;
+    return true;
+  }
+
+  public void close() throws IOException {
+    if (source!=null) source.close();
+    if (channel!=null) channel.close();
+  }
+
+  static boolean isSpace(byte b) { return b==' ' || b=='\t' || b=='\n' || b==0x0B || b=='\f' || b=='\r'; }
+
+  String text(int i0, int i1) {
+    char[] c = new char[i1-i0];
+    for (int i=i0 ; i<i1 ; i++) c[i-i0] = (char)(buf.get(i) & 0xFF);
+    return new String(c);
+  }
+
+  // Where the current line starts, counting bytes from wherever scanning began
+  public long lineOffset() { return bytes_scanned - (next_line - line_start); }
+
+  public int length() { return line_end - line_start; }
+  public boolean isEmpty() { return line_end == line_start; }
+  public char charAt(int i) { return (char)(buf.get(line_start+i) & 0xFF); }
+  public boolean startsWith(String s) {
+    if (s.length() > line_end-line_start) return false;
+    for (int i=0 ; i<s.length() ; i++) if (buf.get(line_start+i) != (byte)s.charAt(i)) return false;
+    return true;
+  }
+  public String lineString() { return text(line_start, line_end); }
+
+  // Token-level access; like split, a line that starts with whitespace has an empty first token
+  int tokenEnd() { int i = pos; while (i < line_end && !isSpace(buf.get(i))) i++; return i; }
+  void skipSpace(int i) { while (i < line_end && isSpace(buf.get(i))) i++; pos = i; }
+  public int mark() { return pos; }
+  public void reset(int mark) { pos = mark; }
+  public void rewind() { pos = line_start; }
+  public boolean hasToken() { return pos < line_end || (pos == line_start && line_end > line_start); }
+  public boolean hasTokens(int n) {
+    int p = pos;
+    int k = 0;
+    while (k < n && hasToken()) { skipSpace(tokenEnd()); k++; }
+    pos = p;
+    return k >= n;
+  }
+  public void skipToken() { skipSpace(tokenEnd()); }
+  public boolean tokenIs(String s) {
+    int e = tokenEnd();
+    if (e-pos != s.length()) return false;
+    for (int i=0 ; i<s.length() ; i++) if (buf.get(pos+i) != (byte)s.charAt(i)) return false;
+    return true;
+  }
+  public boolean tokenStartsWith(char c) { return pos < line_end && buf.get(pos) == (byte)c; }
+  public int tokenLength() { return tokenEnd() - pos; }
+  public String nextToken() {
+    int e = tokenEnd();
+    String s = text(pos, e);
+    skipSpace(e);
+    return s;
+  }
+  // The whole line, exactly as split("\\s+") would give it
+  public String[] tokens() {
+    ArrayList<String> al = new ArrayList<String>();
+    rewind();
+    while (hasToken()) al.add(nextToken());
+    if (al.size()==1 && al.get(0).length()==0) al.clear();  // Nothing but whitespace
+    if (line_end == line_start) al.add("");
+    rewind();
+    return al.toArray(new String[al.size()]);
+  }
+
+  // Copies the token into dest (which must be long enough) as offsets from the character c0
+  public void nextTokenOffsets(byte[] dest, char c0) {
+    int e = tokenEnd();
+    for (int i=pos ; i<e ; i++) dest[i-pos] = (byte)(buf.get(i) - c0);
+    skipSpace(e);
+  }
+
+  // Integer from buf[i0 until i1], as strict as Integer.parseInt
+  long parseIntegral(int i0, int i1) throws NumberFormatException {
+    boolean negative = false;
+    int i = i0;
+    if (i < i1 && (buf.get(i)=='-' || buf.get(i)=='+')) { negative = (buf.get(i)=='-'); i++; }
+    if (i >= i1) throw new NumberFormatException("For input string: \"" + text(i0,i1) + "\"");
+    long x = 0;
+    for (; i < i1 ; i++) {
+      int d = buf.get(i) - '0';
+      if (d < 0 || d > 9 || x > Integer.MAX_VALUE) throw new NumberFormatException("For input string: \"" + text(i0,i1) + "\"");
+      x = 10*x + d;
+    }
+    return negative ? -x : x;
+  }
+  int checkedInt(long x, int i0, int i1) throws NumberFormatException {
+    if (x < Integer.MIN_VALUE || x > Integer.MAX_VALUE) throw new NumberFormatException("For input string: \"" + text(i0,i1) + "\"");
+    return (int)x;
+  }
+  public int nextInt() throws NumberFormatException {
+    int e = tokenEnd();
+    int x = checkedInt(parseIntegral(pos,e), pos, e);
+    skipSpace(e);
+    return x;
+  }
+  public short nextShort() throws NumberFormatException {
+    int e = tokenEnd();
+    int x = checkedInt(parseIntegral(pos,e), pos, e);
+    if (x < Short.MIN_VALUE || x > Short.MAX_VALUE) throw new NumberFormatException("Value out of range. Value:\"" + x + "\"");
+    skipSpace(e);
+    return (short)x;
+  }
+  // The rest of the line from character i onwards as an int (so "% 12" gives 12 for i=2)
+  public int restAsInt(int i) throws NumberFormatException {
+    int i0 = Math.min(line_start+i, line_end);
+    return checkedInt(parseIntegral(i0, line_end), i0, line_end);
+  }
+
+  // Plain decimals short enough to be held exactly as a float are divided by an exact power of ten,
+  // which rounds the same as Float.parseFloat; anything else is handed to Float.parseFloat.
+  public float nextFloat() throws NumberFormatException {
+    int e = tokenEnd();
+    int i = pos;
+    boolean negative = false;
+    if (i < e && (buf.get(i)=='-' || buf.get(i)=='+')) { negative = (buf.get(i)=='-'); i++; }
+    int m = 0;
+    int digits = 0;
+    int decimals = -1;
+    boolean simple = true;
+    for (; i < e ; i++) {
+      byte b = buf.get(i);
+      if (b >= '0' && b <= '9') {
+        m = 10*m + (b - '0');
+        digits++;
+        if (decimals >= 0) decimals++;
+        if (m >= FLOAT_EXACT) { simple = false; break; }
+      }
+      else if (b == '.' && decimals < 0) decimals = 0;
+      else { simple = false; break; }
+    }
+    if (decimals < 0) decimals = 0;
+    float f;
+    if (simple && digits > 0 && decimals < POWERS_OF_TEN.length) {
+      f = (decimals==0) ? (float)m : ((float)m) / POWERS_OF_TEN[decimals];
+      if (negative) f = -f;
+    }
+    else f = Float.parseFloat( text(pos,e) );
+    skipSpace(e);
+    return f;
+  }
+}
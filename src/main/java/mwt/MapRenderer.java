@@ -0,0 +1,212 @@
+/* MapRenderer.java - Draws data map frames to image files without a window
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.concurrent.RecursiveAction;
+import javax.imageio.ImageIO;
+import javax.swing.JComboBox;
+
+import mwt.numerics.*;
+import mwt.plugins.*;
+
+/* Draws what the map window would show at a series of times, each frame
+ * labeled with its time, and writes them as numbered PNGs; no display is
+ * needed.  Colors, background, dots, and values are picked by the names in
+ * the map window's menus.  The frames are cut into one run of consecutive
+ * times per thread, and each run gets its own painter and background, so
+ * runs share nothing but the dancers' multiscale data (which must already
+ * be made by Dance.readyMultiscale, as for the window).
+ */
+public class MapRenderer
+{
+  public static final int DEFAULT_WIDTH = 640;
+  public static final double MARGIN_FRACTION = 0.02;
+
+  final DataMapper mapper;
+  final Choreography chore;
+  Vec2D corner;  // Upper left of the view, in microns as in DataMapper
+  Vec2I dimensions;
+  double pixel_size;  // Microns per pixel
+
+  public MapRenderer(DataMapper dm)
+  {
+    mapper = dm;
+    chore = dm.chore;
+    viewEverything(DEFAULT_WIDTH);
+  }
+
+  // Selects the entry called name (in any case) from one of the map's menus; null or empty leaves it be
+  static void pick(JComboBox<?> menu,String name,String what) throws IllegalArgumentException
+  {
+    if (name==null || name.length()==0) return;
+    StringBuilder known = new StringBuilder();
+    for (int i=0 ; i<menu.getItemCount() ; i++)
+    {
+      String s = menu.getItemAt(i).toString();
+      if (s.equalsIgnoreCase(name))
+      {
+        if (menu.getSelectedIndex()!=i) menu.setSelectedIndex(i);  // Menus act on selection (e.g. values load their data)
+        return;
+      }
+      if (i>0) known.append(", ");
+      known.append(s);
+    }
+    throw new IllegalArgumentException("No map " + what + " called " + name + " (choices are " + known + ")");
+  }
+
+  public void setColors(String name) throws IllegalArgumentException { pick(mapper.color_picker , name , "colors"); }
+  public void setBackground(String name) throws IllegalArgumentException { pick(mapper.background_picker , name , "background"); }
+  public void setDots(String name) throws IllegalArgumentException { pick(mapper.dot_picker , name , "dots"); }
+  public void setValues(String name) throws IllegalArgumentException { pick(mapper.value_picker , name , "values"); }
+
+  // Names in order colors, background, dots, values; missing or empty names are left as they are
+  public void setStyle(String[] names) throws IllegalArgumentException
+  {
+    if (names.length > 4) throw new IllegalArgumentException("Map style has at most four parts: colors,background,dots,values");
+    if (names.length > 0) setColors(names[0]);
+    if (names.length > 1) setBackground(names[1]);
+    if (names.length > 2) setDots(names[2]);
+    if (names.length > 3) setValues(names[3]);
+  }
+
+  // Shows the rectangle with corners (x0,y0) and (x1,y1), in mm, at width pixels across
+  public void setArea(double x0,double y0,double x1,double y1,int width) throws IllegalArgumentException
+  {
+    if (!(x1 > x0) || !(y1 > y0)) throw new IllegalArgumentException("Map view needs x0 < x1 and y0 < y1");
+    if (width <= 0) throw new IllegalArgumentException("Map view must be at least one pixel wide");
+    corner = new Vec2D(1000*x0 , 1000*y0);
+    pixel_size = 1000*(x1-x0)/width;
+    dimensions = new Vec2I(width , Math.max(1 , (int)Math.round(1000*(y1-y0)/pixel_size)));
+  }
+
+  // Shows every track with a little room to spare
+  public void viewEverything(int width)
+  {
+    Rectangle2D.Double b = mapper.getBounds();
+    double mx = MARGIN_FRACTION*b.getWidth();
+    double my = MARGIN_FRACTION*b.getHeight();
+    setArea(0.001*(b.getX()-mx) , 0.001*(b.getY()-my) , 0.001*(b.getMaxX()+mx) , 0.001*(b.getMaxY()+my) , width);
+  }
+
+  public Vec2I getDimensions() { return dimensions.copy(); }
+
+  // Number of frames from start to stop (inclusive, if it lands there) every step seconds
+  public static int frameCount(double start,double stop,double step)
+  {
+    if (stop < start) return 0;
+    return 1 + (int)Math.floor((stop-start)/step + 1e-6);
+  }
+
+  // The track from t0 until t, with objects (outlined if big enough) where they are at t, and the time written at the top left
+  BufferedImage frame(double t0,double t,DataMapper.ColorMapper cm,DataMapper.Backgrounder bg,DataMapper.DotPainter dp,DataMapper.ValueSource vs)
+  {
+    BufferedImage view = mapper.drawView(corner , dimensions , pixel_size , new Vec2D(Math.min(t0,t),t) , t , cm , bg , dp , vs);
+    synchronized (this)  // Plugins never had to draw on two maps at once before
+    {
+      for (CustomOutputModification com : chore.plugmods) com.modifyMapDisplay(corner , dimensions , pixel_size , view , t , mapper);
+    }
+    Graphics2D g2 = view.createGraphics();
+    g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING , RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+    g2.setColor(new Color(bg.highlight()));
+    g2.drawString(String.format("%.3f s",t) , 4 , 4 + g2.getFontMetrics().getAscent());
+    g2.dispose();
+    return view;
+  }
+
+  /* Writes frames at start, start+step, ... up to stop into dir as stem.00001.png
+   * and so on.  Each shows the track over the trail seconds before it, or
+   * since start if trail isn't positive.  Runs over --threads; returns how
+   * many frames were written.
+   */
+  public int writeFrames(File dir,String stem,double start,double stop,double step,double trail) throws IOException,IllegalArgumentException
+  {
+    if (!(step > 0)) throw new IllegalArgumentException("Time between map frames must be positive");
+    Frames f = new Frames(dir,stem,start,step,trail,frameCount(start,stop,step));
+    int runs = Math.max(1 , Math.min(chore.n_threads , f.n));
+    f.share(runs);
+    FrameRun all = new FrameRun(f,runs,0,runs);
+    if (runs > 1) chore.statsPool().invoke(all);
+    else all.compute();
+    if (f.failed!=null) throw f.failed;
+    return f.n;
+  }
+
+  // What every run of frames needs to know, and the first thing that went wrong
+  class Frames
+  {
+    final File dir;
+    final String stem;
+    final double start,step,trail;
+    final int n;
+    final DataMapper.ColorMapper cm;
+    final DataMapper.Backgrounder bg;
+    final DataMapper.DotPainter dp;
+    final DataMapper.ValueSource vs;
+    DataMapper.DotPainter[] painters;
+    DataMapper.Backgrounder[] backgrounds;
+    IOException failed = null;
+    Frames(File dir,String stem,double start,double step,double trail,int n)
+    {
+      this.dir = dir; this.stem = stem; this.start = start; this.step = step; this.trail = trail; this.n = n;
+      cm = (DataMapper.ColorMapper)mapper.color_picker.getSelectedItem();
+      bg = (DataMapper.Backgrounder)mapper.background_picker.getSelectedItem();
+      dp = (DataMapper.DotPainter)mapper.dot_picker.getSelectedItem();
+      vs = (DataMapper.ValueSource)mapper.value_picker.getSelectedItem();
+    }
+    // A painter and background for each run, made here since forTile and fork don't expect to be called from several threads
+    void share(int runs)
+    {
+      painters = new DataMapper.DotPainter[runs];
+      backgrounds = new DataMapper.Backgrounder[runs];
+      for (int k=0 ; k<runs ; k++)
+      {
+        painters[k] = dp.forTile(k);
+        backgrounds[k] = (k==0) ? bg : bg.fork();
+      }
+    }
+    synchronized void fail(IOException ioe) { if (failed==null) failed = ioe; }
+    synchronized boolean ok() { return failed==null; }
+    // Frames i0 until i1, in order, with painter and background to ourselves
+    void write(int i0,int i1,DataMapper.DotPainter p,DataMapper.Backgrounder b)
+    {
+      for (int i=i0 ; i<i1 && ok() ; i++)
+      {
+        double t = start + i*step;
+        BufferedImage view = frame((trail > 0) ? t-trail : start , t , cm , b , p , vs);
+        File file = new File(dir , stem + String.format(".%05d.png",i+1));
+        try { if (!ImageIO.write(view , "png" , file)) throw new IOException("No PNG writer available"); }
+        catch (IOException ioe) { fail(new IOException("Could not write " + file.getPath() + ": " + ioe.getMessage())); }
+      }
+    }
+  }
+
+  // Run k of n covers an equal share of the frames
+  class FrameRun extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+    final Frames f;
+    final int runs,k0,k1;
+    FrameRun(Frames f,int runs,int k0,int k1) { this.f = f; this.runs = runs; this.k0 = k0; this.k1 = k1; }
+    protected void compute()
+    {
+      if (k1-k0 <= 1)
+      {
+        for (int k=k0 ; k<k1 ; k++) f.write((int)((long)f.n*k/runs) , (int)((long)f.n*(k+1)/runs) , f.painters[k] , f.backgrounds[k]);
+      }
+      else
+      {
+        int m = (k0+k1)>>>1;
+        invokeAll(new FrameRun(f,runs,k0,m) , new FrameRun(f,runs,m,k1));
+      }
+    }
+  }
+}
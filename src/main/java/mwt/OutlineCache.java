@@ -0,0 +1,82 @@
+/* OutlineCache.java - Holds a bounded number of unpacked outlines for random access
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.util.*;
+
+/* Outlines are kept as chain codes, which are cheap to walk in order but not
+ * to index into.  When something wants outline[i].get(j,v) for arbitrary j,
+ * the outline is unpacked into a short[] (x run then y run, as with RawSpine)
+ * and remembered here, shared by every dancer of one Choreography.  Once more
+ * than the capacity in points is held, the outlines used least recently are
+ * dropped again.  An outline reaches its whole run through Dance.chore, so a
+ * cache outliving its run (say, one JVM-wide cache under --batch or --follow)
+ * would keep every finished run alive; each Choreography has its own instead,
+ * and dancers with no Choreography share LOOSE.
+ *
+ * An outline keeps a reference to its own unpacked array so that lookups don't
+ * need to lock; only unpacking and eviction do.  A lookup just marks the
+ * outline as used, and eviction gives a marked outline a second chance at the
+ * back of the queue, so outlines in steady use stay unpacked.
+ */
+public class OutlineCache
+{
+  static final long DEFAULT_CAPACITY = 1L << 24;  // Points; each costs four bytes
+
+  static final OutlineCache LOOSE = new OutlineCache();
+
+  final long capacity;
+  long held = 0;
+  final LinkedHashMap<Dance.RawOutline,short[]> unpacked = new LinkedHashMap<Dance.RawOutline,short[]>(1024, 0.75f, true);
+
+  public OutlineCache() { this(DEFAULT_CAPACITY); }
+  public OutlineCache(long points) { capacity = Math.max(0, points); }
+
+  public synchronized long held() { return held; }
+
+  synchronized short[] fetch(Dance.RawOutline o)
+  {
+    short[] xy = unpacked.get(o);
+    if (xy == null)
+    {
+      xy = new short[2*o.size()];
+      o.unpackInto(xy);
+      unpacked.put(o, xy);
+      held += o.size();
+      evict();
+      if (!unpacked.containsKey(o)) return xy;  // Bigger than the whole cache, so it's only good for this lookup
+    }
+    o.unpacked = xy;
+    return xy;
+  }
+
+  synchronized void release(Dance.RawOutline o)
+  {
+    short[] xy = unpacked.remove(o);
+    if (xy != null) held -= xy.length/2;
+    o.unpacked = null;
+  }
+
+  void evict()
+  {
+    while (held > capacity && !unpacked.isEmpty())
+    {
+      Map.Entry<Dance.RawOutline,short[]> e = unpacked.entrySet().iterator().next();
+      Dance.RawOutline o = e.getKey();
+      if (o.used)
+      {
+        o.used = false;
+        unpacked.get(o);  // Back of the queue
+        continue;
+      }
+      held -= e.getValue().length/2;
+      o.unpacked = null;
+      unpacked.remove(o);
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/* Profile.java - Collects timings and counts for --profile
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+/* Named timers (total nanoseconds and number of calls) and counters, kept in
+ * the order they were first used.  Anything may add to them from any thread.
+ * Choreography only makes one of these when --profile is given; otherwise its
+ * profile is null and each instrumented spot costs a null check.
+ *
+ * Timers on work that runs on the worker pool add up time across threads, so
+ * they can exceed the wall-clock time of the phase they're inside.
+ */
+public class Profile
+{
+  final long started;
+  final LinkedHashMap<String,long[]> timers = new LinkedHashMap<String,long[]>();
+  final LinkedHashMap<String,long[]> counters = new LinkedHashMap<String,long[]>();
+
+  public Profile() { started = System.nanoTime(); }
+
+  public synchronized void time(String what, long nanos)
+  {
+    long[] t = timers.get(what);
+    if (t==null) { t = new long[2]; timers.put(what, t); }
+    t[0] += nanos;
+    t[1]++;
+  }
+
+  public synchronized void count(String what, long n)
+  {
+    long[] c = counters.get(what);
+    if (c==null) { c = new long[1]; counters.put(what, c); }
+    c[0] += n;
+  }
+
+  public double wallSeconds() { return (System.nanoTime() - started)*1e-9; }
+
+  // Sum of each heap pool's high-water mark (the pools may not all have peaked at once)
+  public static long peakHeap()
+  {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+    {
+      if (pool.getType()==MemoryType.HEAP && pool.getPeakUsage()!=null) peak += pool.getPeakUsage().getUsed();
+    }
+    return peak;
+  }
+
+  static String quote(String s)
+  {
+    StringBuilder sb = new StringBuilder(s.length()+2);
+    sb.append('"');
+    for (int i=0 ; i<s.length() ; i++)
+    {
+      char c = s.charAt(i);
+      if (c=='"' || c=='\\') sb.append('\\').append(c);
+      else if (c < 0x20) sb.append(String.format("\\u%04x", (int)c));
+      else sb.append(c);
+    }
+    return sb.append('"').toString();
+  }
+
+  public synchronized String toJson(String version, int threads)
+  {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\n");
+    sb.append("  \"version\": ").append(quote(version)).append(",\n");
+    sb.append("  \"threads\": ").append(threads).append(",\n");
+    sb.append("  \"wall_seconds\": ").append(String.format(Locale.ROOT, "%.6f", wallSeconds())).append(",\n");
+    sb.append("  \"peak_heap_bytes\": ").append(peakHeap()).append(",\n");
+    sb.append("  \"timers\": [");
+    boolean first = true;
+    for (Map.Entry<String,long[]> e : timers.entrySet())
+    {
+      sb.append(first ? "\n" : ",\n");
+      first = false;
+      sb.append("    { \"name\": ").append(quote(e.getKey()));
+      sb.append(", \"seconds\": ").append(String.format(Locale.ROOT, "%.6f", e.getValue()[0]*1e-9));
+      sb.append(", \"calls\": ").append(e.getValue()[1]).append(" }");
+    }
+    sb.append("\n  ],\n");
+    sb.append("  \"counters\": {");
+    first = true;
+    for (Map.Entry<String,long[]> e : counters.entrySet())
+    {
+      sb.append(first ? "\n" : ",\n");
+      first = false;
+      sb.append("    ").append(quote(e.getKey())).append(": ").append(e.getValue()[0]);
+    }
+    sb.append("\n  }\n}\n");
+    return sb.toString();
+  }
+
+  public void writeJson(File f, String version, int threads) throws IOException
+  {
+    Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), "UTF-8"));
+    try { w.write(toJson(version, threads)); }
+    finally { w.close(); }
+  }
+
+  public synchronized void printSummary(PrintStream out)
+  {
+    double wall = wallSeconds();
+    out.printf("Profile (%.3f s wall, %.1f MB peak heap):\n", wall, peakHeap()/1048576.0);
+    for (Map.Entry<String,long[]> e : timers.entrySet())
+    {
+      double s = e.getValue()[0]*1e-9;
+      out.printf("  %-44s %9.3f s %6.1f%% %9d call%s\n", e.getKey(), s, 100*s/Math.max(wall,1e-9), e.getValue()[1], (e.getValue()[1]==1) ? "" : "s");
+    }
+    for (Map.Entry<String,long[]> e : counters.entrySet()) out.printf("  %-44s %12d\n", e.getKey(), e.getValue()[0]);
+  }
+}
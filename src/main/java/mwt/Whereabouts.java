@@ -0,0 +1,225 @@
+/* Whereabouts.java - Finds which dancers might be seen in part of the map at some time
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt;
+
+import java.util.*;
+
+/* Attendance split up by place as well as time.  Frames are grouped into the
+ * same blocks Attendance uses, and the map into a GRID by GRID set of tiles
+ * over where the dancers go; each (block,tile) cell keeps the indices (into
+ * dances) of every dancer with a dot in that tile during that block.  Dots
+ * are taken from every level of the multiscale position data, since a
+ * zoomed-out map draws binned positions, and those need not lie where the
+ * dancer actually went (bins with gaps in them are pulled toward the origin).
+ * A dot that is NaN has no tile, so its dancer is listed for the whole block.
+ *
+ * Asking about a rectangle and a span of frames costs about as much as the
+ * number of dancers found there.  The answer may include dancers that turn
+ * out not to be visible, but never leaves out one that is.  Positions are in
+ * microns as in Dance.multiscale_x; Dance.readyMultiscale must have been
+ * called on everyone first.
+ */
+public class Whereabouts
+{
+  static final int BLOCK_BITS = Attendance.BLOCK_BITS;
+  public static final int GRID = 32;
+
+  final Dance[] dances;
+  final int n_frames;
+  final int n_blocks;
+  final double x0,y0;  // Corner of tile (0,0)
+  final double tile_w,tile_h;
+  final int[] cell_at;  // Cell (b*GRID + ty)*GRID + tx lists who[cell_at[c] until cell_at[c+1]]
+  final int[] who;
+  final int[] lost_at;  // Block b has lost[lost_at[b] until lost_at[b+1]], who have a NaN dot somewhere in it
+  final int[] lost;
+  final float max_extent;  // Largest Dance.ex of anyone present, or infinite if some are unknown
+  final int[] end_at;  // Frame f is the last for ending[end_at[f] until end_at[f+1]]
+  final int[] ending;
+
+  public Whereabouts(Dance[] dances,int n_frames)
+  {
+    this.dances = dances;
+    this.n_frames = n_frames;
+    n_blocks = (n_frames + (1<<BLOCK_BITS) - 1) >> BLOCK_BITS;
+
+    // Tiles cover every real position; anything off the edge (a pulled-in bin, say) counts as being in the edge tile
+    double xa = Double.POSITIVE_INFINITY, ya = Double.POSITIVE_INFINITY;
+    double xb = Double.NEGATIVE_INFINITY, yb = Double.NEGATIVE_INFINITY;
+    float most = 0.0f;
+    boolean unsized = false;
+    for (Dance d : dances)
+    {
+      if (!indexable(d)) continue;
+      float[] x = d.multiscale_x.data[0];
+      float[] y = d.multiscale_y.data[0];
+      for (int k=0 ; k<x.length ; k++)
+      {
+        if (Float.isNaN(x[k]) || Float.isNaN(y[k])) continue;
+        if (x[k] < xa) xa = x[k];
+        if (x[k] > xb) xb = x[k];
+        if (y[k] < ya) ya = y[k];
+        if (y[k] > yb) yb = y[k];
+        if (k >= d.ex.length || Float.isNaN(d.ex[k])) unsized = true;
+        else if (d.ex[k] > most) most = d.ex[k];
+      }
+    }
+    if (xa > xb) { xa = ya = 0.0; xb = yb = 1.0; }
+    x0 = xa;
+    y0 = ya;
+    tile_w = Math.max(xb-xa , 1.0)/GRID;
+    tile_h = Math.max(yb-ya , 1.0)/GRID;
+    max_extent = unsized ? Float.POSITIVE_INFINITY : most;
+
+    // Each dancer's tiles in each block it spans, as tx0 ty0 tx1 ty1 (tx0 = -1 if nothing placeable), plus whether it was lost there
+    int[][] boxes = new int[dances.length][];
+    boolean[][] losses = new boolean[dances.length][];
+    cell_at = new int[n_blocks*GRID*GRID + 1];
+    lost_at = new int[n_blocks + 1];
+    for (int i=0 ; i<dances.length ; i++)
+    {
+      Dance d = dances[i];
+      if (!indexable(d)) continue;
+      int b0 = d.first_frame >> BLOCK_BITS;
+      int nb = Math.min(n_blocks , ((d.first_frame + d.multiscale_x.data[0].length - 1) >> BLOCK_BITS) + 1) - b0;
+      if (nb <= 0) continue;
+      double[] lo_x = new double[nb], lo_y = new double[nb], hi_x = new double[nb], hi_y = new double[nb];
+      Arrays.fill(lo_x,Double.POSITIVE_INFINITY); Arrays.fill(lo_y,Double.POSITIVE_INFINITY);
+      Arrays.fill(hi_x,Double.NEGATIVE_INFINITY); Arrays.fill(hi_y,Double.NEGATIVE_INFINITY);
+      boolean[] gone = new boolean[nb];
+      for (int s=0 ; s<d.multiscale_x.data.length ; s++)
+      {
+        float[] x = d.multiscale_x.data[s];
+        float[] y = d.multiscale_y.data[s];
+        for (int k=0 ; k<x.length ; k++)
+        {
+          int b = ((d.first_frame + (k<<s)) >> BLOCK_BITS) - b0;  // A bin's dot is drawn at the frame it starts on
+          if (b >= nb) break;  // Past the end of the recording, so nobody will ask
+          if (Float.isNaN(x[k]) || Float.isNaN(y[k])) { gone[b] = true; continue; }
+          if (x[k] < lo_x[b]) lo_x[b] = x[k];
+          if (x[k] > hi_x[b]) hi_x[b] = x[k];
+          if (y[k] < lo_y[b]) lo_y[b] = y[k];
+          if (y[k] > hi_y[b]) hi_y[b] = y[k];
+        }
+      }
+      int[] box = new int[4*nb];
+      for (int b=0 ; b<nb ; b++)
+      {
+        if (gone[b]) lost_at[b0+b+1]++;
+        if (lo_x[b] > hi_x[b]) { box[4*b] = -1; continue; }
+        box[4*b] = tileX(lo_x[b]); box[4*b+1] = tileY(lo_y[b]);
+        box[4*b+2] = tileX(hi_x[b]); box[4*b+3] = tileY(hi_y[b]);
+        for (int ty = box[4*b+1] ; ty <= box[4*b+3] ; ty++) for (int tx = box[4*b] ; tx <= box[4*b+2] ; tx++) cell_at[cell(b0+b,tx,ty)+1]++;
+      }
+      boxes[i] = box;
+      losses[i] = gone;
+    }
+    for (int c=0 ; c+1<cell_at.length ; c++) cell_at[c+1] += cell_at[c];
+    for (int b=0 ; b<n_blocks ; b++) lost_at[b+1] += lost_at[b];
+
+    end_at = new int[n_frames + 1];
+    for (int i=0 ; i<dances.length ; i++) if (boxes[i]!=null && dances[i].last_frame < n_frames) end_at[dances[i].last_frame+1]++;
+    for (int f=0 ; f<n_frames ; f++) end_at[f+1] += end_at[f];
+    ending = new int[end_at[n_frames]];
+    int[] fill_end = Arrays.copyOf(end_at , n_frames);
+    for (int i=0 ; i<dances.length ; i++) if (boxes[i]!=null && dances[i].last_frame < n_frames) ending[fill_end[dances[i].last_frame]++] = i;
+
+    // Filling in dancer order keeps every cell in dances order
+    who = new int[cell_at[cell_at.length-1]];
+    lost = new int[lost_at[n_blocks]];
+    int[] fill = Arrays.copyOf(cell_at , cell_at.length-1);
+    int[] fill_lost = Arrays.copyOf(lost_at , n_blocks);
+    for (int i=0 ; i<dances.length ; i++)
+    {
+      int[] box = boxes[i];
+      if (box==null) continue;
+      int b0 = dances[i].first_frame >> BLOCK_BITS;
+      for (int b=0 ; 4*b<box.length ; b++)
+      {
+        if (losses[i][b]) lost[fill_lost[b0+b]++] = i;
+        if (box[4*b] < 0) continue;
+        for (int ty = box[4*b+1] ; ty <= box[4*b+3] ; ty++) for (int tx = box[4*b] ; tx <= box[4*b+2] ; tx++) who[fill[cell(b0+b,tx,ty)]++] = i;
+      }
+    }
+  }
+
+  static boolean indexable(Dance d)
+  {
+    return d!=null && d.first_frame>=0 && d.last_frame>=d.first_frame && d.multiscale_x!=null && d.multiscale_y!=null;
+  }
+
+  int cell(int b,int tx,int ty) { return (b*GRID + ty)*GRID + tx; }
+
+  // Clamping keeps order, so a point inside a rectangle always lands in one of its tiles
+  int tileX(double x)
+  {
+    double f = Math.floor((x-x0)/tile_w);
+    return (f < 0) ? 0 : (f >= GRID) ? GRID-1 : (int)f;
+  }
+  int tileY(double y)
+  {
+    double f = Math.floor((y-y0)/tile_h);
+    return (f < 0) ? 0 : (f >= GRID) ? GRID-1 : (int)f;
+  }
+
+  public int frames() { return n_frames; }
+
+  // How far (in the units of Dance.ex) a dancer may be drawn from its centroid; infinite if someone's size is unknown
+  public float maxExtent() { return max_extent; }
+
+  // Indices into dances, in order, of everyone whose last frame is from lo to hi
+  public int[] ending(int lo,int hi)
+  {
+    lo = Math.max(lo , 0);
+    hi = Math.min(hi , n_frames-1);
+    if (hi < lo) return new int[0];
+    int[] found = Arrays.copyOfRange(ending , end_at[lo] , end_at[hi+1]);
+    if (hi > lo) Arrays.sort(found);
+    return found;
+  }
+
+  /* Indices into dances, in order, of everyone who might have a dot inside
+   * the rectangle with corners (xa,ya) and (xb,yb) at some frame from lo to
+   * hi.  Only whole blocks and tiles are checked, so some may be outside.
+   */
+  public int[] near(double xa,double ya,double xb,double yb,int lo,int hi)
+  {
+    if (hi < lo) { int t = lo; lo = hi; hi = t; }
+    lo = Math.max(lo , 0);
+    hi = Math.min(hi , n_frames-1);
+    if (hi < lo || Double.isNaN(xa) || Double.isNaN(ya) || Double.isNaN(xb) || Double.isNaN(yb)) return new int[0];
+    int tx0 = tileX(Math.min(xa,xb)), tx1 = tileX(Math.max(xa,xb));
+    int ty0 = tileY(Math.min(ya,yb)), ty1 = tileY(Math.max(ya,yb));
+    int[] found = new int[16];
+    int n = 0;
+    for (int b = lo>>BLOCK_BITS ; b <= hi>>BLOCK_BITS ; b++)
+    {
+      for (int k = lost_at[b] ; k < lost_at[b+1] ; k++)
+      {
+        if (n==found.length) found = Arrays.copyOf(found,2*n);
+        found[n++] = lost[k];
+      }
+      for (int ty = ty0 ; ty <= ty1 ; ty++)
+      {
+        for (int c = cell(b,tx0,ty) , c1 = cell(b,tx1,ty) ; c <= c1 ; c++)
+        {
+          int m = cell_at[c+1] - cell_at[c];
+          if (m==0) continue;
+          if (n+m > found.length) found = Arrays.copyOf(found , Math.max(2*found.length , n+m));
+          System.arraycopy(who , cell_at[c] , found , n , m);
+          n += m;
+        }
+      }
+    }
+    // A dancer spanning several tiles or blocks turns up once for each
+    Arrays.sort(found,0,n);
+    int u = 0;
+    for (int k=0 ; k<n ; k++) if (u==0 || found[k]!=found[u-1]) found[u++] = found[k];
+    return Arrays.copyOf(found,u);
+  }
+}
@@ -0,0 +1,174 @@
+/* StatisticSeries.java - A Statistic for every timepoint, stored a column at a time
+ * Copyright 2015 Calico Life Sciences LLC (author Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt.numerics;
+
+// Same numbers as a Statistic[] (series.average[i] is what statistic[i].average would be), but in one
+// array per field.  Median and quartiles are found by selection, not sorting, and only if ordered is set;
+// otherwise they are left as NaN.
+public class StatisticSeries
+{
+  public final boolean ordered;
+  public final double[] maximum;
+  public final double[] minimum;
+  public final double[] average;
+  public final double[] deviation;
+  public final double[] median;
+  public final double[] first_quartile;
+  public final double[] last_quartile;
+  public final double[] jitter;
+  public final int[] n;
+
+  public StatisticSeries(int length,boolean ordered)
+  {
+    this.ordered = ordered;
+    maximum = new double[length];
+    minimum = new double[length];
+    average = new double[length];
+    deviation = new double[length];
+    median = new double[length];
+    first_quartile = new double[length];
+    last_quartile = new double[length];
+    jitter = new double[length];
+    n = new int[length];
+  }
+
+  public int length() { return n.length; }
+
+  public void zero(int i)
+  {
+    maximum[i] = minimum[i] = average[i] = deviation[i] = median[i] = first_quartile[i] = last_quartile[i] = jitter[i] = 0;
+    n[i] = 0;
+  }
+
+  public Statistic get(int i)
+  {
+    Statistic s = new Statistic();
+    s.maximum = maximum[i];
+    s.minimum = minimum[i];
+    s.average = average[i];
+    s.deviation = deviation[i];
+    s.median = median[i];
+    s.first_quartile = first_quartile[i];
+    s.last_quartile = last_quartile[i];
+    s.jitter = jitter[i];
+    s.n = n[i];
+    return s;
+  }
+
+  // Fills in entry i exactly as Statistic.compute would (numbers are reordered in the same way, NaNs to the end)
+  public void compute(int i,float numbers[],int lower_bound,int upper_bound)
+  {
+    if (numbers==null || lower_bound<0 || upper_bound<=lower_bound || upper_bound > numbers.length)
+    {
+      zero(i);
+      return;
+    }
+
+    int m = 0;
+    float f = numbers[lower_bound];
+    boolean unsorted = false;
+    double sum = 0.0;
+    double sumsq = 0.0;
+    float prev_f;
+    float lo = f;
+    float hi = f;
+    for (int j = lower_bound ; j < upper_bound ; j++)
+    {
+      prev_f = f;
+      f = numbers[j];
+      if ( Float.isNaN(f) )
+      {
+        upper_bound--;
+        while ( Float.isNaN(numbers[upper_bound]) && upper_bound > j ) upper_bound--;
+        if (upper_bound <= j) break;  // Everything left is NaN
+        numbers[j] = numbers[upper_bound];
+        numbers[upper_bound] = f;
+        f = numbers[j];
+      }
+      if (f < prev_f) unsorted = true;
+      if (m==0 || before(f,lo)) lo = f;
+      if (m==0 || before(hi,f)) hi = f;
+      m++;
+      sum += f;
+      sumsq += f*f;
+    }
+
+    if (m==0)
+    {
+      zero(i);
+      return;
+    }
+
+    n[i] = m;
+    average[i] = sum / m;
+    if (m==1) deviation[i] = average[i];
+    else deviation[i] = Math.sqrt( sumsq/(m-1) - average[i]*average[i]*(m/(m-1))  );
+
+    upper_bound = lower_bound + m;
+    int k2 = (lower_bound+upper_bound)/2;
+    int k1 = (3*lower_bound+upper_bound)/4;
+    int k3 = (lower_bound+3*upper_bound)/4;
+    if (!unsorted)
+    {
+      minimum[i] = numbers[lower_bound];
+      maximum[i] = numbers[upper_bound-1];
+      median[i] = numbers[k2];
+      first_quartile[i] = numbers[k1];
+      last_quartile[i] = numbers[k3];
+      return;
+    }
+    minimum[i] = lo;
+    maximum[i] = hi;
+    if (!ordered)
+    {
+      median[i] = first_quartile[i] = last_quartile[i] = Double.NaN;
+      return;
+    }
+    median[i] = select(numbers,lower_bound,upper_bound,k2);
+    first_quartile[i] = (k1<k2) ? select(numbers,lower_bound,k2,k1) : median[i];
+    last_quartile[i] = (k3>k2) ? select(numbers,k2+1,upper_bound,k3) : median[i];
+  }
+
+  // Ordering used by Arrays.sort on floats (for non-NaN values, that just puts -0 before 0)
+  static boolean before(float a,float b)
+  {
+    return a < b || (a == b && Float.floatToRawIntBits(a) < Float.floatToRawIntBits(b));
+  }
+
+  // Moves the k'th smallest of a[lo] until a[hi] into a[k], smaller ones below it and larger ones above; returns it
+  public static float select(float[] a,int lo,int hi,int k)
+  {
+    hi--;
+    while (hi > lo)
+    {
+      // Median of three pivot, left in a[lo]
+      int mid = (lo+hi)>>>1;
+      if (before(a[hi],a[lo])) swap(a,lo,hi);
+      if (before(a[mid],a[lo])) swap(a,lo,mid);
+      if (before(a[hi],a[mid])) swap(a,mid,hi);
+      swap(a,lo,mid);
+      float p = a[lo];
+      int i = lo;
+      int j = hi+1;
+      while (true)
+      {
+        do { i++; } while (i<=hi && before(a[i],p));
+        do { j--; } while (before(p,a[j]));
+        if (i >= j) break;
+        swap(a,i,j);
+      }
+      swap(a,lo,j);
+      if (j==k) return a[k];
+      else if (j < k) lo = j+1;
+      else hi = j-1;
+    }
+    return a[k];
+  }
+
+  static void swap(float[] a,int i,int j) { float t = a[i]; a[i] = a[j]; a[j] = t; }
+}
@@ -12,7 +12,7 @@ import java.io.*;
 import mwt.*;
 import mwt.numerics.*;
 
-public class Amplitude implements CustomComputation {
+public class Amplitude implements ParallelSafe, ParallelValidation {
   public Choreography chore;
 
   public void initialize(String args[],Choreography chore) throws IllegalArgumentException,IOException,CustomHelpException {
@@ -21,6 +21,12 @@ public class Amplitude implements CustomComputation {
 
   public String desiredExtension() { return "none"; }
 
+  // Each dancer is measured using only local scratch
+  public boolean parallelSafe() { return true; }
+
+  // Only checks for spines, which is safe to do anywhere
+  public boolean validatesInParallel() { return true; }
+
   public boolean validateDancer(Dance d) { return (d.spine != null); }
 
   public int computeAll(File out_f) throws IOException { return 0; }
@@ -42,10 +48,10 @@ public class Amplitude implements CustomComputation {
     Fitter fit = new Fitter();
     for (int i = 0; i < d.quantity.length; i ++) {
       int k = d.indexToSegment(i);
-      if (d.segmentation[k]==null || d.spine[i]==null || d.centroid[i]==null) { d.quantity[i] = Float.NaN; continue; }
+      if (d.segmentation[k]==null || d.spine[i]==null || !d.present(i)) { d.quantity[i] = Float.NaN; continue; }
       d.getSegmentedDirection(i, dir).eqNorm();
       int n = d.spine[i].size();
-      fit.resetAt(d.centroid[i].x, d.centroid[i].y);
+      fit.resetAt(d.cx[i], d.cy[i]);
       for (int j = 0; j < n; j++) {
         d.spine[i].get(j,pt);
         fit.addL(pt.x, pt.y);
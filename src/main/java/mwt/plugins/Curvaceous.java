@@ -10,11 +10,12 @@ package mwt.plugins;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import mwt.*;
 import mwt.numerics.*;
 
-public class Curvaceous implements CustomComputation {
+public class Curvaceous implements ParallelSafe, ParallelValidation {
   static class DanceData {
     float[] curve;
     float[] dist;
@@ -25,7 +26,7 @@ public class Curvaceous implements CustomComputation {
   float span = 0.0f;
   float disrupt = 0.0f;
   Choreography chore = null;
-  HashMap< Dance , DanceData > cache = new HashMap< Dance, DanceData>();
+  ConcurrentHashMap< Dance , DanceData > cache = new ConcurrentHashMap< Dance, DanceData>();
 
   public Curvaceous() { }
 
@@ -62,6 +63,12 @@ public class Curvaceous implements CustomComputation {
 
   public String desiredExtension() { return ""; }
 
+  // Each dancer's curves are computed locally and kept in a concurrent map
+  public boolean parallelSafe() { return true; }
+
+  // Nothing to check
+  public boolean validatesInParallel() { return true; }
+
   public boolean validateDancer(Dance d) { return true; }
 
   public int computeAll(File out_f) throws IOException { return 0; }
@@ -72,12 +79,13 @@ public class Curvaceous implements CustomComputation {
 
   public void computeDancerQuantity(Dance d,int which) throws IllegalArgumentException {
     if (d.quantity==null || d.quantity.length != d.area.length) d.quantity = new float[d.area.length];
-    if (cache.get(d)!=null) {
+    DanceData cached = cache.get(d);
+    if (cached!=null) {
       switch (which) {
-        case 0: System.arraycopy(cache.get(d).curve, 0, d.quantity, 0, d.quantity.length); break;
-        case 1: System.arraycopy(cache.get(d).dist, 0, d.quantity, 0, d.quantity.length); break;
-        case 2: System.arraycopy(cache.get(d).dirx, 0, d.quantity, 0, d.quantity.length); break;
-        case 3: System.arraycopy(cache.get(d).diry, 0, d.quantity, 0, d.quantity.length); break;
+        case 0: System.arraycopy(cached.curve, 0, d.quantity, 0, d.quantity.length); break;
+        case 1: System.arraycopy(cached.dist, 0, d.quantity, 0, d.quantity.length); break;
+        case 2: System.arraycopy(cached.dirx, 0, d.quantity, 0, d.quantity.length); break;
+        case 3: System.arraycopy(cached.diry, 0, d.quantity, 0, d.quantity.length); break;
         default: throw new IllegalArgumentException("Curvaceous plugin only supplies three new outputs");
       }
       return;
@@ -99,9 +107,9 @@ public class Curvaceous implements CustomComputation {
     Dance.Style ds = d.segmentation[n];
     for (int i=0; i<bias.length ; i++) {
       if (i>ds.i1 && n<d.segmentation.length) { n++; ds = d.segmentation[n]; }
-      if (Float.isNaN(bias[i]) || i<ds.i0 || i>ds.i1 || !d.loc_okay(d.centroid[i])) { u.eq(0,0); continue; }
+      if (Float.isNaN(bias[i]) || i<ds.i0 || i>ds.i1 || !d.loc_okay(i)) { u.eq(0,0); continue; }
       else if (bias[i]==0.0f || !ds.isLine()) { u.eq(0,0); dd.dirx[i] = dd.diry[i] = 0.0f; dd.dist[i] = last_dist; continue; }
-      ds.snapToLine(v.eq(d.centroid[i]));
+      ds.snapToLine(v.eq(d.cx[i],d.cy[i]));
       if (u.x==0 && u.y==0) {
         dd.dirx[i] = dd.diry[i] = 0.0f;
         dd.dist[i] = last_dist;
@@ -114,7 +122,7 @@ public class Curvaceous implements CustomComputation {
         dd.dirx[i] = w.x;
         dd.diry[i] = w.y;
       }
-      if (ds.kind==Dance.Styled.Arc) u.eq((float)ds.fit.circ.params.x0 - d.centroid[i].x,(float)ds.fit.circ.params.y0 - d.centroid[i].y);
+      if (ds.kind==Dance.Styled.Arc) u.eq((float)ds.fit.circ.params.x0 - d.cx[i],(float)ds.fit.circ.params.y0 - d.cy[i]);
       else u.eq(0,0);
       float sgn = (w.X(u)>0) ? -1.0f : ((w.X(u)<0) ? 1.0f : 0.0f);
       dd.curve[i] = (ds.kind==Dance.Styled.Arc) ? sgn/(float)ds.fit.circ.params.R : 0;
@@ -139,13 +147,13 @@ public class Curvaceous implements CustomComputation {
         last_escape = escape;
         escape = false;
         if (Float.isNaN(dd.dist[i])) { limit=i0=i1=i+1; f.reset(); fwd=true; continue; }
-        if (f.n==0) f.addC(d.centroid[i].x,d.centroid[i].y);
+        if (f.n==0) f.addC(d.cx[i],d.cy[i]);
         else {
-          w.eq((float)f.Ox,(float)f.Oy).eqMinus(d.centroid[i]).eqTimes(-1);
+          w.eq((float)f.Ox,(float)f.Oy).eqMinus(d.centroid(i)).eqTimes(-1);
           if (w.length()*chore.mm_per_pixel > 2*span) f.moveBy(w.x,w.y);
         }
-        while (Math.abs(dd.dist[i]-dd.dist[i0]) > 0.5*span && i0<i-1 && !Float.isNaN(dd.dist[i0+1])) { f.subC(d.centroid[i0].x, d.centroid[i0].y); i0++; }
-        while (Math.abs(dd.dist[i]-dd.dist[i0]) < 0.5*span && i0>limit) { i0--; f.addC(d.centroid[i0].x,d.centroid[i0].y); }
+        while (Math.abs(dd.dist[i]-dd.dist[i0]) > 0.5*span && i0<i-1 && !Float.isNaN(dd.dist[i0+1])) { f.subC(d.cx[i0], d.cy[i0]); i0++; }
+        while (Math.abs(dd.dist[i]-dd.dist[i0]) < 0.5*span && i0>limit) { i0--; f.addC(d.cx[i0],d.cy[i0]); }
         while (Math.abs(dd.dist[i]-dd.dist[i1]) < 0.5*span && i1<bias.length-1 && !Float.isNaN(dd.dist[i1+1])) {
           i1++;
           if (fwd) {
@@ -156,7 +164,7 @@ public class Curvaceous implements CustomComputation {
               if (i<j) i=j;
               fwd = false;
               for (int k=i0; k<=i1; k++) {
-                f.addC(d.centroid[k].x,d.centroid[k].y);
+                f.addC(d.cx[k],d.cy[k]);
                 if (dd.dist[k]<dd.dist[j]) j=k;
               }
               escape = true;
@@ -171,14 +179,14 @@ public class Curvaceous implements CustomComputation {
               if (i<j) i=j;
               fwd = true;
               for (int k=i0; k<=i1; k++) {
-                f.addC(d.centroid[k].x,d.centroid[k].y);
+                f.addC(d.cx[k],d.cy[k]);
                 if (dd.dist[k]>dd.dist[j]) j=k;
               }
               escape = true;
               break;
             }
           }
-          f.addC(d.centroid[i1].x,d.centroid[i1].y);
+          f.addC(d.cx[i1],d.cy[i1]);
         }
         if (escape) {
           if (last_escape) {
@@ -191,7 +199,7 @@ public class Curvaceous implements CustomComputation {
         else {
           f.circ.fit();
           v.eq(dd.dirx[i],dd.diry[i]);
-          w.eq((float)f.circ.params.x0 - d.centroid[i].x, (float)f.circ.params.y0 - d.centroid[i].y);
+          w.eq((float)f.circ.params.x0 - d.cx[i], (float)f.circ.params.y0 - d.cy[i]);
           float sgn = (v.X(w)>0) ? -1.0f : ((v.X(w)<0) ? 1.0f : 0.0f);
           d.quantity[i] = sgn/(float)(f.circ.params.R*chore.mm_per_pixel);
         }
@@ -11,11 +11,12 @@ package mwt.plugins;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import mwt.*;
 import mwt.numerics.*;
 
-public class Eigenspine implements CustomComputation {
+public class Eigenspine implements ParallelSafe, ParallelValidation {
   public class EigenSpine extends Respine.FixedSpine {
     float theta;
     float[] angles;
@@ -54,16 +55,9 @@ public class Eigenspine implements CustomComputation {
   float[] idev;
   ArrayList<float[]> components;
   float[] explained;
-  HashMap<Integer,float[]> extras;
+  ConcurrentHashMap<Integer,float[]> extras;
   ArrayList<File> sources;
   File external_pcs;
-  Vec2F u = new Vec2F();
-  Vec2F v = new Vec2F();
-  Vec2F w = new Vec2F();
-  Vec2F o = new Vec2F();
-  int[] lrindex = null;
-  float[] frac = null;
-  float[] cudist = null;
   float[][] explicit = null;
   
   public Eigenspine() {
@@ -72,7 +66,7 @@ public class Eigenspine implements CustomComputation {
     mean = null;
     idev = null;
     components = null;
-    extras = new HashMap<Integer,float[]>();
+    extras = new ConcurrentHashMap<Integer,float[]>();
     sources = new ArrayList<File>();
     external_pcs = null;
   }
@@ -156,6 +150,12 @@ public class Eigenspine implements CustomComputation {
 
   public String desiredExtension() { return "eigen"; }
 
+  // The components are fixed by computeAll; after that each dancer only reads them
+  public boolean parallelSafe() { return true; }
+
+  // Takes every dancer; the components are found later in computeAll
+  public boolean validatesInParallel() { return true; }
+
   public boolean validateDancer(Dance d) { return true; }
 
   public static ArrayList<float[]> doNIPALS(float[] X, int dims, int npc, boolean loud, float[] explained) {
@@ -218,7 +218,27 @@ public class Eigenspine implements CustomComputation {
     return alf;
   }
 
-  EigenSpine loadAngles(Spine s, float[] angles, Vec2F bearing) {
+  // Working space for loadAngles, sized for spines with a given number of bends
+  static class AngleScratch {
+    final Vec2F u = new Vec2F();
+    final Vec2F v = new Vec2F();
+    final Vec2F w = new Vec2F();
+    final Vec2F o = new Vec2F();
+    final int[] lrindex;
+    final float[] frac;
+    final float[] cudist;
+    AngleScratch(int bends) {
+      lrindex = new int[bends-1];
+      frac = new float[bends-1];
+      cudist = new float[bends+1];
+    }
+  }
+
+  EigenSpine loadAngles(Spine s, float[] angles, Vec2F bearing, AngleScratch scratch) {
+    Vec2F u = scratch.u, v = scratch.v, w = scratch.w, o = scratch.o;
+    int[] lrindex = scratch.lrindex;
+    float[] frac = scratch.frac;
+    float[] cudist = scratch.cudist;
     // Cumulative length computation--make it a block to hide temporary variables
     {
       s.get(0,u);
@@ -304,10 +324,7 @@ public class Eigenspine implements CustomComputation {
     double[] mean = new double[bends];
     double[] dev = new double[bends];
     
-    // loadAngles uses these
-    lrindex = new int[bends-1];
-    frac = new float[bends-1];
-    cudist = new float[bends+1];
+    AngleScratch scratch = new AngleScratch(bends);
 
     int good_spine_count = 0;
     for (Dance d : chore.dances) {
@@ -328,7 +345,7 @@ public class Eigenspine implements CustomComputation {
       if (d.spine==null) continue;
       for (int i=0; i<d.spine.length; i++) {
         if (d.spine[i]==null) continue;
-        d.spine[i] = loadAngles(d.spine[i],angles,d.bearing[i]);
+        d.spine[i] = loadAngles(d.spine[i],angles,d.bearing(i),scratch);
         if (Float.isNaN(d.quantity[i])) continue;
         for (int j=0; j<bends; j++) X[n*bends+j] = angles[j];
         n++;
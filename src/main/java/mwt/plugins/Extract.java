@@ -13,7 +13,7 @@ import java.io.*;
 import mwt.*;
 import mwt.numerics.*;
 
-public class Extract implements CustomComputation {
+public class Extract implements ParallelSafe, ParallelValidation {
   public Choreography chore;
   public boolean extract_spine;
   public boolean extract_outline;
@@ -42,6 +42,12 @@ public class Extract implements CustomComputation {
   }
   
   public String desiredExtension() { return ""; }
+
+  // Each dancer gets its own output file
+  public boolean parallelSafe() { return true; }
+
+  // Every dancer is accepted
+  public boolean validatesInParallel() { return true; }
   
   public boolean validateDancer(Dance d) { return true; }
   
@@ -49,40 +55,36 @@ public class Extract implements CustomComputation {
   
   public boolean extractSpine(Dance d,File out_f) throws IOException {
     PrintWriter pw = null;
+    FormatBuffer line = new FormatBuffer();
     if (d.spine==null) throw new IOException("Object "+d.ID+" has no spine to extract.");
     Vec2F v = Vec2F.zero();
     for (int i = 0 ; i < d.spine.length ; i++) {
       if (d.spine[i]==null) continue;
-      pw = Choreography.nfprintf(pw,out_f,"%.3f",d.t(i));
+      line.add(d.t(i),3);
       for (int j = 0 ; j < d.spine[i].size() ; j++) {
         d.spine[i].get(j,v);
-        pw = Choreography.nfprintf(
-          pw,out_f," %.3f %.3f",
-          (v.x+d.centroid[i].x)*chore.mm_per_pixel,
-          (v.y+d.centroid[i].y)*chore.mm_per_pixel
-        );
+        line.add(' ').add((v.x+d.cx[i])*chore.mm_per_pixel,3);
+        line.add(' ').add((v.y+d.cy[i])*chore.mm_per_pixel,3);
       }
-      pw = Choreography.nfprintf(pw,out_f,"\n");
+      pw = Choreography.nfprintf(pw,out_f,line.add('\n'));
     }
     if (pw!=null) pw.close();
     return (pw!=null);
   }
   public boolean extractOutline(Dance d,File out_f) throws IOException {
     PrintWriter pw = null;
+    FormatBuffer line = new FormatBuffer();
     Vec2S pts[] = null;
     if (d.outline==null) throw new IOException("Object "+d.ID+" has no outline to extract.");
     for (int i = 0 ; i < d.outline.length ; i++) {
       if (d.outline[i]==null) continue;
-      pw = Choreography.nfprintf(pw,out_f,"%.3f",d.t(i));
+      line.add(d.t(i),3);
       pts = d.outline[i].unpack(pts);
       for (int j = 0 ; j < d.outline[i].size() ; j++) {
-        pw = Choreography.nfprintf(
-          pw,out_f," %.3f %.3f",
-          pts[j].x*chore.mm_per_pixel,
-          pts[j].y*chore.mm_per_pixel
-        );
+        line.add(' ').add(pts[j].x*chore.mm_per_pixel,3);
+        line.add(' ').add(pts[j].y*chore.mm_per_pixel,3);
       }
-      pw = Choreography.nfprintf(pw,out_f,"\n");
+      pw = Choreography.nfprintf(pw,out_f,line.add('\n'));
     }
     if (pw!=null) pw.close();
     return (pw!=null);
@@ -14,7 +14,7 @@ import java.util.*;
 import mwt.*;
 import mwt.numerics.*;
 
-public class Filter implements CustomComputation{
+public class Filter implements ParallelSafe{
   float[] t;
   float speed_window;
   float mm_per_pixel;
@@ -48,11 +48,11 @@ public class Filter implements CustomComputation{
     new Q(Choreography.DataSource.SPED,pix) { void load(Dance d) { d.quantityIsSpeed(t, speed_window, false, false); } },
     new Q(Choreography.DataSource.ASPD,rad) { void load(Dance d) { d.quantityIsAngularSpeed(t, speed_window, false); } },
     new Q(Choreography.DataSource.LENG,pix) { void load(Dance d) { d.quantityIsLength(false); } },
-    new Q(Choreography.DataSource.RLEN,one) { void load(Dance d) { d.quantityIsLength(false); double l=0.0; for (int i=0;i<d.centroid.length;i++) l+=d.quantity[i]; mult = (float)(1/l); } },
+    new Q(Choreography.DataSource.RLEN,one) { void load(Dance d) { d.quantityIsLength(false); double l=0.0; for (int i=0;i<d.cx.length;i++) l+=d.quantity[i]; mult = (float)(1/l); } },
     new Q(Choreography.DataSource.WIDT,pix) { void load(Dance d) { d.quantityIsWidth(false); } },
-    new Q(Choreography.DataSource.RWID,one) { void load(Dance d) { d.quantityIsWidth(false); double w=0.0; for (int i=0;i<d.centroid.length;i++) w+=d.quantity[i]; mult = (float)(1/w); } },
+    new Q(Choreography.DataSource.RWID,one) { void load(Dance d) { d.quantityIsWidth(false); double w=0.0; for (int i=0;i<d.cx.length;i++) w+=d.quantity[i]; mult = (float)(1/w); } },
     new Q(Choreography.DataSource.ASPC,one) { void load(Dance d) { d.quantityIsAspect(false); } },
-    new Q(Choreography.DataSource.RASP,one) { void load(Dance d) { d.quantityIsAspect(false); double a=0.0; for (int i=0;i<d.centroid.length;i++) a+=d.quantity[i]; mult = (float)(1/a); } },
+    new Q(Choreography.DataSource.RASP,one) { void load(Dance d) { d.quantityIsAspect(false); double a=0.0; for (int i=0;i<d.cx.length;i++) a+=d.quantity[i]; mult = (float)(1/a); } },
     new Q(Choreography.DataSource.LOCX,pix) { void load(Dance d) { d.quantityIsX(false); } },
     new Q(Choreography.DataSource.LOCY,pix) { void load(Dance d) { d.quantityIsY(false); } },
     new Q(Choreography.DataSource.VELX,pix) { void load(Dance d) { d.quantityIsVx(t, speed_window, false, false); } },
@@ -77,7 +77,7 @@ public class Filter implements CustomComputation{
       qf.using(d);
       double sum = 0.0;
       int n = 0;
-      for (int i = 0; i < d.centroid.length; i++) {
+      for (int i = 0; i < d.cx.length; i++) {
         float v = qf.value(d,i);
         if (!Float.isNaN(v)) { sum += v; n += 1; }
       }
@@ -89,7 +89,7 @@ public class Filter implements CustomComputation{
     }
     int[] obeys(Dance d, int[] tally) {
       qf.using(d);
-      for (int i = 0; i < d.centroid.length; i++) {
+      for (int i = 0; i < d.cx.length; i++) {
         float v = qf.value(d,i);
         if (Float.isNaN(v)) tally[i] = Integer.MIN_VALUE;
         if (above && v >= value) tally[i]++;
@@ -102,7 +102,7 @@ public class Filter implements CustomComputation{
   abstract class Condition {
     Bound[] bounds;
     int[] getTally(Dance d) {
-      int[] tally = new int[d.centroid.length];
+      int[] tally = new int[d.cx.length];
       for (Bound b : bounds) b.obeys(d, tally);
       return tally;
     }
@@ -229,6 +229,9 @@ public class Filter implements CustomComputation{
 
   public String desiredExtension() { return ""; }
 
+  // All the filtering happens in validateDancer, which is never run in parallel
+  public boolean parallelSafe() { return true; }
+
   public int computeAll(File out_f) throws IOException {
     return 0;
   }
@@ -15,7 +15,7 @@ import java.awt.image.*;
 import mwt.*;
 import mwt.numerics.*;
 
-public class Flux implements CustomOutputModification {
+public class Flux implements CustomOutputModification, ParallelSafe, ParallelValidation {
   abstract class Shape {
     boolean inside_out;
     Vec2F c;
@@ -32,15 +32,15 @@ public class Flux implements CustomOutputModification {
     }
   }
   class Ellip extends Shape {
-    private Vec2F v = Vec2F.zero();
     Ellip(Vec2F c0, Vec2F r0, boolean inin) {
       inside_out = !inin;
       c = c0.copy();
       r = positiveRadius(r0.copy());
     }
     boolean check(Vec2F p) {
-      v.eq(p).eqMinus(c).eqDivide(r);
-      return (v.length2() < 1.0f);
+      float x = (p.x - c.x)/r.x;
+      float y = (p.y - c.y)/r.y;
+      return (x*x + y*y < 1.0f);
     }
   }
   class Rect extends Shape {
@@ -184,16 +184,22 @@ public class Flux implements CustomOutputModification {
 
   public String desiredExtension() { return (postfix.equals("")) ? "flux" : (postfix+".flux"); }
 
+  // Shapes keep no scratch space, so any number of dancers can be checked against them at once
+  public boolean parallelSafe() { return true; }
+
+  // Accepts all dancers; the shapes are only read
+  public boolean validatesInParallel() { return true; }
+
   public boolean validateDancer(Dance d) { return true; }
 
   ArrayList<Event> findDancerEvents(Dance d) {
     Vec2F v = new Vec2F();
     ArrayList<Event> ale = new ArrayList<Event>();
-    if ( inside_one(d.centroid[0],shapes) ) ale.add( new Event(d.t(0),2,d.ID,d.centroid[0]) );
+    if ( inside_one(d.centroid(0),shapes) ) ale.add( new Event(d.t(0),2,d.ID,d.centroid(0)) );
     if (d.segmentation==null) {
-      for (int i=1; i<d.centroid.length; i++) {
-        int j = crosses(shapes,d.centroid[i],d.centroid[i-1]);
-        v.eq(d.centroid[i]).eqPlus(d.centroid[i-1]).eqTimes(0.5f);
+      for (int i=1; i<d.cx.length; i++) {
+        int j = crosses(shapes,d.centroid(i),d.centroid(i-1));
+        v.eq(d.cx[i],d.cy[i]).eqPlus(d.centroid(i-1)).eqTimes(0.5f);
         if ( j!=0 ) ale.add( new Event(0.5f*(d.t(i)+d.t(i-1)),j,d.ID,v) );
       }
     }
@@ -207,24 +213,24 @@ public class Flux implements CustomOutputModification {
             i0 = d.segmentation[i].endpoints[k];
             i1 = d.segmentation[i].endpoints[k+1];
           }
-          int j = crosses(shapes,d.centroid[i1],d.centroid[i0]);
+          int j = crosses(shapes,d.centroid(i1),d.centroid(i0));
           if (j!=0) {
             float t = 0.5f*(d.t(i1) + d.t(i0));
-            v.eq(d.centroid[i0]).eqPlus(d.centroid[i1]).eqTimes(0.5f);
+            v.eq(d.cx[i0],d.cy[i0]).eqPlus(d.centroid(i1)).eqTimes(0.5f);
             ale.add( new Event(t,j,d.ID,v) );
           }
         }
         if (i+1<d.segmentation.length && d.segmentation[i].i1 < d.segmentation[i+1].i0) {
-          int j = crosses(shapes,d.centroid[d.segmentation[i+1].i0],d.centroid[d.segmentation[i].i1]);
+          int j = crosses(shapes,d.centroid(d.segmentation[i+1].i0),d.centroid(d.segmentation[i].i1));
           if (j!=0) {
             float t = 0.5f*(d.t(d.segmentation[i+1].i0) + d.t(d.segmentation[i].i1));
-            v.eq(d.centroid[d.segmentation[i+1].i0]).eqPlus(d.centroid[d.segmentation[i].i1]).eqTimes(0.5f);
+            v.eq(d.centroid(d.segmentation[i+1].i0)).eqPlus(d.centroid(d.segmentation[i].i1)).eqTimes(0.5f);
             ale.add( new Event(t,j,d.ID,v) );
           }
         }
       }
     }
-    if ( inside_one(d.centroid[d.centroid.length-1],shapes) ) ale.add( new Event(Math.nextUp(d.t(d.centroid.length-1)),-2,d.ID,d.centroid[d.centroid.length-1]) );
+    if ( inside_one(d.centroid(d.cx.length-1),shapes) ) ale.add( new Event(Math.nextUp(d.t(d.cx.length-1)),-2,d.ID,d.centroid(d.cx.length-1)) );
     return ale;
   }
 
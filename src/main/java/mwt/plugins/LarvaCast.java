@@ -13,17 +13,26 @@ import java.io.*;
 import mwt.*;
 import mwt.numerics.*;
 
-public class LarvaCast implements CustomComputation
+public class LarvaCast implements ParallelSafe, ParallelValidation
 {
+  // Everything computed for one dancer, kept out of the plugin so that dancers can be done at once
+  static class Casts {
+    final float casts[];
+    final Vec2F heads[];
+    final Vec2F tails[];
+    final Vec2F toorig[];
+    Casts(Dance d) {
+      casts = new float[d.area.length];
+      heads = new Vec2F[d.area.length];
+      tails = new Vec2F[d.area.length];
+      toorig = new Vec2F[d.area.length];
+    }
+  }
+
   Choreography chore;
   boolean isAngle = false;
   boolean isFit = false;
   Vec2F origin = null;
-  Dance buffered = null;
-  float casts[] = null;
-  Vec2F heads[] = null;
-  Vec2F tails[] = null;
-  Vec2F toorig[] = null;
   int head0 = -1;
   int head1 = -1;
   int tail0 = -1;
@@ -124,6 +133,12 @@ public class LarvaCast implements CustomComputation
   // Called before any method taking a File as an output target--this sets the extension
   public String desiredExtension() { return "lcast"; }
 
+  // Head and tail ranges are settled once, under a lock; everything else is per dancer
+  public boolean parallelSafe() { return true; }
+
+  // Accepts all dancers
+  public boolean validatesInParallel() { return true; }
+
   // Called on freshly-read objects to test them for validity (after the normal checks are done).
   public boolean validateDancer(Dance d) { return true; }
 
@@ -136,7 +151,7 @@ public class LarvaCast implements CustomComputation
   // Called when the C output option is given to figure out how many custom quantifications (output types) this plugin provides.
   public int quantifierCount() { return 7; }
 
-  void verifyRanges(Dance d, int i) throws IllegalArgumentException {
+  synchronized void verifyRanges(Dance d, int i) throws IllegalArgumentException {
     int n = d.spine[i].size();
     if (head0<0 || head1<0) {
       head0 = (int)Math.round((n-1)*Math.min(fractionalh0, fractionalh1));
@@ -156,14 +171,13 @@ public class LarvaCast implements CustomComputation
     if ((isAngle || isFit) && (head0==head1)) throw new IllegalArgumentException("LarvaCast head must be at least two spine points unless max method is used");
   }
 
-  void computeAllQuantities(Dance d) throws IllegalArgumentException {
+  Casts computeAllQuantities(Dance d) throws IllegalArgumentException {
     boolean verified = false;
-    if (casts==null || casts.length < d.area.length) {
-      casts = new float[d.area.length];
-      heads = new Vec2F[d.area.length];
-      tails = new Vec2F[d.area.length];
-      toorig = new Vec2F[d.area.length];
-    }
+    Casts c = new Casts(d);
+    float casts[] = c.casts;
+    Vec2F heads[] = c.heads;
+    Vec2F tails[] = c.tails;
+    Vec2F toorig[] = c.toorig;
     Fitter ft = new Fitter();
     Fitter fh = new Fitter();
     Vec2F u = new Vec2F();
@@ -191,7 +205,7 @@ public class LarvaCast implements CustomComputation
 
       ft.spot.fit();
       if (toorig[i] == null) toorig[i] = new Vec2F();
-      toorig[i].eq((float)ft.spot.params.x0, (float)ft.spot.params.y0).eqPlus(d.centroid[i]);
+      toorig[i].eq((float)ft.spot.params.x0, (float)ft.spot.params.y0).eqPlus(d.centroid(i));
       if (origin != null) toorig[i].eqMinus(origin);
 
       ft.line.fit();
@@ -245,13 +259,13 @@ public class LarvaCast implements CustomComputation
         // Store vector to expected position of head (in heads[i], u destroyed)
         if (heads[i]==null) heads[i] = u.eq((float)fh.spot.params.x0,(float)fh.spot.params.y0).copy(); else heads[i].eq((float)fh.spot.params.x0,(float)fh.spot.params.y0);
         u.eq(v).eqTimes(hml*0.5f);
-        heads[i].eqPlus(u).eqPlus(d.centroid[i]);
+        heads[i].eqPlus(u).eqPlus(d.centroid(i));
         if (origin != null) heads[i].eqMinus(origin);
 
         // Figure out whether line crosses or not; if yes, use head estimate, otherwise just angle (w,u destroyed)
         w.eq(tails[i]).eqNorm();
         float pdl = hml * Math.abs(1-w.dot(v));
-        u.eq(heads[i]).eqMinus(d.centroid[i]);
+        u.eq(heads[i]).eqMinus(d.centroid(i));
         if (pdl < pdo*2) casts[i] = (float)ft.line.perpendicularCoord(u.x,u.y); else casts[i] = pdl;
         if (v.X(w) < 0) casts[i] = -casts[i];
       }
@@ -266,7 +280,7 @@ public class LarvaCast implements CustomComputation
             maxj = j;
           }
         }
-        d.spine[i].get(maxj,v).eqPlus(d.centroid[i]);
+        d.spine[i].get(maxj,v).eqPlus(d.centroid(i));
         if (origin != null) v.eqMinus(origin);
         if (heads[i] == null) heads[i] = v.copy(); else heads[i].eq(v);
         d.spine[i].get(maxj,v);
@@ -276,6 +290,7 @@ public class LarvaCast implements CustomComputation
         casts[i] = (float)maxd;
       }
     }
+    return c;
   }
 
   float xOrNaN(Vec2F v) { return (v==null) ? Float.NaN : v.x; }
@@ -284,18 +299,18 @@ public class LarvaCast implements CustomComputation
   // This is called whenever the plugin is required to handle a custom quantification.
   public void computeDancerQuantity(Dance d,int which) throws IllegalArgumentException {
     if (which<0 || which>=quantifierCount()) throw new IllegalArgumentException("LarvaCast only computes one value (0); "+which+" asked for on object "+d.ID);
-    if (buffered != d) computeAllQuantities(d);
+    Casts c = computeAllQuantities(d);
     switch(which) {
       case 0:
         float scale = (isAngle) ? 1.0f : chore.mm_per_pixel;
-        for (int i=0;i<d.area.length;i++) d.quantity[i] = scale*casts[i];
+        for (int i=0;i<d.area.length;i++) d.quantity[i] = scale*c.casts[i];
         break;
-      case 1: for (int i=0;i<d.area.length;i++) d.quantity[i] = xOrNaN(heads[i]); break;
-      case 2: for (int i=0;i<d.area.length;i++) d.quantity[i] = yOrNaN(heads[i]); break;
-      case 3: for (int i=0;i<d.area.length;i++) d.quantity[i] = xOrNaN(tails[i]); break;
-      case 4: for (int i=0;i<d.area.length;i++) d.quantity[i] = yOrNaN(tails[i]); break;
-      case 5: for (int i=0;i<d.area.length;i++) d.quantity[i] = xOrNaN(toorig[i]); break;
-      case 6: for (int i=0;i<d.area.length;i++) d.quantity[i] = yOrNaN(toorig[i]); break;
+      case 1: for (int i=0;i<d.area.length;i++) d.quantity[i] = xOrNaN(c.heads[i]); break;
+      case 2: for (int i=0;i<d.area.length;i++) d.quantity[i] = yOrNaN(c.heads[i]); break;
+      case 3: for (int i=0;i<d.area.length;i++) d.quantity[i] = xOrNaN(c.tails[i]); break;
+      case 4: for (int i=0;i<d.area.length;i++) d.quantity[i] = yOrNaN(c.tails[i]); break;
+      case 5: for (int i=0;i<d.area.length;i++) d.quantity[i] = xOrNaN(c.toorig[i]); break;
+      case 6: for (int i=0;i<d.area.length;i++) d.quantity[i] = yOrNaN(c.toorig[i]); break;
     }
   }
 
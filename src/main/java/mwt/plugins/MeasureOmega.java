@@ -14,7 +14,7 @@ import java.util.*;
 import mwt.*;
 import mwt.numerics.*;
 
-public class MeasureOmega implements CustomComputation
+public class MeasureOmega implements ParallelValidation
 {
   Choreography chore = null;
   int eig3idx = -1;
@@ -103,6 +103,9 @@ public class MeasureOmega implements CustomComputation
   
   // Called before any method taking a File as an output target--this sets the extension
   public String desiredExtension() { return "omega"; }
+
+  // Never rejects anyone, so may as well let the others run at once
+  public boolean validatesInParallel() { return true; }
   
   // Called on freshly-read objects to test them for validity (after the normal checks are done).
   public boolean validateDancer(Dance d) { return true; }
@@ -269,7 +272,7 @@ public class MeasureOmega implements CustomComputation
         for (MeasureReversal.Reversal r : mr.lookup.get(d)) {
           ReversalBends rb = countBends(cuml,d.quantity,r);
           if (rb == null || !r.backwards) continue;
-          if (rb.omega_after > 0 && d.centroid[rb.reversal.index1()].dist(d.centroid[rb.reversal.index1()+rb.omega_after]) > midlength/2) continue;
+          if (rb.omega_after > 0 && d.centroidDist(rb.reversal.index1(),rb.reversal.index1()+rb.omega_after) > midlength/2) continue;
           bendsinrev.put(r, rb);
           System.out.printf("%d %d %d %.3f %.3f %.3f %d %d %.3f\n",d.ID,r.index0(),r.index1(),r.traveled * (r.backwards ? -1 : 1),rb.bends,midlength,rb.omega_after,rb.omega_last,d.t((rb.omega_after+rb.omega_last)/2+r.index1()));
         }
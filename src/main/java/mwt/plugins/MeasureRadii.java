@@ -10,16 +10,17 @@ package mwt.plugins;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import mwt.*;
 import mwt.numerics.*;
 
-public class MeasureRadii implements CustomComputation
+public class MeasureRadii implements ParallelSafe, ParallelValidation
 {
   Choreography chore;
   int N = 2;
   int M = 5;
-  HashMap<Dance, Radiic[]> library = new HashMap<Dance, Radiic[]>();
+  ConcurrentHashMap<Dance, Radiic[]> library = new ConcurrentHashMap<Dance, Radiic[]>();
   boolean internal = false;
 
   public class Radiic {
@@ -83,6 +84,12 @@ public class MeasureRadii implements CustomComputation
   
   // Called before any method taking a File as an output target--this sets the extension
   public String desiredExtension() { return "radii"; }
+
+  // Fits are local to each dancer; the library is a concurrent map
+  public boolean parallelSafe() { return true; }
+
+  // No dancer is turned away
+  public boolean validatesInParallel() { return true; }
   
   // Called on freshly-read objects to test them for validity (after the normal checks are done).
   public boolean validateDancer(Dance d) { return true; }
@@ -10,11 +10,12 @@ package mwt.plugins;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import mwt.*;
 import mwt.numerics.*;
 
-public class MeasureReversal implements CustomComputation {
+public class MeasureReversal implements ParallelSafe, ParallelValidation {
   public Choreography chore;
   public double dt = 1.0;
   public double idt = 0.0;
@@ -28,7 +29,7 @@ public class MeasureReversal implements CustomComputation {
   public double toosmall = 0.0;
   double time_hist = 0.0;
   public ArrayList<Result> results = null;
-  public HashMap< Dance , Reversal[] > lookup = new HashMap< Dance , Reversal[] >();
+  public ConcurrentHashMap< Dance , Reversal[] > lookup = new ConcurrentHashMap< Dance , Reversal[] >();
   private String postfix = "rev";
   
   public class Result {
@@ -173,6 +174,18 @@ public class MeasureReversal implements CustomComputation {
   }
   
   public String desiredExtension() { return postfix; }
+
+  // Each dancer's reversals are gathered and written on their own file; collecting shares results and one writer, and triggers that are other plugins' outputs might not be safe
+  public boolean parallelSafe() {
+    if (!separate_files || results != null) return false;
+    if (triggers != null) for (EventTrigger et : triggers) {
+      if (et.event == Choreography.DataSource.CUST) return false;
+    }
+    return true;
+  }
+
+  // Only looks for an outline and spine on the dancer itself
+  public boolean validatesInParallel() { return true; }
   
   public boolean validateDancer(Dance d) {
     if (d.outline == null) return false;
@@ -283,11 +296,12 @@ public class MeasureReversal implements CustomComputation {
       else return 0;
     }
   }
-  private ArrayList<TempResult> temp_results = new ArrayList<TempResult>();
-  public void save(Dance d,int ei,double dist,double dur,Vec2F pos,Vec2F dir) {
+  public void save(ArrayList<TempResult> temp_results,Dance d,int ei,double dist,double dur,Vec2F pos,Vec2F dir) {
     temp_results.add( new TempResult(d, ei, dist, dur, pos, dir) );
   }
-  public void sort_and_write(File out_f) throws IOException {
+  // Writes to pw (opening out_f if it is null) and returns whatever was written to
+  public PrintWriter sort_and_write(ArrayList<TempResult> temp_results,PrintWriter pw,File out_f) throws IOException {
+    FormatBuffer line = null;
     for (int i=1,j=0; i<temp_results.size(); i++) {
       TempResult a = temp_results.get(j);
       TempResult b = temp_results.get(i);
@@ -300,15 +314,18 @@ public class MeasureReversal implements CustomComputation {
         results.add( new Result(tr.ei,tr.d,tr.dist,tr.dur) );
       }
       if (send_to_file) {
+        // One line per reversal, so skip printf: "%05d %.2f  %.3f %.3f" and, with coordinates, "  %.3f %.3f  %.3f %.3f"
+        if (line == null) line = new FormatBuffer();
+        line.addPadded(tr.d.ID,5).add(' ').add(tr.d.t(tr.ei),2);
+        line.add("  ").add(tr.dist * chore.mm_per_pixel,3).add(' ').add(tr.dur,3);
         if (output_coordinates) {
-          pw = Choreography.nfprintf(pw, out_f, "%05d %.2f  %.3f %.3f  %.3f %.3f  %.3f %.3f\n",
-                                     tr.d.ID, tr.d.t(tr.ei), tr.dist * chore.mm_per_pixel, tr.dur,
-                                     tr.pos.x*chore.mm_per_pixel, tr.pos.y*chore.mm_per_pixel, tr.dir.x, tr.dir.y);
+          line.add("  ").add(tr.pos.x*chore.mm_per_pixel,3).add(' ').add(tr.pos.y*chore.mm_per_pixel,3);
+          line.add("  ").add(tr.dir.x,3).add(' ').add(tr.dir.y,3);
         }
-        else pw = Choreography.nfprintf(pw, out_f, "%05d %.2f  %.3f %.3f\n", tr.d.ID, tr.d.t(tr.ei), tr.dist * chore.mm_per_pixel, tr.dur);
+        pw = Choreography.nfprintf(pw, out_f, line.add('\n'));
       }
     }
-    temp_results.clear();
+    return pw;
   }
   public void addRetro(Dance d,int i,float dt,float value) {
     d.quantity[i] += value;
@@ -372,8 +389,8 @@ public class MeasureReversal implements CustomComputation {
     public float lasted() {
       return time1() - time0();
     }
-    public Vec2F xy0(Vec2F v) { return v.eq(d.centroid[index0()]); }
-    public Vec2F xy1(Vec2F v) { return v.eq(d.centroid[index1()]); }
+    public Vec2F xy0(Vec2F v) { return v.eq(d.cx[index0()],d.cy[index0()]); }
+    public Vec2F xy1(Vec2F v) { return v.eq(d.cx[index1()],d.cy[index1()]); }
     public Vec2F uv0(Vec2F v) {
       if (j0 > 0) d.segmentation[i0].pickVector(v, j0); else d.segmentation[i0].initialVector(v);
       v.eqNorm();
@@ -395,6 +412,7 @@ public class MeasureReversal implements CustomComputation {
       d.quantity[i] = -100.0f;
     }
 
+    ArrayList<TempResult> temp_results = new ArrayList<TempResult>();
     LinkedList<Reversal> pieces = new LinkedList<Reversal>();
     if (d.segmentation.length > 0) {
       pieces.add( new Reversal(d,0,0,bias) );
@@ -424,7 +442,7 @@ public class MeasureReversal implements CustomComputation {
       for (Reversal q : pieces) {
         if (q.backwards) {
           did_something = true;
-          save(d,q.index0(),q.traveled,q.lasted(),q.xy0(xy),q.uv0(uv));
+          save(temp_results,d,q.index0(),q.traveled,q.lasted(),q.xy0(xy),q.uv0(uv));
         }
       }
     }
@@ -462,11 +480,11 @@ public class MeasureReversal implements CustomComputation {
             (revs[k].time0() - d.t(events[i]) > dt &&
              (!(k+1<revs.length && revs[k+1].time0() - revs[k].time1() < idt)))) {
           did_something = true;
-          save(d,events[i],0,0,xy.eq(0,0),uv.eq(0,0));
+          save(temp_results,d,events[i],0,0,xy.eq(0,0),uv.eq(0,0));
         }
         else if (d.t(revs[k].index0()) < d.t(events[i])) {
           did_something = true;
-          save(d,events[i],-revs[k].traveled,-revs[k].lasted(),revs[k].xy0(xy),revs[k].uv0(uv));
+          save(temp_results,d,events[i],-revs[k].traveled,-revs[k].lasted(),revs[k].xy0(xy),revs[k].uv0(uv));
         }
         else {
           int kk = k;
@@ -481,16 +499,15 @@ public class MeasureReversal implements CustomComputation {
             duration += revs[j].lasted();
           }
           did_something = true;
-          save(d,events[i],distance,duration,revs[k].xy0(xy),revs[k].uv0(uv));
+          save(temp_results,d,events[i],distance,duration,revs[k].xy0(xy),revs[k].uv0(uv));
         }
       }
     }
-    sort_and_write(out_f);
-    
-    if (pw != null && separate_files) {
-      pw.close();
-      pw = null;
+    if (separate_files) {
+      PrintWriter p = sort_and_write(temp_results,null,out_f);
+      if (p != null) p.close();
     }
+    else pw = sort_and_write(temp_results,pw,out_f);
     
     return did_something ? 1 : 0;
   }
@@ -0,0 +1,28 @@
+/* ParallelSafe.java - Plugins whose per-dancer work may run on many dancers at once
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt.plugins;
+
+import mwt.*;
+
+/* Plugins are called one dancer at a time unless they implement this and
+ * parallelSafe() returns true; then, if --threads is above 1, Choreography
+ * may call computeDancerSpecial and computeDancerQuantity for different
+ * dancers at the same time (never for the same dancer twice at once).
+ * To say yes, those two methods must:
+ *   - change nothing but the dancer they were given,
+ *   - keep no scratch space in fields (use locals, or a concurrent map keyed
+ *     by dancer for anything saved for later), and
+ *   - write only to the output file for that dancer, not to a shared one.
+ * initialize, validateDancer, computeAll and quantifierTitle are always
+ * called from one thread, as before.
+ */
+public interface ParallelSafe extends CustomComputation
+{
+  // Called after initialize; true if, with the options given, per-dancer calls may overlap
+  public boolean parallelSafe();
+};
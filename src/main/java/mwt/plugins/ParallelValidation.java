@@ -0,0 +1,27 @@
+/* ParallelValidation.java - Plugins whose validateDancer may run on many dancers at once
+ * Copyright 2015 Calico Life Sciences LLC (authored by Rex Kerr)
+ * This file is a part of Choreography and is distributed under the
+ * terms of the GNU Lesser General Public Licence version 2.1 (LGPL 2.1).
+ * For details, see http://www.gnu.org/licences
+ */
+
+package mwt.plugins;
+
+import mwt.*;
+
+/* Freshly loaded dancers are normally handed to the plugins one at a time,
+ * in file order.  If every plugin in use implements this and says yes,
+ * and --threads is above 1, dancers are validated on the worker pool
+ * instead; each dancer still goes through the plugins in the order they
+ * were given, so one plugin can build on another's work (e.g. Reoutline
+ * before Respine).  validateDancer must then change nothing but the dancer
+ * it was given, and its answer must not depend on which dancers came before.
+ *
+ * Validation may also use Choreography.eachFrameBlock to split a single
+ * dancer's frames over the same pool.
+ */
+public interface ParallelValidation extends CustomComputation
+{
+  // Called after initialize; true if, with the options given, validateDancer calls may overlap
+  public boolean validatesInParallel();
+};
@@ -15,7 +15,7 @@ import java.util.ArrayList;
 import mwt.*;
 import mwt.numerics.*;
 
-public class Reoutline implements CustomComputation {
+public class Reoutline implements ParallelSafe, ParallelValidation {
   private static final float SCORE_TARGET = 0.7f;
   private static final float CONCAVE_DEFAULT = -0.02f;
   private static final float CONVEX_DEFAULT = 0.8f;
@@ -26,14 +26,26 @@ public class Reoutline implements CustomComputation {
     Vec2F[] xy;
     Vec2S[] sxy;
     public FixedOutline(Outline ro) {
-      sxy = ro.unpack(true);
-      length = sxy.length;
       xy = null;
-      x = new float[sxy.length];
-      y = new float[sxy.length];
-      for (int i=0 ; i<sxy.length ; i++) {
-        x[i] = sxy[i].x;
-        y[i] = sxy[i].y;
+      if (ro instanceof Dance.RawOutline) {  // Walk the chain code directly rather than making a Vec2S per pixel
+        length = ro.size();
+        x = new float[length];
+        y = new float[length];
+        Dance.RawOutline.Cursor c = ((Dance.RawOutline)ro).cursor();
+        for (int i=0 ; c.next() ; i++) {
+          x[i] = c.x;
+          y[i] = c.y;
+        }
+      }
+      else {
+        sxy = ro.unpack(true);
+        length = sxy.length;
+        x = new float[sxy.length];
+        y = new float[sxy.length];
+        for (int i=0 ; i<sxy.length ; i++) {
+          x[i] = sxy[i].x;
+          y[i] = sxy[i].y;
+        }
       }
       sxy = null;
     }
@@ -232,6 +244,12 @@ public class Reoutline implements CustomComputation {
 
   public String desiredExtension() { return "outline"; }
 
+  // Nothing is done per dancer after validation
+  public boolean parallelSafe() { return true; }
+
+  // Each outline is smoothed on its own
+  public boolean validatesInParallel() { return true; }
+
   private int ringD(int a, int b, int l) {
     int c = a-b;
     if (c<0) return c+l; else return c;
@@ -253,9 +271,17 @@ public class Reoutline implements CustomComputation {
     else return a-n;
   }
   private float sq(float f) { return f*f; }
-  public boolean validateDancer(Dance d) {
+  public boolean validateDancer(final Dance d) {
     if (d.outline==null) return false;
-    for (int h=0; h<d.outline.length; h++) {
+    Choreography.FrameBlockWork work = new Choreography.FrameBlockWork() { public void on(int i0,int i1) { reoutline(d,i0,i1); } };
+    if (chore==null) work.on(0,d.outline.length);
+    else chore.eachFrameBlock(d.outline.length,work);
+    return true;
+  }
+
+  // Smooths the outlines of frames from up to (not including) until; each frame stands alone, so blocks may run at once
+  void reoutline(Dance d,int from,int until) {
+    for (int h=from; h<until; h++) {
       if (d.outline[h]==null) continue;
       FixedOutline fxo = new FixedOutline(d.outline[h]);
       if (blur!=null && blur.length>1) {
@@ -445,7 +471,6 @@ public class Reoutline implements CustomComputation {
       }
       d.outline[h] = fxo;
     }
-    return true;
   }
 
   public int computeAll(File out_f) throws IOException { return 0; }
@@ -13,7 +13,7 @@ import java.io.*;
 import mwt.*;
 import mwt.numerics.*;
 
-public class Respine implements CustomComputation
+public class Respine implements ParallelSafe, ParallelValidation
 {
   public static class FixedSpine implements Spine {
     boolean quant;
@@ -142,6 +142,12 @@ public class Respine implements CustomComputation
   
   public String desiredExtension() { return "spine"; }
 
+  // Nothing is done per dancer after validation
+  public boolean parallelSafe() { return true; }
+
+  // Each dancer's spines depend only on its own outlines
+  public boolean validatesInParallel() { return true; }
+
   protected static int modup(int i, int m) { if (i >= m) return (i-m); else return i; }
   protected static int moddn(int i, int m) { if (i<0) return (i+m); else return i; }
   protected void weightByTaper(Dance d, int index, float[] weights) {
@@ -185,10 +191,20 @@ public class Respine implements CustomComputation
     if (i<=0) return L-1;
     else return i-1;
   }
-  public boolean validateDancer(Dance d) {
+  public boolean validateDancer(final Dance d) {
     if (d.outline == null) return false;
     if (d.spine==null) d.spine = new Spine[d.outline.length];
     
+    Choreography.FrameBlockWork work = new Choreography.FrameBlockWork() { public void on(int i0,int i1) { respine(d,i0,i1); } };
+    if (chore==null) work.on(0,d.outline.length);
+    else chore.eachFrameBlock(d.outline.length,work);
+    d.alignAllSpines();
+    d.endpoint_angle_fraction = fraction;
+    return true;
+  }
+
+  // Builds the spines of frames from up to (not including) until out of their outlines; each frame stands alone, so blocks may run at once
+  protected void respine(Dance d,int from,int until) {
     Vec2F u = new Vec2F(0,0);
     Vec2F v = new Vec2F(0,0);
     Vec2F w = new Vec2F(0,0);
@@ -199,7 +215,7 @@ public class Respine implements CustomComputation
     Vec2F[] points = new Vec2F[spines];
     for (int j=0 ; j<spines ; j++) points[j] = new Vec2F();
     
-    for (int i=0 ; i<d.outline.length ; i++) {
+    for (int i=from ; i<until ; i++) {
       if (d.outline[i]==null) { d.spine[i]=null; continue; }
       if (d.outline[i].quantized()) {
         pts = d.outline[i].unpack(pts);
@@ -210,7 +226,7 @@ public class Respine implements CustomComputation
         int farside = d.outline[i].size() - Math.abs(ep.x - ep.y);
         if (ep.x<=ep.y) farside = -farside;
 
-        points[0].eq( u.eq(pts[ep.x]).eqMinus(d.centroid[i]) );
+        points[0].eq( u.eq(pts[ep.x]).eqMinus(d.centroid(i)) );
         wid[0] = 0.0f;
         for (int j=1 ; j<spines-1 ; j++) {
           float f0 = (1.0f*(j-0.5f))/(spines-1);
@@ -242,10 +258,10 @@ public class Respine implements CustomComputation
           u.eqTimes( 1.0f/iLn );
           v.eqTimes( 1.0f/iRn );
           wid[j] = u.dist(v);
-          u.eqPlus(v).eqTimes(0.5f).eqMinus(d.centroid[i]);
+          u.eqPlus(v).eqTimes(0.5f).eqMinus(d.centroid(i));
           points[j].eq(u);
         }
-        points[spines-1].eq( u.eq(pts[ep.y]).eqMinus(d.centroid[i]) );
+        points[spines-1].eq( u.eq(pts[ep.y]).eqMinus(d.centroid(i)) );
       }
       else {
         Outline o = d.outline[i];
@@ -263,8 +279,8 @@ public class Respine implements CustomComputation
         int i1 = Math.max(ep.x,ep.y);
         int nr = clip(i1-i0,L);
         int nl = L-nr;
-        o.get(i0, points[0]).eqMinus(d.centroid[i]);
-        o.get(i1, points[spines-1]).eqMinus(d.centroid[i]);
+        o.get(i0, points[0]).eqMinus(d.centroid(i));
+        o.get(i1, points[spines-1]).eqMinus(d.centroid(i));
         wid[spines-1] = wid[0] = 0.0f;
         int ir = i0;
         int il = i0;
@@ -293,7 +309,7 @@ public class Respine implements CustomComputation
           o.get(il,v);
           for (int k=1;k<5;k++) { il=rotL(il,L); v.eqPlus(o.get(il,w)); }
           w.eq(u).eqPlus(v).eqTimes(0.1f);
-          points[j].eq(w).eqMinus(d.centroid[i]);
+          points[j].eq(w).eqMinus(d.centroid(i));
           wid[j] = u.eqTimes(0.2f).dist(v.eqTimes(0.2f));
           ir = bir;
           nr = clip(i1-ir,L);
@@ -304,9 +320,6 @@ public class Respine implements CustomComputation
       d.spine[i] = new FixedSpine(points,wid,!subpixel);
       wid = new float[spines];
     }
-    d.alignAllSpines();
-    d.endpoint_angle_fraction = fraction;
-    return true;
   }
   
   public int computeAll(File out_f) throws IOException {
@@ -13,7 +13,7 @@ import java.io.*;
 import mwt.*;
 import mwt.numerics.*;
 
-public class SpinesForward implements CustomComputation
+public class SpinesForward implements ParallelSafe, ParallelValidation
 {
   Choreography chore = null;
   boolean rebias = false;
@@ -41,6 +41,12 @@ public class SpinesForward implements CustomComputation
   
   // Called before any method taking a File as an output target--this sets the extension
   public String desiredExtension() { return ""; }
+
+  // Nothing is done per dancer outside of computeAll
+  public boolean parallelSafe() { return true; }
+
+  // Accepts everything; the real work is in computeAll
+  public boolean validatesInParallel() { return true; }
   
   // Called on freshly-read objects to test them for validity (after the normal checks are done).
   public boolean validateDancer(Dance d) { return true; }
@@ -97,7 +103,7 @@ public class SpinesForward implements CustomComputation
       }
 
       if (rebias) {
-        d.allUnload();  // Make sure nobody believes old bias values
+        d.forgetQuantities();  // Spines have flipped, so nobody should believe old bias (or anything else spine-based)
         DirectionSet ds = new DirectionSet(d.area.length);
         for (i=0; i<d.area.length; i++) {
           if (d.spine[i] != null && d.spine[i].oriented()) {
@@ -14,7 +14,7 @@ import java.util.*;
 import mwt.*;
 import mwt.numerics.*;
 
-public class TaxTap implements CustomComputation
+public class TaxTap implements ParallelValidation
 {
   Choreography chore = null;
   String postfix = "";
@@ -119,6 +119,9 @@ public class TaxTap implements CustomComputation
   // Called before any method taking a File as an output target--this sets the extension
   public String desiredExtension() { return "ctp"; }
 
+  // Never rejects anyone
+  public boolean validatesInParallel() { return true; }
+
   String filenameFix(String fn) {
     if (postfix==null || postfix.length()==0) return (fn.endsWith("."+desiredExtension())) ? fn : fn+"."+desiredExtension();
     else if (!fn.endsWith("."+desiredExtension())) return fn+"."+postfix+"."+desiredExtension();
@@ -278,18 +281,18 @@ public class TaxTap implements CustomComputation
 
     public boolean okay() {
       if (absolute || !radially) return true;
-      float rSqA = d.centroid[i0].dist2(c);
-      float rSqB = d.centroid[i1].dist2(c);
+      float rSqA = d.centroid(i0).dist2(c);
+      float rSqB = d.centroid(i1).dist2(c);
       return (r0*r0 <= rSqA && rSqA <= r1*r1 && r0*r0 <= rSqB && rSqB <= r1*r1);
     }
     public int id() { return d.ID; }
     public int dir() { return (okay()) ? what : 0; }
     public float t0() { return t0; }
     public float t1() { return t1; }
-    public float x0() { if (absolute) return d.centroid[i0].x; else return d.centroid[i0].x - c.x; }
-    public float y0() { if (absolute) return d.centroid[i0].y; else return d.centroid[i0].y - c.y; }
-    public float x1() { if (absolute) return d.centroid[i1].x; else return d.centroid[i1].x - c.x; }
-    public float y1() { if (absolute) return d.centroid[i1].y; else return d.centroid[i1].y - c.y; }
+    public float x0() { if (absolute) return d.cx[i0]; else return d.cx[i0] - c.x; }
+    public float y0() { if (absolute) return d.cy[i0]; else return d.cy[i0] - c.y; }
+    public float x1() { if (absolute) return d.cx[i1]; else return d.cx[i1] - c.x; }
+    public float y1() { if (absolute) return d.cy[i1]; else return d.cy[i1] - c.y; }
     public Vec2F v0(Vec2F vv) { d.getSegmentedDirection(i0,vv); vv.eqNorm(); return vv; }
     public Vec2F v1(Vec2F vv) { d.getSegmentedDirection(i1,vv); vv.eqNorm(); return vv; }
     public float dist(float[] path) { return Math.abs(path[i1]-path[i0]); }